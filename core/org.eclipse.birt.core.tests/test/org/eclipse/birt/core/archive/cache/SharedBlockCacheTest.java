@@ -0,0 +1,84 @@
+package org.eclipse.birt.core.archive.cache;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SharedBlockCacheTest
+{
+	@Test
+    public void testSharedBlockCache( )
+	{
+		// three blocks of 16 bytes
+		SharedBlockCache cache = new SharedBlockCache( 16, 48 );
+		byte[] block = new byte[16];
+		byte[] read = new byte[20];
+
+		assertFalse( cache.readBlock( "a", 1, read, 0 ) );
+		assertEquals( 1, cache.getMissCount( ) );
+
+		for ( int i = 1; i <= 3; i++ )
+		{
+			fillBlock( block, i );
+			cache.writeBlock( "a", i, block, 0 );
+		}
+		assertEquals( 48, cache.getUsedCacheSize( ) );
+
+		// the same block id of another file is another block
+		assertFalse( cache.readBlock( "b", 1, read, 0 ) );
+
+		assertTrue( cache.readBlock( "a", 1, read, 4 ) );
+		assertBlock( read, 4, 1 );
+		assertEquals( 1, cache.getHitCount( ) );
+
+		// block 2 is the least recently used one
+		fillBlock( block, 4 );
+		cache.writeBlock( "b", 4, block, 0 );
+		assertEquals( 48, cache.getUsedCacheSize( ) );
+		assertFalse( cache.readBlock( "a", 2, read, 0 ) );
+		assertTrue( cache.readBlock( "a", 1, read, 0 ) );
+		assertBlock( read, 0, 1 );
+		assertTrue( cache.readBlock( "a", 3, read, 0 ) );
+		assertBlock( read, 0, 3 );
+		assertTrue( cache.readBlock( "b", 4, read, 0 ) );
+		assertBlock( read, 0, 4 );
+
+		cache.setMaxCacheSize( 0 );
+		assertEquals( 0, cache.getUsedCacheSize( ) );
+		cache.writeBlock( "a", 1, block, 0 );
+		assertFalse( cache.readBlock( "a", 1, read, 0 ) );
+	}
+
+	@Test
+    public void testManyBuffers( )
+	{
+		int blockCount = SharedBlockCache.BLOCKS_PER_BUFFER * 2 + 10;
+		SharedBlockCache cache = new SharedBlockCache( 16, blockCount * 16 );
+		byte[] block = new byte[16];
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			fillBlock( block, i );
+			cache.writeBlock( "a", i, block, 0 );
+		}
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			assertTrue( cache.readBlock( "a", i, block, 0 ) );
+			assertBlock( block, 0, i );
+		}
+	}
+
+	private void fillBlock( byte[] block, int value )
+	{
+		for ( int i = 0; i < block.length; i++ )
+		{
+			block[i] = (byte) ( value + i );
+		}
+	}
+
+	private void assertBlock( byte[] buffer, int offset, int value )
+	{
+		for ( int i = 0; i < 16; i++ )
+		{
+			assertEquals( (byte) ( value + i ), buffer[offset + i] );
+		}
+	}
+}
@@ -144,6 +144,113 @@ public class ArchiveFileTest
 		archive.close( );
 	}
 
+	@Test
+    public void testMemoryMapped( ) throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		createArchive( archive );
+		ArchiveEntry entry = archive.createEntry( "/mapped" );
+		byte[] b = new byte[3 * 4096 + 100];
+		for ( int i = 0; i < b.length; i++ )
+		{
+			b[i] = (byte) i;
+		}
+		entry.write( 0, b, 0, b.length );
+		entry.close( );
+		archive.close( );
+
+		ArchiveFileV3 mapped = new ArchiveFileV3( ARCHIVE_FILE, "rm" );
+		try
+		{
+			for ( int i = 0; i < 1024; i++ )
+			{
+				entry = mapped.openEntry( "/entry/" + i );
+				assertEquals( i, entry.getLength( ) );
+				entry.close( );
+			}
+			entry = mapped.openEntry( "/mapped" );
+			assertEquals( b.length, entry.getLength( ) );
+			// read across the block boundaries
+			byte[] read = new byte[b.length];
+			assertEquals( 5000, entry.read( 10, read, 0, 5000 ) );
+			for ( int i = 0; i < 5000; i++ )
+			{
+				assertEquals( b[10 + i], read[i] );
+			}
+			assertEquals( b.length, entry.read( 0, read, 0, read.length ) );
+			for ( int i = 0; i < b.length; i++ )
+			{
+				assertEquals( b[i], read[i] );
+			}
+			assertEquals( -1, entry.read( b.length, read, 0, 1 ) );
+			entry.close( );
+			assertEquals( 0, mapped.getUsedCache( ) );
+		}
+		finally
+		{
+			mapped.close( );
+		}
+
+		System.setProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED, "true" );
+		try
+		{
+			archive = new ArchiveFile( ARCHIVE_FILE, "r" );
+			checkArchive( archive );
+			archive.close( );
+		}
+		finally
+		{
+			System.clearProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED );
+		}
+	}
+
+	@Test
+    public void testSharedCache( ) throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		createArchive( archive );
+		archive.close( );
+
+		ArchiveFile.setSharedCacheSize( 8 * 1024 * 1024 );
+		try
+		{
+			ArchiveFile reader1 = new ArchiveFile( ARCHIVE_FILE, "r" );
+			ArchiveFile reader2 = new ArchiveFile( ARCHIVE_FILE, "r" );
+			readArchive( reader1 );
+			long missCount = ArchiveFile.sharedBlockCache.getMissCount( );
+			assertTrue( ArchiveFile.sharedBlockCache.getUsedCacheSize( ) > 0 );
+			// the blocks read by the first reader are shared by the second
+			readArchive( reader2 );
+			assertEquals( missCount,
+					ArchiveFile.sharedBlockCache.getMissCount( ) );
+			assertTrue( ArchiveFile.sharedBlockCache.getHitCount( ) > 0 );
+			assertEquals( 0, reader2.getUsedCache( ) );
+			reader1.close( );
+			reader2.close( );
+		}
+		finally
+		{
+			ArchiveFile.setSharedCacheSize( 0 );
+		}
+	}
+
+	void readArchive( ArchiveFile archive ) throws IOException
+	{
+		byte[] b = new byte[1024];
+		for ( int i = 1; i < 1024; i++ )
+		{
+			ArchiveEntry entry = archive.openEntry( "/entry/" + i );
+			try
+			{
+				assertEquals( i, entry.read( 0, b, 0, b.length ) );
+			}
+			finally
+			{
+				entry.close( );
+			}
+		}
+	}
+
 	void createArchive( ArchiveFile archive ) throws IOException
 	{
 		int entryCount = 1024;
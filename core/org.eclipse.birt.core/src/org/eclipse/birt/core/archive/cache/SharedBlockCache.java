@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A block cache shared by all the archive files opened for reading. The same
+ * document opened by several readers is cached only once.
+ *
+ * The blocks are stored out of the java heap, in direct byte buffers which are
+ * allocated as the cache grows, up to the maximum cache size. The blocks are
+ * identified by the file and the block id, and the least recently used block is
+ * replaced once the cache is full.
+ */
+public class SharedBlockCache
+{
+
+	/**
+	 * blocks allocated at once in a direct buffer
+	 */
+	static final int BLOCKS_PER_BUFFER = 256;
+
+	private final int blockSize;
+	/**
+	 * the maximum count of blocks in the cache
+	 */
+	private int maxBlockCount;
+
+	/**
+	 * the direct buffers holding the blocks
+	 */
+	private ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>( );
+	/**
+	 * the slots not used in the buffers
+	 */
+	private ArrayList<Integer> freeSlots = new ArrayList<Integer>( );
+	private HashMap<BlockKey, CachedBlock> blocks = new HashMap<BlockKey, CachedBlock>( );
+	/**
+	 * the cached blocks, from the least recently used to the most recently
+	 * used
+	 */
+	private CacheList usedBlocks = new CacheList( );
+
+	private long hitCount;
+	private long missCount;
+
+	/**
+	 * @param blockSize
+	 *            the size of a block in bytes
+	 * @param maxCacheSize
+	 *            the maximum size of the cache in bytes, 0 to disable the cache
+	 */
+	public SharedBlockCache( int blockSize, long maxCacheSize )
+	{
+		this.blockSize = blockSize;
+		this.maxBlockCount = getBlockCount( maxCacheSize );
+	}
+
+	private int getBlockCount( long cacheSize )
+	{
+		long blockCount = cacheSize / blockSize;
+		if ( blockCount > Integer.MAX_VALUE )
+		{
+			return Integer.MAX_VALUE;
+		}
+		return blockCount > 0 ? (int) blockCount : 0;
+	}
+
+	public int getBlockSize( )
+	{
+		return blockSize;
+	}
+
+	public synchronized long getMaxCacheSize( )
+	{
+		return (long) maxBlockCount * blockSize;
+	}
+
+	/**
+	 * change the maximum size of the cache. The cached blocks are released.
+	 *
+	 * @param maxCacheSize
+	 *            the maximum size of the cache in bytes, 0 to disable the cache
+	 */
+	public synchronized void setMaxCacheSize( long maxCacheSize )
+	{
+		clear( );
+		maxBlockCount = getBlockCount( maxCacheSize );
+	}
+
+	/**
+	 * @return the size in bytes of the cached blocks
+	 */
+	public synchronized long getUsedCacheSize( )
+	{
+		return (long) blocks.size( ) * blockSize;
+	}
+
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	/**
+	 * release all the cached blocks and the buffers holding them.
+	 */
+	public synchronized void clear( )
+	{
+		blocks.clear( );
+		usedBlocks.clear( );
+		freeSlots.clear( );
+		buffers.clear( );
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	/**
+	 * read a block from the cache.
+	 *
+	 * @param fileId
+	 *            the identity of the file, it must change once the file is
+	 *            changed.
+	 * @param blockId
+	 *            the block id in the file.
+	 * @param buffer
+	 *            the buffer to receive the whole block.
+	 * @param offset
+	 *            the offset of the block in the buffer.
+	 * @return true if the block is cached, false otherwise.
+	 */
+	public synchronized boolean readBlock( Object fileId, int blockId,
+			byte[] buffer, int offset )
+	{
+		assert offset + blockSize <= buffer.length;
+		CachedBlock block = blocks.get( new BlockKey( fileId, blockId ) );
+		if ( block == null )
+		{
+			missCount++;
+			return false;
+		}
+		hitCount++;
+		// move the block to the most recently used end
+		usedBlocks.remove( block );
+		usedBlocks.add( block );
+		getSlot( block.slot ).get( buffer, offset, blockSize );
+		return true;
+	}
+
+	/**
+	 * add a block into the cache, the least recently used block is replaced if
+	 * the cache is full.
+	 *
+	 * @param fileId
+	 *            the identity of the file.
+	 * @param blockId
+	 *            the block id in the file.
+	 * @param buffer
+	 *            the buffer containing the whole block.
+	 * @param offset
+	 *            the offset of the block in the buffer.
+	 */
+	public synchronized void writeBlock( Object fileId, int blockId,
+			byte[] buffer, int offset )
+	{
+		assert offset + blockSize <= buffer.length;
+		if ( maxBlockCount == 0 )
+		{
+			return;
+		}
+		BlockKey key = new BlockKey( fileId, blockId );
+		CachedBlock block = blocks.get( key );
+		if ( block == null )
+		{
+			int slot = allocSlot( );
+			block = new CachedBlock( key, slot );
+			blocks.put( key, block );
+		}
+		else
+		{
+			usedBlocks.remove( block );
+		}
+		usedBlocks.add( block );
+		getSlot( block.slot ).put( buffer, offset, blockSize );
+	}
+
+	/**
+	 * get a free slot, a new buffer is allocated if all the buffers are used
+	 * and the cache is not full.
+	 */
+	private int allocSlot( )
+	{
+		if ( !freeSlots.isEmpty( ) )
+		{
+			return freeSlots.remove( freeSlots.size( ) - 1 );
+		}
+		int slotCount = buffers.size( ) * BLOCKS_PER_BUFFER;
+		if ( slotCount < maxBlockCount )
+		{
+			int blockCount = Math.min( BLOCKS_PER_BUFFER, maxBlockCount
+					- slotCount );
+			buffers.add( ByteBuffer.allocateDirect( blockCount * blockSize ) );
+			for ( int i = blockCount - 1; i > 0; i-- )
+			{
+				freeSlots.add( slotCount + i );
+			}
+			return slotCount;
+		}
+		CachedBlock removed = (CachedBlock) usedBlocks.remove( );
+		blocks.remove( removed.key );
+		return removed.slot;
+	}
+
+	/**
+	 * @return a view of the buffer positioned at the slot
+	 */
+	private ByteBuffer getSlot( int slot )
+	{
+		ByteBuffer buffer = buffers.get( slot / BLOCKS_PER_BUFFER ).duplicate( );
+		buffer.position( ( slot % BLOCKS_PER_BUFFER ) * blockSize );
+		return buffer;
+	}
+
+	static class BlockKey
+	{
+
+		final Object fileId;
+		final int blockId;
+
+		BlockKey( Object fileId, int blockId )
+		{
+			this.fileId = fileId;
+			this.blockId = blockId;
+		}
+
+		public int hashCode( )
+		{
+			return fileId.hashCode( ) * 31 + blockId;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof BlockKey ) )
+			{
+				return false;
+			}
+			BlockKey key = (BlockKey) obj;
+			return blockId == key.blockId && fileId.equals( key.fileId );
+		}
+	}
+
+	static class CachedBlock extends Cacheable
+	{
+
+		final BlockKey key;
+		final int slot;
+
+		CachedBlock( BlockKey key, int slot )
+		{
+			this.key = key;
+			this.slot = slot;
+		}
+	}
+}
@@ -29,6 +29,18 @@ interface ArchiveConstants
 	 */
 	static final String PROPERTY_DEFAULT_BLOCK_SIZE = "org.eclipse.birt.core.archive.compound.DEFAULT_BLOCK_SIZE";
 	
+	/**
+	 * the system property defines if the archive files opened for reading are
+	 * mapped into memory, "true" to enable it.
+	 */
+	static final String PROPERTY_MEMORY_MAPPED = "org.eclipse.birt.core.archive.compound.MEMORY_MAPPED";
+	
+	/**
+	 * the system property defines the size in bytes of the block cache shared
+	 * by the archive files opened for reading, 0 to disable it.
+	 */
+	static final String PROPERTY_SHARED_CACHE_SIZE = "org.eclipse.birt.core.archive.compound.SHARED_CACHE_SIZE";
+	
 	/**
 	 * Size of a physical block, counted in bytes.
 	 */
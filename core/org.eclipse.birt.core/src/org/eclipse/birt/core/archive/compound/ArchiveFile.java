@@ -16,12 +16,15 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.Collections;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.eclipse.birt.core.archive.FolderArchiveFile;
+import org.eclipse.birt.core.archive.cache.SharedBlockCache;
 import org.eclipse.birt.core.archive.cache.SystemCacheManager;
 import org.eclipse.birt.core.archive.compound.v3.Ext2FileSystem;
 import org.eclipse.birt.core.i18n.CoreMessages;
@@ -39,6 +42,8 @@ public class ArchiveFile implements IArchiveFile
 			1024 );
 	public static final boolean enableFileCache = true;
 	public static final int FILE_CACHE_SIZE = 1024;
+	public static final SharedBlockCache sharedBlockCache = new SharedBlockCache(
+			4096, getDefaultSharedCacheSize( ) );
 
 	static final long ARCHIVE_V2_TAG = ArchiveConstants.DOCUMENT_TAG;
 	static final long ARCHIVE_V3_TAG = Ext2FileSystem.EXT2_MAGIC_TAG;
@@ -278,6 +283,42 @@ public class ArchiveFile implements IArchiveFile
 		}
 	}
 
+	/**
+	 * set the size of the block cache shared by the archive files opened for
+	 * reading. The cached blocks are released.
+	 * 
+	 * @param size
+	 *            the size in bytes, 0 to disable the shared cache.
+	 */
+	static public void setSharedCacheSize( long size )
+	{
+		sharedBlockCache.setMaxCacheSize( size );
+	}
+
+	static private long getDefaultSharedCacheSize( )
+	{
+		String value = AccessController
+				.doPrivileged( new PrivilegedAction<String>( ) {
+
+					public String run( )
+					{
+						return System.getProperty( ArchiveConstants.PROPERTY_SHARED_CACHE_SIZE );
+					}
+				} );
+		if ( value != null )
+		{
+			try
+			{
+				return Long.parseLong( value.trim( ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+				// just skip the exception
+			}
+		}
+		return 0;
+	}
+
 	public void saveAs( String fileName ) throws IOException
 	{
 		ArchiveFileV3 file = new ArchiveFileV3( fileName, "rw" );
@@ -14,6 +14,8 @@ package org.eclipse.birt.core.archive.compound;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -41,11 +43,37 @@ public class ArchiveFileV3 implements IArchiveFile
 			throws IOException
 
 	{
+		if ( "r".equals( mode ) && isMemoryMapped( ) )
+		{
+			mode = "rm";
+		}
 		fs = new Ext2FileSystem( fileName, rf, mode );
 		if ( ArchiveFile.enableFileCache && fs.isRemoveOnExit( ) )
 		{
 			fs.setCacheSize( ArchiveFile.FILE_CACHE_SIZE );
 		}
+		if ( fs.isReadOnly( ) && !fs.isMemoryMapped( )
+				&& ArchiveFile.sharedBlockCache.getMaxCacheSize( ) > 0 )
+		{
+			fs.setSharedCache( ArchiveFile.sharedBlockCache );
+		}
+	}
+
+	/**
+	 * @return true if the archive files opened for reading are mapped into
+	 *         memory.
+	 */
+	static boolean isMemoryMapped( )
+	{
+		String value = AccessController
+				.doPrivileged( new PrivilegedAction<String>( ) {
+
+					public String run( )
+					{
+						return System.getProperty( ArchiveConstants.PROPERTY_MEMORY_MAPPED );
+					}
+				} );
+		return "true".equalsIgnoreCase( value );
 	}
 
 	synchronized public void close( ) throws IOException
@@ -19,7 +19,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
@@ -27,6 +30,7 @@ import java.util.Map.Entry;
 import org.eclipse.birt.core.archive.cache.CacheListener;
 import org.eclipse.birt.core.archive.cache.Cacheable;
 import org.eclipse.birt.core.archive.cache.FileCacheManager;
+import org.eclipse.birt.core.archive.cache.SharedBlockCache;
 import org.eclipse.birt.core.archive.cache.SystemCacheManager;
 import org.eclipse.birt.core.i18n.CoreMessages;
 import org.eclipse.birt.core.i18n.ResourceConstants;
@@ -49,6 +53,19 @@ public class Ext2FileSystem
 	private boolean readOnly;
 	private boolean removeOnExit;
 
+	/**
+	 * the mapped segments of the file in memory mapped mode, each of
+	 * MAPPED_SEGMENT_SIZE bytes except the last one.
+	 */
+	private volatile ByteBuffer[] mappedSegments;
+
+	/**
+	 * the block cache shared with the other files opened for reading, and the
+	 * identity of this file in it.
+	 */
+	private volatile SharedBlockCache sharedCache;
+	private Object sharedCacheFileId;
+
 	/**
 	 * properties saved in the file header
 	 */
@@ -81,7 +98,9 @@ public class Ext2FileSystem
 	 *            mode, if the file exist, create a empty one. "rw+": read write
 	 *            mode, if the file exist, open the exits file. "rwt": read
 	 *            write cache mode, if the file exist, create a empty one. the
-	 *            file is removed after the file is closed.
+	 *            file is removed after the file is closed. "rm": memory
+	 *            mapped read mode, the file is mapped into memory and read
+	 *            without the block cache.
 	 * @throws IOException
 	 */
 	public Ext2FileSystem( String filePath, String mode ) throws IOException
@@ -127,6 +146,15 @@ public class Ext2FileSystem
 			return;
 		}
 
+		if ( "rm".equals( mode ) )
+		{
+			readOnly = true;
+			removeOnExit = false;
+			openFileSystem( );
+			mapFileSystem( );
+			return;
+		}
+
 		if ( "rwt".equals( mode ) )
 		{
 			readOnly = false;
@@ -161,6 +189,35 @@ public class Ext2FileSystem
 		readProperties( );
 	}
 
+	/**
+	 * map the whole file into memory. The file is mapped in segments as a
+	 * mapping is limited to 2G bytes. The segment size is a multiple of the
+	 * block size, so a block never crosses two segments. If the file can't be
+	 * mapped, for example as the address space is exhausted, it is read
+	 * through the block cache as in "r" mode.
+	 */
+	private void mapFileSystem( )
+	{
+		FileChannel channel = rf.getChannel( );
+		int segmentCount = (int) ( ( length + MAPPED_SEGMENT_SIZE - 1 ) / MAPPED_SEGMENT_SIZE );
+		ByteBuffer[] segments = new ByteBuffer[segmentCount];
+		try
+		{
+			for ( int i = 0; i < segmentCount; i++ )
+			{
+				long position = ( (long) i ) << MAPPED_SEGMENT_SIZE_BITS;
+				long size = Math.min( MAPPED_SEGMENT_SIZE, length - position );
+				segments[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+						position, size );
+			}
+		}
+		catch ( IOException ex )
+		{
+			return;
+		}
+		mappedSegments = segments;
+	}
+
 	private void ensureParentFolderCreated( String fileName )
 	{
 		// try to create the parent folder
@@ -220,6 +277,9 @@ public class Ext2FileSystem
 		}
 		finally
 		{
+			// the mapping is released once the segments are collected
+			mappedSegments = null;
+			sharedCache = null;
 			if ( rf != null )
 			{
 				rf.close( );
@@ -284,6 +344,47 @@ public class Ext2FileSystem
 		return removeOnExit;
 	}
 
+	/**
+	 * @return true if the file is opened in memory mapped mode, the data
+	 *         blocks are then read from the mapping instead of the block
+	 *         cache.
+	 */
+	public boolean isMemoryMapped( )
+	{
+		return mappedSegments != null;
+	}
+
+	/**
+	 * read the blocks through a block cache shared with the other files
+	 * opened for reading. It is only used by a read only file which is not
+	 * memory mapped. The file is identified in the cache by its name, length
+	 * and modified time, so the blocks of a file changed since then are not
+	 * used.
+	 * 
+	 * @param cache
+	 *            the shared cache.
+	 */
+	public void setSharedCache( SharedBlockCache cache )
+	{
+		if ( !readOnly || isMemoryMapped( )
+				|| cache.getBlockSize( ) != BLOCK_SIZE )
+		{
+			return;
+		}
+		sharedCacheFileId = fileName + ':' + length + ':'
+				+ new File( fileName ).lastModified( );
+		sharedCache = cache;
+	}
+
+	/**
+	 * @return true if the blocks are read through a shared block cache, the
+	 *         block cache of this file is then not used.
+	 */
+	public boolean isSharedCacheEnabled( )
+	{
+		return sharedCache != null;
+	}
+
 	synchronized void registerOpenedFile( Ext2File file )
 	{
 		openedFiles.add( file );
@@ -417,6 +518,9 @@ public class Ext2FileSystem
 	static final int BLOCK_SIZE = 4096;
 	static final int BLOCK_SIZE_BITS = 12;
 	static final int BLOCK_OFFSET_MASK = 0xFFF;
+	static final int MAPPED_SEGMENT_SIZE_BITS = 30;
+	static final long MAPPED_SEGMENT_SIZE = 1L << MAPPED_SEGMENT_SIZE_BITS;
+	static final int MAPPED_SEGMENT_OFFSET_MASK = (int) ( MAPPED_SEGMENT_SIZE - 1 );
 
 	private void readHeader( ) throws IOException
 	{
@@ -587,8 +691,89 @@ public class Ext2FileSystem
 		readBlock( blockId, offset, buffer, offset, size );
 	}
 
-	synchronized void readBlock( int blockId, int blockOff, byte[] buffer,
-			int offset, int size ) throws IOException
+	void readBlock( int blockId, int blockOff, byte[] buffer, int offset,
+			int size ) throws IOException
+	{
+		ByteBuffer[] segments = mappedSegments;
+		if ( segments != null )
+		{
+			readMappedBlock( segments, blockId, blockOff, buffer, offset, size );
+			return;
+		}
+		SharedBlockCache cache = sharedCache;
+		if ( cache != null )
+		{
+			readSharedBlock( cache, blockId, blockOff, buffer, offset, size );
+			return;
+		}
+		readFileBlock( blockId, blockOff, buffer, offset, size );
+	}
+
+	/**
+	 * read the block through the shared cache. The whole block is read from
+	 * the file if it isn't cached, and added into the cache.
+	 */
+	private void readSharedBlock( SharedBlockCache cache, int blockId,
+			int blockOff, byte[] buffer, int offset, int size )
+			throws IOException
+	{
+		byte[] block = buffer;
+		int blockOffset = offset;
+		if ( blockOff != 0 || size != BLOCK_SIZE )
+		{
+			block = new byte[BLOCK_SIZE];
+			blockOffset = 0;
+		}
+		if ( !cache.readBlock( sharedCacheFileId, blockId, block, blockOffset ) )
+		{
+			long position = ( (long) blockId ) << BLOCK_SIZE_BITS;
+			if ( position + BLOCK_SIZE > length )
+			{
+				// the bytes after the end of the file are read as 0
+				Arrays.fill( block, blockOffset, blockOffset + BLOCK_SIZE,
+						(byte) 0 );
+			}
+			readFileBlock( blockId, 0, block, blockOffset, BLOCK_SIZE );
+			cache.writeBlock( sharedCacheFileId, blockId, block, blockOffset );
+		}
+		if ( block != buffer )
+		{
+			System.arraycopy( block, blockOff, buffer, offset, size );
+		}
+	}
+
+	/**
+	 * read the block from the mapped segments. It needn't be synchronized as
+	 * each read uses its own view of the segment. The bytes after the end of
+	 * the file are read as 0.
+	 */
+	private void readMappedBlock( ByteBuffer[] segments, int blockId,
+			int blockOff, byte[] buffer, int offset, int size )
+	{
+		assert buffer != null;
+		assert blockId >= 0;
+		assert offset >= 0;
+		assert blockOff >= 0;
+		assert offset + size <= buffer.length;
+		assert blockOff + size <= BLOCK_SIZE;
+
+		long position = ( ( (long) blockId ) << BLOCK_SIZE_BITS ) + blockOff;
+		int readSize = 0;
+		if ( position < length )
+		{
+			readSize = (int) Math.min( size, length - position );
+			ByteBuffer segment = segments[(int) ( position >> MAPPED_SEGMENT_SIZE_BITS )].duplicate( );
+			segment.position( (int) ( position & MAPPED_SEGMENT_OFFSET_MASK ) );
+			segment.get( buffer, offset, readSize );
+		}
+		if ( readSize < size )
+		{
+			Arrays.fill( buffer, offset + readSize, offset + size, (byte) 0 );
+		}
+	}
+
+	synchronized private void readFileBlock( int blockId, int blockOff,
+			byte[] buffer, int offset, int size ) throws IOException
 	{
 		assert buffer != null;
 		assert blockId >= 0;
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.data;
+
+import org.eclipse.birt.core.exception.BirtException;
+
+/**
+ * A result set of a data driver which can read a block of rows in one call.
+ * The data engine uses it, when the driver's result set implements it, instead
+ * of reading the rows one column value at a time.
+ */
+public interface IBlockFetchResultSet
+{
+
+	/**
+	 * Moves the cursor forward by up to <code>rows.length</code> rows, and
+	 * stores the column values of each row in a new array of
+	 * <code>columnPositions.length</code> values in <code>rows</code>.
+	 *
+	 * @param columnPositions
+	 *            the 1-based positions of the columns to read; 0 leaves the
+	 *            value of the column null
+	 * @param columnTypes
+	 *            the type each column is read as: one of the INTEGER, DOUBLE,
+	 *            DECIMAL, STRING, BOOLEAN, SQL_DATE, SQL_TIME, DATE (read as
+	 *            a timestamp), BLOB and JAVA_OBJECT types of {@link DataType}
+	 * @param rows
+	 *            the block to fill
+	 * @return the number of rows read; less than <code>rows.length</code>
+	 *         only when the end of the result set, or the maximum number of
+	 *         rows, is reached
+	 * @throws BirtException
+	 */
+	public int fetch( int[] columnPositions, int[] columnTypes, Object[][] rows )
+			throws BirtException;
+}
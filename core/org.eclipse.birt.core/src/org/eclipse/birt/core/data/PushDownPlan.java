@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of the processing of a data set which is pushed down into the
+ * query of a data driver. The data engine passes the plan to the driver as a
+ * property of the query specification named {@link #PROPERTY_NAME}, and the
+ * driver may rewrite its query text to apply it.
+ * <p>
+ * A plan only narrows down the rows which the data engine would otherwise
+ * fetch and process itself, in such a way that the result of the data engine
+ * stays the same: the conditions are met by at least all the rows the data
+ * engine keeps, the rows of a group are only replaced by one row carrying the
+ * aggregated values the data engine computes from them, and the rows are
+ * limited only after they are ordered on the sort keys. A driver is therefore
+ * free to apply none or all of the plan, but never part of it.
+ * <p>
+ * The columns are the names of the columns of the result set of the original
+ * query text.
+ */
+public class PushDownPlan
+{
+
+	/**
+	 * The name of the query specification property holding the plan.
+	 */
+	public static final String PROPERTY_NAME = "org.eclipse.birt.core.data.PushDownPlan"; //$NON-NLS-1$
+
+	/** The condition operators */
+	public static final int OP_EQ = 1;
+	public static final int OP_NE = 2;
+	public static final int OP_LT = 3;
+	public static final int OP_LE = 4;
+	public static final int OP_GT = 5;
+	public static final int OP_GE = 6;
+	public static final int OP_BETWEEN = 7;
+	public static final int OP_NOT_BETWEEN = 8;
+	public static final int OP_IN = 9;
+	public static final int OP_LIKE = 10;
+	public static final int OP_NULL = 11;
+	public static final int OP_NOT_NULL = 12;
+
+	/** The aggregation functions */
+	public static final int AGGR_MIN = 1;
+	public static final int AGGR_MAX = 2;
+
+	private List<Condition> conditions = new ArrayList<Condition>( );
+	private List<SortKey> sortKeys = new ArrayList<SortKey>( );
+	private List<String> groupColumns = new ArrayList<String>( );
+	private Map<String, Integer> aggregations = new LinkedHashMap<String, Integer>( );
+	private int maxRows;
+
+	/**
+	 * Adds a condition the rows must meet.
+	 *
+	 * @param column
+	 * @param operator
+	 *            one of the OP_ constants
+	 * @param values
+	 *            the operands, which are numbers, strings, booleans or dates;
+	 *            none for OP_NULL and OP_NOT_NULL, two for OP_BETWEEN and
+	 *            OP_NOT_BETWEEN, one or more for OP_IN and one otherwise
+	 * @param nullMatches
+	 *            whether the rows whose column value is null meet the
+	 *            condition too
+	 */
+	public void addCondition( String column, int operator, Object[] values,
+			boolean nullMatches )
+	{
+		conditions.add( new Condition( column, operator, values, nullMatches ) );
+	}
+
+	/**
+	 * Adds a key the rows are ordered on, after the keys already added.
+	 *
+	 * @param column
+	 * @param ascending
+	 * @param nullsFirst
+	 */
+	public void addSortKey( String column, boolean ascending, boolean nullsFirst )
+	{
+		sortKeys.add( new SortKey( column, ascending, nullsFirst ) );
+	}
+
+	/**
+	 * Adds a column the rows are grouped on. When the rows are grouped, each
+	 * column which is neither a group column nor aggregated is not used by the
+	 * data engine, and may take the value of any row of the group.
+	 *
+	 * @param column
+	 */
+	public void addGroupColumn( String column )
+	{
+		groupColumns.add( column );
+	}
+
+	/**
+	 * Sets the function a column is aggregated with when the rows are grouped.
+	 *
+	 * @param column
+	 * @param function
+	 *            one of the AGGR_ constants
+	 */
+	public void setAggregation( String column, int function )
+	{
+		aggregations.put( column, Integer.valueOf( function ) );
+	}
+
+	/**
+	 * Sets the maximum number of rows, taken after the rows are ordered.
+	 *
+	 * @param maxRows
+	 *            zero for no limit
+	 */
+	public void setMaxRows( int maxRows )
+	{
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * @return the conditions, all of which the rows must meet
+	 */
+	public List<Condition> getConditions( )
+	{
+		return Collections.unmodifiableList( conditions );
+	}
+
+	/**
+	 * @return the sort keys in order
+	 */
+	public List<SortKey> getSortKeys( )
+	{
+		return Collections.unmodifiableList( sortKeys );
+	}
+
+	/**
+	 * @return the group columns, empty if the rows are not grouped
+	 */
+	public List<String> getGroupColumns( )
+	{
+		return Collections.unmodifiableList( groupColumns );
+	}
+
+	/**
+	 * @param column
+	 * @return the function the column is aggregated with, or 0 if it is not
+	 *         aggregated
+	 */
+	public int getAggregation( String column )
+	{
+		Integer function = aggregations.get( column );
+		return function == null ? 0 : function.intValue( );
+	}
+
+	/**
+	 * @return the maximum number of rows, zero for no limit
+	 */
+	public int getMaxRows( )
+	{
+		return maxRows;
+	}
+
+	/**
+	 * @return whether nothing is pushed down
+	 */
+	public boolean isEmpty( )
+	{
+		return conditions.isEmpty( )
+				&& sortKeys.isEmpty( ) && groupColumns.isEmpty( )
+				&& maxRows <= 0;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString( )
+	{
+		StringBuffer buffer = new StringBuffer( "PushDownPlan[" ); //$NON-NLS-1$
+		buffer.append( "conditions=" ).append( conditions ); //$NON-NLS-1$
+		buffer.append( ", sortKeys=" ).append( sortKeys ); //$NON-NLS-1$
+		buffer.append( ", groupColumns=" ).append( groupColumns ); //$NON-NLS-1$
+		buffer.append( ", aggregations=" ).append( aggregations ); //$NON-NLS-1$
+		buffer.append( ", maxRows=" ).append( maxRows ); //$NON-NLS-1$
+		return buffer.append( ']' ).toString( );
+	}
+
+	/**
+	 * A condition on the value of a column.
+	 */
+	public static class Condition
+	{
+
+		private String column;
+		private int operator;
+		private Object[] values;
+		private boolean nullMatches;
+
+		Condition( String column, int operator, Object[] values,
+				boolean nullMatches )
+		{
+			this.column = column;
+			this.operator = operator;
+			this.values = values == null ? new Object[0] : values;
+			this.nullMatches = nullMatches;
+		}
+
+		public String getColumn( )
+		{
+			return column;
+		}
+
+		public int getOperator( )
+		{
+			return operator;
+		}
+
+		public Object[] getValues( )
+		{
+			return values;
+		}
+
+		public boolean isNullMatches( )
+		{
+			return nullMatches;
+		}
+
+		public String toString( )
+		{
+			return column + " " + operator + " " + Arrays.asList( values ) //$NON-NLS-1$ //$NON-NLS-2$
+					+ ( nullMatches ? " or null" : "" ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * A key the rows are ordered on.
+	 */
+	public static class SortKey
+	{
+
+		private String column;
+		private boolean ascending;
+		private boolean nullsFirst;
+
+		SortKey( String column, boolean ascending, boolean nullsFirst )
+		{
+			this.column = column;
+			this.ascending = ascending;
+			this.nullsFirst = nullsFirst;
+		}
+
+		public String getColumn( )
+		{
+			return column;
+		}
+
+		public boolean isAscending( )
+		{
+			return ascending;
+		}
+
+		public boolean isNullsFirst( )
+		{
+			return nullsFirst;
+		}
+
+		public String toString( )
+		{
+			return column + ( ascending ? " asc" : " desc" ) //$NON-NLS-1$ //$NON-NLS-2$
+					+ ( nullsFirst ? " nulls first" : " nulls last" ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
@@ -138,6 +138,88 @@ public class NumberCalculator implements ICalculator
 		}
 	}
 
+	/**
+	 * Returns the operand converted as by getTypedObject(), without boxing
+	 * the usual number types.
+	 *
+	 * @param obj
+	 *            a non-null operand
+	 * @return
+	 * @throws DataException
+	 */
+	public double getDouble( Object obj ) throws DataException
+	{
+		if ( obj instanceof Double
+				|| obj instanceof Integer || obj instanceof Long
+				|| obj instanceof Float || obj instanceof Short
+				|| obj instanceof Byte )
+		{
+			return ( (Number) obj ).doubleValue( );
+		}
+		return ( (Double) getTypedObject( obj ) ).doubleValue( );
+	}
+
+	/**
+	 * Adds two doubles as add() adds two non-null Doubles.
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double add( double a, double b )
+	{
+		if ( isNaNorInfinity( a ) || isNaNorInfinity( b ) )
+			return Double.NaN;
+		return a + b;
+	}
+
+	/**
+	 * Subtracts two doubles as subtract() subtracts two non-null Doubles.
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double subtract( double a, double b )
+	{
+		if ( isNaNorInfinity( a ) || isNaNorInfinity( b ) )
+			return Double.NaN;
+		return a - b;
+	}
+
+	/**
+	 * Multiplies two doubles as multiply() multiplies two non-null Doubles.
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double multiply( double a, double b )
+	{
+		if ( isNaNorInfinity( a ) || isNaNorInfinity( b ) )
+			return Double.NaN;
+		return a * b;
+	}
+
+	/**
+	 * Divides two doubles as divide() divides two non-null Doubles.
+	 *
+	 * @param dividend
+	 * @param divisor
+	 * @return
+	 */
+	public static double divide( double dividend, double divisor )
+	{
+		if ( isNaNorInfinity( dividend ) || isNaNorInfinity( divisor ) )
+			return Double.NaN;
+		return dividend / divisor;
+	}
+
+	private static boolean isNaNorInfinity( double a )
+	{
+		return Double.isNaN( a ) || Double.isInfinite( a );
+	}
+
 	protected boolean isNaNorInfinity( Object a, Object b )
 	{
 		return isNaNorInfinity( a ) || isNaNorInfinity( b );
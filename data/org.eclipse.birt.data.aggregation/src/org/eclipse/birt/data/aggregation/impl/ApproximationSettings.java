@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import org.eclipse.birt.data.engine.core.security.PropertySecurity;
+
+/**
+ * The system properties which let the built-in aggregations estimate their
+ * value for huge groups instead of keeping every value of the group. The
+ * aggregations are exact unless these are set.
+ */
+public final class ApproximationSettings
+{
+
+	/**
+	 * The number of distinct values of a group above which Total.countDistinct
+	 * estimates the count with a HyperLogLog sketch, whose error is about 1%.
+	 * 0, the default, always counts exactly.
+	 */
+	public static final String COUNT_DISTINCT_THRESHOLD = "org.eclipse.birt.data.aggregation.approximateCountDistinctThreshold"; //$NON-NLS-1$
+
+	/**
+	 * The number of values of a group above which Total.median,
+	 * Total.percentile and Total.quartile estimate the value with a t-digest.
+	 * 0, the default, always computes the exact value.
+	 */
+	public static final String QUANTILE_THRESHOLD = "org.eclipse.birt.data.aggregation.approximateQuantileThreshold"; //$NON-NLS-1$
+
+	private ApproximationSettings( )
+	{
+	}
+
+	/**
+	 * Returns the threshold of the approximate Total.countDistinct, 0 when it
+	 * is off.
+	 *
+	 * @return
+	 */
+	public static int getCountDistinctThreshold( )
+	{
+		return getInt( COUNT_DISTINCT_THRESHOLD );
+	}
+
+	/**
+	 * Returns the threshold of the approximate quantiles, 0 when it is off.
+	 *
+	 * @return
+	 */
+	public static int getQuantileThreshold( )
+	{
+		return getInt( QUANTILE_THRESHOLD );
+	}
+
+	private static int getInt( String name )
+	{
+		String value = PropertySecurity.getSystemProperty( name );
+		if ( value == null )
+		{
+			return 0;
+		}
+		try
+		{
+			return Math.max( 0, Integer.parseInt( value.trim( ) ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
+	}
+}
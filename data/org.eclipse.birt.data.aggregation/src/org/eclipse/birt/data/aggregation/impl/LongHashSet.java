@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+/**
+ * A set of longs in an open addressed table, which holds them without boxing.
+ */
+final class LongHashSet
+{
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// 0 marks a free slot, so the 0 key is kept aside
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private boolean hasZero;
+	private int size;
+
+	/**
+	 * Adds a key to the set.
+	 *
+	 * @param key
+	 * @return true if the set did not hold the key
+	 */
+	boolean add( long key )
+	{
+		if ( key == 0 )
+		{
+			if ( hasZero )
+			{
+				return false;
+			}
+			hasZero = true;
+			size++;
+			return true;
+		}
+		int mask = keys.length - 1;
+		int slot = hash( key ) & mask;
+		while ( keys[slot] != 0 )
+		{
+			if ( keys[slot] == key )
+			{
+				return false;
+			}
+			slot = ( slot + 1 ) & mask;
+		}
+		keys[slot] = key;
+		size++;
+		// Keeps the table at most half full
+		if ( size * 2 > keys.length )
+		{
+			rehash( );
+		}
+		return true;
+	}
+
+	int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the keys of the set, in no particular order.
+	 *
+	 * @return
+	 */
+	long[] toArray( )
+	{
+		long[] result = new long[size];
+		int index = 0;
+		if ( hasZero )
+		{
+			result[index++] = 0;
+		}
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			if ( keys[i] != 0 )
+			{
+				result[index++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	private void rehash( )
+	{
+		long[] oldKeys = keys;
+		keys = new long[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for ( int i = 0; i < oldKeys.length; i++ )
+		{
+			long key = oldKeys[i];
+			if ( key != 0 )
+			{
+				int slot = hash( key ) & mask;
+				while ( keys[slot] != 0 )
+				{
+					slot = ( slot + 1 ) & mask;
+				}
+				keys[slot] = key;
+			}
+		}
+	}
+
+	private static int hash( long key )
+	{
+		return (int) ( HyperLogLog.mix( key ) >>> 32 );
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+/**
+ * The values of a group of a quantile aggregation, kept in a double array from
+ * which the k-th smallest value is selected without sorting the array. Once
+ * there are more values than the approximate threshold, they are kept in a
+ * t-digest instead, and only the approximate quantiles are available.
+ * <p>
+ * The values are ordered as by Double.compareTo().
+ */
+public final class QuantileBuffer
+{
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int approximateThreshold;
+
+	private double[] values;
+	private int size;
+
+	// The approximate mode: the finite values in the digest, the others counted
+	private TDigest digest;
+	private long negativeInfinityCount;
+	private long positiveInfinityCount;
+	private long nanCount;
+
+	/**
+	 * @param approximateThreshold
+	 *            the number of values above which the quantiles are
+	 *            estimated; 0 to keep them exact
+	 */
+	public QuantileBuffer( int approximateThreshold )
+	{
+		this.approximateThreshold = approximateThreshold;
+		clear( );
+	}
+
+	/**
+	 * Removes all the values.
+	 */
+	public void clear( )
+	{
+		values = new double[INITIAL_CAPACITY];
+		size = 0;
+		digest = null;
+		negativeInfinityCount = 0;
+		positiveInfinityCount = 0;
+		nanCount = 0;
+	}
+
+	public void add( double value )
+	{
+		if ( digest != null )
+		{
+			addToDigest( value );
+			return;
+		}
+		if ( size == values.length )
+		{
+			double[] newValues = new double[size * 2];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+		values[size++] = value;
+		if ( approximateThreshold > 0 && size > approximateThreshold )
+		{
+			digest = new TDigest( );
+			for ( int i = 0; i < size; i++ )
+			{
+				addToDigest( values[i] );
+			}
+			values = null;
+			size = 0;
+		}
+	}
+
+	private void addToDigest( double value )
+	{
+		if ( Double.isNaN( value ) )
+			nanCount++;
+		else if ( value == Double.NEGATIVE_INFINITY )
+			negativeInfinityCount++;
+		else if ( value == Double.POSITIVE_INFINITY )
+			positiveInfinityCount++;
+		else
+			digest.add( value );
+	}
+
+	/**
+	 * Returns whether the values are kept in a t-digest.
+	 *
+	 * @return
+	 */
+	public boolean isApproximate( )
+	{
+		return digest != null;
+	}
+
+	/**
+	 * Returns the number of values kept exactly.
+	 *
+	 * @return
+	 */
+	public int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the k-th smallest value, by quickselect. Only when the values are
+	 * kept exactly.
+	 *
+	 * @param k
+	 *            from 0 to size() - 1
+	 * @return
+	 */
+	public double get( int k )
+	{
+		assert !isApproximate( ) && k >= 0 && k < size;
+		int left = 0;
+		int right = size - 1;
+		while ( right > left )
+		{
+			double pivot = medianOfThree( values[left],
+					values[( left + right ) >>> 1],
+					values[right] );
+			int i = left;
+			int j = right;
+			while ( i <= j )
+			{
+				while ( Double.compare( values[i], pivot ) < 0 )
+					i++;
+				while ( Double.compare( values[j], pivot ) > 0 )
+					j--;
+				if ( i <= j )
+				{
+					double value = values[i];
+					values[i++] = values[j];
+					values[j--] = value;
+				}
+			}
+			if ( k <= j )
+				right = j;
+			else if ( k >= i )
+				left = i;
+			else
+				return values[k];
+		}
+		return values[k];
+	}
+
+	private static double medianOfThree( double a, double b, double c )
+	{
+		if ( Double.compare( a, b ) > 0 )
+		{
+			double t = a;
+			a = b;
+			b = t;
+		}
+		if ( Double.compare( b, c ) > 0 )
+		{
+			b = c;
+		}
+		return Double.compare( a, b ) > 0 ? a : b;
+	}
+
+	/**
+	 * Returns the estimated quantile of the values. Only when the values are
+	 * kept in a t-digest.
+	 *
+	 * @param q
+	 *            between 0 and 1
+	 * @return
+	 */
+	public double getApproximateQuantile( double q )
+	{
+		assert isApproximate( );
+		double finiteCount = digest.size( );
+		double total = negativeInfinityCount + finiteCount
+				+ positiveInfinityCount + nanCount;
+		double index = q * total;
+		if ( index < negativeInfinityCount || negativeInfinityCount == total )
+			return Double.NEGATIVE_INFINITY;
+		index -= negativeInfinityCount;
+		if ( finiteCount > 0
+				&& ( index < finiteCount || positiveInfinityCount + nanCount == 0 ) )
+			return digest.quantile( Math.min( 1, index / finiteCount ) );
+		index -= finiteCount;
+		if ( positiveInfinityCount > 0
+				&& ( index < positiveInfinityCount || nanCount == 0 ) )
+			return Double.POSITIVE_INFINITY;
+		return Double.NaN;
+	}
+}
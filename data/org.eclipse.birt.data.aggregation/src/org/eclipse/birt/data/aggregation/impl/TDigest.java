@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Arrays;
+
+/**
+ * A merging t-digest, which estimates the quantiles of the values added to it
+ * from a few hundred centroids. The centroids are small near the extremes, so
+ * that the tail quantiles are the most accurate.
+ */
+final class TDigest
+{
+
+	private static final double COMPRESSION = 200;
+	private static final int BUFFER_SIZE = 5 * (int) COMPRESSION;
+
+	// The centroids, sorted by mean
+	private double[] means = new double[0];
+	private double[] weights = new double[0];
+	private int centroidCount;
+	private double totalWeight;
+
+	private final double[] buffer = new double[BUFFER_SIZE];
+	private int bufferSize;
+
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Adds a value, which should be neither NaN nor infinite.
+	 *
+	 * @param value
+	 */
+	void add( double value )
+	{
+		if ( bufferSize == BUFFER_SIZE )
+		{
+			merge( );
+		}
+		buffer[bufferSize++] = value;
+		min = Math.min( min, value );
+		max = Math.max( max, value );
+	}
+
+	long size( )
+	{
+		return (long) totalWeight + bufferSize;
+	}
+
+	/**
+	 * Returns the estimated value of a quantile, interpolated between the
+	 * centroids.
+	 *
+	 * @param q
+	 *            between 0 and 1
+	 * @return NaN if the digest is empty
+	 */
+	double quantile( double q )
+	{
+		merge( );
+		if ( centroidCount == 0 )
+		{
+			return Double.NaN;
+		}
+		if ( q <= 0 )
+		{
+			return min;
+		}
+		if ( q >= 1 )
+		{
+			return max;
+		}
+		if ( centroidCount == 1 )
+		{
+			return means[0];
+		}
+		double index = q * totalWeight;
+		// Before the middle of the first centroid
+		if ( index < weights[0] / 2 )
+		{
+			return min + ( means[0] - min ) * index / ( weights[0] / 2 );
+		}
+		double position = weights[0] / 2;
+		for ( int i = 0; i < centroidCount - 1; i++ )
+		{
+			double step = ( weights[i] + weights[i + 1] ) / 2;
+			if ( index < position + step )
+			{
+				return means[i] + ( means[i + 1] - means[i] )
+						* ( index - position ) / step;
+			}
+			position += step;
+		}
+		// After the middle of the last centroid
+		double last = weights[centroidCount - 1] / 2;
+		return means[centroidCount - 1]
+				+ ( max - means[centroidCount - 1] )
+				* Math.min( 1, ( index - position ) / last );
+	}
+
+	/**
+	 * Merges the buffered values into the centroids.
+	 */
+	private void merge( )
+	{
+		if ( bufferSize == 0 )
+		{
+			return;
+		}
+		Arrays.sort( buffer, 0, bufferSize );
+		int count = centroidCount + bufferSize;
+		double[] newMeans = new double[count];
+		double[] newWeights = new double[count];
+		double newTotal = totalWeight + bufferSize;
+
+		int i = 0, j = 0, n = 0;
+		double weightSoFar = 0;
+		while ( i < centroidCount || j < bufferSize )
+		{
+			double mean, weight;
+			if ( j >= bufferSize || ( i < centroidCount && means[i] <= buffer[j] ) )
+			{
+				mean = means[i];
+				weight = weights[i++];
+			}
+			else
+			{
+				mean = buffer[j++];
+				weight = 1;
+			}
+			if ( n > 0 )
+			{
+				double proposed = newWeights[n - 1] + weight;
+				double q = ( weightSoFar - newWeights[n - 1] + proposed / 2 )
+						/ newTotal;
+				if ( proposed <= Math.max( 1, 4 * newTotal * q * ( 1 - q )
+						/ COMPRESSION ) )
+				{
+					newMeans[n - 1] += ( mean - newMeans[n - 1] ) * weight
+							/ proposed;
+					newWeights[n - 1] = proposed;
+					weightSoFar += weight;
+					continue;
+				}
+			}
+			newMeans[n] = mean;
+			newWeights[n] = weight;
+			n++;
+			weightSoFar += weight;
+		}
+		means = newMeans;
+		weights = newWeights;
+		centroidCount = n;
+		totalWeight = newTotal;
+		bufferSize = 0;
+	}
+}
@@ -18,6 +18,7 @@ import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
@@ -76,10 +77,18 @@ public class TotalAve extends AggrFunction
 		private Number sum = null;
 
 		private int count = 0;
+
+		// The sum of the double calculator, kept unboxed
+		private NumberCalculator numberCalculator;
+		private double doubleSum;
 		
 		MyAccumulator( ICalculator calc )
         {
         	super( calc );
+			if ( calc.getClass( ) == NumberCalculator.class )
+			{
+				numberCalculator = (NumberCalculator) calc;
+			}
         }
 		
 		public void start( )
@@ -87,6 +96,7 @@ public class TotalAve extends AggrFunction
 			super.start( );
 			sum = null;
 			count = 0;
+			doubleSum = 0D;
 		}
 
 		/*
@@ -99,7 +109,17 @@ public class TotalAve extends AggrFunction
 			assert ( args.length > 0 );
 			if ( args[0] != null )
 			{
-				sum = calculator.add( sum, calculator.getTypedObject( args[0] ) );
+				if ( numberCalculator != null )
+				{
+					double value = numberCalculator.getDouble( args[0] );
+					doubleSum = count > 0 ? NumberCalculator.add( doubleSum,
+							value ) : value;
+				}
+				else
+				{
+					sum = calculator.add( sum,
+							calculator.getTypedObject( args[0] ) );
+				}
 				count++;
 			}
 		}
@@ -113,6 +133,11 @@ public class TotalAve extends AggrFunction
 		{
 			if ( count > 0 )
 			{
+				if ( numberCalculator != null )
+				{
+					return Double.valueOf( NumberCalculator.divide( doubleSum,
+							count ) );
+				}
 				return calculator.divide( sum, calculator.getTypedObject( count ) );
 			}
 			else
@@ -15,6 +15,7 @@
 package org.eclipse.birt.data.aggregation.impl;
 
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 import org.eclipse.birt.core.data.DataType;
@@ -69,18 +70,35 @@ public class TotalCountDistinct extends AggrFunction
 
 	public Accumulator newAccumulator( )
 	{
-		return new MyAccumulator( );
+		return new MyAccumulator( ApproximationSettings.getCountDistinctThreshold( ) );
 	}
 
+	/**
+	 * Counts the numbers of a single class in a set of primitive keys, the
+	 * other values in a set of objects, and the values of a group with more
+	 * than approximateThreshold distinct values in a HyperLogLog sketch.
+	 */
 	private static class MyAccumulator extends SummaryAccumulator
     {
+        private final int approximateThreshold;
+        private LongHashSet keys;
+        private Class keyClass;
         private Set set;
+        private HyperLogLog sketch;
         private boolean hasNullValue = false;
+
+        MyAccumulator( int approximateThreshold )
+        {
+        	this.approximateThreshold = approximateThreshold;
+        }
         
         public void start()
         {
             super.start();
-            set = new HashSet();
+            keys = new LongHashSet( );
+            keyClass = null;
+            set = null;
+            sketch = null;
             this.hasNullValue = false;
         }
         
@@ -89,7 +107,7 @@ public class TotalCountDistinct extends AggrFunction
         	assert(args.length>0);
         	if(args[0] instanceof Comparable)
         	{
-        		set.add(args[0]);
+        		add( args[0] );
         	}
         	else
         	{
@@ -105,13 +123,100 @@ public class TotalCountDistinct extends AggrFunction
         	}
         }
 
+        private void add( Object value )
+        {
+        	if ( sketch != null )
+        	{
+        		sketch.add( value );
+        		return;
+        	}
+        	if ( keys != null
+        			&& ( keyClass == null ? isKeyClass( value.getClass( ) )
+        					: keyClass == value.getClass( ) ) )
+        	{
+        		keyClass = value.getClass( );
+        		keys.add( HyperLogLog.getKey( value ) );
+        	}
+        	else
+        	{
+        		if ( set == null )
+        		{
+        			// A value of another class: the values are no longer
+        			// told apart by their keys.
+        			set = new HashSet( );
+        			long[] values = keys.toArray( );
+        			for ( int i = 0; i < values.length; i++ )
+        			{
+        				set.add( toValue( values[i], keyClass ) );
+        			}
+        			keys = null;
+        		}
+        		set.add( value );
+        	}
+        	if ( approximateThreshold > 0
+        			&& getDistinctCount( ) > approximateThreshold )
+        	{
+        		sketch = new HyperLogLog( );
+        		if ( keys != null )
+        		{
+        			long[] values = keys.toArray( );
+        			for ( int i = 0; i < values.length; i++ )
+        			{
+        				sketch.add( values[i], keyClass );
+        			}
+        		}
+        		else
+        		{
+        			Iterator it = set.iterator( );
+        			while ( it.hasNext( ) )
+        			{
+        				sketch.add( it.next( ) );
+        			}
+        		}
+        		keys = null;
+        		set = null;
+        	}
+        }
+
+        private long getDistinctCount( )
+        {
+        	if ( sketch != null )
+        	{
+        		return sketch.estimate( );
+        	}
+        	return keys != null ? keys.size( ) : set.size( );
+        }
+
+        private static boolean isKeyClass( Class c )
+        {
+        	return c == Integer.class
+        			|| c == Long.class || c == Double.class
+        			|| c == Float.class || c == Short.class
+        			|| c == Byte.class;
+        }
+
+        private static Object toValue( long key, Class c )
+        {
+        	if ( c == Integer.class )
+        		return Integer.valueOf( (int) key );
+        	if ( c == Long.class )
+        		return Long.valueOf( key );
+        	if ( c == Double.class )
+        		return Double.valueOf( Double.longBitsToDouble( key ) );
+        	if ( c == Float.class )
+        		return Float.valueOf( Float.intBitsToFloat( (int) key ) );
+        	if ( c == Short.class )
+        		return Short.valueOf( (short) key );
+        	return Byte.valueOf( (byte) key );
+        }
 
         /* (non-Javadoc)
          * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#getSummaryValue()
          */
         public Object getSummaryValue()
         {
-            return Integer.valueOf( set.size( ) + ( this.hasNullValue ? 1 : 0 ) );
+            long count = getDistinctCount( ) + ( this.hasNullValue ? 1 : 0 );
+            return Integer.valueOf( (int) Math.min( count, Integer.MAX_VALUE ) );
         }
     }
 
@@ -21,6 +21,7 @@ import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
@@ -86,7 +87,8 @@ public class TotalMedian extends AggrFunction
 	 */
     public Accumulator newAccumulator()
     {
-    	return new MyAccumulator( CalculatorFactory.getCalculator( getDataType( ) ) );
+    	return new MyAccumulator( CalculatorFactory.getCalculator( getDataType( ) ),
+				ApproximationSettings.getQuantileThreshold( ) );
     }
 
     private static class MyAccumulator extends SummaryAccumulator
@@ -95,15 +97,29 @@ public class TotalMedian extends AggrFunction
 
         private Object ret = null;
 
-        MyAccumulator( ICalculator calc )
+        // The values of the double calculator, kept unboxed
+        private QuantileBuffer values;
+
+        MyAccumulator( ICalculator calc, int approximateThreshold )
         {
         	super( calc );
+        	if ( calc.getClass( ) == NumberCalculator.class )
+        	{
+        		values = new QuantileBuffer( approximateThreshold );
+        	}
         }
 
         public void start()
         {
             super.start();
-            list = new ArrayList();
+            if ( values != null )
+            {
+            	values.clear( );
+            }
+            else
+            {
+            	list = new ArrayList();
+            }
             ret = null;
         }
 
@@ -117,12 +133,25 @@ public class TotalMedian extends AggrFunction
 			assert ( args.length > 0 );
 			if ( args[0] != null )
 			{
-				list.add( calculator.getTypedObject( args[0] ) );
+				if ( values != null )
+				{
+					values.add( ( (NumberCalculator) calculator ).getDouble( args[0] ) );
+				}
+				else
+				{
+					list.add( calculator.getTypedObject( args[0] ) );
+				}
 			}
 		}
 
         public void finish( ) throws DataException
 		{
+			if ( values != null )
+			{
+				ret = getMedian( );
+				super.finish( );
+				return;
+			}
 			int size = list.size( );
 			if ( size > 0 )
 			{
@@ -145,6 +174,26 @@ public class TotalMedian extends AggrFunction
 			super.finish( );
 		}
 
+        private Double getMedian( )
+		{
+			if ( values.isApproximate( ) )
+			{
+				return Double.valueOf( values.getApproximateQuantile( 0.5 ) );
+			}
+			int size = values.size( );
+			if ( size == 0 )
+			{
+				return null;
+			}
+			if ( size % 2 == 0 )
+			{
+				return Double.valueOf( NumberCalculator.divide( NumberCalculator.add( values.get( size / 2 - 1 ),
+						values.get( size / 2 ) ),
+						2D ) );
+			}
+			return Double.valueOf( values.get( size / 2 ) );
+		}
+
         /*
 		 * (non-Javadoc)
 		 * 
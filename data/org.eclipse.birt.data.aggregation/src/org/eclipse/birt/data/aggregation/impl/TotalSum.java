@@ -18,6 +18,7 @@ import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
@@ -91,9 +92,18 @@ public class TotalSum extends AggrFunction
 	{
 		private Number sum = null;
 
+		// The sum of the double calculator, kept unboxed
+		private NumberCalculator numberCalculator;
+		private double doubleSum;
+		private boolean hasValue;
+
 		MyAccumulator( ICalculator calc )
 		{
 			super( calc );
+			if ( calc.getClass( ) == NumberCalculator.class )
+			{
+				numberCalculator = (NumberCalculator) calc;
+			}
 		}
 
 		public void start( )
@@ -102,6 +112,8 @@ public class TotalSum extends AggrFunction
 			// Initialize sum with null so TotalSum can actually be null.
 			// Calculators must be able to handle null-values appropriately.
 			sum = null;
+			doubleSum = 0D;
+			hasValue = false;
 		}
 
 		/*
@@ -114,7 +126,18 @@ public class TotalSum extends AggrFunction
 			assert ( args.length > 0 );
 			if ( args[0] != null ) // ignore nulls in calculations
 			{
-				sum = calculator.add( sum, calculator.getTypedObject( args[0] ) );
+				if ( numberCalculator != null )
+				{
+					double value = numberCalculator.getDouble( args[0] );
+					doubleSum = hasValue ? NumberCalculator.add( doubleSum,
+							value ) : value;
+					hasValue = true;
+				}
+				else
+				{
+					sum = calculator.add( sum,
+							calculator.getTypedObject( args[0] ) );
+				}
 			}
 		}
 
@@ -125,6 +148,10 @@ public class TotalSum extends AggrFunction
 		 */
 		public Object getSummaryValue( )
 		{
+			if ( numberCalculator != null )
+			{
+				return hasValue ? Double.valueOf( doubleSum ) : null;
+			}
 			return sum;
 		}
 
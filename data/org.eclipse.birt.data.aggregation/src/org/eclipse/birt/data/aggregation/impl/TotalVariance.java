@@ -19,6 +19,7 @@ import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
@@ -97,9 +98,18 @@ public class TotalVariance extends AggrFunction
 
 		private int count = 0;
 
+		// The sums of the double calculator, kept unboxed
+		private NumberCalculator numberCalculator;
+		private double doubleSum;
+		private double doubleSquareSum;
+
 		MyAccumulator( ICalculator calc )
 		{
 			super( calc );
+			if ( calc.getClass( ) == NumberCalculator.class )
+			{
+				numberCalculator = (NumberCalculator) calc;
+			}
 		}
 
 		public void start( )
@@ -108,6 +118,8 @@ public class TotalVariance extends AggrFunction
 			sum = 0D;
 			squareSum = 0.0D;
 			count = 0;
+			doubleSum = 0D;
+			doubleSquareSum = 0D;
 		}
 
 		/*
@@ -120,14 +132,34 @@ public class TotalVariance extends AggrFunction
 			assert ( args.length > 0 );
 			if ( args[0] != null )
 			{
-				Object obj = calculator.getTypedObject( args[0] );
-				sum = calculator.add( sum, obj );
-				squareSum = calculator.add( squareSum,
-						calculator.multiply( obj, obj ) );
+				if ( numberCalculator != null )
+				{
+					double value = numberCalculator.getDouble( args[0] );
+					doubleSum = NumberCalculator.add( doubleSum, value );
+					doubleSquareSum = NumberCalculator.add( doubleSquareSum,
+							NumberCalculator.multiply( value, value ) );
+				}
+				else
+				{
+					Object obj = calculator.getTypedObject( args[0] );
+					sum = calculator.add( sum, obj );
+					squareSum = calculator.add( squareSum,
+							calculator.multiply( obj, obj ) );
+				}
 				count++;
 			}
 		}
 
+		private double getDoubleVariance( )
+		{
+			double cnt = count;
+			return NumberCalculator.divide( NumberCalculator.subtract( NumberCalculator.multiply( cnt,
+					doubleSquareSum ),
+					NumberCalculator.multiply( doubleSum, doubleSum ) ),
+					NumberCalculator.multiply( cnt,
+							NumberCalculator.subtract( cnt, 1D ) ) );
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -137,6 +169,10 @@ public class TotalVariance extends AggrFunction
 		{
 			if ( count <= 1 )
 				return null;
+			if ( numberCalculator != null )
+			{
+				return Double.valueOf( getDoubleVariance( ) );
+			}
 			Object cnt = calculator.getTypedObject( count );
 			return calculator.divide(
 					calculator.subtract( calculator.multiply( cnt, squareSum ), calculator.multiply( sum, sum ) ),
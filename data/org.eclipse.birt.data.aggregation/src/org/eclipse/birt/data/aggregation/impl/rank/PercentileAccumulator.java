@@ -16,8 +16,11 @@ import java.util.List;
 
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.aggregation.impl.AggrException;
+import org.eclipse.birt.data.aggregation.impl.ApproximationSettings;
+import org.eclipse.birt.data.aggregation.impl.QuantileBuffer;
 import org.eclipse.birt.data.aggregation.impl.SummaryAccumulator;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -42,9 +45,16 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	private Double pct;
 	private List cachedValues;
 
+	// The values of the double calculator, kept unboxed
+	private QuantileBuffer values;
+
 	public PercentileAccumulator( ICalculator calc )
 	{
 		super( calc );
+		if ( calc.getClass( ) == NumberCalculator.class )
+		{
+			values = new QuantileBuffer( ApproximationSettings.getQuantileThreshold( ) );
+		}
 	}
 	/*
 	 * (non-Javadoc)
@@ -55,7 +65,14 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 		super.start( );
 
 		pct = -1D;
-		cachedValues = new ArrayList( );
+		if ( values != null )
+		{
+			values.clear( );
+		}
+		else
+		{
+			cachedValues = new ArrayList( );
+		}
 	}
 
 	/*
@@ -66,7 +83,12 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	public void onRow( Object[] args ) throws DataException
 	{
 		assert ( args.length == 2 );
-		if ( args[0] != null )
+		if ( args[0] != null && values != null )
+		{
+			values.add( NumberCalculator.add( 0D,
+					( (NumberCalculator) calculator ).getDouble( args[0] ) ) );
+		}
+		else if ( args[0] != null )
 		{
 			Number d = calculator.add( calculator.getTypedObject( 0 ), calculator.getTypedObject( args[0] ) );
 			if ( d != null )
@@ -88,6 +110,10 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	 */
 	public Object getSummaryValue( ) throws DataException
 	{
+		if ( values != null )
+		{
+			return getDoubleValue( );
+		}
 		Object[] sortedObjs = this.cachedValues.toArray( );
 		if ( sortedObjs.length == 0 )
 		{
@@ -108,4 +134,28 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 		return calculator.add( calculator.getTypedObject( sortedObjs[k - 1] ), calculator.getTypedObject( adjustment ) );
 	}
 
+	private Double getDoubleValue( )
+	{
+		if ( values.isApproximate( ) )
+		{
+			return Double.valueOf( values.getApproximateQuantile( pct ) );
+		}
+		if ( values.size( ) == 0 )
+		{
+			return null;
+		}
+		double n = pct * ( values.size( ) - 1 ) + 1;
+		int k = (int) Math.floor( n );
+		double fraction = n - k;
+
+		double lower = values.get( k - 1 );
+		double adjustment = 0;
+		if ( fraction != 0 )
+		{
+			adjustment = NumberCalculator.multiply( fraction,
+					NumberCalculator.subtract( values.get( k ), lower ) );
+		}
+		return Double.valueOf( NumberCalculator.add( lower, adjustment ) );
+	}
+
 }
@@ -9,6 +9,7 @@ import java.util.LinkedHashSet;
 
 
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.aggregation.impl.ApproximationSettings;
 import org.eclipse.birt.data.aggregation.impl.BuildInAggregationFactory;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
@@ -2287,4 +2288,75 @@ public class TotalTest {
         assertEquals( new Integer( 8 ), ac.getValue( ) );
     }
 
+	@Test
+    public void testTotalCountDistinctApproximate() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("countdistinct");
+        System.setProperty( ApproximationSettings.COUNT_DISTINCT_THRESHOLD, "1000" );
+        try
+        {
+            Accumulator ac = ag.newAccumulator();
+            ac.start();
+            for ( int i = 0; i < 1000; i++ )
+            {
+                ac.onRow( new Object[]{new Integer( i % 500 )} );
+            }
+            ac.finish();
+            assertEquals( new Integer( 500 ), ac.getValue() );
+
+            ac.start();
+            for ( int i = 0; i < 100000; i++ )
+            {
+                ac.onRow( new Object[]{"value" + i} );
+                ac.onRow( new Object[]{new Integer( i )} );
+            }
+            ac.onRow( new Object[]{null} );
+            ac.finish();
+            int count = ( (Integer) ac.getValue() ).intValue();
+            assertTrue( Math.abs( count - 200001 ) < 200001 * 0.03 );
+        }
+        finally
+        {
+            System.clearProperty( ApproximationSettings.COUNT_DISTINCT_THRESHOLD );
+        }
+
+        // Integers and doubles of the same value are distinct
+        Accumulator ac = ag.newAccumulator();
+        ac.start();
+        ac.onRow( new Object[]{new Integer( 1 )} );
+        ac.onRow( new Object[]{new Integer( 1 )} );
+        ac.onRow( new Object[]{new Double( 1 )} );
+        ac.onRow( new Object[]{new Double( 1 )} );
+        ac.finish();
+        assertEquals( new Integer( 2 ), ac.getValue() );
+    }
+
+	@Test
+    public void testTotalQuantileApproximate() throws Exception
+    {
+        System.setProperty( ApproximationSettings.QUANTILE_THRESHOLD, "1000" );
+        try
+        {
+            Accumulator median = buildInAggrFactory.getAggregation("median").newAccumulator();
+            Accumulator percentile = buildInAggrFactory.getAggregation("percentile").newAccumulator();
+            median.start();
+            percentile.start();
+            for ( int i = 0; i < 100000; i++ )
+            {
+                // 0 to 99999, in no particular order
+                Integer value = new Integer( ( i * 7919 ) % 100000 );
+                median.onRow( new Object[]{value} );
+                percentile.onRow( new Object[]{value, new Double( 0.99 )} );
+            }
+            median.finish();
+            percentile.finish();
+            assertEquals( 49999.5, ( (Double) median.getValue() ).doubleValue(), 500 );
+            assertEquals( 98999.01, ( (Double) percentile.getValue() ).doubleValue(), 100 );
+        }
+        finally
+        {
+            System.clearProperty( ApproximationSettings.QUANTILE_THRESHOLD );
+        }
+    }
+
 }
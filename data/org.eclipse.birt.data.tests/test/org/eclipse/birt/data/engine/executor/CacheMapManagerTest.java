@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSourceDesign;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the eviction and the single retrieval of the data sets in the cache
+ * shared by all data engines.
+ */
+public class CacheMapManagerTest
+{
+	private CacheMapManager manager;
+
+	@Before
+	public void cacheMapManagerSetUp( )
+	{
+		manager = new CacheMapManager( true );
+		manager.clearCache( );
+	}
+
+	@After
+	public void cacheMapManagerTearDown( )
+	{
+		CacheMapManager.setJVMLevelCacheMaxSize( 0 );
+		CacheMapManager.setJVMLevelCacheTimeToLive( 0 );
+		manager.clearCache( );
+	}
+
+	/**
+	 * The least recently used data sets are removed when the cache is full.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSizeEviction( ) throws Exception
+	{
+		DataSourceAndDataSet first = newKey( "first" );
+		DataSourceAndDataSet second = newKey( "second" );
+		DataSourceAndDataSet third = newKey( "third" );
+
+		save( manager, first );
+		save( manager, second );
+		// the data sets have the same size, so only two of them fit in cache
+		CacheMapManager.setJVMLevelCacheMaxSize( getSize( first )
+				+ getSize( second ) );
+
+		// use the first data set, so that the second is the least recently used
+		assertTrue( load( manager, first ) );
+		save( manager, third );
+
+		assertTrue( load( manager, first ) );
+		assertFalse( load( manager, second ) );
+		assertTrue( load( manager, third ) );
+	}
+
+	/**
+	 * The data sets are retrieved again once their time to live is over.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeToLive( ) throws Exception
+	{
+		DataSourceAndDataSet key = newKey( "expired" );
+		CacheMapManager.setJVMLevelCacheTimeToLive( 50 );
+		save( manager, key );
+		assertTrue( load( manager, key ) );
+
+		Thread.sleep( 100 );
+		assertFalse( load( manager, key ) );
+		// the data set is retrieved again by this manager
+		save( manager, key );
+		assertTrue( load( manager, key ) );
+	}
+
+	/**
+	 * A manager missing a data set retrieved by another manager waits for it
+	 * to be saved instead of retrieving it too.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSingleRetrieval( ) throws Exception
+	{
+		final DataSourceAndDataSet key = newKey( "shared" );
+		assertFalse( load( manager, key ) );
+
+		final CacheMapManager other = new CacheMapManager( true );
+		final boolean[] loaded = new boolean[1];
+		Thread thread = new Thread( ) {
+
+			public void run( )
+			{
+				loaded[0] = load( other, newKey( "shared" ) );
+			}
+		};
+		thread.start( );
+		thread.join( 200 );
+		// the other manager is waiting for this one
+		assertTrue( thread.isAlive( ) );
+
+		save( manager, key );
+		thread.join( 10000 );
+		assertFalse( thread.isAlive( ) );
+		assertTrue( loaded[0] );
+	}
+
+	/**
+	 * A manager waiting for a data set goes on at once when the manager
+	 * retrieving it fails, and retrieves the data set itself.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailedRetrieval( ) throws Exception
+	{
+		DataSourceAndDataSet key = newKey( "failed" );
+		assertFalse( load( manager, key ) );
+
+		final CacheMapManager other = new CacheMapManager( true );
+		final boolean[] loaded = new boolean[]{
+			true
+		};
+		Thread thread = new Thread( ) {
+
+			public void run( )
+			{
+				loaded[0] = load( other, newKey( "failed" ) );
+			}
+		};
+		thread.start( );
+		thread.join( 200 );
+		assertTrue( thread.isAlive( ) );
+
+		// the retrieval fails, so nothing is saved into cache; the other
+		// manager must not wait until the end of its waiting time
+		manager.finishLoading( key );
+		thread.join( 10000 );
+		assertFalse( thread.isAlive( ) );
+		assertFalse( loaded[0] );
+
+		// the other manager retrieves the data set now
+		save( other, key );
+		assertTrue( load( manager, key ) );
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	private static DataSourceAndDataSet newKey( String name )
+	{
+		return DataSourceAndDataSet.newInstance( new ScriptDataSourceDesign( "source" ),
+				new ScriptDataSetDesign( name, "source" ),
+				null,
+				null,
+				false );
+	}
+
+	/**
+	 * Save into cache a data set of ten rows.
+	 *
+	 * @param manager
+	 * @param key
+	 * @throws DataException
+	 */
+	private static void save( CacheMapManager manager, DataSourceAndDataSet key )
+			throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"value",
+				"value",
+				DataType.getClass( DataType.STRING_TYPE ),
+				null,
+				false ) );
+		ResultClass resultClass = new ResultClass( columnsList );
+		MemoryDataSetCacheObject cacheObject = new MemoryDataSetCacheObject( 100 );
+		cacheObject.setResultClass( resultClass );
+		for ( int i = 0; i < 10; i++ )
+		{
+			cacheObject.populateResult( new ResultObject( resultClass,
+					new Object[]{
+						"value " + i
+					} ) );
+		}
+		manager.saveFinishOnCache( key, cacheObject );
+	}
+
+	/**
+	 * @param manager
+	 * @param key
+	 * @return whether the data set is loaded from cache
+	 */
+	private static boolean load( CacheMapManager manager,
+			DataSourceAndDataSet key )
+	{
+		boolean loaded = manager.doesLoadFromCache( key, 10 );
+		if ( loaded )
+		{
+			try
+			{
+				manager.loadFinishOnCache( key );
+			}
+			catch ( DataException e )
+			{
+				fail( e.getMessage( ) );
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * @param key
+	 * @return the size of a data set saved into cache
+	 * @throws DataException
+	 */
+	private long getSize( DataSourceAndDataSet key ) throws DataException
+	{
+		MemoryDataSetCacheObject cacheObject = (MemoryDataSetCacheObject) manager.getloadedCacheObject( key );
+		SizeOfUtil sizeOfUtil = new SizeOfUtil( cacheObject.getResultClass( ) );
+		long size = 0;
+		for ( int i = 0; i < cacheObject.getSize( ); i++ )
+		{
+			size += sizeOfUtil.sizeOf( cacheObject.getResultObject( i ) );
+		}
+		return size;
+	}
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.binding.ComputedColumnTest;
+
+/**
+ * Run the computed column tests with the columnar memory cache, which must
+ * produce the same result as the row based memory cache.
+ */
+
+public class ColumnarComputedColumnTest extends ComputedColumnTest
+{
+	protected Map getAppContext()
+	{
+		Map appContext = new HashMap();
+		appContext.put( DataEngine.COLUMNAR_MEMORY_CACHE, "true" );
+		return appContext;
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.APITestCase;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IResultIterator;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+
+import testutil.ConfigText;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test that the rows of the columnar memory cache give the same result once
+ * they are moved to the disk cache, and the estimated memory size of the
+ * values moved to a vector of plain objects.
+ */
+public class ColumnarMemoryCacheTest extends APITestCase
+{
+
+	private Map appContext;
+
+	/*
+	 * @see org.eclipse.birt.data.engine.api.APITestCase#getDataSourceInfo()
+	 */
+	protected DataSourceInfo getDataSourceInfo( )
+	{
+		return new DataSourceInfo( ConfigText.getString( "Api.TestDataCalls.TableName" ),
+				ConfigText.getString( "Api.TestDataCalls.TableSQL" ),
+				"testSort.txt" );
+	}
+
+	protected Map getAppContext( )
+	{
+		return appContext;
+	}
+
+	/**
+	 * The rows are moved to the disk cache after a few of them have been
+	 * kept column by column.
+	 */
+	@Test
+	public void testMoveToDiskCache( ) throws Exception
+	{
+		appContext = null;
+		List expected = getSortedRows( );
+
+		appContext = new HashMap( );
+		appContext.put( DataEngine.COLUMNAR_MEMORY_CACHE, "true" );
+		appContext.put( "birt.data.engine.test.memcachesize", "1000" );
+		List rows = getSortedRows( );
+
+		assertTrue( expected.size( ) > 1 );
+		assertEquals( expected, rows );
+	}
+
+	/**
+	 * The values moved to a vector of plain objects are counted in its memory
+	 * size.
+	 */
+	@Test
+	public void testObjectVectorMemorySize( )
+	{
+		ColumnVector vector = ColumnVector.newInstance( false );
+		for ( int i = 0; i < 100; i++ )
+		{
+			vector = vector.add( Integer.valueOf( i ) );
+		}
+		vector = vector.add( "a string" );
+		assertTrue( vector.isWritable( ) );
+		assertEquals( 101, vector.size( ) );
+		assertEquals( Integer.valueOf( 99 ), vector.get( 99 ) );
+		assertTrue( vector.getMemorySize( ) > 100
+				* SizeOfUtil.sizeOf( Integer.class, Integer.valueOf( 0 ) )
+				+ SizeOfUtil.sizeOf( String.class, "a string" ) );
+
+		long size = vector.getMemorySize( );
+		vector.set( 100, null );
+		assertEquals( size
+				- SizeOfUtil.sizeOf( String.class, "a string" ),
+				vector.getMemorySize( ) );
+	}
+
+	/**
+	 * Return the rows sorted by the call time, whose null values are equal so
+	 * that the rows must keep the order they are read in.
+	 *
+	 * @return
+	 * @throws Exception
+	 */
+	private List getSortedRows( ) throws Exception
+	{
+		SortDefinition sort = new SortDefinition( );
+		sort.setExpression( "dataSetRow.CALLTIME" );
+
+		QueryDefinition qd = new QueryDefinition( );
+		qd.setDataSetName( dataSet.getName( ) );
+		qd.addSort( sort );
+		String[] names = new String[]{
+				"CUSTOMERID", "CALLTIME", "TONUMBER", "DURATION", "CHARGE"
+		};
+		for ( int i = 0; i < names.length; i++ )
+		{
+			qd.addResultSetExpression( names[i],
+					new ScriptExpression( "dataSetRow." + names[i] ) );
+		}
+
+		List rows = new ArrayList( );
+		IResultIterator ri = executeQuery( qd );
+		while ( ri.next( ) )
+		{
+			List row = new ArrayList( );
+			for ( int i = 0; i < names.length; i++ )
+			{
+				row.add( ri.getValue( names[i] ) );
+			}
+			rows.add( row );
+		}
+		ri.close( );
+		return rows;
+	}
+}
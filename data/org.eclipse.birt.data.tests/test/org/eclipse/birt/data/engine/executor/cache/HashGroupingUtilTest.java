@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test that grouping rows by hashing gives the same order as a stable sort on
+ * the group keys.
+ */
+public class HashGroupingUtilTest
+{
+	private ResultClass resultClass;
+
+	@Before
+	public void hashGroupingSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"REGION",
+				"REGION",
+				DataType.getClass( DataType.STRING_TYPE ),
+				"String" /* nativeTypeName */,
+				true ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"PRODUCT",
+				"PRODUCT",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer" /* nativeTypeName */,
+				true ) );
+		columnsList.add( new ResultFieldMetadata( 3,
+				"AMOUNT",
+				"AMOUNT",
+				DataType.getClass( DataType.DOUBLE_TYPE ),
+				"Double" /* nativeTypeName */,
+				true ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	/**
+	 * Test grouping with one and several threads, in both directions.
+	 */
+	@Test
+	public void testGroup( ) throws DataException
+	{
+		Random random = new Random( 0 );
+		IResultObject[] rows = new IResultObject[20000];
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					random.nextInt( 20 ) == 0 ? null : "R"
+							+ random.nextInt( 7 ),
+					Integer.valueOf( random.nextInt( 30 ) ),
+					new Double( i )
+			} );
+		}
+
+		for ( int threads = 1; threads <= 4; threads += 3 )
+		{
+			for ( int direction = SortSpec.SORT_ASC; direction <= SortSpec.SORT_DESC; direction++ )
+			{
+				SortKeyComparator comparator = getComparator( direction );
+				IResultObject[] expected = (IResultObject[]) rows.clone( );
+				Arrays.sort( expected, comparator );
+				IResultObject[] grouped = (IResultObject[]) rows.clone( );
+				assertTrue( HashGroupingUtil.group( grouped,
+						comparator,
+						threads ) );
+				assertTrue( Arrays.equals( expected, grouped ) );
+			}
+		}
+	}
+
+	/**
+	 * Rows whose key values are of different classes are compared by
+	 * conversion, so they are left to be sorted.
+	 */
+	@Test
+	public void testMixedKeyClasses( ) throws DataException
+	{
+		IResultObject[] rows = new IResultObject[]{
+				new ResultObject( resultClass, new Object[]{
+						"R1", Integer.valueOf( 2 ), new Double( 0 )
+				} ),
+				new ResultObject( resultClass, new Object[]{
+						"R1", Long.valueOf( 1 ), new Double( 1 )
+				} )
+		};
+		IResultObject[] grouped = (IResultObject[]) rows.clone( );
+		assertFalse( HashGroupingUtil.group( grouped,
+				getComparator( SortSpec.SORT_ASC ),
+				2 ) );
+		assertTrue( Arrays.equals( rows, grouped ) );
+	}
+
+	/**
+	 * @param direction
+	 * @return the comparator on the region and product keys
+	 */
+	private static SortKeyComparator getComparator( int direction )
+	{
+		SortSpec sortSpec = new SortSpec( new int[]{
+				1, 2
+		}, new String[]{
+				"REGION", "PRODUCT"
+		}, new int[]{
+				direction, direction
+		}, new CompareHints[2] );
+		sortSpec.setGroupingOnly( true );
+		return new SortKeyComparator( sortSpec, null );
+	}
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
+import org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test that the fetch events processed on several threads give the rows in
+ * the original order, drop the filtered rows, and throw the error of a row
+ * when that row is reached, over several blocks of rows.
+ */
+public class ParallelRowProcessingTest
+{
+	// more than one block of RowResultSet
+	private static final int ROW_COUNT = 10000;
+
+	private ResultClass resultClass;
+
+	@Before
+	public void parallelRowProcessingSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"ID",
+				"ID",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer" /* nativeTypeName */,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"DOUBLE_ID",
+				"DOUBLE_ID",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer" /* nativeTypeName */,
+				true ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	/**
+	 * Test the order of the rows, the filtered rows and the computed values.
+	 */
+	@Test
+	public void testOrderAndFilter( ) throws DataException
+	{
+		TestEvent event = new TestEvent( -1 );
+		RowResultSet rowResultSet = new RowResultSet( newRequest( event, 0 ) );
+
+		int expected = 0;
+		IResultObject row;
+		while ( ( row = rowResultSet.next( ) ) != null )
+		{
+			if ( expected % 7 == 0 )
+				expected++;
+			assertEquals( Integer.valueOf( expected ), row.getFieldValue( 1 ) );
+			assertEquals( Integer.valueOf( expected * 2 ),
+					row.getFieldValue( 2 ) );
+			expected++;
+		}
+		assertEquals( ROW_COUNT, expected );
+		assertEquals( 0, event.serialCount );
+		assertTrue( event.usedWorkers( ) );
+	}
+
+	/**
+	 * Test that no more rows than the maximum are returned.
+	 */
+	@Test
+	public void testMaxRow( ) throws DataException
+	{
+		RowResultSet rowResultSet = new RowResultSet( newRequest( new TestEvent( -1 ),
+				5000 ) );
+		int count = 0;
+		IResultObject row = null;
+		IResultObject last = null;
+		while ( ( row = rowResultSet.next( ) ) != null )
+		{
+			last = row;
+			count++;
+		}
+		assertEquals( 5000, count );
+		// 5000 rows are kept out of the first 5834 rows
+		assertEquals( Integer.valueOf( 5833 ), last.getFieldValue( 1 ) );
+	}
+
+	/**
+	 * Test that the error of a row of the second block is thrown once the rows
+	 * before it have been returned.
+	 */
+	@Test
+	public void testError( ) throws DataException
+	{
+		int errorRow = 5000;
+		RowResultSet rowResultSet = new RowResultSet( newRequest( new TestEvent( errorRow ),
+				0 ) );
+		int count = 0;
+		try
+		{
+			while ( rowResultSet.next( ) != null )
+			{
+				count++;
+			}
+			fail( "the error of row " + errorRow + " should be thrown" );
+		}
+		catch ( DataException e )
+		{
+			assertEquals( "error at row " + errorRow, e.getMessage( ) );
+		}
+		// the rows before the failing row, without the filtered ones
+		assertEquals( errorRow - ( errorRow + 6 ) / 7, count );
+	}
+
+	/**
+	 * Test that the rows are processed serially by a subclass which needs the
+	 * template methods called for each row.
+	 */
+	@Test
+	public void testFetchEventHooks( ) throws DataException
+	{
+		TestEvent event = new TestEvent( -1 );
+		final int[] hookCount = new int[1];
+		RowResultSet rowResultSet = new RowResultSet( newRequest( event, 0 ) ) {
+
+			protected void beforeProcessFetchEvent(
+					IResultObject resultObject, int currentIndex )
+			{
+				hookCount[0]++;
+			}
+		};
+		int count = 0;
+		while ( rowResultSet.next( ) != null )
+		{
+			count++;
+		}
+		assertEquals( ROW_COUNT - ( ROW_COUNT + 6 ) / 7, count );
+		assertEquals( ROW_COUNT, hookCount[0] );
+		assertEquals( ROW_COUNT, event.serialCount );
+	}
+
+	private SmartCacheRequest newRequest( TestEvent event, int maxRow )
+	{
+		final IResultObject[] rows = new IResultObject[ROW_COUNT];
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					Integer.valueOf( i ), null
+			} );
+		}
+		IDataSetPopulator populator = new IDataSetPopulator( ) {
+
+			private int index = 0;
+
+			public IResultObject next( )
+			{
+				return index < rows.length ? rows[index++] : null;
+			}
+		};
+		List eventList = new ArrayList( );
+		eventList.add( event );
+		SmartCacheRequest request = new SmartCacheRequest( maxRow,
+				eventList,
+				new OdiAdapter( populator ),
+				resultClass,
+				false );
+		request.setParallelism( 4 );
+		return request;
+	}
+
+	/**
+	 * Compute DOUBLE_ID, drop the rows whose ID is a multiple of 7, and fail
+	 * at the given row.
+	 */
+	private static class TestEvent implements IParallelResultObjectEvent
+	{
+
+		private int errorRow;
+
+		private Set<String> threads = Collections.synchronizedSet( new HashSet<String>( ) );
+
+		int serialCount = 0;
+
+		TestEvent( int errorRow )
+		{
+			this.errorRow = errorRow;
+		}
+
+		public boolean prepareParallelProcess( IResultClass resultClass )
+		{
+			return true;
+		}
+
+		public boolean processInParallel( IResultObject resultObject,
+				int rowIndex ) throws DataException
+		{
+			threads.add( Thread.currentThread( ).getName( ) );
+			int id = ( (Integer) resultObject.getFieldValue( 1 ) ).intValue( );
+			assertEquals( id, rowIndex );
+			if ( id == errorRow )
+				throw new DataException( "error at row " + id );
+			resultObject.setCustomFieldValue( "DOUBLE_ID",
+					Integer.valueOf( id * 2 ) );
+			return id % 7 != 0;
+		}
+
+		public boolean process( IResultObject resultObject, int rowIndex )
+				throws DataException
+		{
+			serialCount++;
+			return processInParallel( resultObject, rowIndex );
+		}
+
+		boolean usedWorkers( )
+		{
+			synchronized ( threads )
+			{
+				for ( String name : threads )
+				{
+					if ( name.startsWith( "BIRT Data Worker" ) )
+						return true;
+				}
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the block serialization of ResultObjectUtil.
+ */
+public class ResultObjectUtilTest
+{
+	private static final String[] NAMES = new String[]{
+			"int",
+			"double",
+			"date",
+			"descending date",
+			"boolean",
+			"repeated",
+			"distinct",
+			"decimal",
+			"any",
+			"empty"
+	};
+
+	private static final int[] TYPES = new int[]{
+			DataType.INTEGER_TYPE,
+			DataType.DOUBLE_TYPE,
+			DataType.DATE_TYPE,
+			DataType.DATE_TYPE,
+			DataType.BOOLEAN_TYPE,
+			DataType.STRING_TYPE,
+			DataType.STRING_TYPE,
+			DataType.DECIMAL_TYPE,
+			DataType.JAVA_OBJECT_TYPE,
+			DataType.STRING_TYPE
+	};
+
+	/**
+	 * Read back blocks written without compression.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBlocks( ) throws Exception
+	{
+		assertRoundTrip( false );
+	}
+
+	/**
+	 * Read back blocks written with compression.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompressedBlocks( ) throws Exception
+	{
+		assertRoundTrip( true );
+	}
+
+	/**
+	 * Values are converted to the class of their column as by writeData.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConversion( ) throws Exception
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"int",
+				"int",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				null,
+				false ) );
+		ResultClass resultClass = new ResultClass( columnsList );
+		ResultObjectUtil util = ResultObjectUtil.newInstance( resultClass,
+				null );
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+		util.writeBlock( bos, new IResultObject[]{
+				new ResultObject( resultClass, new Object[]{
+					"12"
+				} ), new ResultObject( resultClass, new Object[]{
+					new Double( 3 )
+				} )
+		}, 0, 2 );
+		IResultObject[] rows = util.readBlock( new ByteArrayInputStream( bos.toByteArray( ) ),
+				null );
+		assertEquals( new Integer( 12 ), rows[0].getFieldValue( 1 ) );
+		assertEquals( new Integer( 3 ), rows[1].getFieldValue( 1 ) );
+	}
+
+	/**
+	 * @param compress
+	 * @throws Exception
+	 */
+	private void assertRoundTrip( boolean compress ) throws Exception
+	{
+		ResultClass resultClass = newResultClass( );
+		ResultObjectUtil util = ResultObjectUtil.newInstance( resultClass,
+				null );
+		util.setBlockCompression( compress );
+
+		IResultObject[] rows = newRows( resultClass, 1000 );
+		ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+		util.writeBlock( bos, rows, 0, 300 );
+		util.writeBlock( bos, rows, 300, 700 );
+		util.writeBlock( bos, rows, 1000, 0 );
+
+		InputStream bis = new ByteArrayInputStream( bos.toByteArray( ) );
+		List result = new ArrayList( );
+		IResultObject[] block;
+		while ( ( block = util.readBlock( bis, null ) ) != null )
+		{
+			for ( int i = 0; i < block.length; i++ )
+			{
+				result.add( block[i] );
+			}
+		}
+
+		assertEquals( rows.length, result.size( ) );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			IResultObject row = (IResultObject) result.get( i );
+			for ( int j = 1; j <= NAMES.length; j++ )
+			{
+				assertEquals( NAMES[j - 1] + " of row " + i,
+						rows[i].getFieldValue( j ),
+						row.getFieldValue( j ) );
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * @throws DataException
+	 */
+	private static ResultClass newResultClass( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			columnsList.add( new ResultFieldMetadata( i + 1,
+					NAMES[i],
+					NAMES[i],
+					DataType.getClass( TYPES[i] ),
+					null,
+					false ) );
+		}
+		return new ResultClass( columnsList );
+	}
+
+	/**
+	 * @param resultClass
+	 * @param count
+	 * @return
+	 */
+	private static IResultObject[] newRows( ResultClass resultClass, int count )
+	{
+		IResultObject[] rows = new IResultObject[count];
+		long time = 1200000000000L;
+		for ( int i = 0; i < count; i++ )
+		{
+			boolean isNull = i % 7 == 3;
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					isNull ? null : new Integer( i % 2 == 0 ? i * 1000 : -i ),
+					isNull ? null : new Double( i / 3.0 ),
+					isNull ? null : new Date( time + i * 86400000L ),
+					i % 2 == 0 ? null : new Date( time - i * 1000L ),
+					isNull ? null : Boolean.valueOf( i % 3 == 0 ),
+					isNull ? null : "value" + ( i % 5 ),
+					"distinct value " + i,
+					isNull ? null : new BigDecimal( i + ".25" ),
+					i % 10 == 0 ? new Integer( i ) : null,
+					null
+			} );
+		}
+		return rows;
+	}
+}
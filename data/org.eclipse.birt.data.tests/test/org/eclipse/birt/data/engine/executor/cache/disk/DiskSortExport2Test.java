@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
+import org.eclipse.birt.data.engine.executor.cache.SortSpec;
+import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.impl.DataEngineImpl;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test that the disk sort reads the rows which arrive in sort order one file
+ * after another, and merges the sorted units as soon as a row is out of order,
+ * with the same result as a stable sort in both cases.
+ */
+public class DiskSortExport2Test
+{
+	// the rows are spread over several units, the last one not full
+	private static final int UNIT_COUNT = 10;
+	private static final int ROW_COUNT = 95;
+
+	private DataEngine dataEngine;
+	private DataEngineSession session;
+	private ResultClass resultClass;
+
+	@Before
+	public void diskSortExport2SetUp( ) throws Exception
+	{
+		DataEngineContext context = DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION,
+				null,
+				null,
+				null );
+		context.setTmpdir( System.getProperty( "java.io.tmpdir" ) );
+		dataEngine = DataEngine.newDataEngine( context );
+		session = ( (DataEngineImpl) dataEngine ).getSession( );
+
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"key",
+				"key",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				null,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"position",
+				"position",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				null,
+				false ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	@After
+	public void diskSortExport2TearDown( )
+	{
+		dataEngine.shutdown( );
+	}
+
+	/**
+	 * The rows in sort order are not merged, and keep their order.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSortedRows( ) throws Exception
+	{
+		int[] keys = new int[ROW_COUNT];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			keys[i] = i / 3;
+		}
+		IRowIterator iterator = export( newRows( keys ) );
+		assertTrue( iterator instanceof ConcatRowFiles );
+
+		int[] positions = fetchPositions( iterator );
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			assertEquals( i, positions[i] );
+		}
+	}
+
+	/**
+	 * The rows in sort order of more units than the files the merge sort
+	 * opens at a time are read one file after another, again after a reset.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testManySortedUnits( ) throws Exception
+	{
+		int[] keys = new int[UNIT_COUNT * 510 + 5];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			keys[i] = i / 3;
+		}
+		IRowIterator iterator = export( newRows( keys ) );
+		assertTrue( iterator instanceof ConcatRowFiles );
+
+		for ( int n = 0; n < 2; n++ )
+		{
+			int[] positions = fetchPositions( iterator, keys.length );
+			for ( int i = 0; i < positions.length; i++ )
+			{
+				assertEquals( i, positions[i] );
+			}
+			iterator.reset( );
+		}
+		iterator.close( );
+	}
+
+	/**
+	 * The rows go out of order once several units have been written, which
+	 * were not sorted, and are then sorted and merged.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRowsOutOfOrder( ) throws Exception
+	{
+		Random random = new Random( 0 );
+		int[] keys = new int[ROW_COUNT];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			keys[i] = i < 45 ? i / 5 : random.nextInt( 10 );
+		}
+		IResultObject[] rows = newRows( keys );
+		IRowIterator iterator = export( rows );
+		assertFalse( iterator instanceof ConcatRowFiles );
+		assertSorted( rows, fetchPositions( iterator ) );
+	}
+
+	/**
+	 * The last row only is out of order, after all the units have been
+	 * written unsorted.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLastRowOutOfOrder( ) throws Exception
+	{
+		int[] keys = new int[ROW_COUNT];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			keys[i] = i + 1;
+		}
+		keys[ROW_COUNT - 1] = 0;
+		IResultObject[] rows = newRows( keys );
+		IRowIterator iterator = export( rows );
+		assertFalse( iterator instanceof ConcatRowFiles );
+
+		int[] positions = fetchPositions( iterator );
+		assertEquals( ROW_COUNT - 1, positions[0] );
+		assertSorted( rows, positions );
+	}
+
+	/**
+	 * The rows of equal keys keep the order they are read in, over all the
+	 * units.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTies( ) throws Exception
+	{
+		int[] keys = new int[ROW_COUNT];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			keys[i] = ( i * 7 ) % 3;
+		}
+		IResultObject[] rows = newRows( keys );
+		IRowIterator iterator = export( rows );
+		assertFalse( iterator instanceof ConcatRowFiles );
+
+		int[] positions = fetchPositions( iterator );
+		assertSorted( rows, positions );
+		for ( int i = 1; i < positions.length; i++ )
+		{
+			if ( keys[positions[i - 1]] == keys[positions[i]] )
+				assertTrue( positions[i - 1] < positions[i] );
+		}
+	}
+
+	/**
+	 * @param keys
+	 * @return rows of the keys and of their positions
+	 */
+	private IResultObject[] newRows( int[] keys )
+	{
+		IResultObject[] rows = new IResultObject[keys.length];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					Integer.valueOf( keys[i] ), Integer.valueOf( i )
+			} );
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the comparator of the key column in ascending order
+	 */
+	private static Comparator newComparator( )
+	{
+		return new SortKeyComparator( new SortSpec( new int[]{
+			1
+		}, new String[]{
+			"key"
+		}, new int[]{
+			SortSpec.SORT_ASC
+		}, new CompareHints[1] ), null );
+	}
+
+	/**
+	 * Export the rows as the disk cache does: the first unit, and then the
+	 * rest of them.
+	 *
+	 * @param rows
+	 * @return the iterator of the sorted rows
+	 * @throws Exception
+	 */
+	private IRowIterator export( IResultObject[] rows ) throws Exception
+	{
+		Map infoMap = new HashMap( );
+		infoMap.put( "tempDir", new File( session.getTempDir( ),
+				"DiskSortExport2Test" ).getPath( ) );
+		infoMap.put( "dataCountOfUnit", String.valueOf( UNIT_COUNT ) );
+		infoMap.put( "sortThreads", "0" );
+		DiskDataExport export = DiskDataExport.newInstance( infoMap,
+				newComparator( ),
+				resultClass,
+				ResultObjectUtil.newInstance( resultClass, session ),
+				session );
+
+		IResultObject[] start = new IResultObject[UNIT_COUNT];
+		System.arraycopy( rows, 0, start, 0, UNIT_COUNT );
+		export.exportStartDataToDisk( start );
+		IResultObject[] rest = new IResultObject[rows.length - UNIT_COUNT - 1];
+		System.arraycopy( rows, UNIT_COUNT + 1, rest, 0, rest.length );
+		export.exportRestDataToDisk( rows[UNIT_COUNT],
+				new ArrayRowResultSet( rest ),
+				0 );
+		return export.getRowIterator( );
+	}
+
+	/**
+	 * @param iterator
+	 * @return the positions of the rows fetched
+	 * @throws Exception
+	 */
+	private static int[] fetchPositions( IRowIterator iterator )
+			throws Exception
+	{
+		int[] positions = fetchPositions( iterator, ROW_COUNT );
+		iterator.close( );
+		return positions;
+	}
+
+	/**
+	 * @param iterator
+	 * @param rowCount
+	 * @return the positions of the rows fetched, which are all the rows left
+	 * @throws Exception
+	 */
+	private static int[] fetchPositions( IRowIterator iterator, int rowCount )
+			throws Exception
+	{
+		int[] positions = new int[rowCount];
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			IResultObject row = iterator.fetch( );
+			assertNotNull( row );
+			positions[i] = ( (Integer) row.getFieldValue( 2 ) ).intValue( );
+		}
+		assertNull( iterator.fetch( ) );
+		return positions;
+	}
+
+	/**
+	 * @param rows
+	 * @param positions
+	 *            the positions of the rows in the order they are fetched
+	 * @throws DataException
+	 */
+	private static void assertSorted( IResultObject[] rows, int[] positions )
+			throws DataException
+	{
+		IResultObject[] expected = (IResultObject[]) rows.clone( );
+		Arrays.sort( expected, newComparator( ) );
+		assertEquals( expected.length, positions.length );
+		for ( int i = 0; i < expected.length; i++ )
+		{
+			assertEquals( expected[i].getFieldValue( 2 ),
+					Integer.valueOf( positions[i] ) );
+		}
+	}
+
+	/**
+	 * A result set over an array of rows.
+	 */
+	private class ArrayRowResultSet implements IRowResultSet
+	{
+		private IResultObject[] rows;
+		private int index = -1;
+
+		ArrayRowResultSet( IResultObject[] rows )
+		{
+			this.rows = rows;
+		}
+
+		public IResultClass getMetaData( )
+		{
+			return resultClass;
+		}
+
+		public IResultObject next( )
+		{
+			return ++index < rows.length ? rows[index] : null;
+		}
+
+		public int getIndex( )
+		{
+			return index;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
+import org.eclipse.birt.data.engine.executor.cache.SortSpec;
+import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the parallel sort of MergeSortUtil and the merge of LoserTree, which
+ * must produce the same order as a serial stable sort.
+ */
+public class MergeSortUtilTest
+{
+	/**
+	 * Merge sorted sequences of different lengths, some of them empty.
+	 */
+	@Test
+	public void testLoserTree( )
+	{
+		Random random = new Random( 0 );
+		Comparator comparator = new Comparator( ) {
+
+			public int compare( Object obj1, Object obj2 )
+			{
+				return ( (Integer) obj1 ).compareTo( (Integer) obj2 );
+			}
+		};
+		for ( int k = 1; k <= 9; k++ )
+		{
+			Integer[][] sequences = new Integer[k][];
+			List expected = new ArrayList( );
+			for ( int i = 0; i < k; i++ )
+			{
+				sequences[i] = new Integer[random.nextInt( 20 )];
+				for ( int j = 0; j < sequences[i].length; j++ )
+				{
+					sequences[i][j] = new Integer( random.nextInt( 10 ) );
+				}
+				Arrays.sort( sequences[i] );
+				expected.addAll( Arrays.asList( sequences[i] ) );
+			}
+			Object[] expectedValues = expected.toArray( );
+			Arrays.sort( expectedValues, comparator );
+
+			Object[] heads = new Object[k];
+			int[] positions = new int[k];
+			for ( int i = 0; i < k; i++ )
+			{
+				if ( sequences[i].length > 0 )
+					heads[i] = sequences[i][0];
+			}
+			LoserTree tree = new LoserTree( heads, comparator );
+			for ( int i = 0; i < expectedValues.length; i++ )
+			{
+				int winner = tree.getWinner( );
+				// equal values must come from the sequences in order
+				assertSame( expectedValues[i], tree.getWinnerValue( ) );
+				positions[winner]++;
+				tree.replaceWinner( positions[winner] < sequences[winner].length
+						? sequences[winner][positions[winner]] : null );
+			}
+			assertEquals( -1, tree.getWinner( ) );
+		}
+	}
+
+	/**
+	 * Sort with several threads rows of many equal keys.
+	 *
+	 * @throws DataException
+	 */
+	@Test
+	public void testParallelSort( ) throws DataException
+	{
+		IResultObject[] rows = newRows( 50000, false );
+		Comparator comparator = newComparator( );
+
+		IResultObject[] expected = (IResultObject[]) rows.clone( );
+		Arrays.sort( expected, comparator );
+
+		MergeSortUtil.getUtil( comparator, 4 ).sortSelf( rows );
+		assertSameRows( expected, rows );
+	}
+
+	/**
+	 * Keys of different classes are compared by the calling thread only.
+	 *
+	 * @throws DataException
+	 */
+	@Test
+	public void testMixedKeySort( ) throws DataException
+	{
+		IResultObject[] rows = newRows( 50000, true );
+		Comparator comparator = newComparator( );
+
+		IResultObject[] expected = (IResultObject[]) rows.clone( );
+		Arrays.sort( expected, comparator );
+
+		MergeSortUtil.getUtil( comparator, 4 ).sortSelf( rows );
+		assertSameRows( expected, rows );
+	}
+
+	/**
+	 * Merge sorted rows with the keys cached by MergeSortRowFiles.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMergeSortRowFiles( ) throws Exception
+	{
+		IResultObject[] rows = newRows( 1000, false );
+		Comparator comparator = newComparator( );
+		MergeSortUtil util = MergeSortUtil.getUtil( comparator, 4 );
+
+		IResultObject[] expected = (IResultObject[]) rows.clone( );
+		Arrays.sort( expected, comparator );
+
+		IRowIterator[] iterators = new IRowIterator[7];
+		int step = rows.length / iterators.length + 1;
+		for ( int i = 0; i < iterators.length; i++ )
+		{
+			IResultObject[] part = new IResultObject[Math.min( step,
+					rows.length - i * step )];
+			System.arraycopy( rows, i * step, part, 0, part.length );
+			Arrays.sort( part, comparator );
+			iterators[i] = new ArrayRowIterator( part );
+		}
+
+		MergeSortRowFiles merged = new MergeSortRowFiles( iterators, util );
+		for ( int pass = 0; pass < 2; pass++ )
+		{
+			IResultObject[] result = new IResultObject[rows.length];
+			for ( int i = 0; i < result.length; i++ )
+			{
+				result[i] = merged.fetch( );
+			}
+			assertNull( merged.fetch( ) );
+			// rows of equal keys are in the order of their iterators
+			assertSameRows( expected, result );
+			merged.reset( );
+		}
+	}
+
+	/**
+	 * @param count
+	 * @param mixed
+	 *            whether the key values are of different classes
+	 * @return rows of a key column with few distinct values, and a column of
+	 *         the original position
+	 * @throws DataException
+	 */
+	private static IResultObject[] newRows( int count, boolean mixed )
+			throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"key",
+				"key",
+				DataType.getClass( DataType.ANY_TYPE ),
+				null,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"position",
+				"position",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				null,
+				false ) );
+		ResultClass resultClass = new ResultClass( columnsList );
+
+		Random random = new Random( count );
+		IResultObject[] rows = new IResultObject[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			int key = random.nextInt( 100 );
+			Object keyValue;
+			if ( key == 0 )
+				keyValue = null;
+			else if ( mixed && key % 2 == 0 )
+				keyValue = new Double( key );
+			else
+				keyValue = new Integer( key );
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					keyValue, new Integer( i )
+			} );
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the comparator of the key column in descending order
+	 */
+	private static Comparator newComparator( )
+	{
+		return new SortKeyComparator( new SortSpec( new int[]{
+			1
+		}, new String[]{
+			"key"
+		}, new int[]{
+			SortSpec.SORT_DESC
+		}, new CompareHints[1] ), null );
+	}
+
+	/**
+	 * @param expected
+	 * @param actual
+	 * @throws DataException
+	 */
+	private static void assertSameRows( IResultObject[] expected,
+			IResultObject[] actual ) throws DataException
+	{
+		assertEquals( expected.length, actual.length );
+		for ( int i = 0; i < expected.length; i++ )
+		{
+			assertEquals( expected[i].getFieldValue( 2 ),
+					actual[i].getFieldValue( 2 ) );
+		}
+	}
+
+	/**
+	 * A row iterator over an array of rows.
+	 */
+	private static class ArrayRowIterator implements IRowIterator
+	{
+		private IResultObject[] rows;
+		private int position;
+
+		ArrayRowIterator( IResultObject[] rows )
+		{
+			this.rows = rows;
+		}
+
+		public IResultObject fetch( )
+		{
+			return position < rows.length ? rows[position++] : null;
+		}
+
+		public void reset( )
+		{
+			position = 0;
+		}
+
+		public void close( )
+		{
+		}
+	}
+}
@@ -169,6 +169,41 @@ public class ConfigFileParserTest extends BaseTestCase
 				parser.getTSFormatByID( "dset3" ) );
 	}
 
+	/**
+	 * Test method getKeyColumnsByID()
+	 * 
+	 * @throws IOException 
+	 */
+	@Test
+    public void testGetKeyColumnsByID( ) throws IOException
+	{
+		initConfigFileParser();
+		String[] keyColumns = parser.getKeyColumnsByID( "dset4" );
+		assertEquals( "getKeyColumnsByID() failed!!!", 2, keyColumns.length );
+		assertEquals( "getKeyColumnsByID() failed!!!", "id1", keyColumns[0] );
+		assertEquals( "getKeyColumnsByID() failed!!!", "id2", keyColumns[1] );
+
+		assertNull( "getKeyColumnsByID() failed!!!",
+				parser.getKeyColumnsByID( "dset1" ) );
+	}
+
+	/**
+	 * Test method getDeletedColumnByID()
+	 * 
+	 * @throws IOException 
+	 */
+	@Test
+    public void testGetDeletedColumnByID( ) throws IOException
+	{
+		initConfigFileParser();
+		assertEquals( "getDeletedColumnByID() failed!!!",
+				"deleted",
+				parser.getDeletedColumnByID( "dset4" ) );
+
+		assertNull( "getDeletedColumnByID() failed!!!",
+				parser.getDeletedColumnByID( "dset1" ) );
+	}
+
 	/**
 	 * a private utility method that help to check whether method parseXML2DOM()
 	 * works properly
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.APITestCase;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IResultIterator;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+
+import testutil.ConfigText;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the data set queries executed ahead when the queries are registered:
+ * they give the same rows as the queries executed when the data sets are
+ * executed, their errors are raised by the data set execution, and they are
+ * dropped when the engine is cancelled.
+ */
+public class DataSetPrefetchTest extends APITestCase
+{
+
+	private static final String[] COLUMNS = new String[]{
+			"CUSTOMERID", "CALLTIME", "TONUMBER", "DURATION", "CHARGE"
+	};
+
+	private Map appContext;
+
+	/*
+	 * @see org.eclipse.birt.data.engine.api.APITestCase#getDataSourceInfo()
+	 */
+	protected DataSourceInfo getDataSourceInfo( )
+	{
+		return new DataSourceInfo( ConfigText.getString( "Api.TestDataCalls.TableName" ),
+				ConfigText.getString( "Api.TestDataCalls.TableSQL" ),
+				"testSort.txt" );
+	}
+
+	protected Map getAppContext( )
+	{
+		return appContext;
+	}
+
+	/**
+	 * The queries executed ahead give the rows of the queries executed one
+	 * after the other.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameResult( ) throws Exception
+	{
+		OdaDataSetDesign durations = newDataSet( "Durations",
+				"select * from "
+						+ ConfigText.getString( "Api.TestDataCalls.TableName" )
+						+ " where DURATION > 0" );
+		dataEngine.defineDataSet( durations );
+
+		QueryDefinition[] queries = new QueryDefinition[]{
+				newQuery( dataSet.getName( ) ), newQuery( durations.getName( ) )
+		};
+		appContext = null;
+		List expected = new ArrayList( );
+		for ( int i = 0; i < queries.length; i++ )
+		{
+			expected.add( getRows( queries[i] ) );
+		}
+		assertTrue( ( (List) expected.get( 1 ) ).size( ) > 0 );
+
+		appContext = newPrefetchContext( );
+		dataEngine.registerQueries( queries, appContext );
+		assertNotNull( getSession( ).getQueryPrefetcher( ) );
+		for ( int i = 0; i < queries.length; i++ )
+		{
+			assertEquals( expected.get( i ), getRows( queries[i] ) );
+		}
+		// the data sets are executed again without the queries executed ahead
+		for ( int i = 0; i < queries.length; i++ )
+		{
+			assertEquals( expected.get( i ), getRows( queries[i] ) );
+		}
+	}
+
+	/**
+	 * The error of a query executed ahead is raised when its data set is
+	 * executed, and does not prevent the other data sets from being
+	 * executed.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testError( ) throws Exception
+	{
+		OdaDataSetDesign missing = newDataSet( "Missing",
+				"select * from NO_SUCH_TABLE" );
+		dataEngine.defineDataSet( missing );
+
+		QueryDefinition[] queries = new QueryDefinition[]{
+				newQuery( missing.getName( ) ), newQuery( dataSet.getName( ) )
+		};
+		appContext = null;
+		List expected = getRows( queries[1] );
+
+		appContext = newPrefetchContext( );
+		dataEngine.registerQueries( queries, appContext );
+		try
+		{
+			getRows( queries[0] );
+			fail( "the query of a missing table should fail" );
+		}
+		catch ( BirtException e )
+		{
+		}
+		assertEquals( expected, getRows( queries[1] ) );
+	}
+
+	/**
+	 * The queries executed ahead are dropped when the engine is cancelled.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancel( ) throws Exception
+	{
+		QueryDefinition[] queries = new QueryDefinition[]{
+				newQuery( dataSet.getName( ) ), newQuery( dataSet.getName( ) )
+		};
+		appContext = newPrefetchContext( );
+		dataEngine.registerQueries( queries, appContext );
+		assertNotNull( getSession( ).getQueryPrefetcher( ) );
+
+		dataEngine.cancel( );
+		assertNull( getSession( ).getQueryPrefetcher( ) );
+	}
+
+	/**
+	 * Nothing is executed ahead unless the number of threads is set.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDisabled( ) throws Exception
+	{
+		QueryDefinition[] queries = new QueryDefinition[]{
+				newQuery( dataSet.getName( ) ), newQuery( dataSet.getName( ) )
+		};
+		dataEngine.registerQueries( queries, new HashMap( ) );
+		assertNull( getSession( ).getQueryPrefetcher( ) );
+	}
+
+	private DataEngineSession getSession( )
+	{
+		return ( (DataEngineImpl) dataEngine ).getSession( );
+	}
+
+	private static Map newPrefetchContext( )
+	{
+		Map context = new HashMap( );
+		context.put( DataEngine.CONCURRENT_DATA_SET_THREADS, "2" );
+		return context;
+	}
+
+	private OdaDataSetDesign newDataSet( String name, String queryText )
+	{
+		OdaDataSetDesign design = new OdaDataSetDesign( name );
+		design.setDataSource( dataSource.getName( ) );
+		design.setExtensionID( ( (OdaDataSetDesign) dataSet ).getExtensionID( ) );
+		design.setQueryText( queryText );
+		return design;
+	}
+
+	private static QueryDefinition newQuery( String dataSetName )
+	{
+		QueryDefinition query = new QueryDefinition( );
+		query.setDataSetName( dataSetName );
+		SortDefinition sort = new SortDefinition( );
+		sort.setExpression( "dataSetRow.CALLTIME" );
+		query.addSort( sort );
+		for ( int i = 0; i < COLUMNS.length; i++ )
+		{
+			query.addResultSetExpression( COLUMNS[i],
+					new ScriptExpression( "dataSetRow." + COLUMNS[i] ) );
+		}
+		return query;
+	}
+
+	private List getRows( QueryDefinition query ) throws Exception
+	{
+		List rows = new ArrayList( );
+		IResultIterator ri = executeQuery( query );
+		while ( ri.next( ) )
+		{
+			List row = new ArrayList( );
+			for ( int i = 0; i < COLUMNS.length; i++ )
+			{
+				row.add( ri.getValue( COLUMNS[i] ) );
+			}
+			rows.add( row );
+		}
+		ri.close( );
+		return rows;
+	}
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl;
+
+import java.sql.Types;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.PushDownPlan;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
+import org.eclipse.birt.data.engine.api.IGroupDefinition;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ColumnDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.GroupDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the ordering of the rows by the SQL query of the push down: the keys of
+ * the groups and of the sorts on number and date columns are pushed down in
+ * order, and nothing is pushed down for other keys.
+ */
+public class JdbcPushDownHelperTest
+{
+
+	private DataEngine dataEngine;
+	private OdaDataSetDesign dataSet;
+
+	@Before
+	public void jdbcPushDownHelperSetUp( ) throws Exception
+	{
+		DataEngineContext context = DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION,
+				null,
+				null,
+				null );
+		dataEngine = DataEngine.newDataEngine( context );
+
+		dataSet = new OdaDataSetDesign( "orders", "source" );
+		dataSet.setExtensionID( "org.eclipse.birt.report.data.oda.jdbc.JdbcSelectDataSet" );
+		dataSet.setQueryText( "select * from ORDERS" );
+		dataSet.addResultSetHint( newColumn( 1,
+				"ORDERDATE",
+				DataType.DATE_TYPE,
+				Types.DATE ) );
+		dataSet.addResultSetHint( newColumn( 2,
+				"AMOUNT",
+				DataType.INTEGER_TYPE,
+				Types.INTEGER ) );
+		dataSet.addResultSetHint( newColumn( 3,
+				"CUSTOMER",
+				DataType.STRING_TYPE,
+				Types.VARCHAR ) );
+		// the name in the SQL query differs from the name in the data set
+		( (ColumnDefinition) dataSet.getResultSetHints( ).get( 1 ) ).setColumnNativeName( "ORDER_AMOUNT" );
+	}
+
+	@After
+	public void jdbcPushDownHelperTearDown( )
+	{
+		dataEngine.shutdown( );
+	}
+
+	/**
+	 * The rows are ordered on the group keys first and then on the sort keys.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOrdering( ) throws Exception
+	{
+		QueryDefinition query = new QueryDefinition( );
+		query.addSort( newSort( "dataSetRow.AMOUNT", ISortDefinition.SORT_DESC ) );
+		query.addGroup( newGroup( "dataSetRow.ORDERDATE",
+				IGroupDefinition.SORT_ASC ) );
+
+		PushDownPlan plan = createPlan( query );
+		assertNotNull( plan );
+		List<PushDownPlan.SortKey> sortKeys = plan.getSortKeys( );
+		assertEquals( 2, sortKeys.size( ) );
+		assertEquals( "ORDERDATE", sortKeys.get( 0 ).getColumn( ) );
+		assertTrue( sortKeys.get( 0 ).isAscending( ) );
+		// nulls are the lowest values for the data engine
+		assertTrue( sortKeys.get( 0 ).isNullsFirst( ) );
+		assertEquals( "ORDER_AMOUNT", sortKeys.get( 1 ).getColumn( ) );
+		assertFalse( sortKeys.get( 1 ).isAscending( ) );
+		assertFalse( sortKeys.get( 1 ).isNullsFirst( ) );
+	}
+
+	/**
+	 * The nulls are ordered as the data set tells.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNullsOrdering( ) throws Exception
+	{
+		dataSet.setNullsOrdering( IBaseDataSetDesign.NULLS_ORDERING_NULLS_HIGHEST );
+		QueryDefinition query = new QueryDefinition( );
+		query.addSort( newSort( "dataSetRow.AMOUNT", ISortDefinition.SORT_ASC ) );
+
+		PushDownPlan plan = createPlan( query );
+		assertNotNull( plan );
+		assertEquals( 1, plan.getSortKeys( ).size( ) );
+		assertTrue( plan.getSortKeys( ).get( 0 ).isAscending( ) );
+		assertFalse( plan.getSortKeys( ).get( 0 ).isNullsFirst( ) );
+	}
+
+	/**
+	 * Nothing is ordered when a key is a string column, which the database
+	 * may compare in another way, or an expression.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoOrdering( ) throws Exception
+	{
+		QueryDefinition query = new QueryDefinition( );
+		query.addSort( newSort( "dataSetRow.AMOUNT", ISortDefinition.SORT_ASC ) );
+		query.addSort( newSort( "dataSetRow.CUSTOMER", ISortDefinition.SORT_ASC ) );
+		assertNull( createPlan( query ) );
+
+		query = new QueryDefinition( );
+		query.addSort( newSort( "dataSetRow.AMOUNT * 2",
+				ISortDefinition.SORT_ASC ) );
+		assertNull( createPlan( query ) );
+
+		query = new QueryDefinition( );
+		query.addGroup( newGroup( "dataSetRow.ORDERDATE",
+				IGroupDefinition.NO_SORT ) );
+		assertNull( createPlan( query ) );
+	}
+
+	/**
+	 * Nothing is ordered when the data set declares its rows ordered by its
+	 * query.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSortHints( ) throws Exception
+	{
+		dataSet.addSortHint( newSort( "dataSetRow.ORDERDATE",
+				ISortDefinition.SORT_ASC ) );
+		QueryDefinition query = new QueryDefinition( );
+		query.addSort( newSort( "dataSetRow.AMOUNT", ISortDefinition.SORT_ASC ) );
+		assertNull( createPlan( query ) );
+	}
+
+	/**
+	 * @param query
+	 * @return the plan of the push down of the data set for the query
+	 * @throws Exception
+	 */
+	private PushDownPlan createPlan( QueryDefinition query ) throws Exception
+	{
+		query.setDataSetName( dataSet.getName( ) );
+		return JdbcPushDownHelper.createPlan( ( (DataEngineImpl) dataEngine ).getSession( ),
+				dataSet,
+				query );
+	}
+
+	private static ColumnDefinition newColumn( int position, String name,
+			int dataType, int nativeDataType )
+	{
+		ColumnDefinition column = new ColumnDefinition( name );
+		column.setColumnPosition( position );
+		column.setDataType( dataType );
+		column.setNativeDataType( nativeDataType );
+		return column;
+	}
+
+	private static SortDefinition newSort( String expression, int direction )
+	{
+		SortDefinition sort = new SortDefinition( );
+		sort.setExpression( expression );
+		sort.setSortDirection( direction );
+		return sort;
+	}
+
+	private static GroupDefinition newGroup( String keyExpression,
+			int direction )
+	{
+		GroupDefinition group = new GroupDefinition( );
+		group.setKeyExpression( keyExpression );
+		group.setSortDirection( direction );
+		return group;
+	}
+}
@@ -11,7 +11,9 @@
 package org.eclipse.birt.data.engine.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
@@ -57,6 +59,8 @@ public class JointDataSetTest extends APITestCase
 	//
 	private static int CARTESIAN_POPULATOR = 0;
 	private static int BINARY_TREE_POPULATOR = 1;
+	private static int HASH_JOIN_POPULATOR = 2;
+	private static int GRACE_HASH_JOIN_POPULATOR = 3;
 	private static boolean ADD_FETCH_LIMIT = false;
 	private ScriptContext cx;
 	/*
@@ -130,6 +134,74 @@ public class JointDataSetTest extends APITestCase
 		checkOutputFile( );
 	}
 	
+	/**
+	 * Hash join should return the same rows in the same order as sort-merge
+	 * join when both data sets are ordered by the join key.
+	 */
+	@Test
+    public void testInnerJoin_HASH( ) throws Exception
+	{
+		assertEquals( basicJoinTest( IJointDataSetDesign.INNER_JOIN, BINARY_TREE_POPULATOR ),
+				basicJoinTest( IJointDataSetDesign.INNER_JOIN, HASH_JOIN_POPULATOR ) );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testLeftOuterJoin_HASH( ) throws Exception
+	{
+		assertEquals( basicJoinTest( IJointDataSetDesign.LEFT_OUTER_JOIN, BINARY_TREE_POPULATOR ),
+				basicJoinTest( IJointDataSetDesign.LEFT_OUTER_JOIN, HASH_JOIN_POPULATOR ) );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testRightOuterJoin_HASH( ) throws Exception
+	{
+		assertEquals( basicJoinTest( IJointDataSetDesign.RIGHT_OUTER_JOIN, BINARY_TREE_POPULATOR ),
+				basicJoinTest( IJointDataSetDesign.RIGHT_OUTER_JOIN, HASH_JOIN_POPULATOR ) );
+	}
+
+	/**
+	 * Grace hash join merges the joint rows of the partitions in primary order,
+	 * so the rows are also in the same order as with sort-merge join.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testLeftOuterJoin_GRACE_HASH( ) throws Exception
+	{
+		assertEquals( basicJoinTest( IJointDataSetDesign.LEFT_OUTER_JOIN, BINARY_TREE_POPULATOR ),
+				basicJoinTest( IJointDataSetDesign.LEFT_OUTER_JOIN, GRACE_HASH_JOIN_POPULATOR ) );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testInnerJoin_GRACE_HASH( ) throws Exception
+	{
+		assertEquals( basicJoinTest( IJointDataSetDesign.INNER_JOIN, BINARY_TREE_POPULATOR ),
+				basicJoinTest( IJointDataSetDesign.INNER_JOIN, GRACE_HASH_JOIN_POPULATOR ) );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testRightOuterJoin_GRACE_HASH( ) throws Exception
+	{
+		assertEquals( basicJoinTest( IJointDataSetDesign.RIGHT_OUTER_JOIN, BINARY_TREE_POPULATOR ),
+				basicJoinTest( IJointDataSetDesign.RIGHT_OUTER_JOIN, GRACE_HASH_JOIN_POPULATOR ) );
+	}
+
 	/**
 	 * Basic test to get MD for all columns
 	 */
@@ -432,6 +504,15 @@ public class JointDataSetTest extends APITestCase
 		
 		if( populateType == BINARY_TREE_POPULATOR) 
 			populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit);
+		else if( populateType == HASH_JOIN_POPULATOR )
+			populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit, null);
+		else if( populateType == GRACE_HASH_JOIN_POPULATOR )
+		{
+			// a tiny memory buffer forces the rows to be partitioned to disk
+			Map appContext = new HashMap( );
+			appContext.put( "birt.data.engine.test.memcachesize", "200" );
+			populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit, appContext);
+		}
 		else 
 			populator = JointDataSetPopulatorFactory.getCartesianJointDataSetPopulator(it1, it2, meta, matcher, joinType,  ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit);
 		
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.RAFolderInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the strings of a dictionary are read back by code, and that the
+ * codes are found by string.
+ */
+public class StringDictionaryTest
+{
+
+	private File file;
+
+	@Before
+	public void stringDictionarySetUp( ) throws IOException
+	{
+		file = File.createTempFile( "dictionary", null );
+	}
+
+	@After
+	public void stringDictionaryTearDown( )
+	{
+		file.delete( );
+	}
+
+	private StringDictionary writeAndOpen( List<String> strings )
+			throws IOException
+	{
+		StringDictionary.write( new FileOutputStream( file ), strings );
+		return new StringDictionary( new RAFolderInputStream( file ) );
+	}
+
+	@Test
+	public void testDictionary( ) throws IOException
+	{
+		List<String> strings = new ArrayList<String>( );
+		strings.add( "USA" );
+		strings.add( "France" );
+		strings.add( "" );
+		strings.add( "Japan" );
+		strings.add( "Brazil" );
+		StringBuffer longString = new StringBuffer( );
+		for ( int i = 0; i < 70000; i++ )
+			longString.append( 'x' );
+		strings.add( longString.toString( ) );
+
+		StringDictionary dictionary = writeAndOpen( strings );
+		assertEquals( strings.size( ), dictionary.size( ) );
+		for ( int i = 0; i < strings.size( ); i++ )
+		{
+			assertEquals( strings.get( i ), dictionary.getString( i ) );
+			assertEquals( i, dictionary.getCode( strings.get( i ) ) );
+		}
+		assertNull( dictionary.getString( -1 ) );
+		assertNull( dictionary.getString( strings.size( ) ) );
+		assertEquals( -1, dictionary.getCode( "Germany" ) );
+		assertEquals( -1, dictionary.getCode( "usa" ) );
+		assertEquals( -1, dictionary.getCode( null ) );
+		dictionary.close( );
+	}
+
+	@Test
+	public void testEmptyDictionary( ) throws IOException
+	{
+		StringDictionary dictionary = writeAndOpen( new ArrayList<String>( ) );
+		assertEquals( 0, dictionary.size( ) );
+		assertNull( dictionary.getString( 0 ) );
+		assertEquals( -1, dictionary.getCode( "USA" ) );
+		dictionary.close( );
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+
+package org.eclipse.birt.data.engine.odaconsumer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.IBlockFetchResultSet;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+import org.eclipse.datatools.connectivity.oda.impl.SimpleResultSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the rows read a block at a time from a driver's result set are
+ * those read one at a time.
+ */
+public class BlockFetchTest
+{
+
+	private static final int ROW_COUNT = ResultSet.FETCH_BLOCK_SIZE * 2 + 10;
+
+	private IResultClass createResultClass( ) throws DataException
+	{
+		List columns = new ArrayList( );
+		columns.add( new ResultFieldMetadata( 1,
+				"intColumn",
+				"intColumn",
+				Integer.class,
+				null,
+				false ) );
+		columns.add( new ResultFieldMetadata( 0,
+				"customColumn",
+				"customColumn",
+				String.class,
+				null,
+				true ) );
+		columns.add( new ResultFieldMetadata( 2,
+				"stringColumn",
+				"stringColumn",
+				String.class,
+				null,
+				false ) );
+		return new ResultClass( columns );
+	}
+
+	private List<IResultObject> fetchAll( ResultSet resultSet )
+			throws DataException
+	{
+		List<IResultObject> rows = new ArrayList<IResultObject>( );
+		IResultObject row;
+		while ( ( row = resultSet.fetch( ) ) != null )
+		{
+			rows.add( row );
+		}
+		return rows;
+	}
+
+	@Test
+	public void testBlockFetch( ) throws Exception
+	{
+		IResultClass resultClass = createResultClass( );
+		BlockResultSet driverResultSet = new BlockResultSet( );
+		List<IResultObject> blockRows = fetchAll( new ResultSet( driverResultSet,
+				resultClass ) );
+		List<IResultObject> rows = fetchAll( new ResultSet( new RowResultSet( ),
+				resultClass ) );
+
+		assertEquals( ROW_COUNT, rows.size( ) );
+		assertEquals( ROW_COUNT, blockRows.size( ) );
+		assertEquals( 3, driverResultSet.blockCount );
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			for ( int j = 1; j <= 3; j++ )
+			{
+				assertEquals( rows.get( i ).getFieldValue( j ),
+						blockRows.get( i ).getFieldValue( j ) );
+			}
+		}
+		assertNull( blockRows.get( 0 ).getFieldValue( 1 ) );
+		assertEquals( Integer.valueOf( 1 ), blockRows.get( 1 )
+				.getFieldValue( 1 ) );
+		assertNull( blockRows.get( 1 ).getFieldValue( 2 ) );
+		assertEquals( "row1", blockRows.get( 1 ).getFieldValue( 3 ) );
+	}
+
+	@Test
+	public void testBlockFetchMaxRows( ) throws Exception
+	{
+		ResultSet resultSet = new ResultSet( new BlockResultSet( ),
+				createResultClass( ) );
+		resultSet.setMaxRows( 5 );
+		assertEquals( 5, fetchAll( resultSet ).size( ) );
+		assertEquals( 5, resultSet.getRowPosition( ) );
+	}
+
+	@Test
+	public void testFetchCount( ) throws Exception
+	{
+		ResultSet resultSet = new ResultSet( new BlockResultSet( ),
+				createResultClass( ) );
+		IResultObject[] rows = resultSet.fetch( 100 );
+		assertEquals( 100, rows.length );
+		assertEquals( Integer.valueOf( 99 ), rows[99].getFieldValue( 1 ) );
+		assertEquals( 100, resultSet.getRowPosition( ) );
+
+		rows = resultSet.fetch( ROW_COUNT );
+		assertEquals( ROW_COUNT - 100, rows.length );
+		assertEquals( 0, resultSet.fetch( 10 ).length );
+	}
+
+	/**
+	 * A driver result set of ROW_COUNT rows, read one at a time. The int
+	 * column is null every 7 rows.
+	 */
+	private static class RowResultSet extends SimpleResultSet
+	{
+
+		private int row = -1;
+		private int maxRows;
+		private boolean wasNull;
+
+		public void setMaxRows( int max ) throws OdaException
+		{
+			maxRows = max;
+		}
+
+		public boolean next( ) throws OdaException
+		{
+			if ( row + 1 >= ROW_COUNT || ( maxRows > 0 && row + 1 >= maxRows ) )
+			{
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		public int getRow( ) throws OdaException
+		{
+			return row + 1;
+		}
+
+		public int getInt( int index ) throws OdaException
+		{
+			wasNull = row % 7 == 0;
+			return wasNull ? 0 : row;
+		}
+
+		public String getString( int index ) throws OdaException
+		{
+			wasNull = false;
+			return "row" + row;
+		}
+
+		public boolean wasNull( ) throws OdaException
+		{
+			return wasNull;
+		}
+
+		public void close( ) throws OdaException
+		{
+		}
+	}
+
+	/**
+	 * The same rows, also read a block at a time.
+	 */
+	private static class BlockResultSet extends RowResultSet
+			implements
+				IBlockFetchResultSet
+	{
+
+		private int blockCount;
+
+		public int fetch( int[] columnPositions, int[] columnTypes,
+				Object[][] rows ) throws BirtException
+		{
+			blockCount++;
+			try
+			{
+				int count = 0;
+				while ( count < rows.length && next( ) )
+				{
+					Object[] values = new Object[columnPositions.length];
+					for ( int i = 0; i < columnPositions.length; i++ )
+					{
+						if ( columnPositions[i] == 0 )
+						{
+							continue;
+						}
+						Object value = columnTypes[i] == DataType.INTEGER_TYPE
+								? (Object) Integer.valueOf( getInt( columnPositions[i] ) )
+								: getString( columnPositions[i] );
+						values[i] = wasNull( ) ? null : value;
+					}
+					rows[count++] = values;
+				}
+				return count;
+			}
+			catch ( OdaException e )
+			{
+				throw new BirtException( e.getLocalizedMessage( ) );
+			}
+		}
+	}
+}
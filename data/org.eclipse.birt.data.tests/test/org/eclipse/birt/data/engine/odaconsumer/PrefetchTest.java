@@ -0,0 +1,206 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+
+package org.eclipse.birt.data.engine.odaconsumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+import org.eclipse.datatools.connectivity.oda.impl.SimpleResultSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the rows read ahead on a background thread are fetched in order,
+ * and that the reading stops when the result set is closed or cancelled.
+ */
+public class PrefetchTest
+{
+
+	private static final int ROW_COUNT = ResultSet.FETCH_BLOCK_SIZE * 3 + 10;
+
+	private ExecutorService executor;
+
+	@Before
+	public void prefetchSetUp( )
+	{
+		executor = Executors.newCachedThreadPool( );
+	}
+
+	@After
+	public void prefetchTearDown( )
+	{
+		executor.shutdownNow( );
+	}
+
+	private IResultClass createResultClass( ) throws DataException
+	{
+		List columns = new ArrayList( );
+		columns.add( new ResultFieldMetadata( 1,
+				"intColumn",
+				"intColumn",
+				Integer.class,
+				null,
+				false ) );
+		return new ResultClass( columns );
+	}
+
+	@Test
+	public void testPrefetch( ) throws Exception
+	{
+		RowResultSet driverResultSet = new RowResultSet( -1 );
+		ResultSet resultSet = new ResultSet( driverResultSet,
+				createResultClass( ) );
+		resultSet.setPrefetch( 2, executor );
+
+		IResultObject row;
+		int count = 0;
+		while ( ( row = resultSet.fetch( ) ) != null )
+		{
+			assertEquals( Integer.valueOf( count ), row.getFieldValue( 1 ) );
+			count++;
+			assertEquals( count, resultSet.getRowPosition( ) );
+		}
+		assertEquals( ROW_COUNT, count );
+		assertEquals( 0, resultSet.fetch( 10 ).length );
+		resultSet.close( );
+		assertTrue( driverResultSet.closed );
+		assertFalse( driverResultSet.readAfterClose );
+	}
+
+	@Test
+	public void testPrefetchError( ) throws Exception
+	{
+		int errorRow = ResultSet.FETCH_BLOCK_SIZE + 5;
+		ResultSet resultSet = new ResultSet( new RowResultSet( errorRow ),
+				createResultClass( ) );
+		resultSet.setPrefetch( 1, executor );
+
+		// the rows of the blocks read before the error are fetched
+		int count = 0;
+		try
+		{
+			while ( resultSet.fetch( ) != null )
+			{
+				count++;
+			}
+			fail( "the error reading the rows is not thrown" );
+		}
+		catch ( DataException e )
+		{
+		}
+		assertEquals( ResultSet.FETCH_BLOCK_SIZE, count );
+		assertNull( resultSet.fetch( ) );
+		resultSet.close( );
+	}
+
+	@Test
+	public void testClose( ) throws Exception
+	{
+		RowResultSet driverResultSet = new RowResultSet( -1 );
+		ResultSet resultSet = new ResultSet( driverResultSet,
+				createResultClass( ) );
+		resultSet.setPrefetch( 1, executor );
+		assertNotNull( resultSet.fetch( ) );
+
+		// the reading thread waits for room in the queue, and stops on close
+		resultSet.close( );
+		assertTrue( driverResultSet.closed );
+		assertFalse( driverResultSet.readAfterClose );
+		assertTrue( driverResultSet.row < ROW_COUNT - 1 );
+	}
+
+	@Test
+	public void testCancel( ) throws Exception
+	{
+		ResultSet resultSet = new ResultSet( new RowResultSet( -1 ),
+				createResultClass( ) );
+		resultSet.setPrefetch( 1, executor );
+		assertNotNull( resultSet.fetch( ) );
+
+		resultSet.cancelPrefetch( );
+		// the rows of the current block are still fetched
+		assertEquals( ResultSet.FETCH_BLOCK_SIZE - 1,
+				resultSet.fetch( ROW_COUNT ).length );
+		assertNull( resultSet.fetch( ) );
+		resultSet.close( );
+	}
+
+	/**
+	 * A driver result set of ROW_COUNT rows, which fails when the given row is
+	 * read, and must not be read once it is closed.
+	 */
+	private static class RowResultSet extends SimpleResultSet
+	{
+
+		private final int errorRow;
+		private volatile int row = -1;
+		private volatile boolean closed;
+		private volatile boolean readAfterClose;
+
+		RowResultSet( int errorRow )
+		{
+			this.errorRow = errorRow;
+		}
+
+		public boolean next( ) throws OdaException
+		{
+			if ( closed )
+			{
+				readAfterClose = true;
+			}
+			if ( row + 1 >= ROW_COUNT )
+			{
+				return false;
+			}
+			row++;
+			if ( row == errorRow )
+			{
+				throw new OdaException( "row " + row );
+			}
+			return true;
+		}
+
+		public int getRow( ) throws OdaException
+		{
+			return row + 1;
+		}
+
+		public int getInt( int index ) throws OdaException
+		{
+			return row;
+		}
+
+		public boolean wasNull( ) throws OdaException
+		{
+			return false;
+		}
+
+		public void close( ) throws OdaException
+		{
+			closed = true;
+		}
+	}
+}
@@ -572,6 +572,244 @@ public class FactTableHelperTest {
 		System.out.println( "Finish iterator... time: "  + (System.currentTimeMillis( ) - startTime)/1000);
 	}
 	
+	/**
+	 * The fact table saved in parallel is the same as the one saved by the
+	 * calling thread only.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testParallelFactTableSave( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = createBigDimensions( documentManager );
+
+		String[] measureColumnName = new String[]{
+				"measure1", "measure2"
+		};
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		FactTable factTable = factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "serial" ),
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				new BigLevelsAndFactTableDataset( ),
+				dimensions,
+				measureColumnName,
+				new StopSign( ) );
+		factTableConstructor.setParallelBuildThreads( 4 );
+		FactTable parallelFactTable = factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "parallel" ),
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				new BigLevelsAndFactTableDataset( ),
+				dimensions,
+				measureColumnName,
+				new StopSign( ) );
+		assertTrue( factTable.getSegmentCount( ) > 1 );
+		assertEquals( factTable.getSegmentCount( ),
+				parallelFactTable.getSegmentCount( ) );
+
+		String[] dimensionNames = new String[]{
+			"dimension1"
+		};
+		IDiskArray[] dimensionPosition = new IDiskArray[1];
+		dimensionPosition[0] = new BufferedPrimitiveDiskArray( );
+		for ( int i = 0; i < BigLevelsAndFactTableDataset.dimensionPositionLength[0]; i++ )
+		{
+			dimensionPosition[0].add( new Integer( i ) );
+		}
+		FactTableRowIterator iterator = new FactTableRowIterator( factTable,
+				dimensionNames,
+				dimensionPosition,
+				new StopSign( ) );
+		FactTableRowIterator parallelIterator = new FactTableRowIterator( parallelFactTable,
+				dimensionNames,
+				dimensionPosition,
+				new StopSign( ) );
+		int rowCount = 0;
+		while ( iterator.next( ) )
+		{
+			assertTrue( parallelIterator.next( ) );
+			for ( int i = 0; i < dimensions.length; i++ )
+			{
+				assertEquals( iterator.getDimensionPosition( i ),
+						parallelIterator.getDimensionPosition( i ) );
+			}
+			assertEquals( iterator.getMeasure( 0 ), parallelIterator.getMeasure( 0 ) );
+			assertEquals( iterator.getMeasure( 1 ), parallelIterator.getMeasure( 1 ) );
+			rowCount++;
+		}
+		assertFalse( parallelIterator.next( ) );
+		assertEquals( 100000, rowCount );
+		documentManager.close( );
+	}
+	
+	/**
+	 * Test the fact table rows selected through the bitmap index of the
+	 * segments.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testBitmapIndex( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = createBigDimensions( documentManager );
+
+		String[] measureColumnName = new String[]{
+				"measure1", "measure2"
+		};
+		FactTable factTable = new FactTableAccessor( documentManager ).saveFactTable( NamingUtil.getFactTableName( "plain" ),
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				new BigLevelsAndFactTableDataset( ),
+				dimensions,
+				measureColumnName,
+				new StopSign( ) );
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.setBitmapIndex( true );
+		FactTable indexedFactTable = factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "indexed" ),
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				new BigLevelsAndFactTableDataset( ),
+				dimensions,
+				measureColumnName,
+				new StopSign( ) );
+
+		// selective filters on two dimensions
+		assertEquals( 600, assertSameRows( factTable,
+				indexedFactTable,
+				new String[]{
+						"dimension1", "dimension3"
+				},
+				new int[][]{
+						{
+								10, 50, 99
+						}, {
+								1, 9
+						}
+				} ) );
+		// a filter selecting most of the rows
+		int[] positions = new int[90];
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			positions[i] = i + 5;
+		}
+		assertEquals( 90000, assertSameRows( factTable,
+				indexedFactTable,
+				new String[]{
+					"dimension2"
+				},
+				new int[][]{
+					positions
+				} ) );
+		// a filter selecting no row of most segments
+		assertEquals( 10, assertSameRows( factTable,
+				indexedFactTable,
+				new String[]{
+						"dimension1", "dimension2"
+				},
+				new int[][]{
+						{
+							0
+						}, {
+							0
+						}
+				} ) );
+		documentManager.close( );
+	}
+
+	/**
+	 * Assert that the rows read from a fact table with an index are the same
+	 * as the rows read from the same fact table without index.
+	 * 
+	 * @param factTable
+	 * @param indexedFactTable
+	 * @param dimensionNames
+	 * @param positions
+	 * @return the count of selected rows
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private int assertSameRows( FactTable factTable,
+			FactTable indexedFactTable, String[] dimensionNames,
+			int[][] positions ) throws IOException, BirtException
+	{
+		IDiskArray[] dimensionPosition = new IDiskArray[positions.length];
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			dimensionPosition[i] = new BufferedPrimitiveDiskArray( );
+			for ( int j = 0; j < positions[i].length; j++ )
+			{
+				dimensionPosition[i].add( new Integer( positions[i][j] ) );
+			}
+		}
+		FactTableRowIterator iterator = new FactTableRowIterator( factTable,
+				dimensionNames,
+				dimensionPosition,
+				new StopSign( ) );
+		FactTableRowIterator indexedIterator = new FactTableRowIterator( indexedFactTable,
+				dimensionNames,
+				dimensionPosition,
+				new StopSign( ) );
+		int rowCount = 0;
+		while ( iterator.next( ) )
+		{
+			assertTrue( indexedIterator.next( ) );
+			for ( int i = 0; i < iterator.getDimensionCount( ); i++ )
+			{
+				assertEquals( iterator.getDimensionPosition( i ),
+						indexedIterator.getDimensionPosition( i ) );
+			}
+			assertEquals( iterator.getMeasure( 0 ), indexedIterator.getMeasure( 0 ) );
+			assertEquals( iterator.getMeasure( 1 ), indexedIterator.getMeasure( 1 ) );
+			rowCount++;
+		}
+		assertFalse( indexedIterator.next( ) );
+		iterator.close( );
+		indexedIterator.close( );
+		return rowCount;
+	}
+
+	/**
+	 * Create the dimensions of BigLevelsAndFactTableDataset.
+	 * 
+	 * @param documentManager
+	 * @return
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private Dimension[] createBigDimensions( IDocumentManager documentManager )
+			throws IOException, BirtException
+	{
+		Dimension[] dimensions = new Dimension[3];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			String name = "dimension" + ( i + 1 );
+			DimensionForTest iterator = new DimensionForTest( new String[]{
+				name
+			} );
+			int[] data = new int[BigLevelsAndFactTableDataset.dimensionPositionLength[i]];
+			for ( int j = 0; j < data.length; j++ )
+			{
+				data[j] = j;
+			}
+			iterator.setLevelMember( 0, data );
+			ILevelDefn[] levelDefs = new ILevelDefn[]{
+				new LevelDefinition( name, new String[]{
+					name
+				}, null )
+			};
+			dimensions[i] = (Dimension) DimensionFactory.createDimension( name,
+					documentManager,
+					iterator,
+					levelDefs,
+					false,
+					new StopSign( ) );
+		}
+		return dimensions;
+	}
+	
 	private static String[] distinct( String[] sValues )
 	{
 		Arrays.sort( sValues );
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the set operations of CompressedBitmap, with sparse and dense chunks.
+ */
+
+public class CompressedBitmapTest
+{
+	/**
+	 *
+	 */
+	@Test
+	public void testAdd( )
+	{
+		BitSet expected = new BitSet( );
+		CompressedBitmap bitmap = newBitmap( expected, 1, 200000, 7 );
+		assertBitmap( expected, bitmap );
+		assertTrue( bitmap.contains( 8 ) );
+		assertFalse( bitmap.contains( 7 ) );
+		assertFalse( bitmap.contains( -1 ) );
+		assertFalse( new CompressedBitmap( ).contains( 0 ) );
+		assertTrue( new CompressedBitmap( ).isEmpty( ) );
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testAndOr( )
+	{
+		// chunks of one of every 2 integers are bitmaps, chunks of one of
+		// every 50 integers are arrays
+		int[][] steps = new int[][]{
+				{
+						2, 50
+				}, {
+						2, 3
+				}, {
+						50, 70
+				}, {
+						50, 2
+				}
+		};
+		for ( int i = 0; i < steps.length; i++ )
+		{
+			BitSet expected1 = new BitSet( );
+			BitSet expected2 = new BitSet( );
+			CompressedBitmap bitmap1 = newBitmap( expected1,
+					2,
+					300000,
+					steps[i][0] );
+			CompressedBitmap bitmap2 = newBitmap( expected2,
+					3,
+					200000,
+					steps[i][1] );
+
+			BitSet and = (BitSet) expected1.clone( );
+			and.and( expected2 );
+			assertBitmap( and, bitmap1.and( bitmap2 ) );
+			assertBitmap( and, bitmap2.and( bitmap1 ) );
+
+			BitSet or = (BitSet) expected1.clone( );
+			or.or( expected2 );
+			assertBitmap( or, bitmap1.or( bitmap2 ) );
+			assertBitmap( or, bitmap2.or( bitmap1 ) );
+		}
+		assertTrue( newBitmap( new BitSet( ), 0, 10, 2 ).and( newBitmap( new BitSet( ),
+				1,
+				10,
+				2 ) )
+				.isEmpty( ) );
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	@Test
+	public void testReadWrite( ) throws IOException, DataException
+	{
+		BitSet expected1 = new BitSet( );
+		BitSet expected2 = new BitSet( );
+		CompressedBitmap bitmap1 = newBitmap( expected1, 0, 300000, 2 );
+		CompressedBitmap bitmap2 = newBitmap( expected2, 5, 300000, 97 );
+
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		IDocumentObject documentObject = documentManager.createDocumentObject( "bitmap" );
+		bitmap1.write( documentObject );
+		bitmap2.write( documentObject );
+		new CompressedBitmap( ).write( documentObject );
+		documentObject.seek( 0 );
+		assertBitmap( expected1, CompressedBitmap.read( documentObject ) );
+		assertBitmap( expected2, CompressedBitmap.read( documentObject ) );
+		assertTrue( CompressedBitmap.read( documentObject ).isEmpty( ) );
+		documentObject.close( );
+		documentManager.close( );
+	}
+
+	/**
+	 * Create a bitmap of the integers from start to end by step, added in a
+	 * random order.
+	 *
+	 * @param expected
+	 * @param start
+	 * @param end
+	 * @param step
+	 * @return
+	 */
+	private static CompressedBitmap newBitmap( BitSet expected, int start,
+			int end, int step )
+	{
+		int[] values = new int[( end - start + step - 1 ) / step];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			values[i] = start + i * step;
+		}
+		Random random = new Random( step );
+		for ( int i = values.length - 1; i > 0; i-- )
+		{
+			int j = random.nextInt( i + 1 );
+			int value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+		CompressedBitmap bitmap = new CompressedBitmap( );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			bitmap.add( values[i] );
+			expected.set( values[i] );
+		}
+		// adding an integer again does not change the set
+		if ( values.length > 0 )
+		{
+			bitmap.add( values[0] );
+		}
+		return bitmap;
+	}
+
+	/**
+	 *
+	 * @param expected
+	 * @param bitmap
+	 */
+	private static void assertBitmap( BitSet expected, CompressedBitmap bitmap )
+	{
+		assertEquals( expected.cardinality( ), bitmap.getCardinality( ) );
+		int[] values = bitmap.toArray( );
+		int pos = 0;
+		for ( int i = expected.nextSetBit( 0 ); i >= 0; i = expected.nextSetBit( i + 1 ) )
+		{
+			assertEquals( i, values[pos++] );
+			assertTrue( bitmap.contains( i ) );
+		}
+	}
+}
@@ -93,6 +93,20 @@ abstract public class DataEngine
 	 */
 	public static String MEMORY_DATA_SET_CACHE = "org.eclipse.birt.data.cache.memory";
 	
+	/**
+	 * Indicates the maximum size in bytes of the data set cache shared by all
+	 * data engines. When it is exceeded, the least recently used data sets are
+	 * removed from the cache. Not positive means no limit, which is the default.
+	 */
+	public static String DATA_SET_CACHE_MAX_SIZE = "org.eclipse.birt.data.cache.MaxSize";
+	
+	/**
+	 * Indicates the time in milliseconds a data set is kept in the data set
+	 * cache shared by all data engines, after which it is retrieved again. Not
+	 * positive means no limit, which is the default.
+	 */
+	public static String DATA_SET_CACHE_TIME_TO_LIVE = "org.eclipse.birt.data.cache.TimeToLive";
+	
 	/**
 	 * Indicates the session id of which a set of queries will be executed. 
 	 */
@@ -156,6 +170,122 @@ abstract public class DataEngine
 	 */
 	public static String IN_MEMORY_CUBE_SIZE = "org.eclipse.birt.data.engine.cube.inmemory.size";
 	
+	/**
+	 * Indicates whether the equi-joins of joint data sets are evaluated through
+	 * hashing. The default value is true. If it is set to false, the data sets
+	 * are always sorted on the join keys and merged.
+	 */
+	public static String JOINT_DATA_SET_HASH_JOIN = "org.eclipse.birt.data.jointdataset.hashjoin";
+	
+	/**
+	 * The number of threads used to process the rows of a result set, or
+	 * "true" to use as many threads as the available processors. The computed
+	 * columns and filters of different rows are evaluated at the same time
+	 * only when none of them needs the script scope, that is, when they refer
+	 * to columns and compare columns with literal values. Zero or one disables
+	 * parallel row processing, which is the default.
+	 */
+	public static String PARALLEL_ROW_PROCESSING_THREADS = "org.eclipse.birt.data.query.ParallelRowProcessingThreads";
+	
+	/**
+	 * Indicates whether the rows of a result set kept in memory are stored
+	 * column by column. Values of the common data types are then held in
+	 * primitive arrays and strings are shared, so that more rows are kept in
+	 * memory before the disk cache is used. The rows returned by the result set
+	 * are views on these columns. The value is "true" or "false", and the
+	 * default is "false".
+	 */
+	public static String COLUMNAR_MEMORY_CACHE = "org.eclipse.birt.data.query.ColumnarMemoryCache";
+	
+	/**
+	 * The number of threads used to sort the rows of a result set which does
+	 * not fit in memory, or "true" to use as many threads as the available
+	 * processors. Each sorted run is split into parts which are sorted at the
+	 * same time and then merged. Zero or one disables parallel sorting, which
+	 * is the default.
+	 */
+	public static String PARALLEL_SORT_THREADS = "org.eclipse.birt.data.query.ParallelSortThreads";
+	
+	/**
+	 * Indicates whether the blocks of rows written to the temporary files of
+	 * the disk cache are compressed. It saves disk space and IO at the cost of
+	 * processor time. The value is "true" or "false", and the default is
+	 * "false".
+	 */
+	public static String DISK_CACHE_COMPRESSION = "org.eclipse.birt.data.query.DiskCacheCompression";
+	
+	/**
+	 * The number of threads used to build a cube, or "true" to use as many
+	 * threads as the available processors. The dimension keys of the different
+	 * dimensions are sorted at the same time, and the segment and position of
+	 * the fact table rows are calculated by batches in parallel before the rows
+	 * are written in order to their segments. Zero or one disables parallel
+	 * cube building, which is the default.
+	 */
+	public static String PARALLEL_CUBE_BUILD_THREADS = "org.eclipse.birt.data.engine.cube.ParallelBuildThreads";
+	
+	/**
+	 * Indicates whether a bitmap index is saved with each segment of the fact
+	 * table of a cube. For each dimension, the index keeps the set of segment
+	 * rows having each dimension member, so that the rows selected by slicer
+	 * and drill filters are found by set intersections and only these rows are
+	 * read. The value is "true" or "false", and the default is "false".
+	 */
+	public static String FACT_TABLE_BITMAP_INDEX = "org.eclipse.birt.data.engine.cube.FactTableBitmapIndex";
+	
+	/**
+	 * The number of threads used to group the rows of a summary query by
+	 * hashing, or "true" to use as many threads as the available processors.
+	 * When a summary query is ordered on its group keys only, the rows kept in
+	 * memory are gathered into per-thread hash tables of groups over row
+	 * partitions, the tables are merged, and only the distinct group keys are
+	 * sorted, instead of sorting every row. One groups the rows by the calling
+	 * thread only. Zero sorts the rows as for the other queries, which is the
+	 * default.
+	 */
+	public static String HASH_GROUPING_THREADS = "org.eclipse.birt.data.query.HashGroupingThreads";
+	
+	/**
+	 * Indicates whether a part of the processing of the data sets of the ODA
+	 * JDBC driver is pushed down into their SQL queries. The driver then
+	 * rewrites a query to select only the rows which may be kept by the filters
+	 * comparing a column with literals, to group the rows of a summary query
+	 * whose aggregations are MIN and MAX of columns, and to order and limit
+	 * the rows kept by a Top/Bottom N filter of the data set. The data engine
+	 * still processes the rows it receives in full, and the result stays the
+	 * same. It applies only to the data sets which are not cached. The value is
+	 * "true" or "false", and the default is "false".
+	 */
+	public static String JDBC_PUSH_DOWN = "org.eclipse.birt.data.query.JdbcPushDown";
+	
+	/**
+	 * The number of blocks of rows read ahead from the result sets of ODA
+	 * drivers. When it is positive, the rows of a result set are read on a
+	 * background thread, a block of 256 rows at a time, while the data engine
+	 * processes the rows read before, up to the given number of blocks ahead.
+	 * Zero reads the rows on the thread processing them, which is the default.
+	 */
+	public static String ODA_PREFETCH_BLOCKS = "org.eclipse.birt.data.query.OdaPrefetchBlocks";
+	
+	/**
+	 * The number of threads executing the ODA queries of a report ahead. When
+	 * it is positive, the queries registered at the start of a report whose
+	 * parameter values depend only on the report parameters are executed
+	 * concurrently on background threads, and a data set takes the result set
+	 * of its query when it is executed, if the query is still the same. The
+	 * value is a number or "true" for the number of processors; the default 0
+	 * executes each query when its data set is executed. It applies only to the
+	 * data sets which are not cached.
+	 */
+	public static String CONCURRENT_DATA_SET_THREADS = "org.eclipse.birt.data.query.ConcurrentDataSetThreads";
+	
+	/**
+	 * The number of connections of a data source which the ODA queries executed
+	 * ahead may hold at a time, until their data sets take their result sets.
+	 * The default is 1.
+	 */
+	public static String CONCURRENT_DATA_SET_CONNECTIONS = "org.eclipse.birt.data.query.ConcurrentDataSetConnections";
+	
 	/**
 	 * Creates a new instance of DataEngine, using the specified
 	 * DataEngineContext as its running environment
@@ -362,6 +492,19 @@ abstract public class DataEngine
 	 */
 	abstract public void registerQueries( IDataQueryDefinition[] queryDefns ) throws DataException;
 	
+	/**
+	 * Optimize query execution by analyze a list of query definitions, with
+	 * the application context the queries are executed with.
+	 * @param queryDefns
+	 * @param appContext
+	 * @throws DataException
+	 */
+	public void registerQueries( IDataQueryDefinition[] queryDefns,
+			Map appContext ) throws DataException
+	{
+		registerQueries( queryDefns );
+	}
+	
 	/**
 	 * Provides a hint to DtE that the consumer is done with the given 
 	 * data source, and 
@@ -375,6 +375,23 @@ public class FileSecurity
 		} );
 	}
 
+	/**
+	 * 
+	 * @param file
+	 * @param dest
+	 * @return
+	 */
+	public static boolean fileRename( final File file, final File dest )
+	{
+		return AccessController.doPrivileged( new PrivilegedAction<Boolean>( ) {
+
+			public Boolean run( )
+			{
+				return file.renameTo( dest );
+			}
+		} );
+	}
+
 	/**
 	 * 
 	 * @param file
@@ -10,15 +10,19 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.executor;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 
 /**
@@ -30,9 +34,26 @@ public class CacheMapManager
 	 * Please notice that we must use static variable here for the sharing of
 	 * cached data set would be cross data set session.
 	 */
-	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new HashMap( ) );
+	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new LinkedHashMap( 16,
+			0.75f,
+			true ) );
 	private static Map<DataSourceAndDataSet, Integer> lockedDataSetCacheMap = Collections.synchronizedMap( new HashMap( ) );	
 	
+	// the time when each data set of JVMLevelCacheMap is saved, and its size
+	private static Map<IDataSetCacheObject, long[]> JVMLevelCacheInfo = new IdentityHashMap<IDataSetCacheObject, long[]>( );
+	
+	// the data sets which are being retrieved to be saved into
+	// JVMLevelCacheMap, and the managers retrieving them
+	private static Map<DataSourceAndDataSet, CacheMapManager> loadingDataSetCacheMap = new HashMap<DataSourceAndDataSet, CacheMapManager>( );
+	
+	// the maximum time to wait for another manager to retrieve the same data
+	private static final long LOADING_WAIT_TIME = 60000;
+	
+	// the maximum size in bytes of JVMLevelCacheMap, and the maximum time in
+	// milliseconds a data set is kept in it, no limit if not positive
+	private static long maxCacheSize = 0;
+	private static long timeToLive = 0;
+	
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
 	// use this field temporarily keep the data set object need to be saved in
 	// cache. After the data set result has been cached, saved data set object
@@ -80,7 +101,11 @@ public class CacheMapManager
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
 			if (cacheObject != null)
 			{
-				return cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
+				boolean needUpdate = cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
+				// nothing will be saved, so the others need not wait for it
+				if ( !needUpdate )
+					finishLoading( dsAndDs );
+				return needUpdate;
 			}
 			else
 			{
@@ -100,12 +125,16 @@ public class CacheMapManager
 	 */
 	boolean doesLoadFromCache( DataSourceAndDataSet dsAndDs, int requiredCapability )
 	{
+		if ( useJVMLevelCache )
+			waitForLoading( dsAndDs );
+		
 		synchronized ( cacheMap )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
 			if (cacheObject != null)
 			{
-				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
+				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability )
+						&& !( useJVMLevelCache && isExpired( cacheObject ) );
 				if ( !reusable )
 				{
 					if ( useJVMLevelCache )
@@ -129,6 +158,11 @@ public class CacheMapManager
 					cacheObject.release( );
 					tempDataSetCacheMap.remove( dsAndDs );
 					cacheMap.remove( dsAndDs );
+					if ( useJVMLevelCache )
+					{
+						removeCacheInfo( cacheObject );
+						startLoading( dsAndDs );
+					}
 				}
 				else
 				if ( this.useJVMLevelCache )
@@ -142,11 +176,86 @@ public class CacheMapManager
 			}
 			else
 			{
+				if ( useJVMLevelCache )
+					startLoading( dsAndDs );
 				return false;
 			}
 		}
 	}
 	
+	/**
+	 * Wait until the data set is no longer being retrieved by another manager,
+	 * so that identical queries running at the same time retrieve the data
+	 * only once. The wait is limited, in case the other manager never saves
+	 * the data.
+	 * 
+	 * @param dsAndDs
+	 */
+	private void waitForLoading( DataSourceAndDataSet dsAndDs )
+	{
+		synchronized ( loadingDataSetCacheMap )
+		{
+			long deadline = System.currentTimeMillis( ) + LOADING_WAIT_TIME;
+			CacheMapManager owner = loadingDataSetCacheMap.get( dsAndDs );
+			while ( owner != null && owner != this )
+			{
+				long remaining = deadline - System.currentTimeMillis( );
+				if ( remaining <= 0 )
+					return;
+				try
+				{
+					loadingDataSetCacheMap.wait( remaining );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread( ).interrupt( );
+					return;
+				}
+				owner = loadingDataSetCacheMap.get( dsAndDs );
+			}
+		}
+	}
+	
+	/**
+	 * Record that the data set is retrieved by this manager.
+	 * 
+	 * @param dsAndDs
+	 */
+	private void startLoading( DataSourceAndDataSet dsAndDs )
+	{
+		synchronized ( loadingDataSetCacheMap )
+		{
+			loadingDataSetCacheMap.put( dsAndDs, this );
+		}
+	}
+	
+	/**
+	 * Record that the data set is no longer retrieved by this manager, and
+	 * wake up the managers waiting for it.
+	 * 
+	 * @param dsAndDs
+	 *            null to finish all the data sets retrieved by this manager
+	 */
+	void finishLoading( DataSourceAndDataSet dsAndDs )
+	{
+		if ( !useJVMLevelCache )
+			return;
+		
+		synchronized ( loadingDataSetCacheMap )
+		{
+			Iterator<Map.Entry<DataSourceAndDataSet, CacheMapManager>> it = loadingDataSetCacheMap.entrySet( )
+					.iterator( );
+			while ( it.hasNext( ) )
+			{
+				Map.Entry<DataSourceAndDataSet, CacheMapManager> entry = it.next( );
+				if ( entry.getValue( ) == this
+						&& ( dsAndDs == null || entry.getKey( ).equals( dsAndDs ) ) )
+					it.remove( );
+			}
+			loadingDataSetCacheMap.notifyAll( );
+		}
+	}
+	
 	/**
 	 * @return
 	 */
@@ -161,12 +270,172 @@ public class CacheMapManager
 	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
 			IDataSetCacheObject dsco )
 	{
+		List<IDataSetCacheObject> evicted = null;
 		synchronized ( cacheMap )
 		{
-			cacheMap.put( dsAndDs, dsco );
+			IDataSetCacheObject previous = cacheMap.put( dsAndDs, dsco );
+			if ( useJVMLevelCache )
+			{
+				if ( previous != null && previous != dsco )
+					JVMLevelCacheInfo.remove( previous );
+				JVMLevelCacheInfo.put( dsco, new long[]{
+						System.currentTimeMillis( ), getCacheSize( dsco )
+				} );
+				evicted = evict( dsco );
+			}
+		}
+		finishLoading( dsAndDs );
+		
+		if ( evicted != null )
+		{
+			for ( IDataSetCacheObject cacheObject : evicted )
+			{
+				cacheObject.release( );
+			}
 		}
 	}
 	
+	/**
+	 * Set the maximum size of the cache shared by all data engines. Since the
+	 * cache is shared, the size last set applies to all of them.
+	 * 
+	 * @param maxSize
+	 *            the maximum size in bytes of the cached data sets, no limit
+	 *            if not positive
+	 */
+	public static void setJVMLevelCacheMaxSize( long maxSize )
+	{
+		synchronized ( JVMLevelCacheMap )
+		{
+			maxCacheSize = maxSize;
+		}
+	}
+	
+	/**
+	 * Set the time to live of the data sets in the cache shared by all data
+	 * engines. Since the cache is shared, the time last set applies to all of
+	 * them.
+	 * 
+	 * @param maxAge
+	 *            the maximum time in milliseconds a data set is kept in cache,
+	 *            no limit if not positive
+	 */
+	public static void setJVMLevelCacheTimeToLive( long maxAge )
+	{
+		synchronized ( JVMLevelCacheMap )
+		{
+			timeToLive = maxAge;
+		}
+	}
+	
+	/**
+	 * Remove from JVMLevelCacheMap the data sets which have expired, then the
+	 * least recently used ones until the cache size is within the limit. The
+	 * data sets being read and the one just saved are kept. This method must
+	 * be called with the lock of JVMLevelCacheMap.
+	 * 
+	 * @param saved
+	 *            the data set just saved
+	 * @return the removed data sets, which need to be released
+	 */
+	private List<IDataSetCacheObject> evict( IDataSetCacheObject saved )
+	{
+		long totalSize = 0;
+		for ( long[] info : JVMLevelCacheInfo.values( ) )
+		{
+			totalSize += info[1];
+		}
+		
+		List<IDataSetCacheObject> evicted = new ArrayList<IDataSetCacheObject>( );
+		// the iteration order of JVMLevelCacheMap is from the least recently
+		// used to the most recently used
+		Iterator it = cacheMap.entrySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry entry = (Map.Entry) it.next( );
+			IDataSetCacheObject cacheObject = (IDataSetCacheObject) entry.getValue( );
+			if ( cacheObject == saved
+					|| !JVMLevelCacheInfo.containsKey( cacheObject )
+					|| lockedDataSetCacheMap.containsKey( entry.getKey( ) ) )
+				continue;
+			if ( isExpired( cacheObject )
+					|| ( maxCacheSize > 0 && totalSize > maxCacheSize ) )
+			{
+				totalSize -= JVMLevelCacheInfo.remove( cacheObject )[1];
+				tempDataSetCacheMap.remove( entry.getKey( ) );
+				it.remove( );
+				evicted.add( cacheObject );
+			}
+		}
+		return evicted;
+	}
+	
+	/**
+	 * @param cacheObject
+	 * @return whether the data set has been kept in JVMLevelCacheMap for
+	 *         longer than the time to live
+	 */
+	private static boolean isExpired( IDataSetCacheObject cacheObject )
+	{
+		synchronized ( JVMLevelCacheMap )
+		{
+			long[] info = JVMLevelCacheInfo.get( cacheObject );
+			return info != null
+					&& timeToLive > 0
+					&& System.currentTimeMillis( ) - info[0] > timeToLive;
+		}
+	}
+	
+	/**
+	 * @param cacheObject
+	 */
+	private static void removeCacheInfo( IDataSetCacheObject cacheObject )
+	{
+		synchronized ( JVMLevelCacheMap )
+		{
+			JVMLevelCacheInfo.remove( cacheObject );
+		}
+	}
+	
+	/**
+	 * Estimate the size in bytes of a cached data set. Only the data sets in
+	 * memory or in disk files are counted and can be evicted for size, since
+	 * incremental caches are updated in place.
+	 * 
+	 * @param cacheObject
+	 * @return
+	 */
+	private static long getCacheSize( IDataSetCacheObject cacheObject )
+	{
+		if ( cacheObject instanceof DiskDataSetCacheObject )
+		{
+			File dataFile = ( (DiskDataSetCacheObject) cacheObject ).getDataFile( );
+			File metaFile = ( (DiskDataSetCacheObject) cacheObject ).getMetaFile( );
+			return dataFile.length( ) + metaFile.length( );
+		}
+		if ( cacheObject instanceof MemoryDataSetCacheObject )
+		{
+			MemoryDataSetCacheObject memoryObject = (MemoryDataSetCacheObject) cacheObject;
+			if ( memoryObject.getResultClass( ) == null )
+				return 0;
+			try
+			{
+				long size = 0;
+				SizeOfUtil sizeOfUtil = new SizeOfUtil( memoryObject.getResultClass( ) );
+				for ( int i = 0; i < memoryObject.getSize( ); i++ )
+				{
+					size += sizeOfUtil.sizeOf( memoryObject.getResultObject( i ) );
+				}
+				return size;
+			}
+			catch ( DataException e )
+			{
+				return 0;
+			}
+		}
+		return 0;
+	}
+	
 	/**
 	 */
 	void loadStart( DataSourceAndDataSet dsAndDs ) throws DataException
@@ -238,6 +507,8 @@ public class CacheMapManager
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
+			if ( useJVMLevelCache )
+				removeCacheInfo( cacheObject );
 			cacheObject.release( );
 		}
 
@@ -253,6 +524,14 @@ public class CacheMapManager
 			cacheMap.clear( );
 			tempDataSetCacheMap.clear( );
 		}
+		if ( useJVMLevelCache )
+		{
+			synchronized ( JVMLevelCacheMap )
+			{
+				JVMLevelCacheInfo.clear( );
+			}
+			finishLoading( null );
+		}
 	}
 	
 	/**
@@ -332,7 +611,10 @@ public class CacheMapManager
 				}
 				IDataSetCacheObject cacheObj = (IDataSetCacheObject) JVMLevelCacheMap.remove( dsAndDs );
 				if( cacheObj != null )
+				{
+					removeCacheInfo( cacheObj );
 					removed.add( cacheObj );
+				}
 				
 			}
 		}
@@ -357,8 +639,11 @@ public class CacheMapManager
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
+			if ( useJVMLevelCache )
+				removeCacheInfo( cacheObject );
 			cacheObject.release( );
 		}
+		finishLoading( null );
 	}
 }
 /**
@@ -90,6 +90,7 @@ public class DataSetCacheManager
 				try
 				{
 					dteLevelCacheMapManager.clearCache( );
+					jvmLevelCacheMapManager.finishLoading( null );
 				}
 				catch ( Exception e )
 				{
@@ -155,6 +156,7 @@ public class DataSetCacheManager
 		this.appContext = appContext;
 		this.cacheID = CacheIDFetcher.getInstance( ).getCacheID( appContext );
 		this.enableSamplePreview =  CacheIDFetcher.getInstance( ).enableSampleDataPreivew( appContext );
+		DataSetCacheUtil.applyJVMDataSetCacheLimits( appContext );
 	}
 
 	/**
@@ -377,6 +379,29 @@ public class DataSetCacheManager
 		return cached;
 	}
 
+	/**
+	 * @return the key of the current data source and data set in cache
+	 */
+	public DataSourceAndDataSet getCurrentDataSourceAndDataSet( )
+	{
+		return DataSourceAndDataSet.newInstance( this.dataSourceDesign,
+				this.dataSetDesign,
+				this.parameterHints,
+				this.cacheID,
+				this.enableSamplePreview );
+	}
+	
+	/**
+	 * Record that a data set is no longer retrieved for the cache shared by
+	 * all data engines, whether it has been saved or its retrieval failed.
+	 * 
+	 * @param dsAndDs
+	 */
+	public void finishLoading( DataSourceAndDataSet dsAndDs )
+	{
+		jvmLevelCacheMapManager.finishLoading( dsAndDs );
+	}
+
 	/**
 	 * only for test
 	 * 
@@ -391,10 +416,16 @@ public class DataSetCacheManager
 			return false;
 		}
 		switchCacheMap( dataSetDesign );
-		return cacheMapManager.doesLoadFromCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
+		DataSourceAndDataSet dsAndDs = DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ),
-				dscc.getCacheCapability( ));
+				this.parameterHints, this.cacheID, this.enableSamplePreview );
+		boolean loaded = cacheMapManager.doesLoadFromCache( dsAndDs,
+				dscc.getCacheCapability( ) );
+		// no data set is retrieved after this check, so the others need not
+		// wait for it
+		if ( !loaded )
+			cacheMapManager.finishLoading( dsAndDs );
+		return loaded;
 	}
 
 	/**
@@ -164,6 +164,16 @@ class DataSource implements IDataSource
     {
         return driverName;
     }
+    
+    /**
+     * Returns the properties the connections are opened with.
+     * 
+     * @return
+     */
+    Properties getConnectionProperties( )
+    {
+        return connectionProps;
+    }
 
     /**
      * @see org.eclipse.birt.data.engine.odi.IDataSource#addProperty(java.lang.String, java.lang.String)
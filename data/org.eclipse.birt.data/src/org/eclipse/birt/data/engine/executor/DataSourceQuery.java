@@ -33,6 +33,7 @@ import org.eclipse.birt.data.engine.api.IQueryDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.DataSource.CacheConnection;
 import org.eclipse.birt.data.engine.executor.QueryExecutionStrategyUtil.Strategy;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.executor.dscache.DataSetToCache;
 import org.eclipse.birt.data.engine.executor.transform.CachedResultSet;
 import org.eclipse.birt.data.engine.executor.transform.SimpleResultSet;
@@ -611,6 +612,18 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
     
     private Object getParameterInputValue( ParameterHint parameterHint )
         throws DataException
+    {
+        return getParameterInputValue( parameterHint,
+                dataSource.getDriverName( ),
+                queryType );
+    }
+    
+    /**
+     * Returns the value of an input parameter hint, converted to the data type
+     * of the parameter.
+     */
+    static Object getParameterInputValue( ParameterHint parameterHint,
+            String driverName, String queryType ) throws DataException
     {
         assert parameterHint.isInputMode( );
         Class paramHintDataType = parameterHint.getDataType();
@@ -619,7 +632,7 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
         // use the type of Date that is most effective for data conversion
         if( paramHintDataType == Date.class )
             paramHintDataType = parameterHint.getEffectiveDataType( 
-                                    dataSource.getDriverName(), queryType );
+                                    driverName, queryType );
         
         Object inputValue = parameterHint.getDefaultInputValue( );
         if ( inputValue != null )
@@ -976,6 +989,7 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
     	
     	if( !session.getStopSign().isStopped())
     	{    
+    		takeExecutedStatement( design );
 			long startTime = System.currentTimeMillis( );
     		odaStatement.execute( );
 			long endTime = System.currentTimeMillis( );
@@ -1030,6 +1044,20 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 			rs = odaStatement.getResultSet( );
 		}
 		
+		if ( rs != null )
+		{
+			int prefetchBlocks = CacheUtil.getOdaPrefetchBlocks( eventHandler == null
+					? null : eventHandler.getAppContext( ) );
+			if ( prefetchBlocks > 0 )
+			{
+				rs.setPrefetch( prefetchBlocks, CacheUtil.getExecutorService( ) );
+				this.session.getCancelManager( )
+						.register( new OdaPrefetchCanceller( rs,
+								session.getStopSign( ),
+								this.session.getCancelManager( ) ) );
+			}
+		}
+		
 		// If we did not get a result set metadata at prepare() time, get it now
 		if ( resultMetadata == null )
 		{
@@ -1158,7 +1186,52 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 			return this.stop.isStopped( );
 		}
     }
-    
+
+	/**
+	 * Stops reading ahead the rows of an ODA result set when the data engine
+	 * is stopped, so that the thread fetching them is not left waiting.
+	 */
+	private static class OdaPrefetchCanceller implements ICancellable
+	{
+		private ResultSet resultSet;
+		private StopSign stop;
+		private CancelManager manager;
+
+		OdaPrefetchCanceller( ResultSet resultSet, StopSign stop,
+				CancelManager manager )
+		{
+			this.resultSet = resultSet;
+			this.stop = stop;
+			this.manager = manager;
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.impl.ICancellable#cancel()
+		 */
+		public void cancel( )
+		{
+			if ( manager != null )
+				manager.deregister( this );
+			this.resultSet.cancelPrefetch( );
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.impl.ICancellable#doCancel()
+		 */
+		public boolean doCancel( )
+		{
+			return this.stop.isStopped( );
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.impl.ICancellable#collectException()
+		 */
+		public DataException collectException( )
+		{
+			return null;
+		}
+	}
+
     /**
      *  set input parameter bindings
      */
@@ -1171,33 +1244,66 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 		while ( inputParamValueslist.hasNext( ) )
 		{
 			ParameterBinding paramBind = (ParameterBinding) inputParamValueslist.next( );
-			if ( paramBind.getPosition( ) <= 0 || odaStatement.supportsNamedParameter( ))
+			setParameterValue( odaStatement, paramBind );
+		}
+    }
+    
+	/**
+	 * Sets the value of an input parameter binding on a statement, by name if
+	 * it can, else by position.
+	 */
+	static void setParameterValue( PreparedStatement statement,
+			ParameterBinding paramBind ) throws DataException
+	{
+		if ( paramBind.getPosition( ) <= 0 || statement.supportsNamedParameter( ))
+		{
+			try
 			{
-				try
+				statement.setParameterValue( paramBind.getName( ),
+						paramBind.getValue( ) );
+			}
+			catch ( DataException e )
+			{
+				if ( paramBind.getPosition( ) <= 0 )
 				{
-					odaStatement.setParameterValue( paramBind.getName( ),
-							paramBind.getValue( ) );
+					throw e;
 				}
-				catch ( DataException e )
+				else
 				{
-					if ( paramBind.getPosition( ) <= 0 )
-					{
-						throw e;
-					}
-					else
-					{
-						odaStatement.setParameterValue( paramBind.getPosition( ),
-								paramBind.getValue( ) );
-					}
+					statement.setParameterValue( paramBind.getPosition( ),
+							paramBind.getValue( ) );
 				}
 			}
-			else
-			{
-				odaStatement.setParameterValue( paramBind.getPosition( ),
-						paramBind.getValue() );
-			}
 		}
-    }
+		else
+		{
+			statement.setParameterValue( paramBind.getPosition( ),
+					paramBind.getValue() );
+		}
+	}
+    
+	/**
+	 * Hands the statement of the data set executed ahead by the query
+	 * prefetcher of the session over to the ODA statement, if the two
+	 * statements execute the same query.
+	 * 
+	 * @param design
+	 * @throws DataException
+	 */
+	private void takeExecutedStatement( IOdaDataSetDesign design )
+			throws DataException
+	{
+		QueryPrefetcher prefetcher = session.getQueryPrefetcher( );
+		if ( prefetcher == null || design == null )
+			return;
+
+		PreparedStatement executedStatement = prefetcher.take( design.getName( ),
+				dataSource.getDriverName( ),
+				dataSource.getConnectionProperties( ),
+				odaStatement );
+		if ( executedStatement != null )
+			odaStatement.setExecutedStatement( executedStatement );
+	}
     
 	/*
 	 * @see org.eclipse.birt.data.engine.odi.IPreparedDSQuery#getParameterValue(int)
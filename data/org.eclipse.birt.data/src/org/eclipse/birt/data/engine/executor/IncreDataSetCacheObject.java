@@ -12,7 +12,6 @@
 package org.eclipse.birt.data.engine.executor;
 
 import java.io.File;
-import java.security.NoSuchAlgorithmException;
 
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
 import org.eclipse.birt.data.engine.impl.DataSetCacheUtil;
@@ -27,17 +26,23 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 	public static final String TIMESTAMP_DATA = "timestamp.data";
 	public static final String META_DATA = "meta.data";
 	public static final String DATA_DATA = "data.data";
+	public static final String DELTA_DATA = "delta.data";
 	private static final char PATH_SEP = File.separatorChar;
 	private String cacheDir;
+	
+	// whether the cached rows are kept when the cache is released, so that
+	// the next cache of the data set only merges the changed rows into them
+	private boolean keptOnRelease;
 
 	/**
 	 * 
 	 * @param cacheDir
-	 * @throws NoSuchAlgorithmException
+	 *            the directory of the data set, which is kept between the
+	 *            caches of the data set
 	 */
 	public IncreDataSetCacheObject( String cacheDir )
 	{
-		this.cacheDir = cacheDir + PATH_SEP + "DataSetCacheObject_" + this.hashCode( ) ;
+		this.cacheDir = cacheDir;
 		FileSecurity.fileMakeDirs( new File( this.cacheDir ));
 	}
 
@@ -77,6 +82,28 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 		return new File( cacheDir + PATH_SEP + TIMESTAMP_DATA );
 	}
 
+	/**
+	 * 
+	 * @return the file the changed rows are saved into before they are
+	 *         merged into the data file
+	 */
+	public File getDeltaFile( )
+	{
+		return new File( cacheDir + PATH_SEP + DELTA_DATA );
+	}
+
+	/**
+	 * Keeps the cached rows when the cache is released. The rows are merged
+	 * by key, so the rows fetched again by the next cache replace them rather
+	 * than being appended to them.
+	 * 
+	 * @param keptOnRelease
+	 */
+	public void setKeptOnRelease( boolean keptOnRelease )
+	{
+		this.keptOnRelease = keptOnRelease;
+	}
+
 	public boolean isCachedDataReusable( int requiredMaxRowCount )
 	{
 		return true;
@@ -89,7 +116,8 @@ public class IncreDataSetCacheObject implements IDataSetCacheObject
 
 	public void release( )
 	{
-		DataSetCacheUtil.deleteFile( cacheDir );
+		if ( !keptOnRelease )
+			DataSetCacheUtil.deleteFile( cacheDir );
 	}
 
 	public IResultClass getResultClass( )
@@ -0,0 +1,562 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.IOdaDataSourceDesign;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.PropertySecurity;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
+import org.eclipse.birt.data.engine.odaconsumer.Connection;
+import org.eclipse.birt.data.engine.odaconsumer.ConnectionManager;
+import org.eclipse.birt.data.engine.odaconsumer.ParameterHint;
+import org.eclipse.birt.data.engine.odaconsumer.PreparedStatement;
+import org.eclipse.birt.data.engine.odaconsumer.QuerySpecHelper;
+import org.eclipse.datatools.connectivity.oda.spec.QuerySpecification;
+
+/**
+ * Executes the ODA queries of data sets ahead on background threads, so that
+ * the queries of a report which do not depend on each other run concurrently.
+ * A query is executed on a connection of its own, and its statement is kept
+ * until the data set is executed, which then takes the result set of the
+ * statement instead of executing its query again. The statement is only
+ * handed over if it executed the same query as the statement of the data set,
+ * with the same connection properties, statement properties and parameter
+ * values; otherwise the data set executes its query as usual.
+ * <p>
+ * At most the given number of queries are executed at a time, and at most the
+ * given number of connections of a data source are held by the statements
+ * which are not handed over yet.
+ */
+public class QueryPrefetcher
+{
+	private Semaphore threads;
+	private int connectionCount;
+
+	// the connections still allowed for each driver name and connection
+	// properties
+	private Map<List<Object>, Semaphore> connections = new HashMap<List<Object>, Semaphore>( );
+
+	// the queries executed ahead, by data set name
+	private Map<String, Prefetch> prefetches = new LinkedHashMap<String, Prefetch>( );
+
+	private boolean closed;
+
+	private static Logger logger = Logger.getLogger( QueryPrefetcher.class.getName( ) );
+
+	/**
+	 *
+	 * @param threadCount
+	 *            the number of queries executed at a time
+	 * @param connectionCount
+	 *            the number of connections of a data source held at a time
+	 */
+	public QueryPrefetcher( int threadCount, int connectionCount )
+	{
+		assert threadCount > 0 && connectionCount > 0;
+		this.threads = new Semaphore( threadCount );
+		this.connectionCount = connectionCount;
+	}
+
+	/**
+	 * Starts executing the query of an ODA data set ahead, unless it has been
+	 * started before.
+	 *
+	 * @param dataSet
+	 * @param dataSource
+	 * @param parameterHints
+	 *            the hints of the data set parameters, with their values
+	 * @param appContext
+	 */
+	public synchronized void prefetch( IOdaDataSetDesign dataSet,
+			IOdaDataSourceDesign dataSource, Collection parameterHints,
+			Map appContext )
+	{
+		if ( closed || prefetches.containsKey( dataSet.getName( ) ) )
+			return;
+
+		Prefetch prefetch = new Prefetch( dataSet,
+				dataSource,
+				parameterHints,
+				appContext );
+		prefetches.put( dataSet.getName( ), prefetch );
+		prefetch.start( );
+	}
+
+	/**
+	 * Takes the statement executed ahead for a data set, waiting for its
+	 * execution to finish. A statement whose execution has not started yet is
+	 * dropped, as is a statement which does not execute the same query as the
+	 * given one.
+	 *
+	 * @param dataSetName
+	 * @param driverName
+	 * @param connectionProperties
+	 * @param statement
+	 *            the prepared statement of the data set
+	 * @return the executed statement, whose result set can be taken by the
+	 *         given statement; null if there is none.
+	 */
+	PreparedStatement take( String dataSetName, String driverName,
+			Properties connectionProperties, PreparedStatement statement )
+	{
+		Prefetch prefetch;
+		synchronized ( this )
+		{
+			prefetch = prefetches.get( dataSetName );
+			if ( prefetch == null )
+				return null;
+			// the data set may be executed again; it then executes its query
+			prefetches.put( dataSetName, null );
+		}
+		return prefetch.take( driverName, connectionProperties, statement );
+	}
+
+	/**
+	 * Closes the statements which have not been taken, and stops the
+	 * execution of the queries not executed yet.
+	 */
+	public void close( )
+	{
+		List<Prefetch> list;
+		synchronized ( this )
+		{
+			closed = true;
+			list = new ArrayList<Prefetch>( prefetches.values( ) );
+			prefetches.clear( );
+		}
+		for ( Prefetch prefetch : list )
+		{
+			if ( prefetch != null )
+				prefetch.close( );
+		}
+	}
+
+	/**
+	 * Returns the connections still allowed for a driver name and connection
+	 * properties.
+	 */
+	private synchronized Semaphore getConnections( String driverName,
+			Properties connectionProperties )
+	{
+		List<Object> key = Arrays.asList( new Object[]{
+				driverName, connectionProperties
+		} );
+		Semaphore semaphore = connections.get( key );
+		if ( semaphore == null )
+		{
+			semaphore = new Semaphore( connectionCount );
+			connections.put( key, semaphore );
+		}
+		return semaphore;
+	}
+
+	/**
+	 * The execution of the query of a data set on a background thread.
+	 */
+	private class Prefetch implements Callable<Object>
+	{
+
+		private String driverName;
+		private Properties connectionProperties;
+		private Map appContext;
+		private String queryType;
+		private String queryText;
+		private Map<String, String> properties;
+		private Collection parameterHints;
+		private int rowFetchLimit;
+
+		private Semaphore connectionPermits;
+		private ClassLoader contextClassLoader;
+		private Future<Object> future;
+
+		// the state, guarded by this
+		private boolean started;
+		private boolean closed;
+		private boolean holdsConnection;
+		private Connection connection;
+		private PreparedStatement statement;
+		private boolean executed;
+
+		Prefetch( IOdaDataSetDesign dataSet, IOdaDataSourceDesign dataSource,
+				Collection parameterHints, Map appContext )
+		{
+			this.driverName = dataSource.getExtensionID( );
+			// the private properties override the public ones, as when the
+			// data source is opened
+			this.connectionProperties = PropertySecurity.createProperties( );
+			if ( dataSource.getPublicProperties( ) != null )
+				this.connectionProperties.putAll( dataSource.getPublicProperties( ) );
+			if ( dataSource.getPrivateProperties( ) != null )
+				this.connectionProperties.putAll( dataSource.getPrivateProperties( ) );
+			this.appContext = appContext;
+			this.queryType = dataSet.getExtensionID( );
+			this.queryText = dataSet.getQueryText( );
+			this.properties = new LinkedHashMap<String, String>( );
+			addProperties( dataSet.getPublicProperties( ) );
+			addProperties( dataSet.getPrivateProperties( ) );
+			this.parameterHints = parameterHints;
+			this.rowFetchLimit = dataSet.getRowFetchLimit( ) > 0
+					? dataSet.getRowFetchLimit( ) : 0;
+			this.connectionPermits = getConnections( driverName,
+					connectionProperties );
+			this.contextClassLoader = Thread.currentThread( )
+					.getContextClassLoader( );
+		}
+
+		private void addProperties( Map props )
+		{
+			if ( props == null )
+				return;
+			Iterator it = props.entrySet( ).iterator( );
+			while ( it.hasNext( ) )
+			{
+				Map.Entry entry = (Map.Entry) it.next( );
+				String name = (String) entry.getKey( );
+				if ( name == null || name.length( ) == 0 )
+					continue;
+				properties.put( name, (String) entry.getValue( ) );
+			}
+		}
+
+		void start( )
+		{
+			future = CacheUtil.getExecutorService( ).submit( this );
+		}
+
+		/*
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call( ) throws Exception
+		{
+			connectionPermits.acquire( );
+			try
+			{
+				threads.acquire( );
+			}
+			catch ( InterruptedException e )
+			{
+				connectionPermits.release( );
+				throw e;
+			}
+
+			Thread thread = Thread.currentThread( );
+			ClassLoader classLoader = thread.getContextClassLoader( );
+			thread.setContextClassLoader( contextClassLoader );
+			try
+			{
+				synchronized ( this )
+				{
+					if ( closed )
+					{
+						connectionPermits.release( );
+						return null;
+					}
+					started = true;
+					holdsConnection = true;
+				}
+				execute( );
+			}
+			catch ( DataException e )
+			{
+				logger.log( Level.FINE, "The query executed ahead failed", e ); //$NON-NLS-1$
+				release( );
+			}
+			catch ( RuntimeException e )
+			{
+				logger.log( Level.FINE, "The query executed ahead failed", e ); //$NON-NLS-1$
+				release( );
+			}
+			finally
+			{
+				thread.setContextClassLoader( classLoader );
+				threads.release( );
+			}
+			return null;
+		}
+
+		/**
+		 * Opens a connection, prepares the statement in the way the data set
+		 * query prepares it, and executes it.
+		 */
+		@SuppressWarnings("restriction")
+		private void execute( ) throws DataException
+		{
+			Connection openConnection = ConnectionManager.getInstance( )
+					.openConnection( driverName,
+							connectionProperties,
+							appContext );
+			PreparedStatement preparedStatement = null;
+			try
+			{
+				QuerySpecification querySpec = new QuerySpecHelper( driverName,
+						queryType ).getFactoryHelper( )
+						.createQuerySpecification( );
+				for ( Entry<String, String> property : properties.entrySet( ) )
+				{
+					querySpec.setProperty( property.getKey( ),
+							property.getValue( ) );
+				}
+				List<ParameterBinding> bindings = new ArrayList<ParameterBinding>( );
+				if ( parameterHints != null )
+				{
+					Iterator it = parameterHints.iterator( );
+					while ( it.hasNext( ) )
+					{
+						ParameterHint parameterHint = (ParameterHint) it.next( );
+						if ( parameterHint.isInputMode( ) )
+						{
+							Object inputValue = DataSourceQuery.getParameterInputValue( parameterHint,
+									driverName,
+									queryType );
+							QuerySpecHelper.setParameterValue( querySpec,
+									parameterHint,
+									inputValue );
+							bindings.add( new ParameterBinding( parameterHint.getName( ),
+									parameterHint.getPosition( ),
+									inputValue ) );
+						}
+					}
+				}
+
+				preparedStatement = openConnection.prepareStatement( queryText,
+						queryType,
+						querySpec );
+				synchronized ( this )
+				{
+					connection = openConnection;
+					statement = preparedStatement;
+				}
+				for ( Entry<String, Object> property : querySpec.getProperties( )
+						.entrySet( ) )
+				{
+					preparedStatement.setProperty( property.getKey( ),
+							property.getValue( ) == null ? null
+									: property.getValue( ).toString( ) );
+				}
+				if ( parameterHints != null )
+				{
+					Iterator it = parameterHints.iterator( );
+					while ( it.hasNext( ) )
+					{
+						preparedStatement.addParameterHint( (ParameterHint) it.next( ) );
+					}
+				}
+				for ( ParameterBinding binding : bindings )
+				{
+					if ( binding.getPosition( ) <= 0
+							|| preparedStatement.supportsNamedParameter( ) )
+						DataSourceQuery.setParameterValue( preparedStatement,
+								binding );
+					else
+						DataSourceQuery.setParameterValue( preparedStatement,
+								new ParameterBinding( binding.getPosition( ),
+										binding.getValue( ) ) );
+				}
+				preparedStatement.setMaxRows( rowFetchLimit );
+
+				// the result set of an advanced query is not handed over
+				if ( preparedStatement.getExecutionKey( ) != null )
+				{
+					preparedStatement.execute( );
+					synchronized ( this )
+					{
+						if ( !closed )
+						{
+							executed = true;
+							return;
+						}
+					}
+				}
+			}
+			catch ( DataException e )
+			{
+				closeQuietly( preparedStatement, openConnection );
+				throw e;
+			}
+			catch ( RuntimeException e )
+			{
+				closeQuietly( preparedStatement, openConnection );
+				throw e;
+			}
+			closeQuietly( preparedStatement, openConnection );
+			release( );
+		}
+
+		/**
+		 * Releases the connection held.
+		 */
+		private void release( )
+		{
+			synchronized ( this )
+			{
+				if ( !holdsConnection )
+					return;
+				holdsConnection = false;
+				connection = null;
+				statement = null;
+			}
+			connectionPermits.release( );
+		}
+
+		/**
+		 * Takes the executed statement if it executes the same query as the
+		 * given statement.
+		 */
+		PreparedStatement take( String driverName,
+				Properties connectionProperties, PreparedStatement statement )
+		{
+			synchronized ( this )
+			{
+				if ( !started )
+				{
+					// it would wait for connections which may only be
+					// released by the data sets executed after this one
+					close( );
+					return null;
+				}
+			}
+
+			boolean interrupted = false;
+			while ( true )
+			{
+				try
+				{
+					future.get( );
+					break;
+				}
+				catch ( InterruptedException e )
+				{
+					// the statement must not be used while it executes
+					interrupted = true;
+				}
+				catch ( ExecutionException e )
+				{
+					break;
+				}
+			}
+			if ( interrupted )
+				Thread.currentThread( ).interrupt( );
+
+			PreparedStatement executedStatement;
+			synchronized ( this )
+			{
+				if ( !executed || closed )
+					return null;
+				executedStatement = this.statement;
+			}
+			Object key = statement.getExecutionKey( );
+			if ( this.driverName.equals( driverName )
+					&& this.connectionProperties.equals( connectionProperties )
+					&& key != null
+					&& key.equals( executedStatement.getExecutionKey( ) ) )
+			{
+				// the connection is closed with the statement of the data set
+				release( );
+				return executedStatement;
+			}
+			logger.fine( "The query executed ahead is not the query of the data set" ); //$NON-NLS-1$
+			close( );
+			return null;
+		}
+
+		/**
+		 * Closes the executed statement, or stops the execution.
+		 */
+		void close( )
+		{
+			PreparedStatement executingStatement = null;
+			PreparedStatement executedStatement = null;
+			Connection executedConnection = null;
+			synchronized ( this )
+			{
+				if ( closed )
+					return;
+				closed = true;
+				if ( !started )
+				{
+					future.cancel( true );
+					return;
+				}
+				if ( executed )
+				{
+					executedStatement = this.statement;
+					executedConnection = this.connection;
+				}
+				else
+				{
+					executingStatement = this.statement;
+				}
+			}
+			if ( executedStatement != null )
+			{
+				closeQuietly( executedStatement, executedConnection );
+				release( );
+			}
+			else if ( executingStatement != null )
+			{
+				// the execution closes the statement once it stops
+				try
+				{
+					executingStatement.cancel( );
+				}
+				catch ( DataException e )
+				{
+					logger.log( Level.FINE, e.getMessage( ), e );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes a statement and its connection, ignoring their errors.
+	 */
+	private static void closeQuietly( PreparedStatement statement,
+			Connection connection )
+	{
+		try
+		{
+			if ( statement != null )
+				statement.close( );
+		}
+		catch ( DataException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+		try
+		{
+			if ( connection != null )
+				connection.close( );
+		}
+		catch ( DataException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+	}
+}
@@ -19,7 +19,14 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.core.DataException;
@@ -56,6 +63,11 @@ public class CacheUtil
 	private static IntegerHolder cacheCounter1 = new IntegerHolder( 0 );
 	private static IntegerHolder cacheCounter2 = new IntegerHolder( 0 );
 	
+	/**
+	 * the threads shared by the parallel operations on cached rows
+	 */
+	private static ExecutorService executor;
+	
 	private CacheUtil( )
 	{
 	}
@@ -114,6 +126,224 @@ public class CacheUtil
 		}
 	}
 
+	/**
+	 * Return the number of threads used to process the rows of a result set.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getParallelRowProcessingThreads( Map appContext )
+	{
+		return getThreadCount( appContext,
+				DataEngine.PARALLEL_ROW_PROCESSING_THREADS );
+	}
+
+	/**
+	 * Return the number of threads used to sort the rows of a result set
+	 * which are exported to disk.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getParallelSortThreads( Map appContext )
+	{
+		return getThreadCount( appContext, DataEngine.PARALLEL_SORT_THREADS );
+	}
+
+	/**
+	 * Return the number of threads used to group the rows of a summary query
+	 * by hashing, 0 if the rows are sorted.
+	 *
+	 * @param appContext
+	 * @return
+	 */
+	public static int getHashGroupingThreads( Map appContext )
+	{
+		return getThreadCount( appContext, DataEngine.HASH_GROUPING_THREADS );
+	}
+
+	/**
+	 * Return the number of blocks of rows read ahead from an ODA result set,
+	 * 0 if the rows are not read ahead.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getOdaPrefetchBlocks( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object blocks = appContext.get( DataEngine.ODA_PREFETCH_BLOCKS );
+		if ( blocks == null )
+			return 0;
+		try
+		{
+			return Math.max( 0, Integer.parseInt( blocks.toString( ).trim( ) ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Return the number of threads executing the ODA queries of a report
+	 * ahead, 0 if the queries are not executed ahead.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getConcurrentDataSetThreads( Map appContext )
+	{
+		return getThreadCount( appContext,
+				DataEngine.CONCURRENT_DATA_SET_THREADS );
+	}
+
+	/**
+	 * Return the number of connections of a data source held by the ODA
+	 * queries executed ahead.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getConcurrentDataSetConnections( Map appContext )
+	{
+		if ( appContext == null )
+			return 1;
+		Object connections = appContext.get( DataEngine.CONCURRENT_DATA_SET_CONNECTIONS );
+		if ( connections == null )
+			return 1;
+		try
+		{
+			return Math.max( 1, Integer.parseInt( connections.toString( ).trim( ) ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return 1;
+		}
+	}
+
+	/**
+	 * 
+	 * @param appContext
+	 * @param key
+	 * @return
+	 */
+	private static int getThreadCount( Map appContext, String key )
+	{
+		if ( appContext == null )
+			return 0;
+		Object threads = appContext.get( key );
+		if ( threads == null )
+			return 0;
+		if ( "true".equalsIgnoreCase( threads.toString( ).trim( ) ) )
+			return Runtime.getRuntime( ).availableProcessors( );
+		try
+		{
+			return Integer.parseInt( threads.toString( ).trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Return the threads shared by the operations which process cached rows
+	 * in parallel.
+	 * 
+	 * @return
+	 */
+	public static synchronized ExecutorService getExecutorService( )
+	{
+		if ( executor == null )
+		{
+			executor = Executors.newCachedThreadPool( new ThreadFactory( ) {
+
+				private AtomicInteger count = new AtomicInteger( );
+
+				public Thread newThread( Runnable r )
+				{
+					Thread thread = new Thread( r, "BIRT Data Worker-"
+							+ count.incrementAndGet( ) );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		}
+		return executor;
+	}
+
+	/**
+	 * Wait until all the given tasks are done. The tasks usually share data
+	 * with the calling thread, so they are waited for even if the calling
+	 * thread is interrupted. The exception thrown by a task is thrown again.
+	 * 
+	 * @param futures
+	 */
+	public static void waitFor( List<Future<Object>> futures )
+	{
+		boolean interrupted = false;
+		for ( int i = 0; i < futures.size( ); i++ )
+		{
+			while ( true )
+			{
+				try
+				{
+					futures.get( i ).get( );
+					break;
+				}
+				catch ( InterruptedException e )
+				{
+					// the data is shared with the worker threads, so they
+					// have to be waited for anyway
+					interrupted = true;
+				}
+				catch ( ExecutionException e )
+				{
+					if ( e.getCause( ) instanceof RuntimeException )
+						throw (RuntimeException) e.getCause( );
+					if ( e.getCause( ) instanceof Error )
+						throw (Error) e.getCause( );
+					throw new RuntimeException( e.getCause( ) );
+				}
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread( ).interrupt( );
+	}
+
+	/**
+	 * Return whether the rows of a result set kept in memory are stored column
+	 * by column.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static boolean isColumnarMemoryCache( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object columnar = appContext.get( DataEngine.COLUMNAR_MEMORY_CACHE );
+		return columnar != null
+				&& "true".equalsIgnoreCase( columnar.toString( ).trim( ) );
+	}
+
+	/**
+	 * Return whether the temporary files of the disk cache are compressed.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static boolean isDiskCacheCompression( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object compression = appContext.get( DataEngine.DISK_CACHE_COMPRESSION );
+		return compression != null
+				&& "true".equalsIgnoreCase( compression.toString( ).trim( ) );
+	}
+
 	/**
 	 * 
 	 * @param propValue
@@ -265,9 +495,25 @@ public class CacheUtil
 	 */
 	public static String createIncrementalTempDir( DataEngineSession session, 
 			IIncreCacheDataSetDesign dataSetDesign) throws DataException
+	{
+		return createIncrementalTempDir( session.getEngineContext( ).getTmpdir( ),
+				dataSetDesign );
+	}
+
+	/**
+	 * The directory is the same for all the sessions, so that the cache of a
+	 * data set is only updated with the rows changed since it was last saved.
+	 * 
+	 * @param tempDir
+	 * @param dataSetDesign
+	 * @return
+	 * @throws DataException
+	 */
+	public static String createIncrementalTempDir( String tempDir,
+			IIncreCacheDataSetDesign dataSetDesign ) throws DataException
 	{
 		final String prefix = PS_;
-		File cacheDir = new File( session.getTempDir( )
+		File cacheDir = new File( tempDir
 				+ PATH_SEP + prefix + PATH_SEP
 				+ Md5Util.getMD5( dataSetDesign.getConfigFileUrl( ).toString( ) ) + PATH_SEP + dataSetDesign.getName( ) );
 		if ( FileSecurity.fileExist( cacheDir ) == false )
@@ -401,13 +647,24 @@ public class CacheUtil
 	 */
 	public static void saveCurrentTimestamp( String folder )
 			throws DataException
+	{
+		saveTimestamp( folder, Calendar.getInstance( ).getTimeInMillis( ) );
+	}
+
+	/**
+	 * To save a timestamp in incremental cache.
+	 * 
+	 * @param folder
+	 * @param timestamp
+	 */
+	public static void saveTimestamp( String folder, long timestamp )
+			throws DataException
 	{
 		try
 		{
 			RandomAccessFile raf = FileSecurity.createRandomAccessFile( folder
 					+ PATH_SEP + IncreDataSetCacheObject.TIMESTAMP_DATA, "rw" );
-			Calendar calendar = Calendar.getInstance( );
-			raf.writeLong( calendar.getTimeInMillis( ) );
+			raf.writeLong( timestamp );
 			raf.close( );
 		}
 		catch ( Exception e )
@@ -0,0 +1,565 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one column of a columnar memory cache. The values of the
+ * common classes are kept in primitive arrays, and strings are dictionary
+ * encoded. A vector is filled by add, which returns the vector to be used from
+ * then on: when a value can not be held by the current vector, its values are
+ * moved to a vector of plain objects.
+ */
+abstract class ColumnVector
+{
+	//
+	private static final int INITIAL_CAPACITY = 64;
+
+	// the number of values
+	protected int size;
+
+	// the null values of the primitive vectors, one bit per value
+	protected long[] nulls;
+
+	/**
+	 * Create an empty vector for the values of a column.
+	 *
+	 * @param writable
+	 *            whether the values will be changed after they are added
+	 * @return
+	 */
+	static ColumnVector newInstance( boolean writable )
+	{
+		if ( writable )
+			return new ObjectVector( );
+		return new EmptyVector( );
+	}
+
+	/**
+	 * Add a value to the end of the vector.
+	 *
+	 * @param value
+	 * @return the vector which holds the value and all the values added before
+	 */
+	abstract ColumnVector add( Object value );
+
+	/**
+	 * Return the value at the given position.
+	 *
+	 * @param index
+	 * @return
+	 */
+	abstract Object get( int index );
+
+	/**
+	 * Return the estimated size of memory occupied by the values added so far.
+	 *
+	 * @return
+	 */
+	abstract long getMemorySize( );
+
+	/**
+	 * Release the memory which is only needed when values are added.
+	 */
+	void endAdd( )
+	{
+	}
+
+	/**
+	 * Return whether the values can be changed by set.
+	 *
+	 * @return
+	 */
+	boolean isWritable( )
+	{
+		return false;
+	}
+
+	/**
+	 * Change the value at the given position. Only supported by writable
+	 * vectors.
+	 *
+	 * @param index
+	 * @param value
+	 */
+	void set( int index, Object value )
+	{
+		throw new UnsupportedOperationException( );
+	}
+
+	/**
+	 * @return the number of values
+	 */
+	int size( )
+	{
+		return this.size;
+	}
+
+	/**
+	 * Return a writable vector holding the same values.
+	 *
+	 * @return
+	 */
+	ColumnVector toObjectVector( )
+	{
+		ObjectVector result = new ObjectVector( );
+		result.ensureCapacity( size );
+		for ( int i = 0; i < size; i++ )
+		{
+			Object value = get( i );
+			result.values[i] = value;
+			if ( value != null )
+				result.valuesSize += SizeOfUtil.sizeOf( value.getClass( ),
+						value );
+		}
+		result.size = size;
+		return result;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	protected boolean isNull( int index )
+	{
+		return ( nulls[index >> 6] & ( 1L << index ) ) != 0;
+	}
+
+	/**
+	 * Mark the value at the end of the vector as null.
+	 */
+	protected void setNull( )
+	{
+		nulls[size >> 6] |= 1L << size;
+	}
+
+	/**
+	 *
+	 * @param capacity
+	 */
+	protected void ensureNullCapacity( int capacity )
+	{
+		int length = ( capacity + 63 ) >> 6;
+		if ( nulls == null )
+		{
+			nulls = new long[length];
+		}
+		else if ( nulls.length < length )
+		{
+			long[] temp = new long[length];
+			System.arraycopy( nulls, 0, temp, 0, nulls.length );
+			nulls = temp;
+		}
+	}
+
+	/**
+	 *
+	 * @param capacity
+	 * @param minCapacity
+	 * @return
+	 */
+	protected static int newCapacity( int capacity, int minCapacity )
+	{
+		int result = capacity == 0 ? INITIAL_CAPACITY : capacity
+				+ ( capacity >> 1 );
+		return result < minCapacity ? minCapacity : result;
+	}
+
+	/**
+	 *
+	 * @param capacity
+	 * @param bytesPerValue
+	 * @return
+	 */
+	protected static long arraySize( int capacity, int bytesPerValue )
+	{
+		return SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD
+				+ (long) capacity * bytesPerValue;
+	}
+
+	/**
+	 * A vector in which no value other than null has been added. Its type is
+	 * decided by the first value which is not null.
+	 */
+	private static class EmptyVector extends ColumnVector
+	{
+
+		ColumnVector add( Object value )
+		{
+			if ( value == null )
+			{
+				size++;
+				return this;
+			}
+
+			ColumnVector result;
+			Class valueClass = value.getClass( );
+			if ( valueClass == Integer.class )
+				result = new IntVector( );
+			else if ( valueClass == Double.class )
+				result = new DoubleVector( );
+			else if ( valueClass == Date.class
+					|| valueClass == java.sql.Date.class
+					|| valueClass == Time.class )
+				result = new DateVector( valueClass );
+			else if ( valueClass == Boolean.class )
+				result = new BooleanVector( );
+			else if ( valueClass == String.class )
+				result = new StringVector( );
+			else
+				result = new ObjectVector( );
+
+			for ( int i = 0; i < size; i++ )
+			{
+				result = result.add( null );
+			}
+			return result.add( value );
+		}
+
+		Object get( int index )
+		{
+			return null;
+		}
+
+		long getMemorySize( )
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * A vector of Integer values.
+	 */
+	private static class IntVector extends ColumnVector
+	{
+
+		private int[] values = new int[0];
+
+		ColumnVector add( Object value )
+		{
+			if ( value != null && value.getClass( ) != Integer.class )
+				return toObjectVector( ).add( value );
+			if ( size == values.length )
+			{
+				int[] temp = new int[newCapacity( values.length, size + 1 )];
+				System.arraycopy( values, 0, temp, 0, size );
+				values = temp;
+				ensureNullCapacity( temp.length );
+			}
+			if ( value == null )
+				setNull( );
+			else
+				values[size] = ( (Integer) value ).intValue( );
+			size++;
+			return this;
+		}
+
+		Object get( int index )
+		{
+			if ( isNull( index ) )
+				return null;
+			return Integer.valueOf( values[index] );
+		}
+
+		long getMemorySize( )
+		{
+			return arraySize( values.length, 4 ) + arraySize( nulls == null
+					? 0 : nulls.length, 8 );
+		}
+	}
+
+	/**
+	 * A vector of Double values.
+	 */
+	private static class DoubleVector extends ColumnVector
+	{
+
+		private double[] values = new double[0];
+
+		ColumnVector add( Object value )
+		{
+			if ( value != null && value.getClass( ) != Double.class )
+				return toObjectVector( ).add( value );
+			if ( size == values.length )
+			{
+				double[] temp = new double[newCapacity( values.length,
+						size + 1 )];
+				System.arraycopy( values, 0, temp, 0, size );
+				values = temp;
+				ensureNullCapacity( temp.length );
+			}
+			if ( value == null )
+				setNull( );
+			else
+				values[size] = ( (Double) value ).doubleValue( );
+			size++;
+			return this;
+		}
+
+		Object get( int index )
+		{
+			if ( isNull( index ) )
+				return null;
+			return Double.valueOf( values[index] );
+		}
+
+		long getMemorySize( )
+		{
+			return arraySize( values.length, 8 ) + arraySize( nulls == null
+					? 0 : nulls.length, 8 );
+		}
+	}
+
+	/**
+	 * A vector of the values of one of the date classes which are fully
+	 * defined by their time in milliseconds.
+	 */
+	private static class DateVector extends ColumnVector
+	{
+
+		private Class valueClass;
+		private long[] values = new long[0];
+
+		DateVector( Class valueClass )
+		{
+			this.valueClass = valueClass;
+		}
+
+		ColumnVector add( Object value )
+		{
+			if ( value != null && value.getClass( ) != valueClass )
+				return toObjectVector( ).add( value );
+			if ( size == values.length )
+			{
+				long[] temp = new long[newCapacity( values.length, size + 1 )];
+				System.arraycopy( values, 0, temp, 0, size );
+				values = temp;
+				ensureNullCapacity( temp.length );
+			}
+			if ( value == null )
+				setNull( );
+			else
+				values[size] = ( (Date) value ).getTime( );
+			size++;
+			return this;
+		}
+
+		Object get( int index )
+		{
+			if ( isNull( index ) )
+				return null;
+			if ( valueClass == java.sql.Date.class )
+				return new java.sql.Date( values[index] );
+			if ( valueClass == Time.class )
+				return new Time( values[index] );
+			return new Date( values[index] );
+		}
+
+		long getMemorySize( )
+		{
+			return arraySize( values.length, 8 ) + arraySize( nulls == null
+					? 0 : nulls.length, 8 );
+		}
+	}
+
+	/**
+	 * A vector of Boolean values, two bits per value.
+	 */
+	private static class BooleanVector extends ColumnVector
+	{
+
+		private long[] values = new long[0];
+
+		ColumnVector add( Object value )
+		{
+			if ( value != null && value.getClass( ) != Boolean.class )
+				return toObjectVector( ).add( value );
+			if ( size == values.length * 64 )
+			{
+				long[] temp = new long[values.length == 0 ? 1
+						: values.length * 2];
+				System.arraycopy( values, 0, temp, 0, values.length );
+				values = temp;
+				ensureNullCapacity( temp.length * 64 );
+			}
+			if ( value == null )
+				setNull( );
+			else if ( ( (Boolean) value ).booleanValue( ) )
+				values[size >> 6] |= 1L << size;
+			size++;
+			return this;
+		}
+
+		Object get( int index )
+		{
+			if ( isNull( index ) )
+				return null;
+			return Boolean.valueOf( ( values[index >> 6] & ( 1L << index ) ) != 0 );
+		}
+
+		long getMemorySize( )
+		{
+			return arraySize( values.length, 8 ) * 2;
+		}
+	}
+
+	/**
+	 * A vector of String values. Each distinct string is kept once, and a
+	 * value is the position of its string in the dictionary. When the strings
+	 * are mostly distinct, the dictionary is dropped and the strings are kept
+	 * as plain objects.
+	 */
+	private static class StringVector extends ColumnVector
+	{
+
+		// the least number of values before the ratio of distinct values is
+		// checked
+		private static final int MIN_CHECKED_SIZE = 1024;
+
+		// the estimated size of an entry of the dictionary index
+		private static final int INDEX_ENTRY_SIZE = 48;
+
+		private int[] codes = new int[0];
+		private List<String> dictionary = new ArrayList<String>( );
+		private Map<String, Integer> dictionaryIndex = new HashMap<String, Integer>( );
+		private long dictionarySize = 0;
+
+		ColumnVector add( Object value )
+		{
+			if ( value != null && value.getClass( ) != String.class )
+				return toObjectVector( ).add( value );
+			if ( size >= MIN_CHECKED_SIZE && dictionary.size( ) > size / 2 )
+				return toObjectVector( ).add( value );
+
+			if ( size == codes.length )
+			{
+				int[] temp = new int[newCapacity( codes.length, size + 1 )];
+				System.arraycopy( codes, 0, temp, 0, size );
+				codes = temp;
+			}
+			if ( value == null )
+			{
+				codes[size] = -1;
+			}
+			else
+			{
+				Integer code = dictionaryIndex.get( value );
+				if ( code == null )
+				{
+					code = Integer.valueOf( dictionary.size( ) );
+					dictionary.add( (String) value );
+					dictionaryIndex.put( (String) value, code );
+					dictionarySize += SizeOfUtil.sizeOf( String.class, value )
+							+ SizeOfUtil.POINTER_SIZE;
+				}
+				codes[size] = code.intValue( );
+			}
+			size++;
+			return this;
+		}
+
+		Object get( int index )
+		{
+			int code = codes[index];
+			return code < 0 ? null : dictionary.get( code );
+		}
+
+		void endAdd( )
+		{
+			dictionaryIndex = null;
+			( (ArrayList<String>) dictionary ).trimToSize( );
+		}
+
+		long getMemorySize( )
+		{
+			return arraySize( codes.length, 4 )
+					+ dictionarySize
+					+ ( dictionaryIndex == null ? 0 : (long) dictionaryIndex.size( )
+							* INDEX_ENTRY_SIZE );
+		}
+	}
+
+	/**
+	 * A vector of values of any class, which is also used for the values to
+	 * be changed after they are added.
+	 */
+	private static class ObjectVector extends ColumnVector
+	{
+
+		private Object[] values = new Object[0];
+
+		// the estimated size of the values
+		private long valuesSize = 0;
+
+		ColumnVector add( Object value )
+		{
+			ensureCapacity( size + 1 );
+			values[size++] = value;
+			if ( value != null )
+				valuesSize += SizeOfUtil.sizeOf( value.getClass( ), value );
+			return this;
+		}
+
+		Object get( int index )
+		{
+			return values[index];
+		}
+
+		boolean isWritable( )
+		{
+			return true;
+		}
+
+		void set( int index, Object value )
+		{
+			if ( values[index] != null )
+				valuesSize -= SizeOfUtil.sizeOf( values[index].getClass( ),
+						values[index] );
+			values[index] = value;
+			if ( value != null )
+				valuesSize += SizeOfUtil.sizeOf( value.getClass( ), value );
+		}
+
+		ColumnVector toObjectVector( )
+		{
+			return this;
+		}
+
+		long getMemorySize( )
+		{
+			return SizeOfUtil.OBJECT_ARRAY_OVERHEAD
+					+ (long) values.length * SizeOfUtil.POINTER_SIZE
+					+ valuesSize;
+		}
+
+		/**
+		 *
+		 * @param capacity
+		 */
+		void ensureCapacity( int capacity )
+		{
+			if ( values.length < capacity )
+			{
+				Object[] temp = new Object[newCapacity( values.length,
+						capacity )];
+				System.arraycopy( values, 0, temp, 0, size );
+				values = temp;
+			}
+		}
+	}
+}
@@ -0,0 +1,598 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.data.DataType.AnyType;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.StringTable;
+import org.eclipse.birt.data.engine.impl.document.viewing.ExprMetaUtil;
+import org.eclipse.birt.data.engine.impl.index.IAuxiliaryIndexCreator;
+import org.eclipse.birt.data.engine.impl.index.IIndexSerializer;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.olap.data.util.CompareUtil;
+
+/**
+ * Memory implementation of ResultSetCache which keeps the field values column
+ * by column. The values of the common data types are held in primitive arrays
+ * and strings are dictionary encoded, so that a row costs much less memory
+ * than a ResultObject. The rows returned are views on the columns. The values
+ * of custom fields are kept as objects, so that they can still be changed
+ * through the views.
+ *
+ * The cache is filled by add and becomes readable after endAdd is called. All
+ * the rows added must share the same result class.
+ */
+public class ColumnarMemoryCache implements ResultSetCache
+{
+	private int countOfResult;
+	private int currResultIndex = -1;
+
+	private IResultClass rsMeta;
+	private IResultObject currResultObject;
+
+	// the result class shared by all the rows
+	private IResultClass rowClass;
+	private ColumnVector[] columns;
+
+	// the position in columns of each row, null if rows are not sorted
+	private int[] order;
+
+	/**
+	 * @param rsMeta
+	 */
+	public ColumnarMemoryCache( IResultClass rsMeta )
+	{
+		this.rsMeta = rsMeta;
+	}
+
+	/**
+	 * Add a row to the end of the cache.
+	 *
+	 * @param resultObject
+	 * @return false if the row can not be added because its result class is
+	 *         different from that of the rows added before
+	 * @throws DataException
+	 */
+	public boolean add( IResultObject resultObject ) throws DataException
+	{
+		if ( rowClass == null )
+		{
+			rowClass = resultObject.getResultClass( );
+			columns = new ColumnVector[rowClass.getFieldCount( )];
+			for ( int i = 0; i < columns.length; i++ )
+			{
+				columns[i] = ColumnVector.newInstance( rowClass.isCustomField( i + 1 ) );
+			}
+		}
+		else if ( resultObject.getResultClass( ) != rowClass )
+		{
+			return false;
+		}
+
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i] = columns[i].add( resultObject.getFieldValue( i + 1 ) );
+		}
+		countOfResult++;
+		return true;
+	}
+
+	/**
+	 * Return the estimated size of memory occupied by the rows added so far.
+	 *
+	 * @return
+	 */
+	public long getMemorySize( )
+	{
+		if ( columns == null )
+			return 0;
+
+		long size = SizeOfUtil.OBJECT_ARRAY_OVERHEAD
+				+ (long) columns.length * SizeOfUtil.POINTER_SIZE;
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			size += columns[i].getMemorySize( );
+		}
+		return size;
+	}
+
+	/**
+	 * End add operation and sort the rows.
+	 *
+	 * @param comparator
+	 *            null if there is no need to do sorting
+	 */
+	public void endAdd( Comparator comparator )
+	{
+		endAdd( comparator, 0 );
+	}
+
+	/**
+	 * End add operation and sort or group the rows.
+	 *
+	 * @param comparator
+	 *            null if there is no need to do sorting
+	 * @param hashGroupingThreads
+	 *            the number of threads grouping the rows by hashing their sort
+	 *            key values instead of sorting them, 0 to sort them
+	 */
+	public void endAdd( Comparator comparator, int hashGroupingThreads )
+	{
+		if ( columns != null )
+		{
+			for ( int i = 0; i < columns.length; i++ )
+			{
+				columns[i].endAdd( );
+			}
+		}
+
+		if ( comparator != null && countOfResult > 1 )
+		{
+			ColumnarResultObject[] rows = new ColumnarResultObject[countOfResult];
+			for ( int i = 0; i < rows.length; i++ )
+			{
+				rows[i] = new ColumnarResultObject( rowClass, columns, i );
+			}
+			if ( !MemoryCache.groupByHashing( rows,
+					comparator,
+					hashGroupingThreads ) )
+				Arrays.sort( rows, comparator );
+
+			order = new int[countOfResult];
+			for ( int i = 0; i < rows.length; i++ )
+			{
+				order[i] = rows[i].position;
+			}
+		}
+	}
+
+	/**
+	 * Return a row added so far as a separate result object. It is used when
+	 * the rows are moved to another cache one by one, so that they are not
+	 * all held twice.
+	 *
+	 * @param index
+	 *            the position of the row in the order it was added
+	 * @return
+	 * @throws DataException
+	 */
+	public IResultObject toResultObject( int index ) throws DataException
+	{
+		Object[] fields = new Object[columns.length];
+		for ( int j = 0; j < columns.length; j++ )
+		{
+			fields[j] = columns[j].get( index );
+		}
+		return new ResultObject( rowClass, fields );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
+	 */
+	public int getCurrentIndex( ) throws DataException
+	{
+		return currResultIndex;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentResult()
+	 */
+	public IResultObject getCurrentResult( ) throws DataException
+	{
+		return currResultObject;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#next()
+	 */
+	public boolean next( ) throws DataException
+	{
+		if ( countOfResult == 0 )
+			return false;
+
+		if ( currResultIndex > countOfResult - 1 )
+		{
+			currResultObject = null;
+		}
+		else
+		{
+			currResultIndex++;
+			if ( currResultIndex == countOfResult )
+				currResultObject = null;
+			else
+				currResultObject = getResultObject( currResultIndex );
+		}
+
+		return currResultObject != null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#fetch()
+	 */
+	public IResultObject fetch( ) throws DataException
+	{
+		next( );
+		IResultObject resultObject = getCurrentResult( );
+		return resultObject;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#moveTo(int)
+	 */
+	public void moveTo( int destIndex ) throws DataException
+	{
+		checkValid( destIndex );
+
+		currResultIndex = destIndex;
+
+		// currResultObject needs to be updated
+		if ( currResultIndex == -1 || currResultIndex == countOfResult )
+			currResultObject = null;
+		else
+			currResultObject = getResultObject( currResultIndex );
+	}
+
+	/**
+	 * Validate the value of destIndex
+	 *
+	 * @param destIndex
+	 * @throws DataException
+	 */
+	private void checkValid( int destIndex ) throws DataException
+	{
+		if ( destIndex < -1 || destIndex > countOfResult )
+			throw new DataException( ResourceConstants.DESTINDEX_OUTOF_RANGE,
+					new Object[]{
+							Integer.valueOf( -1 ),
+							Integer.valueOf( countOfResult )
+					} );
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the view of the row at the given index
+	 */
+	private IResultObject getResultObject( int index )
+	{
+		return new ColumnarResultObject( rowClass, columns, order == null
+				? index : order[index] );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCount()
+	 */
+	public int getCount( )
+	{
+		return countOfResult;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#reset()
+	 */
+	public void reset( )
+	{
+		currResultIndex = -1;
+		currResultObject = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#close()
+	 */
+	public void close( )
+	{
+		reset( );
+		columns = null;
+		order = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#doSave(java.io.DataOutputStream, java.io.DataOutputStream, java.util.Map, java.util.Map, java.util.List, int, java.util.List, boolean)
+	 */
+	public void doSave( DataOutputStream outputStream,
+			DataOutputStream rowLensStream,
+			Map<String, StringTable> stringTable,
+			Map<String, IIndexSerializer> index,
+			List<IBinding> cacheRequestMap, int version,
+			List<IAuxiliaryIndexCreator> auxiliaryIndexCreators,
+			boolean saveInnerId ) throws DataException
+	{
+		DataOutputStream dos = new DataOutputStream( outputStream );
+		Set resultSetNameSet = ResultSetUtil.getRsColumnRequestMap( cacheRequestMap );
+		try
+		{
+			// save data
+			int rowCount = this.countOfResult;
+			int colCount = getColumnCount( this.rsMeta );
+
+			IOUtil.writeInt( dos, rowCount );
+			long offset = 4;
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				IResultObject resultObject = getResultObject( i );
+				IOUtil.writeLong( rowLensStream, offset );
+				offset += ResultSetUtil.writeResultObject( dos,
+						resultObject,
+						colCount,
+						resultSetNameSet,
+						stringTable,
+						index,
+						i,
+						version,
+						saveInnerId );
+				if ( auxiliaryIndexCreators != null )
+				{
+					for ( IAuxiliaryIndexCreator creator : auxiliaryIndexCreators )
+					{
+						creator.save( resultObject, i );
+					}
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_SAVE_ERROR, e );
+		}
+	}
+
+	/**
+	 *
+	 * @param meta
+	 * @return the number of columns to be saved
+	 * @throws DataException
+	 */
+	private int getColumnCount( IResultClass meta ) throws DataException
+	{
+		int count = meta.getFieldCount( );
+		for ( int i = 1; i <= meta.getFieldCount( ); i++ )
+		{
+			if ( meta.getFieldName( i ).equals( ExprMetaUtil.POS_NAME ) )
+			{
+				count--;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#incrementalUpdate(java.io.OutputStream, java.io.OutputStream, int, java.util.Map, java.util.Map, java.util.List, int, java.util.List)
+	 */
+	public void incrementalUpdate( OutputStream outputStream,
+			OutputStream rowLensStream, int originalRowCount,
+			Map<String, StringTable> stringTable,
+			Map<String, IIndexSerializer> map, List<IBinding> cacheRequestMap,
+			int version, List<IAuxiliaryIndexCreator> auxiliaryIndexCreators )
+			throws DataException
+	{
+		Set resultSetNameSet = ResultSetUtil.getRsColumnRequestMap( cacheRequestMap );
+		try
+		{
+			// save data
+			int rowCount = originalRowCount + this.countOfResult;
+			int colCount = this.rsMeta.getFieldCount( );
+
+			IOUtil.writeInt( outputStream, rowCount );
+			if ( outputStream instanceof RAOutputStream )
+				( (RAOutputStream) outputStream ).seek( ( (RAOutputStream) outputStream ).length( ) );
+			if ( rowLensStream instanceof RAOutputStream )
+				( (RAOutputStream) rowLensStream ).seek( ( (RAOutputStream) rowLensStream ).length( ) );
+			DataOutputStream dos = new DataOutputStream( outputStream );
+			DataOutputStream rlos = new DataOutputStream( rowLensStream );
+
+			long offset = 4;
+			if ( outputStream instanceof RAOutputStream )
+				offset = ( (RAOutputStream) outputStream ).length( );
+			for ( int i = 0; i < rowCount - originalRowCount; i++ )
+			{
+				IResultObject resultObject = getResultObject( i );
+				IOUtil.writeLong( rlos, offset );
+				offset += ResultSetUtil.writeResultObject( dos,
+						resultObject,
+						colCount,
+						resultSetNameSet,
+						stringTable,
+						map,
+						originalRowCount + i,
+						version );
+				if ( auxiliaryIndexCreators != null )
+				{
+					for ( IAuxiliaryIndexCreator creator : auxiliaryIndexCreators )
+					{
+						creator.save( resultObject, originalRowCount + i );
+					}
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_SAVE_ERROR, e );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#setResultClass(org.eclipse.birt.data.engine.odi.IResultClass)
+	 */
+	public void setResultClass( IResultClass rsMeta ) throws DataException
+	{
+		this.rsMeta = rsMeta;
+	}
+
+	/**
+	 * The view of a row of the cache. It behaves in the same way as a
+	 * ResultObject holding the same values, and stays valid after the cache is
+	 * closed.
+	 */
+	private static class ColumnarResultObject implements IResultObject
+	{
+		private IResultClass rowClass;
+		private ColumnVector[] columns;
+
+		// the position of the row in columns
+		private int position;
+
+		/**
+		 * @param rowClass
+		 * @param columns
+		 * @param position
+		 */
+		ColumnarResultObject( IResultClass rowClass, ColumnVector[] columns,
+				int position )
+		{
+			this.rowClass = rowClass;
+			this.columns = columns;
+			this.position = position;
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.odi.IResultObject#getResultClass()
+		 */
+		public IResultClass getResultClass( )
+		{
+			return rowClass;
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.odi.IResultObject#getFieldValue(java.lang.String)
+		 */
+		public Object getFieldValue( String fieldName ) throws DataException
+		{
+			int fieldIndex = rowClass.getFieldIndex( fieldName );
+
+			if ( fieldIndex < 1 )
+				throw new DataException( ResourceConstants.INVALID_FIELD_NAME,
+						fieldName );
+
+			return getFieldValue( fieldIndex );
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.odi.IResultObject#getFieldValue(int)
+		 */
+		public Object getFieldValue( int fieldIndex ) throws DataException
+		{
+			return columns[fieldIndex - 1].get( position );
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.odi.IResultObject#setCustomFieldValue(java.lang.String, java.lang.Object)
+		 */
+		public void setCustomFieldValue( String fieldName, Object value )
+				throws DataException
+		{
+			int idx = rowClass.getFieldIndex( fieldName );
+			setCustomFieldValue( idx, value );
+		}
+
+		/*
+		 * fieldIndex is 1-based
+		 * @see org.eclipse.birt.data.engine.odi.IResultObject#setCustomFieldValue(int, java.lang.Object)
+		 */
+		public void setCustomFieldValue( int fieldIndex, Object value )
+				throws DataException
+		{
+			if ( rowClass.isCustomField( fieldIndex ) )
+				columns[fieldIndex - 1].set( position, value );
+			else
+				throw new DataException( ResourceConstants.INVALID_CUSTOM_FIELD_INDEX,
+						Integer.valueOf( fieldIndex ) );
+
+			if ( rowClass.getFieldValueClass( fieldIndex )
+					.getName( )
+					.equals( AnyType.class.getName( ) ) )
+			{
+				if ( value != null )
+				{
+					( (ResultClass) rowClass ).getFieldMetaData( fieldIndex )
+							.setDataType( value.getClass( ) );
+				}
+			}
+		}
+
+		/*
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString( )
+		{
+			StringBuffer buf = new StringBuffer( columns.length * 10 );
+			for ( int i = 0; i < columns.length; i++ )
+			{
+				if ( i > 0 )
+					buf.append( ',' );
+				Object value = columns[i].get( position );
+				buf.append( value == null ? "null" : value.toString( ) );
+			}
+			return buf.toString( );
+		}
+
+		/*
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals( Object ob )
+		{
+			if ( ob instanceof IResultObject == false )
+				return false;
+
+			IResultObject ob2 = (IResultObject) ob;
+
+			int fieldCount = rowClass.getFieldCount( );
+			if ( fieldCount != ob2.getResultClass( ).getFieldCount( ) )
+				return false;
+
+			for ( int i = 0; i < fieldCount; i++ )
+			{
+				try
+				{
+					Object value1 = this.getFieldValue( i + 1 );
+					Object value2 = ob2.getFieldValue( i + 1 );
+					if ( CompareUtil.compare( value1, value2 ) != 0 )
+						return false;
+				}
+				catch ( DataException e )
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/*
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode( )
+		{
+			int result = 17;
+			for ( int i = 0; i < columns.length; i++ )
+			{
+				Object value = columns[i].get( position );
+				result = 37 * result + ( value == null ? 0 : value.hashCode( ) );
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Util class which groups the rows of a summary query by hashing their group
+ * key values, instead of sorting all the rows. The rows are split into
+ * partitions, each of which is gathered into a hash table of groups by its own
+ * thread. The tables are merged in the order of the partitions, then only the
+ * distinct key values are sorted and the rows are written back group by group.
+ * The rows of a group keep their order, so the result is the same as that of
+ * a stable sort on the keys.
+ */
+class HashGroupingUtil
+{
+	// the least number of rows grouped by one thread
+	private static final int MIN_ROWS_PER_TASK = 4096;
+
+	/**
+	 *
+	 */
+	private HashGroupingUtil( )
+	{
+	}
+
+	/**
+	 * Group the rows in place on the sort keys of the comparator.
+	 *
+	 * @param rows
+	 *            the result objects to be grouped
+	 * @param comparator
+	 * @param parallelism
+	 *            the maximum number of threads building the hash tables, the
+	 *            rows are grouped by the calling thread only if it is less
+	 *            than 2
+	 * @return false if the rows can not be grouped by hashing, and are left
+	 *         unchanged
+	 */
+	static boolean group( Object[] rows, SortKeyComparator comparator,
+			int parallelism )
+	{
+		// the sort key values are retrieved by the calling thread, since they
+		// may be evaluated by script
+		final Object[][] keys = new Object[rows.length][];
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			keys[i] = comparator.getSortKeys( (IResultObject) rows[i] );
+		}
+		if ( !comparator.isSortKeyHashable( keys, keys.length ) )
+			return false;
+
+		int taskCount = Math.max( 1, Math.min( parallelism, rows.length
+				/ MIN_ROWS_PER_TASK ) );
+		int step = Math.max( 1, ( rows.length + taskCount - 1 ) / taskCount );
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		List<Map<GroupKey, Group>> tables = new ArrayList<Map<GroupKey, Group>>( );
+		for ( int start = 0; start < rows.length; start += step )
+		{
+			final int from = start;
+			final int to = Math.min( rows.length, start + step );
+			final Map<GroupKey, Group> table = new HashMap<GroupKey, Group>( );
+			tables.add( table );
+			if ( from == 0 )
+				continue;
+			futures.add( CacheUtil.getExecutorService( ).submit( new Callable<Object>( ) {
+
+				public Object call( )
+				{
+					buildTable( keys, from, to, table );
+					return null;
+				}
+			} ) );
+		}
+		if ( rows.length > 0 )
+			buildTable( keys, 0, Math.min( rows.length, step ), tables.get( 0 ) );
+		CacheUtil.waitFor( futures );
+
+		// merge the tables in the order of the partitions, so that the rows of
+		// a group keep their order
+		Map<GroupKey, Group> groups = tables.isEmpty( )
+				? new HashMap<GroupKey, Group>( ) : tables.get( 0 );
+		for ( int i = 1; i < tables.size( ); i++ )
+		{
+			Iterator<Group> it = tables.get( i ).values( ).iterator( );
+			while ( it.hasNext( ) )
+			{
+				Group partial = it.next( );
+				Group group = groups.get( partial.key );
+				if ( group == null )
+					groups.put( partial.key, partial );
+				else
+					group.addAll( partial );
+			}
+		}
+
+		Group[] sortedGroups = groups.values( ).toArray( new Group[groups.size( )] );
+		Arrays.sort( sortedGroups, getGroupComparator( comparator ) );
+
+		Object[] source = rows.clone( );
+		int position = 0;
+		for ( int i = 0; i < sortedGroups.length; i++ )
+		{
+			Group group = sortedGroups[i];
+			for ( int j = 0; j < group.size; j++ )
+			{
+				rows[position++] = source[group.rows[j]];
+			}
+		}
+		assert position == rows.length;
+		return true;
+	}
+
+	/**
+	 * Gather the rows from index from to index to into a table of groups.
+	 *
+	 * @param keys
+	 * @param from
+	 * @param to
+	 * @param table
+	 */
+	private static void buildTable( Object[][] keys, int from, int to,
+			Map<GroupKey, Group> table )
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			GroupKey key = new GroupKey( keys[i] );
+			Group group = table.get( key );
+			if ( group == null )
+			{
+				group = new Group( key );
+				table.put( key, group );
+			}
+			group.add( i );
+		}
+	}
+
+	/**
+	 * @param comparator
+	 * @return the comparator of the groups on their key values
+	 */
+	private static Comparator getGroupComparator(
+			final SortKeyComparator comparator )
+	{
+		return new Comparator( ) {
+
+			public int compare( Object obj1, Object obj2 )
+			{
+				return comparator.compareSortKeys( ( (Group) obj1 ).key.values,
+						( (Group) obj2 ).key.values );
+			}
+		};
+	}
+
+	/**
+	 * The group key values of a row, as a hash table key.
+	 */
+	private static final class GroupKey
+	{
+		private final Object[] values;
+		private final int hashCode;
+
+		GroupKey( Object[] values )
+		{
+			this.values = values;
+			this.hashCode = Arrays.hashCode( values );
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof GroupKey ) )
+				return false;
+			GroupKey other = (GroupKey) obj;
+			return hashCode == other.hashCode
+					&& Arrays.equals( values, other.values );
+		}
+	}
+
+	/**
+	 * The indexes of the rows of a group, in their order.
+	 */
+	private static final class Group
+	{
+		private final GroupKey key;
+		private int[] rows = new int[4];
+		private int size;
+
+		Group( GroupKey key )
+		{
+			this.key = key;
+		}
+
+		void add( int row )
+		{
+			if ( size == rows.length )
+				rows = Arrays.copyOf( rows, size * 2 );
+			rows[size++] = row;
+		}
+
+		void addAll( Group group )
+		{
+			if ( size + group.size > rows.length )
+				rows = Arrays.copyOf( rows, Math.max( size + group.size,
+						rows.length * 2 ) );
+			System.arraycopy( group.rows, 0, rows, size, group.size );
+			size += group.size;
+		}
+	}
+}
@@ -50,15 +50,52 @@ public class MemoryCache implements ResultSetCache
 	 */
 	public MemoryCache( IResultObject[] resultObjects, IResultClass rsMeta,
 			Comparator comparator )
+	{
+		this( resultObjects, rsMeta, comparator, 0 );
+	}
+
+	/**
+	 * @param resultObjects
+	 * @param rsMeta
+	 * @param comparator
+	 * @param hashGroupingThreads
+	 *            the number of threads grouping the rows by hashing their sort
+	 *            key values instead of sorting them, 0 to sort them
+	 */
+	public MemoryCache( IResultObject[] resultObjects, IResultClass rsMeta,
+			Comparator comparator, int hashGroupingThreads )
 	{
 		this.resultObjects = resultObjects;
 		this.rsMeta = rsMeta;
 		this.countOfResult = resultObjects.length;
 
-		if ( comparator != null )
+		if ( comparator != null
+				&& !groupByHashing( this.resultObjects,
+						comparator,
+						hashGroupingThreads ) )
 			Arrays.sort( this.resultObjects, comparator );
 	}
 
+	/**
+	 * Group the rows by hashing their sort key values, which gives the same
+	 * result as a stable sort when the rows are only to be grouped.
+	 * 
+	 * @param rows
+	 * @param comparator
+	 * @param hashGroupingThreads
+	 * @return false if the rows are left unchanged and have to be sorted
+	 */
+	static boolean groupByHashing( Object[] rows, Comparator comparator,
+			int hashGroupingThreads )
+	{
+		return hashGroupingThreads > 0
+				&& rows.length > 1
+				&& comparator instanceof SortKeyComparator
+				&& HashGroupingUtil.group( rows,
+						(SortKeyComparator) comparator,
+						hashGroupingThreads );
+	}
+
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
 	 */
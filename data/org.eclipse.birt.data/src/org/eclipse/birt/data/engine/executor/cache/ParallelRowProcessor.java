@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Process the fetch events of a block of rows with several threads. The block
+ * is split into row ranges of equal size, one of which is processed by the
+ * calling thread. The result of each row is recorded at the position of the
+ * row, so the order of rows is not changed.
+ */
+final class ParallelRowProcessor
+{
+	// the least number of rows processed by one thread
+	private static final int MIN_ROWS_PER_TASK = 256;
+
+	//
+	private IParallelResultObjectEvent[] events;
+	private int parallelism;
+
+	/**
+	 * @param events
+	 * @param parallelism
+	 */
+	private ParallelRowProcessor( IParallelResultObjectEvent[] events,
+			int parallelism )
+	{
+		this.events = events;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Create a processor for the given fetch events.
+	 *
+	 * @param eventList
+	 * @param resultClass
+	 *            the meta data of the rows to be processed
+	 * @param parallelism
+	 *            the maximum number of threads working on a block
+	 * @return null if any of the events can not be processed in parallel
+	 * @throws DataException
+	 */
+	static ParallelRowProcessor newInstance( List eventList,
+			IResultClass resultClass, int parallelism ) throws DataException
+	{
+		IParallelResultObjectEvent[] events = new IParallelResultObjectEvent[eventList.size( )];
+		for ( int i = 0; i < events.length; i++ )
+		{
+			Object event = eventList.get( i );
+			if ( !( event instanceof IParallelResultObjectEvent ) )
+				return null;
+			events[i] = (IParallelResultObjectEvent) event;
+		}
+		for ( int i = 0; i < events.length; i++ )
+		{
+			if ( !events[i].prepareParallelProcess( resultClass ) )
+				return null;
+		}
+		return new ParallelRowProcessor( events, parallelism );
+	}
+
+	/**
+	 * Process the first count rows of the block. For each row, whether it is
+	 * accepted or the exception thrown when it is processed is recorded at
+	 * its position.
+	 *
+	 * @param rows
+	 * @param count
+	 * @param firstRowIndex
+	 *            the index of the first row
+	 * @param accepted
+	 * @param errors
+	 */
+	void process( final IResultObject[] rows, int count,
+			final int firstRowIndex, final boolean[] accepted,
+			final DataException[] errors )
+	{
+		int taskCount = Math.min( parallelism,
+				( count + MIN_ROWS_PER_TASK - 1 ) / MIN_ROWS_PER_TASK );
+		if ( taskCount <= 1 )
+		{
+			processRange( rows, 0, count, firstRowIndex, accepted, errors );
+			return;
+		}
+
+		int step = ( count + taskCount - 1 ) / taskCount;
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		for ( int start = step; start < count; start += step )
+		{
+			final int from = start;
+			final int to = Math.min( count, start + step );
+			futures.add( CacheUtil.getExecutorService( ).submit( new Callable<Object>( ) {
+
+				public Object call( )
+				{
+					processRange( rows, from, to, firstRowIndex, accepted, errors );
+					return null;
+				}
+			} ) );
+		}
+		processRange( rows, 0, step, firstRowIndex, accepted, errors );
+
+		CacheUtil.waitFor( futures );
+	}
+
+	/**
+	 *
+	 * @param rows
+	 * @param from
+	 * @param to
+	 * @param firstRowIndex
+	 * @param accepted
+	 * @param errors
+	 */
+	private void processRange( IResultObject[] rows, int from, int to,
+			int firstRowIndex, boolean[] accepted, DataException[] errors )
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			accepted[i] = true;
+			try
+			{
+				for ( int j = 0; j < events.length; j++ )
+				{
+					if ( !events[j].processInParallel( rows[i], firstRowIndex
+							+ i ) )
+					{
+						accepted[i] = false;
+						break;
+					}
+				}
+			}
+			catch ( DataException e )
+			{
+				errors[i] = e;
+			}
+		}
+	}
+}
@@ -62,6 +62,12 @@ public class ResultObjectUtil
 
 	private DataEngineSession session;
 	
+	// codec of row blocks, created on demand
+	private RowBlockCodec blockCodec;
+	
+	// whether row blocks are compressed
+	private boolean compressBlocks;
+	
 	/**
 	 * In serializaing data to file and deserializing it from file, metadata
 	 * information is necessary to know which data type a column is, and then
@@ -174,6 +180,64 @@ public class ResultObjectUtil
 		return rowDatas;
 	}
 
+	/**
+	 * Set whether the blocks written by writeBlock are compressed. Blocks
+	 * which do not become smaller are never compressed.
+	 * 
+	 * @param compressBlocks
+	 */
+	public void setBlockCompression( boolean compressBlocks )
+	{
+		this.compressBlocks = compressBlocks;
+	}
+	
+	/**
+	 * Serialize result objects as one block. Unlike writeData, the values are
+	 * stored column by column in a compact form, so a block can only be read
+	 * back by readBlock.
+	 * 
+	 * @param bos
+	 * @param resultObjects
+	 * @param from
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public void writeBlock( OutputStream bos, IResultObject[] resultObjects,
+			int from, int count ) throws IOException, DataException
+	{
+		getBlockCodec( ).writeBlock( bos,
+				resultObjects,
+				from,
+				count,
+				compressBlocks );
+	}
+	
+	/**
+	 * Deserialize the next block written by writeBlock.
+	 * 
+	 * @param bis
+	 * @param classLoader
+	 * @return null if there is no more block
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public IResultObject[] readBlock( InputStream bis, ClassLoader classLoader )
+			throws IOException, DataException
+	{
+		return getBlockCodec( ).readBlock( bis, classLoader );
+	}
+	
+	/**
+	 * @return
+	 */
+	private RowBlockCodec getBlockCodec( )
+	{
+		if ( blockCodec == null )
+			blockCodec = new RowBlockCodec( typeArray, this );
+		return blockCodec;
+	}
+
 	public static Object readObject( DataInputStream dis, Class fieldType, ClassLoader classLoader, int version ) throws IOException, DataException
 	{
 		Object obj = null;
@@ -335,35 +399,8 @@ public class ResultObjectUtil
         // No Version control needed. Previous we write byte 1 & 0, which is
         // perfectly convert to char 1 & 0.
 
-        Object convertedObj = null;
         // process null object
-        if ( fieldValue != null )
-        {
-            if ( fieldType.equals( Integer.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.INTEGER_TYPE );
-            }
-            else if ( fieldType.equals( Double.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.DOUBLE_TYPE );
-            }
-            else if ( fieldType.equals( BigDecimal.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.DECIMAL_TYPE );
-            }
-            else if ( Date.class.isAssignableFrom( fieldType ) )
-            {
-                convertedObj = convert( fieldValue, DataType.DATE_TYPE );
-            }
-            else if ( fieldType.equals( Boolean.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.BOOLEAN_TYPE );
-            }
-            else
-            {
-                convertedObj = fieldValue;
-            }
-        }
+        Object convertedObj = toStoredValue( fieldValue, fieldType );
 
         char leadingChar = 0;
         if ( convertedObj == null )
@@ -461,6 +498,32 @@ public class ResultObjectUtil
 		}
 	}
 	
+	/**
+	 * Convert a field value to the class in which it is stored.
+	 * 
+	 * @param fieldValue
+	 * @param fieldType
+	 * @return
+	 * @throws DataException
+	 */
+	static Object toStoredValue( Object fieldValue, Class fieldType )
+			throws DataException
+	{
+		if ( fieldValue == null )
+			return null;
+		if ( fieldType.equals( Integer.class ) )
+			return convert( fieldValue, DataType.INTEGER_TYPE );
+		if ( fieldType.equals( Double.class ) )
+			return convert( fieldValue, DataType.DOUBLE_TYPE );
+		if ( fieldType.equals( BigDecimal.class ) )
+			return convert( fieldValue, DataType.DECIMAL_TYPE );
+		if ( Date.class.isAssignableFrom( fieldType ) )
+			return convert( fieldValue, DataType.DATE_TYPE );
+		if ( fieldType.equals( Boolean.class ) )
+			return convert( fieldValue, DataType.BOOLEAN_TYPE );
+		return fieldValue;
+	}
+	
 	private static Object convert( Object o, int type ) throws DataException
 	{
 		try
@@ -15,6 +15,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -165,11 +166,47 @@ public class ResultSetUtil
 			Map<String, StringTable> stringTableMap,
 			Map<String, DataSetInMemoryStringIndex> index, int version,
 			boolean rowIdSaved ) throws DataException
+	{
+		return readResultObject( dis,
+				rsMeta,
+				count,
+				stringTableMap,
+				index,
+				version,
+				rowIdSaved,
+				null );
+	}
+
+	/**
+	 * Reads a row, and drops it if the index of the value of a compressed
+	 * string column is not one of the accepted indexes of the column. The
+	 * values of the compressed string columns of a dropped row are not looked
+	 * up in their string tables.
+	 * 
+	 * @param dis
+	 * @param rsMeta
+	 * @param count
+	 * @param stringTableMap
+	 * @param index
+	 * @param version
+	 * @param rowIdSaved
+	 * @param acceptedIndexes
+	 *            the accepted string table indexes by column name, or null
+	 * @return the row, or null if it is dropped
+	 * @throws DataException
+	 */
+	public static IResultObject readResultObject( DataInputStream dis,
+			IResultClass rsMeta, int count,
+			Map<String, StringTable> stringTableMap,
+			Map<String, DataSetInMemoryStringIndex> index, int version,
+			boolean rowIdSaved, Map<String, BitSet> acceptedIndexes )
+			throws DataException
 	{
 		int i = 0;
 		try
 		{
 			Object[] obs = new Object[rsMeta.getFieldCount( )];
+			boolean dropped = false;
 
 			for ( i = 0; i < count; i++ )
 			{
@@ -194,7 +231,15 @@ public class ResultSetUtil
 					}
 					if( stringTable != null )
 					{
-						obs[i] = stringTable.getStringValue( IOUtil.readInt( dis ) );
+						int stringIndex = IOUtil.readInt( dis );
+						if ( acceptedIndexes != null && !dropped )
+						{
+							BitSet accepted = acceptedIndexes.get( rsMeta.getFieldName( i + 1 ) );
+							dropped = accepted != null
+									&& ( stringIndex < 0 || !accepted.get( stringIndex ) );
+						}
+						if ( !dropped )
+							obs[i] = stringTable.getStringValue( stringIndex );
 					}
 					else
 					{
@@ -228,11 +273,14 @@ public class ResultSetUtil
 					}
 				}
 			}
+			int rowId = rowIdSaved ? IOUtil.readInt( dis ) : -1;
+			if ( dropped )
+				return null;
 			ResultObject resultObject = new ResultObject( rsMeta, obs );
 			if ( rowIdSaved )
 			{
 				resultObject.setCustomFieldValue( ExprMetaUtil.POS_NAME,
-						IOUtil.readInt( dis ) );
+						rowId );
 			}
 			return resultObject;
 		}
@@ -0,0 +1,701 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Clob;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.IClob;
+
+/**
+ * Serialize a block of result objects column by column. Each block starts with
+ * a version and the row count, followed by the values of every column: a null
+ * bitmap, then the values which are not null. Integers and dates are written
+ * as variable length deltas from the previous value, booleans as bits, and
+ * strings through a dictionary of the block when it has many repeated values.
+ * Other values are written by ResultObjectUtil.writeObject. The body of a
+ * block can be compressed.
+ */
+final class RowBlockCodec
+{
+	// the version of the block format
+	private static final int BLOCK_VERSION = 1;
+
+	// block flags
+	private static final int FLAG_COMPRESSED = 1;
+
+	// null modes of a column
+	private static final int NO_NULL = 0;
+	private static final int ALL_NULL = 1;
+	private static final int SOME_NULL = 2;
+
+	// string modes of a column
+	private static final int PLAIN_STRING = 0;
+	private static final int DICTIONARY_STRING = 1;
+
+	// column kinds
+	private static final int KIND_INTEGER = 0;
+	private static final int KIND_DOUBLE = 1;
+	private static final int KIND_DATE = 2;
+	private static final int KIND_BOOLEAN = 3;
+	private static final int KIND_STRING = 4;
+	private static final int KIND_DECIMAL = 5;
+	private static final int KIND_OTHER = 6;
+
+	private Class[] typeArray;
+	private int[] kinds;
+	private ResultObjectUtil resultObjectUtil;
+
+	/**
+	 * @param typeArray
+	 * @param resultObjectUtil
+	 */
+	RowBlockCodec( Class[] typeArray, ResultObjectUtil resultObjectUtil )
+	{
+		this.typeArray = typeArray;
+		this.resultObjectUtil = resultObjectUtil;
+		this.kinds = new int[typeArray.length];
+		for ( int i = 0; i < typeArray.length; i++ )
+		{
+			kinds[i] = getKind( typeArray[i] );
+		}
+	}
+
+	/**
+	 * @param fieldType
+	 * @return
+	 */
+	private static int getKind( Class fieldType )
+	{
+		if ( fieldType == null )
+			return KIND_OTHER;
+		if ( fieldType.equals( Integer.class ) )
+			return KIND_INTEGER;
+		if ( fieldType.equals( Double.class ) )
+			return KIND_DOUBLE;
+		if ( Date.class.isAssignableFrom( fieldType ) )
+			return KIND_DATE;
+		if ( fieldType.equals( Boolean.class ) )
+			return KIND_BOOLEAN;
+		if ( fieldType.equals( String.class )
+				|| fieldType.equals( IClob.class )
+				|| fieldType.equals( Clob.class ) )
+			return KIND_STRING;
+		if ( fieldType.equals( BigDecimal.class ) )
+			return KIND_DECIMAL;
+		return KIND_OTHER;
+	}
+
+	/**
+	 * Write a block of result objects.
+	 *
+	 * @param os
+	 * @param resultObjects
+	 * @param from
+	 * @param count
+	 * @param compress
+	 *            whether the body of the block is compressed
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void writeBlock( OutputStream os, IResultObject[] resultObjects, int from,
+			int count, boolean compress ) throws IOException, DataException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream( );
+		DataOutputStream dos = new DataOutputStream( baos );
+
+		Object[] values = new Object[count];
+		for ( int j = 0; j < typeArray.length; j++ )
+		{
+			int nullCount = 0;
+			for ( int i = 0; i < count; i++ )
+			{
+				Object value = resultObjects[from + i].getFieldValue( j + 1 );
+				values[i] = kinds[j] == KIND_STRING || kinds[j] == KIND_OTHER
+						? value
+						: ResultObjectUtil.toStoredValue( value, typeArray[j] );
+				if ( values[i] == null )
+					nullCount++;
+			}
+			writeNulls( dos, values, count, nullCount );
+			if ( nullCount < count )
+				writeColumn( dos, j, values, count );
+		}
+		dos.flush( );
+
+		byte[] body = baos.toByteArray( );
+		int flags = 0;
+		byte[] data = body;
+		int dataLength = body.length;
+		if ( compress && body.length > 0 )
+		{
+			Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+			deflater.setInput( body );
+			deflater.finish( );
+			byte[] buffer = new byte[body.length];
+			int length = deflater.deflate( buffer );
+			if ( deflater.finished( ) && length < body.length )
+			{
+				flags |= FLAG_COMPRESSED;
+				data = buffer;
+				dataLength = length;
+			}
+			deflater.end( );
+		}
+
+		os.write( BLOCK_VERSION );
+		os.write( flags );
+		writeVarInt( os, count );
+		writeVarInt( os, body.length );
+		if ( ( flags & FLAG_COMPRESSED ) != 0 )
+			writeVarInt( os, dataLength );
+		os.write( data, 0, dataLength );
+	}
+
+	/**
+	 * Read a block of result objects.
+	 *
+	 * @param is
+	 * @param classLoader
+	 * @return null if the end of the stream is reached
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	IResultObject[] readBlock( InputStream is, ClassLoader classLoader )
+			throws IOException, DataException
+	{
+		int version = is.read( );
+		if ( version < 0 )
+			return null;
+		if ( version != BLOCK_VERSION )
+			throw new IOException( "Unsupported row block version " + version );
+
+		int flags = readByte( is );
+		int count = readVarInt( is );
+		int bodyLength = readVarInt( is );
+		byte[] body = new byte[bodyLength];
+		if ( ( flags & FLAG_COMPRESSED ) != 0 )
+		{
+			byte[] data = new byte[readVarInt( is )];
+			readFully( is, data );
+			Inflater inflater = new Inflater( );
+			try
+			{
+				inflater.setInput( data );
+				if ( inflater.inflate( body ) != bodyLength )
+					throw new IOException( "Corrupted row block" );
+			}
+			catch ( DataFormatException e )
+			{
+				throw new IOException( e.getMessage( ) );
+			}
+			finally
+			{
+				inflater.end( );
+			}
+		}
+		else
+		{
+			readFully( is, body );
+		}
+
+		DataInputStream dis = new DataInputStream( new ByteArrayInputStream( body ) );
+		Object[][] rows = new Object[count][typeArray.length];
+		boolean[] nulls = new boolean[count];
+		for ( int j = 0; j < typeArray.length; j++ )
+		{
+			int nullMode = dis.read( );
+			if ( nullMode == ALL_NULL )
+				continue;
+			if ( nullMode == SOME_NULL )
+			{
+				byte[] bitmap = new byte[( count + 7 ) / 8];
+				dis.readFully( bitmap );
+				for ( int i = 0; i < count; i++ )
+				{
+					nulls[i] = ( bitmap[i >> 3] & ( 1 << ( i & 7 ) ) ) != 0;
+				}
+			}
+			else
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					nulls[i] = false;
+				}
+			}
+			readColumn( dis, j, rows, nulls, count, classLoader );
+		}
+
+		IResultObject[] resultObjects = new IResultObject[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			resultObjects[i] = resultObjectUtil.newResultObject( rows[i] );
+		}
+		return resultObjects;
+	}
+
+	/**
+	 * @param dos
+	 * @param values
+	 * @param count
+	 * @param nullCount
+	 * @throws IOException
+	 */
+	private static void writeNulls( DataOutputStream dos, Object[] values,
+			int count, int nullCount ) throws IOException
+	{
+		if ( nullCount == count )
+		{
+			dos.write( ALL_NULL );
+		}
+		else if ( nullCount == 0 )
+		{
+			dos.write( NO_NULL );
+		}
+		else
+		{
+			dos.write( SOME_NULL );
+			byte[] bitmap = new byte[( count + 7 ) / 8];
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( values[i] == null )
+					bitmap[i >> 3] |= 1 << ( i & 7 );
+			}
+			dos.write( bitmap );
+		}
+	}
+
+	/**
+	 * Write the values of a column which are not null.
+	 *
+	 * @param dos
+	 * @param column
+	 * @param values
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeColumn( DataOutputStream dos, int column,
+			Object[] values, int count ) throws IOException, DataException
+	{
+		switch ( kinds[column] )
+		{
+			case KIND_INTEGER :
+			{
+				long previous = 0;
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] == null )
+						continue;
+					long value = ( (Integer) values[i] ).intValue( );
+					writeVarLong( dos, zigZag( value - previous ) );
+					previous = value;
+				}
+				break;
+			}
+			case KIND_DOUBLE :
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						dos.writeDouble( ( (Double) values[i] ).doubleValue( ) );
+				}
+				break;
+			}
+			case KIND_DATE :
+			{
+				long previous = 0;
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] == null )
+						continue;
+					long value = ( (Date) values[i] ).getTime( );
+					writeVarLong( dos, zigZag( value - previous ) );
+					previous = value;
+				}
+				break;
+			}
+			case KIND_BOOLEAN :
+			{
+				int bits = 0, bitCount = 0;
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] == null )
+						continue;
+					if ( ( (Boolean) values[i] ).booleanValue( ) )
+						bits |= 1 << bitCount;
+					if ( ++bitCount == 8 )
+					{
+						dos.write( bits );
+						bits = 0;
+						bitCount = 0;
+					}
+				}
+				if ( bitCount > 0 )
+					dos.write( bits );
+				break;
+			}
+			case KIND_STRING :
+			{
+				writeStrings( dos, values, count );
+				break;
+			}
+			case KIND_DECIMAL :
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						IOUtil.writeString( dos,
+								( (BigDecimal) values[i] ).toString( ) );
+				}
+				break;
+			}
+			default :
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( values[i] != null )
+						ResultObjectUtil.writeObject( dos,
+								values[i],
+								typeArray[column],
+								VersionManager.getLatestVersion( ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the strings of a column, through a dictionary if at most half of
+	 * them are distinct.
+	 *
+	 * @param dos
+	 * @param values
+	 * @param count
+	 * @throws IOException
+	 */
+	private static void writeStrings( DataOutputStream dos, Object[] values,
+			int count ) throws IOException
+	{
+		int valueCount = 0;
+		Map dictionary = new HashMap( );
+		List words = new ArrayList( );
+		int[] codes = new int[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( values[i] == null )
+				continue;
+			String value = values[i].toString( );
+			Integer code = (Integer) dictionary.get( value );
+			if ( code == null )
+			{
+				code = Integer.valueOf( words.size( ) );
+				dictionary.put( value, code );
+				words.add( value );
+			}
+			codes[valueCount++] = code.intValue( );
+		}
+
+		if ( words.size( ) * 2 > valueCount )
+		{
+			dos.write( PLAIN_STRING );
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( values[i] != null )
+					IOUtil.writeString( dos, values[i].toString( ) );
+			}
+			return;
+		}
+
+		dos.write( DICTIONARY_STRING );
+		writeVarInt( dos, words.size( ) );
+		for ( int i = 0; i < words.size( ); i++ )
+		{
+			IOUtil.writeString( dos, (String) words.get( i ) );
+		}
+		for ( int i = 0; i < valueCount; i++ )
+		{
+			writeVarInt( dos, codes[i] );
+		}
+	}
+
+	/**
+	 * Read the values of a column which are not null.
+	 *
+	 * @param dis
+	 * @param column
+	 * @param rows
+	 * @param nulls
+	 * @param count
+	 * @param classLoader
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void readColumn( DataInputStream dis, int column, Object[][] rows,
+			boolean[] nulls, int count, ClassLoader classLoader )
+			throws IOException, DataException
+	{
+		switch ( kinds[column] )
+		{
+			case KIND_INTEGER :
+			{
+				long previous = 0;
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( nulls[i] )
+						continue;
+					previous += unZigZag( readVarLong( dis ) );
+					rows[i][column] = Integer.valueOf( (int) previous );
+				}
+				break;
+			}
+			case KIND_DOUBLE :
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][column] = new Double( dis.readDouble( ) );
+				}
+				break;
+			}
+			case KIND_DATE :
+			{
+				long previous = 0;
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( nulls[i] )
+						continue;
+					previous += unZigZag( readVarLong( dis ) );
+					rows[i][column] = newDate( typeArray[column], previous );
+				}
+				break;
+			}
+			case KIND_BOOLEAN :
+			{
+				int bits = 0, bitCount = 8;
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( nulls[i] )
+						continue;
+					if ( bitCount == 8 )
+					{
+						bits = dis.read( );
+						bitCount = 0;
+					}
+					rows[i][column] = Boolean.valueOf( ( bits & ( 1 << bitCount++ ) ) != 0 );
+				}
+				break;
+			}
+			case KIND_STRING :
+			{
+				if ( dis.read( ) == PLAIN_STRING )
+				{
+					for ( int i = 0; i < count; i++ )
+					{
+						if ( !nulls[i] )
+							rows[i][column] = IOUtil.readString( dis );
+					}
+					break;
+				}
+				String[] words = new String[readVarInt( dis )];
+				for ( int i = 0; i < words.length; i++ )
+				{
+					words[i] = IOUtil.readString( dis );
+				}
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][column] = words[readVarInt( dis )];
+				}
+				break;
+			}
+			case KIND_DECIMAL :
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][column] = new BigDecimal( IOUtil.readString( dis ) );
+				}
+				break;
+			}
+			default :
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					if ( !nulls[i] )
+						rows[i][column] = ResultObjectUtil.readObject( dis,
+								typeArray[column],
+								classLoader,
+								VersionManager.getLatestVersion( ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a date value in the same way as ResultObjectUtil.readObject.
+	 *
+	 * @param fieldType
+	 * @param time
+	 * @return
+	 * @throws DataException
+	 */
+	private static Date newDate( Class fieldType, long time )
+			throws DataException
+	{
+		if ( fieldType.equals( Time.class ) )
+			return new Time( time );
+		if ( fieldType.equals( Timestamp.class ) )
+			return new Timestamp( time );
+		if ( fieldType.equals( java.sql.Date.class ) )
+		{
+			try
+			{
+				return DataTypeUtil.toSqlDate( new java.sql.Date( time ) );
+			}
+			catch ( BirtException e )
+			{
+				throw DataException.wrap( e );
+			}
+		}
+		return new Date( time );
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static long zigZag( long value )
+	{
+		return ( value << 1 ) ^ ( value >> 63 );
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static long unZigZag( long value )
+	{
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+
+	/**
+	 * Write an unsigned integer in 7 bit groups, the lowest first.
+	 *
+	 * @param os
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarInt( OutputStream os, int value )
+			throws IOException
+	{
+		writeVarLong( os, value & 0xFFFFFFFFL );
+	}
+
+	/**
+	 * @param os
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarLong( OutputStream os, long value )
+			throws IOException
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			os.write( (int) ( ( value & 0x7F ) | 0x80 ) );
+			value >>>= 7;
+		}
+		os.write( (int) value );
+	}
+
+	/**
+	 * @param is
+	 * @return
+	 * @throws IOException
+	 */
+	private static int readVarInt( InputStream is ) throws IOException
+	{
+		return (int) readVarLong( is );
+	}
+
+	/**
+	 * @param is
+	 * @return
+	 * @throws IOException
+	 */
+	private static long readVarLong( InputStream is ) throws IOException
+	{
+		long value = 0;
+		for ( int shift = 0; shift < 64; shift += 7 )
+		{
+			int b = readByte( is );
+			value |= (long) ( b & 0x7F ) << shift;
+			if ( ( b & 0x80 ) == 0 )
+				return value;
+		}
+		throw new IOException( "Corrupted row block" );
+	}
+
+	/**
+	 * @param is
+	 * @return
+	 * @throws IOException
+	 */
+	private static int readByte( InputStream is ) throws IOException
+	{
+		int b = is.read( );
+		if ( b < 0 )
+			throw new EOFException( );
+		return b;
+	}
+
+	/**
+	 * @param is
+	 * @param bytes
+	 * @throws IOException
+	 */
+	private static void readFully( InputStream is, byte[] bytes )
+			throws IOException
+	{
+		int total = 0;
+		while ( total < bytes.length )
+		{
+			int size = is.read( bytes, total, bytes.length - total );
+			if ( size < 0 )
+				throw new EOFException( );
+			total += size;
+		}
+	}
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.executor.cache;
 
+import java.lang.reflect.Method;
 import java.util.List;
 
 import org.eclipse.birt.data.engine.core.DataException;
@@ -49,6 +50,24 @@ public class RowResultSet implements IRowResultSet
 	private IResultObject nextResultObject;
 
 	private boolean finished = false;
+
+	// the number of threads used to process the fetch events
+	private int parallelism;
+
+	// not null if the fetch events are processed in parallel
+	private ParallelRowProcessor parallelProcessor;
+	private boolean parallelPrepared = false;
+
+	// the rows fetched and processed in advance by parallelProcessor
+	private IResultObject[] blockRows;
+	private boolean[] blockAccepted;
+	private DataException[] blockErrors;
+	private int blockSize = 0;
+	private int blockPos = 0;
+
+	// the number of rows processed in parallel at a time
+	private static final int BLOCK_SIZE = 4096;
+
 	/**
 	 * Construction
 	 * 
@@ -72,6 +91,7 @@ public class RowResultSet implements IRowResultSet
 			maxRows = Integer.MAX_VALUE;
 		
 		this.distinctValueFlag = smartCacheRequest.getDistinctValueFlag( );		
+		this.parallelism = smartCacheRequest.getParallelism( );
 	}
 
 	/**
@@ -115,26 +135,44 @@ public class RowResultSet implements IRowResultSet
 		IResultObject odaObject = null;
 		while ( true )
 		{
-			odaObject = fetch( );
-			if ( odaObject == null )
+			if ( blockPos < blockSize )
 			{
-				break;
+				// the row has been processed in parallel
+				odaObject = blockRows[blockPos];
+				blockRows[blockPos] = null;
+				actualIndex++;
+				if ( blockErrors[blockPos] != null )
+					throw blockErrors[blockPos];
+				if ( !blockAccepted[blockPos++] )
+				{
+					continue;
+				}
 			}
-			else 
+			else
 			{
-				actualIndex++;
-				if ( !processFetchEvent( odaObject, actualIndex ))
+				odaObject = fetch( );
+				if ( odaObject == null )
 				{
+					break;
+				}
+				if ( isParallelProcessing( odaObject ) )
+				{
+					processBlock( odaObject );
 					continue;
 				}
-				if ( this.distinctValueFlag == true
-							&& isDuplicatedObject( odaObject ) )
+				actualIndex++;
+				if ( !processFetchEvent( odaObject, actualIndex ))
 				{
-						continue;
+					continue;
 				}
-				currIndex++;
-				break;
 			}
+			if ( this.distinctValueFlag == true
+					&& isDuplicatedObject( odaObject ) )
+			{
+				continue;
+			}
+			currIndex++;
+			break;
 		}
 
 		return odaObject;
@@ -145,6 +183,93 @@ public class RowResultSet implements IRowResultSet
 		return odiAdpater.fetch( );
 	}
 
+	/**
+	 * Return whether the fetch events are processed in parallel. This is
+	 * decided when the first row is fetched. The template methods
+	 * beforeProcessFetchEvent and afterProcessFetchEvent can not be called for
+	 * the rows processed in parallel, so the rows are processed serially when
+	 * a subclass overrides them.
+	 * 
+	 * @param firstRow
+	 * @return
+	 * @throws DataException
+	 */
+	private boolean isParallelProcessing( IResultObject firstRow )
+			throws DataException
+	{
+		if ( !parallelPrepared )
+		{
+			parallelPrepared = true;
+			if ( parallelism > 1
+					&& eventList != null && eventList.size( ) > 0
+					&& !overridesFetchEventHooks( ) )
+				parallelProcessor = ParallelRowProcessor.newInstance( eventList,
+						firstRow.getResultClass( ),
+						parallelism );
+		}
+		return parallelProcessor != null;
+	}
+
+	/**
+	 * Return whether a subclass overrides beforeProcessFetchEvent or
+	 * afterProcessFetchEvent.
+	 * 
+	 * @return
+	 */
+	private boolean overridesFetchEventHooks( )
+	{
+		for ( Class c = getClass( ); c != RowResultSet.class; c = c.getSuperclass( ) )
+		{
+			Method[] methods = c.getDeclaredMethods( );
+			for ( int i = 0; i < methods.length; i++ )
+			{
+				String name = methods[i].getName( );
+				if ( name.equals( "beforeProcessFetchEvent" ) //$NON-NLS-1$
+						|| name.equals( "afterProcessFetchEvent" ) ) //$NON-NLS-1$
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fetch a block of rows starting from the given row, and process the
+	 * fetch events of these rows in parallel. No more rows than the ones
+	 * which might be returned are fetched.
+	 * 
+	 * @param firstRow
+	 * @throws DataException
+	 */
+	private void processBlock( IResultObject firstRow ) throws DataException
+	{
+		if ( blockRows == null )
+		{
+			blockRows = new IResultObject[BLOCK_SIZE];
+			blockAccepted = new boolean[BLOCK_SIZE];
+			blockErrors = new DataException[BLOCK_SIZE];
+		}
+		int capacity = Math.min( BLOCK_SIZE, maxRows - currIndex );
+
+		IResultObject row = firstRow;
+		int count = 0;
+		while ( row != null )
+		{
+			blockErrors[count] = null;
+			blockRows[count++] = row;
+			if ( count >= capacity )
+				break;
+			row = fetch( );
+		}
+
+		parallelProcessor.process( blockRows,
+				count,
+				actualIndex + 1,
+				blockAccepted,
+				blockErrors );
+		blockSize = count;
+		blockPos = 0;
+	}
+
 	/**
 	 * Process onFetchEvent in such a time window that closely after data gotten
 	 * from data source and closely before data will be done grouping and
@@ -26,7 +26,6 @@ import org.eclipse.birt.data.engine.odaconsumer.ResultSet;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultObject;
-import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
 /**
  * Help SmartCache to get the ResultSetCache, the real data cache.
@@ -277,11 +276,14 @@ class SmartCacheHelper
 			OdiAdapter odiAdpater, IResultClass rsMeta ) throws DataException
 	{
 		this.eventHandler = cacheRequest.getEventHandler( );
-		IRowResultSet rowResultSet = new ExpandableRowResultSet( new SmartCacheRequest( cacheRequest.getMaxRow( ),
+		SmartCacheRequest smartCacheRequest = new SmartCacheRequest( cacheRequest.getMaxRow( ),
 				cacheRequest.getFetchEvents( ),
 				odiAdpater,
 				rsMeta,
-				cacheRequest.getDistinctValueFlag( ) ) );
+				cacheRequest.getDistinctValueFlag( ) );
+		smartCacheRequest.setParallelism( CacheUtil.getParallelRowProcessingThreads( eventHandler == null
+				? null : eventHandler.getAppContext( ) ) );
+		IRowResultSet rowResultSet = new ExpandableRowResultSet( smartCacheRequest );
 		populateData( rowResultSet, rsMeta, cacheRequest.getSortSpec( ), cacheRequest.getCacheSize( ) );
 	}
 
@@ -310,6 +312,11 @@ class SmartCacheHelper
 		IResultObject odaObject;
 		IResultObject[] resultObjects;
 		List resultObjectsList = new ArrayList( );
+		// the rows are kept column by column until a row of another result
+		// class comes
+		ColumnarMemoryCache columnarCache = CacheUtil.isColumnarMemoryCache( eventHandler == null
+				? null : eventHandler.getAppContext( ) )
+				? new ColumnarMemoryCache( rsMeta ) : null;
 
 		int dataCount = 0;
 		long usedMemorySize = 0;
@@ -335,10 +342,26 @@ class SmartCacheHelper
 					{
 						obs[i - 1] = odaObject.getFieldValue( i );
 					}
-					ResultObject temp = new ResultObject( rsMeta, obs );
-					resultObjectsList.add( temp );
+					odaObject = new ResultObject( rsMeta, obs );
+				}
+				if ( columnarCache != null && !columnarCache.add( odaObject ) )
+				{
+					// the size of the rows is counted again as they are no
+					// longer kept column by column
+					usedMemorySize = 0;
+					for ( int i = 0; i < columnarCache.getCount( ); i++ )
+					{
+						IResultObject row = columnarCache.toResultObject( i );
+						resultObjectsList.add( row );
+						if ( memoryCacheSize != 0 )
+							usedMemorySize += sizeOfUtil.sizeOf( row );
+					}
+					columnarCache = null;
+				}
+				if ( columnarCache != null )
+				{
 					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( temp );
+						usedMemorySize = columnarCache.getMemorySize( );
 				}
 				else
 				{
@@ -352,21 +375,55 @@ class SmartCacheHelper
 			{
 				logger.fine( "DiskCache is used" );
 
-				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				int unitRowCount = dataCount;
+				if ( columnarCache != null )
+				{
+					// only the first unit of rows is copied out of the
+					// columnar cache at once, the other rows are read by the
+					// disk cache one by one before the rest of the rows
+					unitRowCount = getUnitRowCount( columnarCache,
+							sizeOfUtil,
+							memoryCacheSize );
+					resultObjects = new IResultObject[unitRowCount];
+					for ( int i = 0; i < unitRowCount; i++ )
+					{
+						resultObjects[i] = columnarCache.toResultObject( i );
+					}
+					rowResultSet = new ColumnarRowResultSet( columnarCache,
+							unitRowCount,
+							odaObject,
+							rowResultSet );
+					odaObject = rowResultSet.next( );
+					columnarCache = null;
+				}
+				else
+				{
+					resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				}
 				// the order is: resultObjects, odaObject, rowResultSet
 				resultSetCache = new DiskCache( resultObjects,
 						odaObject,
 						rowResultSet,
 						rsMeta,
 						getComparator( sortSpec, eventHandler ),
-						dataCount,
+						unitRowCount,
 						maxRows,
-						this.session );
+						this.session,
+						eventHandler == null ? null
+								: eventHandler.getAppContext( ) );
 				break;
 			}
 		}
 
-		if ( resultSetCache == null )
+		if ( resultSetCache == null && columnarCache != null )
+		{
+			logger.fine( "ColumnarMemoryCache is used" );
+
+			columnarCache.endAdd( getComparator( sortSpec, eventHandler ),
+					getHashGroupingThreads( sortSpec ) );
+			resultSetCache = columnarCache;
+		}
+		else if ( resultSetCache == null )
 		{
 			logger.fine( "MemoryCache is used" );
 
@@ -374,7 +431,8 @@ class SmartCacheHelper
 
 			resultSetCache = new MemoryCache( resultObjects,
 					rsMeta,
-					getComparator( sortSpec, eventHandler ) );
+					getComparator( sortSpec, eventHandler ),
+					getHashGroupingThreads( sortSpec ) );
 		}
 
 		odaObject = null;
@@ -386,83 +444,131 @@ class SmartCacheHelper
 		logger.fine( "Time consumed by cache is: " + consumedTime + " second" );
 	}
 	
+	/**
+	 * Return the number of rows sorted together by the disk cache when the
+	 * rows of a columnar cache are moved to it. The rows take more memory once
+	 * they are copied out of the columns, so fewer of them fit in the memory
+	 * buffer.
+	 * 
+	 * @param columnarCache
+	 * @param sizeOfUtil
+	 * @param memoryCacheSize
+	 * @return
+	 * @throws DataException
+	 */
+	private static int getUnitRowCount( ColumnarMemoryCache columnarCache,
+			SizeOfUtil sizeOfUtil, long memoryCacheSize ) throws DataException
+	{
+		int count = columnarCache.getCount( );
+		int rowSize = sizeOfUtil.sizeOf( columnarCache.toResultObject( 0 ) );
+		if ( memoryCacheSize == 0 || rowSize <= 0 )
+			return count;
+		long unitRowCount = memoryCacheSize / rowSize;
+		if ( unitRowCount < 1 )
+			return 1;
+		return unitRowCount < count ? (int) unitRowCount : count;
+	}
+
+	/**
+	 * @param sortSpec
+	 * @return the number of threads grouping the rows by hashing instead of
+	 *         sorting them, 0 if the rows are sorted
+	 */
+	private int getHashGroupingThreads( SortSpec sortSpec )
+	{
+		if ( sortSpec == null || !sortSpec.isGroupingOnly( ) )
+			return 0;
+		return CacheUtil.getHashGroupingThreads( eventHandler == null ? null
+				: eventHandler.getAppContext( ) );
+	}
+
 	/**
 	 * @param sortSpec
 	 * @return Comparator based on specified sortSpec, null indicates there is
 	 *         no need to do sorting
 	 */
 	private static Comparator getComparator( SortSpec sortSpec,
-			final IEventHandler eventHandler )
+			IEventHandler eventHandler )
 	{
 		if ( sortSpec == null )
 			return null;
 
-		final int[] sortKeyIndexes = sortSpec.getSortKeyIndexes();
-		final String[] sortKeyColumns = sortSpec.getSortKeyColumns();
+		int[] sortKeyIndexes = sortSpec.getSortKeyIndexes();
 
 		if ( sortKeyIndexes == null || sortKeyIndexes.length == 0 )
 			return null;
 
-		final int[] sortAscending = sortSpec.getSortAscending();
-		final CompareHints[] comparators = sortSpec.getComparator( );
-		Comparator comparator = new Comparator( ) {
+		return new SortKeyComparator( sortSpec, eventHandler );
+	}
 
-			/**
-			 * compares two row indexes, actually compares two rows pointed by
-			 * the two row indexes
-			 */
-			public int compare( Object obj1, Object obj2 )
-			{
-				IResultObject row1 = (IResultObject) obj1;
-				IResultObject row2 = (IResultObject) obj2;
+	/**
+	 * The rows of a columnar cache from a given position, followed by the row
+	 * which did not fit in memory and the rows not read yet. The rows are
+	 * copied out of the columns as they are read.
+	 */
+	private static class ColumnarRowResultSet implements IRowResultSet
+	{
 
-				// compare group keys first
-				for ( int i = 0; i < sortKeyIndexes.length; i++ )
-				{
-					int colIndex = sortKeyIndexes[i];
-					String colName = sortKeyColumns[i];
-					try
-					{
-						Object colObj1 = null;
-						Object colObj2 = null;
-
-						if ( eventHandler != null )
-						{
-							colObj1 = eventHandler.getValue( row1,
-									colIndex,
-									colName );
-							colObj2 = eventHandler.getValue( row2,
-									colIndex,
-									colName );
-						}
-						else
-						{
-							colObj1 = row1.getFieldValue( colIndex );
-							colObj2 = row2.getFieldValue( colIndex );
-						}
-
-						int result = ScriptEvalUtil.compare( colObj1, colObj2, comparators[i] );
-						if ( result != 0 )
-						{
-							if( sortAscending[i] == SortSpec.SORT_DISABLE )
-							{
-								return 0;
-							}
-							return sortAscending[i] == SortSpec.SORT_ASC ? result : -result;
-						}
-					}
-					catch ( DataException e )
-					{
-						// Should never get here
-						// colIndex is always valid
-					}
-				}
+		private ColumnarMemoryCache columnarCache;
+
+		// the position of the next row of columnarCache
+		private int columnarIndex;
+
+		private IResultObject nextResultObject;
 
-				// all equal, so return 0
-				return 0;
+		private IRowResultSet rowResultSet;
+
+		/**
+		 * @param columnarCache
+		 * @param fromIndex
+		 * @param nextResultObject
+		 * @param rowResultSet
+		 */
+		ColumnarRowResultSet( ColumnarMemoryCache columnarCache,
+				int fromIndex, IResultObject nextResultObject,
+				IRowResultSet rowResultSet )
+		{
+			this.columnarCache = columnarCache;
+			this.columnarIndex = fromIndex;
+			this.nextResultObject = nextResultObject;
+			this.rowResultSet = rowResultSet;
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.executor.cache.IRowResultSet#getMetaData()
+		 */
+		public IResultClass getMetaData( )
+		{
+			return rowResultSet.getMetaData( );
+		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.executor.cache.IRowResultSet#next()
+		 */
+		public IResultObject next( ) throws DataException
+		{
+			if ( columnarCache != null )
+			{
+				if ( columnarIndex < columnarCache.getCount( ) )
+					return columnarCache.toResultObject( columnarIndex++ );
+				// the columns are released once all their rows are read
+				columnarCache = null;
+			}
+			if ( nextResultObject != null )
+			{
+				IResultObject result = nextResultObject;
+				nextResultObject = null;
+				return result;
 			}
-		};
+			return rowResultSet.next( );
+		}
 
-		return comparator;
+		/*
+		 * @see org.eclipse.birt.data.engine.executor.cache.IRowResultSet#getIndex()
+		 */
+		public int getIndex( ) throws DataException
+		{
+			return rowResultSet.getIndex( );
+		}
 	}
 }
@@ -24,6 +24,7 @@ public class SmartCacheRequest
 	private OdiAdapter odiAdpater;
 	private IResultClass resultClass;	
 	private boolean distinctValueFlag;
+	private int parallelism;
 
 	/**
 	 * @param maxRow
@@ -83,4 +84,20 @@ public class SmartCacheRequest
 		return distinctValueFlag;
 	}
 	
+	/**
+	 * @return the number of threads used to process the fetch events
+	 */
+	public int getParallelism( )
+	{
+		return parallelism;
+	}
+	
+	/**
+	 * @param parallelism
+	 */
+	public void setParallelism( int parallelism )
+	{
+		this.parallelism = parallelism;
+	}
+	
 }
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.odi.IEventHandler;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
+
+/**
+ * The comparator of result objects defined by a SortSpec. Besides comparing
+ * two result objects, it is able to retrieve the sort key values of a result
+ * object once and compare these values later. The sort key values may be
+ * evaluated by script, so they should be retrieved by the thread running the
+ * query, while the comparison of the values can be done by any thread.
+ */
+public class SortKeyComparator implements Comparator
+{
+	// the key value which can not be retrieved, it is ignored in comparison
+	private static final Object INVALID_KEY = new Object( );
+
+	private int[] sortKeyIndexes;
+	private String[] sortKeyColumns;
+	private int[] sortAscending;
+	private CompareHints[] comparators;
+	private IEventHandler eventHandler;
+
+	/**
+	 * @param sortSpec
+	 * @param eventHandler
+	 */
+	public SortKeyComparator( SortSpec sortSpec, IEventHandler eventHandler )
+	{
+		this.sortKeyIndexes = sortSpec.getSortKeyIndexes( );
+		this.sortKeyColumns = sortSpec.getSortKeyColumns( );
+		this.sortAscending = sortSpec.getSortAscending( );
+		this.comparators = sortSpec.getComparator( );
+		this.eventHandler = eventHandler;
+	}
+
+	/**
+	 * compares two row indexes, actually compares two rows pointed by the two
+	 * row indexes
+	 *
+	 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+	 */
+	public int compare( Object obj1, Object obj2 )
+	{
+		IResultObject row1 = (IResultObject) obj1;
+		IResultObject row2 = (IResultObject) obj2;
+
+		// compare group keys first
+		for ( int i = 0; i < sortKeyIndexes.length; i++ )
+		{
+			try
+			{
+				int result = ScriptEvalUtil.compare( getSortKey( row1, i ),
+						getSortKey( row2, i ),
+						comparators[i] );
+				if ( result != 0 )
+					return getOrderedResult( i, result );
+			}
+			catch ( DataException e )
+			{
+				// Should never get here
+				// colIndex is always valid
+			}
+		}
+
+		// all equal, so return 0
+		return 0;
+	}
+
+	/**
+	 * Retrieve the values of all sort keys of a result object.
+	 *
+	 * @param row
+	 * @return
+	 */
+	public Object[] getSortKeys( IResultObject row )
+	{
+		Object[] keys = new Object[sortKeyIndexes.length];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			try
+			{
+				keys[i] = getSortKey( row, i );
+			}
+			catch ( DataException e )
+			{
+				keys[i] = INVALID_KEY;
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Compare the sort key values of two result objects, in the same way as
+	 * compare does for the result objects.
+	 *
+	 * @param keys1
+	 * @param keys2
+	 * @return
+	 */
+	public int compareSortKeys( Object[] keys1, Object[] keys2 )
+	{
+		for ( int i = 0; i < keys1.length; i++ )
+		{
+			if ( keys1[i] == INVALID_KEY || keys2[i] == INVALID_KEY )
+				continue;
+			try
+			{
+				int result = ScriptEvalUtil.compare( keys1[i],
+						keys2[i],
+						comparators[i] );
+				if ( result != 0 )
+					return getOrderedResult( i, result );
+			}
+			catch ( DataException e )
+			{
+				// ignore the key as compare does
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Return whether compareSortKeys can be called by several threads at the
+	 * same time for the given sort key values. It is not the case when a
+	 * collator is used, since a collator is not thread safe, or when the
+	 * values of a key are not comparable values of the same class, since they
+	 * are then converted through shared formatters before being compared.
+	 *
+	 * @param keys
+	 *            the sort key values of the result objects to be compared
+	 * @param count
+	 * @return
+	 */
+	public boolean isSortKeyComparisonThreadSafe( Object[][] keys, int count )
+	{
+		for ( int i = 0; i < sortKeyIndexes.length; i++ )
+		{
+			if ( comparators[i] != null
+					&& comparators[i].getComparator( ) != null )
+				return false;
+
+			Class valueClass = null;
+			for ( int j = 0; j < count; j++ )
+			{
+				Object value = keys[j][i];
+				if ( value == null || value == INVALID_KEY )
+					continue;
+				if ( !( value instanceof Comparable ) )
+					return false;
+				if ( valueClass == null )
+					valueClass = value.getClass( );
+				else if ( value.getClass( ) != valueClass )
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return whether two result objects are equal by compare if and only if
+	 * their sort key values are equal by equals, so that the result objects
+	 * can be grouped by hashing the values. It is the case when no collator is
+	 * used and the values of each key are of one of the basic classes whose
+	 * equals is consistent with compareTo.
+	 *
+	 * @param keys
+	 *            the sort key values of the result objects to be grouped
+	 * @param count
+	 * @return
+	 */
+	public boolean isSortKeyHashable( Object[][] keys, int count )
+	{
+		if ( !isSortKeyComparisonThreadSafe( keys, count ) )
+			return false;
+
+		for ( int i = 0; i < sortKeyIndexes.length; i++ )
+		{
+			if ( comparators[i] != null )
+				return false;
+			for ( int j = 0; j < count; j++ )
+			{
+				Object value = keys[j][i];
+				if ( value == INVALID_KEY )
+					return false;
+				if ( value != null && !isHashableClass( value.getClass( ) ) )
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param valueClass
+	 * @return
+	 */
+	private static boolean isHashableClass( Class valueClass )
+	{
+		return valueClass == String.class
+				|| valueClass == Integer.class || valueClass == Long.class
+				|| valueClass == Double.class || valueClass == Float.class
+				|| valueClass == Short.class || valueClass == Byte.class
+				|| valueClass == Boolean.class
+				|| valueClass == java.util.Date.class
+				|| valueClass == java.sql.Date.class
+				|| valueClass == java.sql.Time.class
+				|| valueClass == java.sql.Timestamp.class;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @param keyIndex
+	 * @return
+	 * @throws DataException
+	 */
+	private Object getSortKey( IResultObject row, int keyIndex )
+			throws DataException
+	{
+		int colIndex = sortKeyIndexes[keyIndex];
+		String colName = sortKeyColumns[keyIndex];
+		if ( eventHandler != null )
+			return eventHandler.getValue( row, colIndex, colName );
+		return row.getFieldValue( colIndex );
+	}
+
+	/**
+	 * Apply the sort direction of a key to the comparison result of its
+	 * values, which is not zero.
+	 *
+	 * @param keyIndex
+	 * @param result
+	 * @return
+	 */
+	private int getOrderedResult( int keyIndex, int result )
+	{
+		if ( sortAscending[keyIndex] == SortSpec.SORT_DISABLE )
+		{
+			return 0;
+		}
+		return sortAscending[keyIndex] == SortSpec.SORT_ASC ? result : -result;
+	}
+}
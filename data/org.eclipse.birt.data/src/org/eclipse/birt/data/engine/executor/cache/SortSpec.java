@@ -23,6 +23,7 @@ public class SortSpec
 	private String[] sortKeyColumns;
 	private int[] sortAscending;
 	private CompareHints[] comparator;
+	private boolean groupingOnly;
 
     public static final int SORT_DISABLE = IGroupDefinition.NO_SORT; 
     public static final int SORT_ASC = IGroupDefinition.SORT_ASC; 
@@ -91,5 +92,27 @@ public class SortSpec
 	{
 		return sortKeyIndexes;
 	}
+
+	/**
+	 * Indicate that the rows are sorted only to gather the rows of each group,
+	 * as for a summary query ordered on its group keys. The rows may then be
+	 * grouped by hashing their sort key values, and only the distinct key
+	 * values are sorted.
+	 * 
+	 * @param groupingOnly
+	 */
+	public void setGroupingOnly( boolean groupingOnly )
+	{
+		this.groupingOnly = groupingOnly;
+	}
+
+	/**
+	 * @return whether the rows are sorted only to gather the rows of each
+	 *         group
+	 */
+	public boolean isGroupingOnly( )
+	{
+		return groupingOnly;
+	}
 	
 }
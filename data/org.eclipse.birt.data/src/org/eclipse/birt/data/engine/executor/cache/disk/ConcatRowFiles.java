@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Provide the service of reading the objects of several files one file after
+ * another. The objects of a file all come after those of the files before it,
+ * so that they need not be merged. Only the file being read is open, so that
+ * any number of files can be read.
+ */
+class ConcatRowFiles implements IRowIterator
+{
+	private RowFile[] subRowFiles = null;
+	private int currIndex = 0;
+
+	/**
+	 * @param subRowFiles
+	 *            The objects in every file come after those of the files
+	 *            before it.
+	 */
+	ConcatRowFiles( RowFile[] subRowFiles )
+	{
+		assert subRowFiles != null;
+
+		this.subRowFiles = subRowFiles;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( ) throws DataException
+	{
+		// the other files are reset when they are reached
+		if ( currIndex < subRowFiles.length )
+			subRowFiles[currIndex].closeReader( );
+		currIndex = 0;
+		if ( subRowFiles.length > 0 )
+			subRowFiles[0].reset( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		while ( currIndex < subRowFiles.length )
+		{
+			IResultObject value = subRowFiles[currIndex].fetch( );
+			if ( value != null )
+				return value;
+			// the file is read up, release it before reading the next one
+			subRowFiles[currIndex].closeReader( );
+			currIndex++;
+			if ( currIndex < subRowFiles.length )
+				subRowFiles[currIndex].reset( );
+		}
+		return null;
+	}
+
+	/*
+	 * Delete all the files correlated with this ConcatRowFiles object.
+	 * 
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( ) throws DataException
+	{
+		for ( int i = 0; i < subRowFiles.length; i++ )
+		{
+			subRowFiles[i].close( );
+		}
+
+		subRowFiles = null;
+	}
+
+}
@@ -12,6 +12,7 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -35,6 +36,10 @@ class DataFileReader
 
 	private ResultObjectUtil resultObjectUtil;
 	
+	// the rows of the current block which are not read yet
+	private IResultObject[] block;
+	private int blockPos;
+	
 	/**
 	 * A util method to new instance of DataFileReader
 	 * 
@@ -101,7 +106,20 @@ class DataFileReader
 			isOpen = true;
 		}
 
-		return resultObjectUtil.readData( bis, null, length );
+		IResultObject[] resultObjects = new IResultObject[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			if ( block == null || blockPos == block.length )
+			{
+				block = resultObjectUtil.readBlock( bis, null );
+				blockPos = 0;
+				if ( block == null )
+					throw new EOFException( );
+			}
+			resultObjects[i] = block[blockPos];
+			block[blockPos++] = null;
+		}
+		return resultObjects;
 	}
 
 	/**
@@ -111,6 +129,7 @@ class DataFileReader
 	 */
 	void close( )
 	{
+		block = null;
 		if ( isOpen )
 		{
 			try
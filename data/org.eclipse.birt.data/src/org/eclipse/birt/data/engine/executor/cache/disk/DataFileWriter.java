@@ -27,6 +27,9 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
  */
 class DataFileWriter
 {
+	// the number of rows written as one block
+	private static final int BLOCK_ROW_COUNT = 256;
+	
 	private File file;
 	private boolean isOpen;
 
@@ -35,6 +38,10 @@ class DataFileWriter
 
 	private ResultObjectUtil resultObjectUtil;
 	
+	// rows which are not written to file yet
+	private IResultObject[] blockBuffer;
+	private int blockRowCount;
+	
 	/**
 	 * A util method to new instance of DataFileWriter
 	 * 
@@ -102,16 +109,45 @@ class DataFileWriter
 			isOpen = true;
 		}
 
-		resultObjectUtil.writeData( bos, resultObjects, count );
+		if ( blockBuffer == null )
+			blockBuffer = new IResultObject[BLOCK_ROW_COUNT];
+		for ( int i = 0; i < count; i++ )
+		{
+			blockBuffer[blockRowCount++] = resultObjects[i];
+			if ( blockRowCount == BLOCK_ROW_COUNT )
+				flush( );
+		}
+	}
+
+	/**
+	 * Write the rows which are buffered to file. This method must be called
+	 * before the writer is closed, otherwise the buffered rows are lost.
+	 * 
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void flush( ) throws IOException, DataException
+	{
+		if ( blockRowCount == 0 )
+			return;
+		
+		resultObjectUtil.writeBlock( bos, blockBuffer, 0, blockRowCount );
+		for ( int i = 0; i < blockRowCount; i++ )
+		{
+			blockBuffer[i] = null;
+		}
+		blockRowCount = 0;
 	}
 
 	/**
-	 * Close current output file 
+	 * Close current output file. The rows which are not flushed are discarded.
 	 * 
 	 * @throws IOException, file close exception
 	 */
 	void close( )
 	{
+		blockRowCount = 0;
+		blockBuffer = null;
 		if ( isOpen )
 		{
 			try
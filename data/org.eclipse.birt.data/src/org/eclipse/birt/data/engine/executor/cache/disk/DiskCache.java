@@ -77,6 +77,10 @@ public class DiskCache implements ResultSetCache
 	
 	private boolean needCache;
 	private BufferedStructureArray cache;
+	
+	// the application context of the query
+	private Map appContext;
+	
 	/**
 	 * The MemoryCacheRowCount indicates the upper limitation of how many rows
 	 * can be loaded into memory. Note this value is included as well. Look at
@@ -99,9 +103,40 @@ public class DiskCache implements ResultSetCache
 			IRowResultSet rowResultSet, IResultClass rsMeta,
 			Comparator comparator, int MemoryCacheRowCount,int maxRows, DataEngineSession session )
 			throws DataException
+	{
+		this( resultObjects,
+				resultObject,
+				rowResultSet,
+				rsMeta,
+				comparator,
+				MemoryCacheRowCount,
+				maxRows,
+				session,
+				null );
+	}
+	
+	/**
+	 * @param resultObjects
+	 * @param nextResultObject
+	 * @param rowResultSet
+	 * @param rsMeta
+	 * @param comparator
+	 * @param MemoryCacheRowCount
+	 * @param maxRows
+	 * @param session
+	 * @param appContext
+	 *            the application context of the query, which tells how the
+	 *            rows are sorted and written
+	 * @throws DataException
+	 */
+	public DiskCache( IResultObject[] resultObjects, IResultObject resultObject,
+			IRowResultSet rowResultSet, IResultClass rsMeta,
+			Comparator comparator, int MemoryCacheRowCount, int maxRows,
+			DataEngineSession session, Map appContext ) throws DataException
 	{
 		//this.rsMeta = rsMeta;
 		this.MemoryCacheRowCount = MemoryCacheRowCount;
+		this.appContext = appContext;
 		this.rsMeta = rsMeta;
 		this.session = session;
 		this.diskBasedResultSet = new DiskCacheResultSet( getInfoMap( ), session );
@@ -349,6 +384,8 @@ public class DiskCache implements ResultSetCache
 	 * 		tempDir, to generated temp file in DiskMergeSort
 	 * 		goalFile, to generate the end result file
 	 * 		dataCountOfUnit, to indicate how many rows can be loaded into memory
+	 * 		sortThreads, to indicate how many threads can sort these rows
+	 * 		compressBlocks, to indicate whether the temp files are compressed
 	 * @throws DataException 
 	 */
 	private Map getInfoMap( ) throws DataException
@@ -359,6 +396,10 @@ public class DiskCache implements ResultSetCache
 		goalFileStr = getGoalFileStr( );
 		infoMap.put( "goalFile", goalFileStr );
 		infoMap.put( "dataCountOfUnit", "" + MemoryCacheRowCount );
+		infoMap.put( "sortThreads", ""
+				+ CacheUtil.getParallelSortThreads( appContext ) );
+		infoMap.put( "compressBlocks", ""
+				+ CacheUtil.isDiskCacheCompression( appContext ) );
 
 		return infoMap;
 	}
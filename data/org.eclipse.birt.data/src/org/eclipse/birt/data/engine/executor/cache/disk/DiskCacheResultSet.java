@@ -59,6 +59,7 @@ class DiskCacheResultSet
 		IResultClass rsMetaData = resultObjects[0].getResultClass( );
 		assert rsMetaData != null;
 		this.resultObjectUtil = ResultObjectUtil.newInstance( rsMetaData, session );
+		this.resultObjectUtil.setBlockCompression( "true".equals( infoMap.get( "compressBlocks" ) ) );
 		
 		databaseExport = DiskDataExport.newInstance( infoMap,
 				comparator,
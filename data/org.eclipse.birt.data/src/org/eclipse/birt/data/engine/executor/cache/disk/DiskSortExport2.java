@@ -26,6 +26,10 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
 /**
  * One implemenation of DataBaseExport. This class will read data from data base
  * and export to file with sort operation done.
+ * <p>
+ * The rows are checked to be in order while they are read. As long as they
+ * are, the units are not sorted, and the temporary files are read one after
+ * another instead of being merged.
  */
 class DiskSortExport2 extends DiskDataExport
 {
@@ -48,6 +52,10 @@ class DiskSortExport2 extends DiskDataExport
 	// the goal file
 	private IRowIterator goalRowIterator = null;
 
+	// whether the rows read so far are in order, and the last of them
+	private boolean inOrder = true;
+	private IResultObject lastRow = null;
+
 	/**
 	 * @param dataProvider
 	 */
@@ -68,7 +76,10 @@ class DiskSortExport2 extends DiskDataExport
 		tempFileUtil = new MergeTempFileUtil( (String) ( infoMap.get( "tempDir" ) ),
 				resultObjectUtil );
 
-		mergeSortUtil = MergeSortUtil.getUtil( comparator );
+		int sortThreads = 0;
+		if ( infoMap.get( "sortThreads" ) != null )
+			sortThreads = Integer.parseInt( (String) infoMap.get( "sortThreads" ) );
+		mergeSortUtil = MergeSortUtil.getUtil( comparator, sortThreads );
 		
 		this.currRowFiles = new ArrayList( );
 		this.inMemoryPos = -1;
@@ -81,6 +92,8 @@ class DiskSortExport2 extends DiskDataExport
 			throws IOException
 	{
 		dataCountOfTotal = resultObjects.length;
+		for ( int i = 0; i < resultObjects.length; i++ )
+			checkOrder( resultObjects[i] );
 		System.arraycopy( resultObjects, 0, rowBuffer, 0, resultObjects.length );
 		inMemoryPos = this.dataCountOfUnit - 1;
 	}
@@ -102,11 +115,19 @@ class DiskSortExport2 extends DiskDataExport
 				maxRows );
 			dataCountOfTotal += dataCountOfRest;
 
-			MergeSortImpl mergeSortImpl = new MergeSortImpl( this.dataCountOfUnit,
-				this.mergeSortUtil,
-				this.tempFileUtil,
-				this.currRowFiles, session );
-			this.goalRowIterator = mergeSortImpl.mergeSortOnUnits( );
+			if ( inOrder )
+			{
+				this.goalRowIterator = new ConcatRowFiles( (RowFile[]) this.currRowFiles.toArray( new RowFile[this.currRowFiles.size( )] ) );
+			}
+			else
+			{
+				MergeSortImpl mergeSortImpl = new MergeSortImpl( this.dataCountOfUnit,
+						this.mergeSortUtil,
+						this.tempFileUtil,
+						this.currRowFiles,
+						session );
+				this.goalRowIterator = mergeSortImpl.mergeSortOnUnits( );
+			}
 		}
 		catch( IOException ie )
 		{
@@ -167,9 +188,12 @@ class DiskSortExport2 extends DiskDataExport
 		if ( inMemoryPos == dataCountOfUnit - 1 )
 		{
 			prepareNewTempRowFile( 0 );
-			mergeSortUtil.sortSelf( rowBuffer );
+			// the rows of the buffer are in the order they are read
+			if ( !inOrder )
+				mergeSortUtil.sortSelf( rowBuffer );
 			inMemoryPos = -1;
 		}
+		checkOrder( resultObject );
 		
 		inMemoryPos++;
 		getCurrTempFile( currRowFiles ).write( rowBuffer[inMemoryPos] );
@@ -185,7 +209,8 @@ class DiskSortExport2 extends DiskDataExport
 	{
 		// Now all the rest rows exist in memory.
 		rowBuffer = interchange( rowBuffer, inMemoryPos );
-		mergeSortUtil.sortSelf( rowBuffer );
+		if ( !inOrder )
+			mergeSortUtil.sortSelf( rowBuffer );
 		
 		int cacheSize = 0;
 		if ( currRowFiles.size( ) <= dataCountOfUnit )
@@ -198,6 +223,26 @@ class DiskSortExport2 extends DiskDataExport
 		getCurrTempFile( currRowFiles ).endWrite( );
 	}
 
+	/**
+	 * Checks whether a row comes after the last row read in the sort order.
+	 * 
+	 * @param resultObject
+	 */
+	private void checkOrder( IResultObject resultObject )
+	{
+		if ( !inOrder )
+			return;
+		if ( lastRow != null
+				&& mergeSortUtil.getComparator( ).compare( lastRow,
+						resultObject ) > 0 )
+		{
+			inOrder = false;
+			lastRow = null;
+			return;
+		}
+		lastRow = resultObject;
+	}
+
 	/**
 	 * To switch the place of rows in array by a postion.
 	 * 
@@ -224,8 +269,11 @@ class DiskSortExport2 extends DiskDataExport
 	 * file and initialize row buffer.
 	 * 
 	 * @param cacheSize
+	 * @throws IOException
+	 * @throws DataException
 	 */
-	private void prepareNewTempRowFile( int cacheSize )
+	private void prepareNewTempRowFile( int cacheSize ) throws IOException,
+			DataException
 	{
 		if ( currRowFiles.size( ) > 0 )
 		{
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.util.Comparator;
+
+/**
+ * A loser tree used to merge several sorted sequences. The tree holds the
+ * current head of each sequence, and finds the smallest of them. When the head
+ * of the winning sequence is replaced, only the matches on the path from that
+ * sequence to the root are replayed, so each step of the merge needs about
+ * log2(k) comparisons for k sequences. Equal heads are ordered by the index of
+ * their sequence, which keeps the merge stable.
+ */
+class LoserTree
+{
+	// the current head of each sequence, null if the sequence is exhausted
+	private Object[] heads;
+	private Comparator comparator;
+
+	// tree[0] is the index of the winner, tree[1] to tree[k - 1] are the
+	// indexes of the losers of the matches played at the inner nodes
+	private int[] tree;
+
+	/**
+	 * @param heads
+	 *            the first value of each sequence, null for an empty sequence
+	 * @param comparator
+	 */
+	LoserTree( Object[] heads, Comparator comparator )
+	{
+		this.heads = heads;
+		this.comparator = comparator;
+
+		int k = heads.length;
+		this.tree = new int[Math.max( k, 1 )];
+		if ( k <= 1 )
+			return;
+
+		// play all the matches from the leaves, which are the nodes from k to
+		// 2k - 1, up to the root
+		int[] winners = new int[2 * k];
+		for ( int i = 0; i < k; i++ )
+		{
+			winners[k + i] = i;
+		}
+		for ( int node = k - 1; node > 0; node-- )
+		{
+			int left = winners[2 * node];
+			int right = winners[2 * node + 1];
+			if ( beats( left, right ) )
+			{
+				winners[node] = left;
+				tree[node] = right;
+			}
+			else
+			{
+				winners[node] = right;
+				tree[node] = left;
+			}
+		}
+		tree[0] = winners[1];
+	}
+
+	/**
+	 * @return the index of the sequence with the smallest head, or -1 if all
+	 *         the sequences are exhausted
+	 */
+	int getWinner( )
+	{
+		if ( heads.length == 0 || heads[tree[0]] == null )
+			return -1;
+		return tree[0];
+	}
+
+	/**
+	 * @return the smallest head, or null if all the sequences are exhausted
+	 */
+	Object getWinnerValue( )
+	{
+		if ( heads.length == 0 )
+			return null;
+		return heads[tree[0]];
+	}
+
+	/**
+	 * Replace the head of the winning sequence with its next value.
+	 *
+	 * @param value
+	 *            null if the winning sequence is exhausted
+	 */
+	void replaceWinner( Object value )
+	{
+		int winner = tree[0];
+		heads[winner] = value;
+
+		int k = heads.length;
+		for ( int node = ( winner + k ) >> 1; node > 0; node >>= 1 )
+		{
+			if ( beats( tree[node], winner ) )
+			{
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		}
+		tree[0] = winner;
+	}
+
+	/**
+	 * Return whether the head of sequence a comes before that of sequence b.
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private boolean beats( int a, int b )
+	{
+		if ( heads[b] == null )
+			return heads[a] != null || a < b;
+		if ( heads[a] == null )
+			return false;
+
+		int result = comparator.compare( heads[a], heads[b] );
+		return result < 0 || ( result == 0 && a < b );
+	}
+}
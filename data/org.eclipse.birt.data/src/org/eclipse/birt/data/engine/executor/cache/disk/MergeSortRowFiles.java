@@ -12,10 +12,9 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.disk.MergeSortUtil.SortEntry;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
 /**
@@ -27,9 +26,7 @@ class MergeSortRowFiles implements IRowIterator
 {
 	private IRowIterator[] subRowIterators = null;
 	private MergeSortUtil mergeSortUtil = null;
-	private ValueIndex[] rowBuffer = null;
-	private ValueIndex mValueIndex = null;
-	private int rowBufferSize = 0;
+	private LoserTree loserTree = null;
 	
 	/**
 	 * @param rowFiles
@@ -42,7 +39,6 @@ class MergeSortRowFiles implements IRowIterator
 		
 		this.subRowIterators = subRowIterators;
 		this.mergeSortUtil = mergeSortUtil;
-		this.mValueIndex = new ValueIndex( null, 0, mergeSortUtil.getComparator( ) );
 	}
 	
 	/*
@@ -57,7 +53,7 @@ class MergeSortRowFiles implements IRowIterator
 			subRowIterators[i].reset( );
 		}
 		
-		rowBuffer = null;
+		loserTree = null;
 	}
 
 	/*
@@ -65,52 +61,21 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	public IResultObject fetch( ) throws IOException, DataException
 	{	
-		if ( rowBuffer == null )
+		if ( loserTree == null )
 		{
 			prepareFirstFetch( );
 		}
-		if ( rowBufferSize == 0 )
+		
+		int index = loserTree.getWinner( );
+		if ( index < 0 )
 		{
 			return null;
 		}
 		
-		ValueIndex reObj = rowBuffer[0];
-		IResultObject value = reObj.value;
-		
-		IResultObject readValue = subRowIterators[reObj.index].fetch( );
-		if( readValue == null )
-		{
-			rowBufferSize--;
-			if( rowBufferSize > 0 )
-			{
-				ValueIndex[] tBuffer = new ValueIndex[rowBufferSize];
-				System.arraycopy( rowBuffer, 1, tBuffer, 0, rowBufferSize );
-				rowBuffer = tBuffer;
-			}
-		}
-		else
-		{
-			int pos = 0;
-			mValueIndex.value = readValue;
-			mValueIndex.index = reObj.index;
-			if( rowBufferSize > 1 )
-			{
-				pos = Arrays.binarySearch( rowBuffer, mValueIndex );
-				
-				if( pos < 0 )
-					pos = ( pos + 1 ) * -1;
-				pos--;
-				if( pos == -1 )
-					pos = 0;
-
-				if( pos > 0 )
-				{
-					System.arraycopy( rowBuffer, 1 , rowBuffer, 0, pos );
-				}
-			}
-			rowBuffer[pos] = mValueIndex;
-			mValueIndex = reObj;
-		}
+		IResultObject value = ( (SortEntry) loserTree.getWinnerValue( ) ).row;
+		IResultObject readValue = subRowIterators[index].fetch( );
+		loserTree.replaceWinner( readValue == null ? null
+				: mergeSortUtil.newEntry( readValue ) );
 		return value;
 	}
 	
@@ -120,25 +85,14 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	private void prepareFirstFetch( ) throws IOException, DataException
 	{
-		rowBuffer = new ValueIndex[subRowIterators.length];
-		
-		for ( int i = 0; i < rowBuffer.length; i++ )
+		Object[] heads = new Object[subRowIterators.length];
+		for ( int i = 0; i < heads.length; i++ )
 		{
 			IResultObject value = subRowIterators[i].fetch( );
-			if( value != null )
-				rowBuffer[i] = new ValueIndex( value, i, this.mergeSortUtil.getComparator( ) );;
+			if ( value != null )
+				heads[i] = mergeSortUtil.newEntry( value );
 		}
-		rowBufferSize = 0;
-		for ( int i = 0; i < rowBuffer.length; i++ )
-		{
-			if( rowBuffer[i] != null )
-			{
-				rowBuffer[rowBufferSize] = rowBuffer[i];
-				rowBufferSize++;
-			}
-		}
-		Arrays.sort( rowBuffer, 0, rowBufferSize );
-		
+		loserTree = new LoserTree( heads, mergeSortUtil.getEntryComparator( ) );
 	}
 	
 	/*
@@ -155,37 +109,5 @@ class MergeSortRowFiles implements IRowIterator
 		
 		subRowIterators = null;
 	}
-
-	static class ValueIndex implements Comparable
-	{
-		IResultObject value;
-		int index;
-		private Comparator comparator;
-		
-		ValueIndex( IResultObject value, int index, Comparator comparator )
-		{
-			this.value = value;
-			this.index = index;
-			this.comparator = comparator;
-		}
-
-		public int compareTo(Object o)
-		{
-			ValueIndex other = ( ( ValueIndex ) o );
-			int result = comparator.compare( value, other.value  );
-			if( result == 0 )
-			{
-				if( index > other.index )
-					return 1;
-				else if( index == other.index )
-					return 0;
-				else 
-					return -1;
-					
-			}
-			return result;
-		}
-	}
 	
 }
-
@@ -11,9 +11,15 @@
 
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -32,9 +38,15 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
  */
 class MergeSortUtil
 {
+	// the least number of rows sorted by one thread
+	private static final int MIN_ROWS_PER_TASK = 4096;
+
 	// Comparator
 	private Comparator comparator;
 	
+	// the maximum number of threads sorting an array
+	private int parallelism;
+	
 	/**
 	 * One key of MergeSortUtil is the comparator, which provides a service to
 	 * compare the data of two rows.
@@ -42,11 +54,23 @@ class MergeSortUtil
 	 * @param comparator
 	 */
 	static MergeSortUtil getUtil( Comparator comparator )
+	{
+		return getUtil( comparator, 0 );
+	}
+
+	/**
+	 * @param comparator
+	 * @param parallelism
+	 *            the maximum number of threads sorting an array, the array is
+	 *            sorted by the calling thread only if it is less than 2
+	 */
+	static MergeSortUtil getUtil( Comparator comparator, int parallelism )
 	{
 		assert comparator != null;
 		
 		MergeSortUtil instance = new MergeSortUtil( );
 		instance.comparator = comparator;
+		instance.parallelism = parallelism;
 		return instance;
 	}
 
@@ -58,6 +82,9 @@ class MergeSortUtil
 	 */
 	void sortSelf( IResultObject[] self )
 	{
+		if ( sortInParallel( self ) )
+			return;
+		
 		Comparator comparator = new Comparator( ) {
 
 			public int compare( Object obj1, Object obj2 )
@@ -71,6 +98,119 @@ class MergeSortUtil
 		Arrays.sort( self, comparator );
 	}
 	
+	/**
+	 * Sort an array with several threads. The sort key values of the rows are
+	 * retrieved by the calling thread, then the array is split into parts
+	 * which are sorted at the same time and merged afterwards. Rows of equal
+	 * keys keep their order, so the result is the same as that of Arrays.sort.
+	 * 
+	 * @param self
+	 * @return false if the array can not be sorted in parallel, and is left
+	 *         unchanged
+	 */
+	private boolean sortInParallel( IResultObject[] self )
+	{
+		int taskCount = Math.min( parallelism, self.length / MIN_ROWS_PER_TASK );
+		if ( taskCount <= 1 || !( comparator instanceof SortKeyComparator ) )
+			return false;
+
+		SortKeyComparator keyComparator = (SortKeyComparator) comparator;
+		Object[][] keys = new Object[self.length][];
+		for ( int i = 0; i < self.length; i++ )
+		{
+			keys[i] = keyComparator.getSortKeys( self[i] );
+		}
+		if ( !keyComparator.isSortKeyComparisonThreadSafe( keys, keys.length ) )
+		{
+			// the following arrays are likely to be of the same kind
+			parallelism = 0;
+			return false;
+		}
+
+		final SortEntry[] entries = new SortEntry[self.length];
+		for ( int i = 0; i < self.length; i++ )
+		{
+			entries[i] = new SortEntry( self[i], keys[i] );
+		}
+		final Comparator entryComparator = getEntryComparator( );
+
+		int step = ( entries.length + taskCount - 1 ) / taskCount;
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		for ( int start = step; start < entries.length; start += step )
+		{
+			final int from = start;
+			final int to = Math.min( entries.length, start + step );
+			futures.add( CacheUtil.getExecutorService( ).submit( new Callable<Object>( ) {
+
+				public Object call( )
+				{
+					Arrays.sort( entries, from, to, entryComparator );
+					return null;
+				}
+			} ) );
+		}
+		Arrays.sort( entries, 0, step, entryComparator );
+		CacheUtil.waitFor( futures );
+
+		// merge the sorted parts back into the array
+		int partCount = ( entries.length + step - 1 ) / step;
+		Object[] heads = new Object[partCount];
+		int[] positions = new int[partCount];
+		for ( int i = 0; i < partCount; i++ )
+		{
+			positions[i] = i * step;
+			heads[i] = entries[positions[i]];
+		}
+		LoserTree tree = new LoserTree( heads, entryComparator );
+		for ( int i = 0; i < self.length; i++ )
+		{
+			int part = tree.getWinner( );
+			self[i] = ( (SortEntry) tree.getWinnerValue( ) ).row;
+			positions[part]++;
+			if ( positions[part] < Math.min( entries.length, ( part + 1 )
+					* step ) )
+				tree.replaceWinner( entries[positions[part]] );
+			else
+				tree.replaceWinner( null );
+		}
+		return true;
+	}
+
+	/**
+	 * Create the entry of a row to be merged. The sort key values of the row
+	 * are retrieved once here, if the comparator supports it, so that they are
+	 * not retrieved again for each comparison.
+	 * 
+	 * @param row
+	 * @return
+	 */
+	SortEntry newEntry( IResultObject row )
+	{
+		if ( comparator instanceof SortKeyComparator )
+			return new SortEntry( row,
+					( (SortKeyComparator) comparator ).getSortKeys( row ) );
+		return new SortEntry( row, null );
+	}
+
+	/**
+	 * @return the comparator of the entries created by newEntry
+	 */
+	Comparator getEntryComparator( )
+	{
+		return new Comparator( ) {
+
+			public int compare( Object obj1, Object obj2 )
+			{
+				SortEntry entry1 = (SortEntry) obj1;
+				SortEntry entry2 = (SortEntry) obj2;
+				if ( entry1.keys != null && entry2.keys != null )
+					return ( (SortKeyComparator) comparator ).compareSortKeys( entry1.keys,
+							entry2.keys );
+				return compareResultObject( entry1.row, entry2.row );
+			}
+		};
+	}
+
 	/**
 	 * Get min object of a array
 	 * 
@@ -174,4 +314,19 @@ class MergeSortUtil
 		return comparator;
 	}
 
+	/**
+	 * A row together with its sort key values.
+	 */
+	static class SortEntry
+	{
+		IResultObject row;
+		Object[] keys;
+
+		SortEntry( IResultObject row, Object[] keys )
+		{
+			this.row = row;
+			this.keys = keys;
+		}
+	}
+
 }
\ No newline at end of file
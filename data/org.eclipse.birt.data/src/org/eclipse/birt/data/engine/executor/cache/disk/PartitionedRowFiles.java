@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * A fixed number of temporary row files, each of which holds one partition of
+ * a result set. Rows are written to the partitions in any order and then read
+ * back partition by partition, or merged from all the partitions. It is used by
+ * algorithms which divide the data to be processed into parts fitting in
+ * memory, such as grace hash join.
+ */
+public class PartitionedRowFiles
+{
+	// the number of rows buffered for each partition before being written
+	private static final int WRITE_BUFFER_SIZE = 256;
+
+	private IResultClass rsMeta;
+
+	private MergeTempFileUtil tempFileUtil;
+
+	private RowFile[] rowFiles;
+	private IResultObject[][] writeBuffers;
+	private int[] bufferedCounts;
+	private int[] rowCounts;
+
+	// the heads of the partitions when they are read merged
+	private LoserTree mergeTree;
+
+	/**
+	 * @param rsMeta
+	 *            the meta data of the rows to be written
+	 * @param partitionCount
+	 * @param session
+	 * @throws DataException
+	 */
+	public PartitionedRowFiles( IResultClass rsMeta, int partitionCount,
+			DataEngineSession session ) throws DataException
+	{
+		assert partitionCount > 0;
+
+		this.rsMeta = rsMeta;
+		String tempDir = CacheUtil.createTempRootDir( session.getTempDir( ) );
+		this.tempFileUtil = new MergeTempFileUtil( tempDir,
+				ResultObjectUtil.newInstance( rsMeta, session ) );
+
+		this.rowFiles = new RowFile[partitionCount];
+		this.writeBuffers = new IResultObject[partitionCount][];
+		this.bufferedCounts = new int[partitionCount];
+		this.rowCounts = new int[partitionCount];
+		for ( int i = 0; i < partitionCount; i++ )
+		{
+			this.rowFiles[i] = tempFileUtil.newTempFile( 0 );
+		}
+	}
+
+	/**
+	 * @return the meta data of the rows
+	 */
+	public IResultClass getResultClass( )
+	{
+		return this.rsMeta;
+	}
+
+	/**
+	 * @return the number of partitions
+	 */
+	public int getPartitionCount( )
+	{
+		return this.rowFiles.length;
+	}
+
+	/**
+	 * @param partition
+	 * @return the number of rows written to the partition
+	 */
+	public int getRowCount( int partition )
+	{
+		return this.rowCounts[partition];
+	}
+
+	/**
+	 * Write a row to a partition.
+	 *
+	 * @param partition
+	 * @param resultObject
+	 * @throws DataException
+	 */
+	public void write( int partition, IResultObject resultObject )
+			throws DataException
+	{
+		if ( writeBuffers[partition] == null )
+			writeBuffers[partition] = new IResultObject[WRITE_BUFFER_SIZE];
+
+		writeBuffers[partition][bufferedCounts[partition]++] = resultObject;
+		rowCounts[partition]++;
+		if ( bufferedCounts[partition] == WRITE_BUFFER_SIZE )
+			flush( partition );
+	}
+
+	/**
+	 * End write operation. This method must be called before the rows are
+	 * read.
+	 *
+	 * @throws DataException
+	 */
+	public void endWrite( ) throws DataException
+	{
+		for ( int i = 0; i < rowFiles.length; i++ )
+		{
+			flush( i );
+			writeBuffers[i] = null;
+			try
+			{
+				rowFiles[i].endWrite( );
+			}
+			catch ( IOException e )
+			{
+				throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR,
+						e );
+			}
+		}
+	}
+
+	/**
+	 * Move to the first row of a partition.
+	 *
+	 * @param partition
+	 */
+	public void reset( int partition )
+	{
+		rowFiles[partition].reset( );
+	}
+
+	/**
+	 * Read the next row of a partition.
+	 *
+	 * @param partition
+	 * @return null if there is no more rows in the partition
+	 * @throws DataException
+	 */
+	public IResultObject fetch( int partition ) throws DataException
+	{
+		try
+		{
+			return rowFiles[partition].fetch( );
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR, e );
+		}
+	}
+
+	/**
+	 * Start reading the rows of all the partitions merged in the order of a
+	 * comparator. The rows of each partition must already be in that order.
+	 * Equal rows are read in the order of their partitions.
+	 *
+	 * @param comparator
+	 *            compares two IResultObject
+	 * @throws DataException
+	 */
+	public void startMerge( Comparator comparator ) throws DataException
+	{
+		Object[] heads = new Object[rowFiles.length];
+		for ( int i = 0; i < rowFiles.length; i++ )
+		{
+			reset( i );
+			heads[i] = fetch( i );
+			if ( heads[i] == null )
+				close( i );
+		}
+		this.mergeTree = new LoserTree( heads, comparator );
+	}
+
+	/**
+	 * Read the next row of the merged partitions.
+	 *
+	 * @return null if there is no more rows in any partition
+	 * @throws DataException
+	 */
+	public IResultObject fetchMerged( ) throws DataException
+	{
+		assert mergeTree != null;
+		int partition = mergeTree.getWinner( );
+		if ( partition < 0 )
+			return null;
+		IResultObject resultObject = (IResultObject) mergeTree.getWinnerValue( );
+		IResultObject next = fetch( partition );
+		if ( next == null )
+			close( partition );
+		mergeTree.replaceWinner( next );
+		return resultObject;
+	}
+
+	/**
+	 * Release a partition which will not be read any more.
+	 *
+	 * @param partition
+	 */
+	public void close( int partition )
+	{
+		if ( rowFiles[partition] != null )
+		{
+			rowFiles[partition].close( );
+			rowFiles[partition] = null;
+		}
+	}
+
+	/**
+	 * Release all the partitions and remove the temporary directory.
+	 */
+	public void close( )
+	{
+		for ( int i = 0; i < rowFiles.length; i++ )
+		{
+			close( i );
+		}
+		tempFileUtil.clearTempDir( );
+	}
+
+	/**
+	 * @param partition
+	 * @throws DataException
+	 */
+	private void flush( int partition ) throws DataException
+	{
+		if ( bufferedCounts[partition] == 0 )
+			return;
+		try
+		{
+			rowFiles[partition].writeRows( writeBuffers[partition],
+					bufferedCounts[partition] );
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+		bufferedCounts[partition] = 0;
+	}
+}
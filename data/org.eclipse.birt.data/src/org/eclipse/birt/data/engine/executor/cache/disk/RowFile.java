@@ -169,9 +169,14 @@ class RowFile implements IRowIterator, ICloseListener
 
 	/**
 	 * End write operation. This mothed must be called before fetching row object.
+	 * 
+	 * @throws IOException
+	 * @throws DataException
 	 */
-	void endWrite( )
+	void endWrite( ) throws IOException, DataException
 	{
+		if ( dfw != null )
+			dfw.flush( );
 		closeWriter();
 	}
 	
@@ -274,9 +279,10 @@ class RowFile implements IRowIterator, ICloseListener
 	}
 	
 	/**
-	 * Close current reader object
+	 * Close current reader object, which is created again when the file is
+	 * read
 	 */
-	private void closeReader( )
+	void closeReader( )
 	{
 		if ( dfr != null )
 		{
@@ -21,15 +21,20 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.data.ExpressionUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
 import org.eclipse.birt.data.engine.api.IBinding;
 import org.eclipse.birt.data.engine.api.IResultIterator;
 import org.eclipse.birt.data.engine.api.querydefn.Binding;
@@ -50,6 +55,7 @@ import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.IIncreCacheDataSetDesign;
 import org.eclipse.birt.data.engine.impl.ResultIterator;
 import org.eclipse.birt.data.engine.odaconsumer.ParameterHint;
 import org.eclipse.birt.data.engine.odi.IResultClass;
@@ -278,11 +284,14 @@ class CacheUtilFactory
 		}
 	}
 	/**
-	 * Helper class to save result set to cache file.
+	 * Helper class to save result set to cache file. The rows are appended to
+	 * the cached rows, or replace the cached rows with the same key values
+	 * when the data set has key columns.
 	 *
 	 */
 	private static class IncreCacheSaveUtil implements ISaveUtil
 	{
+		private IncreDataSetCacheObject cacheObject;
 		private File file;
 		private File metaFile;
 		
@@ -294,14 +303,26 @@ class CacheUtilFactory
 		private int rowCount;
 		private String tempDir;
 		private DataEngineSession session;
+		
+		// the time the rows are fetched from, which is saved as the timestamp
+		private long timestamp;
+		
+		// the indexes of the key columns and of the deleted column, and the key
+		// values of the rows saved, which replace the cached rows
+		private int[] keyIndexes;
+		private int deletedIndex;
+		private Set<List<Object>> changedKeys;
+		
 		public IncreCacheSaveUtil( IncreDataSetCacheObject cacheObject, IResultClass rs, DataEngineSession session )
 		{
+			this.cacheObject = cacheObject;
 			this.file = cacheObject.getDataFile( );
 			this.metaFile = cacheObject.getMetaFile( );
 			this.rsMeta = rs;
 			this.rowCount = 0;
 			this.tempDir = cacheObject.getCacheDir( );
 			this.session = session;
+			this.timestamp = System.currentTimeMillis( );
 		}
 
 		/**
@@ -315,10 +336,15 @@ class CacheUtilFactory
 			if ( roUtil == null )
 			{				
 				roUtil = ResultObjectUtil.newInstance( rsMeta, session );
+				initKeys( );
 				try
 				{
-					bos = new BufferedOutputStream( FileSecurity.createFileOutputStream( file,
-							true ) );
+					// the rows to merge are saved apart from the cached rows
+					if ( keyIndexes != null )
+						bos = new BufferedOutputStream( FileSecurity.createFileOutputStream( cacheObject.getDeltaFile( ) ) );
+					else
+						bos = new BufferedOutputStream( FileSecurity.createFileOutputStream( file,
+								true ) );
 				}
 				catch ( Exception e )
 				{
@@ -329,6 +355,12 @@ class CacheUtilFactory
 			
 			try
 			{
+				if ( keyIndexes != null )
+				{
+					changedKeys.add( getKey( resultObject ) );
+					if ( isDeleted( resultObject ) )
+						return;
+				}
 				rowCount ++;
 				roUtil.writeData( bos, resultObject );
 			}
@@ -339,6 +371,151 @@ class CacheUtilFactory
 			}
 		}
 		
+		/**
+		 * Finds the key columns and the deleted column of the data set.
+		 * 
+		 * @throws DataException
+		 */
+		private void initKeys( ) throws DataException
+		{
+			IBaseDataSetDesign dataSetDesign = session.getDataSetCacheManager( )
+					.getCurrentDataSetDesign( );
+			if ( !( dataSetDesign instanceof IIncreCacheDataSetDesign ) )
+				return;
+			IIncreCacheDataSetDesign icDataSetDesign = (IIncreCacheDataSetDesign) dataSetDesign;
+			String[] keyColumns = icDataSetDesign.getKeyColumns( );
+			if ( keyColumns == null || keyColumns.length == 0 )
+				return;
+			
+			keyIndexes = new int[keyColumns.length];
+			for ( int i = 0; i < keyColumns.length; i++ )
+			{
+				keyIndexes[i] = getFieldIndex( keyColumns[i] );
+			}
+			deletedIndex = icDataSetDesign.getDeletedColumn( ) == null
+					? -1 : getFieldIndex( icDataSetDesign.getDeletedColumn( ) );
+			changedKeys = new HashSet<List<Object>>( );
+			cacheObject.setKeptOnRelease( true );
+		}
+		
+		/**
+		 * @param name
+		 * @return
+		 * @throws DataException
+		 */
+		private int getFieldIndex( String name ) throws DataException
+		{
+			int index = rsMeta.getFieldIndex( name );
+			if ( index <= 0 )
+				throw new DataException( ResourceConstants.INVALID_FIELD_NAME,
+						name );
+			return index;
+		}
+		
+		/**
+		 * @param resultObject
+		 * @return the key values of the row
+		 * @throws DataException
+		 */
+		private List<Object> getKey( IResultObject resultObject )
+				throws DataException
+		{
+			Object[] key = new Object[keyIndexes.length];
+			for ( int i = 0; i < keyIndexes.length; i++ )
+			{
+				key[i] = resultObject.getFieldValue( keyIndexes[i] );
+			}
+			return Arrays.asList( key );
+		}
+		
+		/**
+		 * @param resultObject
+		 * @return whether the row has been deleted from the data set
+		 * @throws DataException
+		 */
+		private boolean isDeleted( IResultObject resultObject )
+				throws DataException
+		{
+			if ( deletedIndex < 0 )
+				return false;
+			Object value = resultObject.getFieldValue( deletedIndex );
+			if ( value == null )
+				return false;
+			try
+			{
+				return DataTypeUtil.toBoolean( value ).booleanValue( );
+			}
+			catch ( BirtException e )
+			{
+				throw DataException.wrap( e );
+			}
+		}
+		
+		/**
+		 * Replaces the data file with the cached rows whose key values are
+		 * not changed, followed by the changed rows.
+		 * 
+		 * @param oldCount
+		 * @return the count of the cached rows which are kept
+		 * @throws IOException
+		 * @throws DataException
+		 */
+		private int merge( int oldCount ) throws IOException, DataException
+		{
+			File deltaFile = cacheObject.getDeltaFile( );
+			if ( oldCount == 0 || !FileSecurity.fileExist( file ) )
+			{
+				FileSecurity.fileDelete( file );
+				FileSecurity.fileRename( deltaFile, file );
+				return 0;
+			}
+			
+			File mergeFile = new File( file.getPath( ) + ".merge" );
+			BufferedOutputStream mergeBos = new BufferedOutputStream( FileSecurity.createFileOutputStream( mergeFile ) );
+			int kept = 0;
+			BufferedInputStream oldBis = new BufferedInputStream( FileSecurity.createFileInputStream( file ) );
+			try
+			{
+				for ( int i = 0; i < oldCount; i++ )
+				{
+					IResultObject resultObject = roUtil.readData( oldBis,
+							null,
+							1 )[0];
+					if ( !changedKeys.contains( getKey( resultObject ) ) )
+					{
+						roUtil.writeData( mergeBos, resultObject );
+						kept++;
+					}
+				}
+			}
+			finally
+			{
+				oldBis.close( );
+			}
+			
+			BufferedInputStream deltaBis = new BufferedInputStream( FileSecurity.createFileInputStream( deltaFile ) );
+			try
+			{
+				byte[] buffer = new byte[8192];
+				int length;
+				while ( ( length = deltaBis.read( buffer ) ) > 0 )
+				{
+					mergeBos.write( buffer, 0, length );
+				}
+			}
+			finally
+			{
+				deltaBis.close( );
+			}
+			mergeBos.close( );
+			
+			FileSecurity.fileDelete( file );
+			if ( !FileSecurity.fileRename( mergeFile, file ) )
+				throw new IOException( FileSecurity.fileGetAbsolutePath( file ) );
+			FileSecurity.fileDelete( deltaFile );
+			return kept;
+		}
+		
 		/**
 		 * @throws DataException
 		 */
@@ -350,15 +527,24 @@ class CacheUtilFactory
 				{
 					bos.close( );
 				}
+				else
+				{
+					// no row is changed, the cached rows are still kept
+					initKeys( );
+				}
+				int oldCount = 0;
 				if ( FileSecurity.fileExist( metaFile ) )
 				{
 					FileInputStream fis1 = FileSecurity.createFileInputStream( metaFile );
 					BufferedInputStream bis1 = new BufferedInputStream( fis1 );
-					int oldCount = IOUtil.readInt( bis1 );
-					rowCount += oldCount;
+					oldCount = IOUtil.readInt( bis1 );
 					bis1.close( );
 					fis1.close( );
 				}
+				if ( keyIndexes != null && bos != null )
+					rowCount += merge( oldCount );
+				else
+					rowCount += oldCount;
 				FileOutputStream fos1 = FileSecurity.createFileOutputStream( metaFile );
 				BufferedOutputStream bos1 = new BufferedOutputStream( fos1 );
 
@@ -371,8 +557,10 @@ class CacheUtilFactory
 				bos1.close( );
 				fos1.close( );
 				
-				// save the current time as the timestamp
-				CacheUtil.saveCurrentTimestamp( this.tempDir );
+				// save the time the rows are fetched from as the timestamp, so
+				// that the rows changed while they are fetched are fetched
+				// again by the next update
+				CacheUtil.saveTimestamp( this.tempDir, this.timestamp );
 			}
 			catch ( IOException e )
 			{
@@ -271,8 +271,9 @@ public class DataSetToCache
 	{
 		if ( saveUtil != null )
 		{
-			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
+			// the cached data is complete only after the save util is closed
 			saveUtil.close( );
+			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
 			saveUtil = null;
 		}
 	}
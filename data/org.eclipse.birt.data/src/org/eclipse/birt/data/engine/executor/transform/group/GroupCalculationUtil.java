@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.eclipse.birt.core.data.ExpressionUtil;
 import org.eclipse.birt.data.engine.api.IGroupDefinition;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
 import org.eclipse.birt.data.engine.api.ISortDefinition;
 import org.eclipse.birt.data.engine.cache.CachedList;
 import org.eclipse.birt.data.engine.cache.ICachedObject;
@@ -370,7 +371,37 @@ public class GroupCalculationUtil
 			comparator[groupCount + i] = new CompareHints( query.getOrdering( )[i].getComparator( ), null );
 		}
 
-		return new SortSpec( sortKeyIndexes, sortKeyColumns, sortAscending, comparator );
+		SortSpec sortSpec = new SortSpec( sortKeyIndexes,
+				sortKeyColumns,
+				sortAscending,
+				comparator );
+		sortSpec.setGroupingOnly( sortCount == 0
+				&& isGroupingOnly( groupCount ) );
+		return sortSpec;
+	}
+
+	/**
+	 * Indicate whether the rows of a summary query are sorted only to gather
+	 * the rows of each group, that is, when every group is sorted on its key
+	 * and the detail rows are not shown.
+	 * 
+	 * @param groupCount
+	 *            the number of group keys in the sort specification
+	 * @return
+	 */
+	private boolean isGroupingOnly( int groupCount )
+	{
+		if ( groupCount == 0 || groupCount != groupDefs.length )
+			return false;
+		if ( !( query.getQueryDefinition( ) instanceof IQueryDefinition )
+				|| !( (IQueryDefinition) query.getQueryDefinition( ) ).isSummaryQuery( ) )
+			return false;
+		for ( int i = 0; i < groupCount; i++ )
+		{
+			if ( groupDefs[i].getGroupSpec( ).getSortDirection( ) == IGroupDefinition.NO_SORT )
+				return false;
+		}
+		return true;
 	}
 	
 	private boolean needSortingOnGroupKeys( )
@@ -29,7 +29,9 @@ import org.eclipse.birt.data.engine.api.IComputedColumn;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.transform.TransformationConstants;
+import org.eclipse.birt.data.engine.expression.ColumnReferenceExpression;
 import org.eclipse.birt.data.engine.expression.CompiledExpression;
+import org.eclipse.birt.data.engine.expression.ConstantExpression;
 import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.expression.ExpressionCompilerUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
@@ -38,10 +40,10 @@ import org.eclipse.birt.data.engine.impl.util.DirectedGraph;
 import org.eclipse.birt.data.engine.impl.util.DirectedGraph.CycleFoundException;
 import org.eclipse.birt.data.engine.impl.util.DirectedGraphEdge;
 import org.eclipse.birt.data.engine.impl.util.GraphNode;
+import org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultIterator;
 import org.eclipse.birt.data.engine.odi.IResultObject;
-import org.eclipse.birt.data.engine.odi.IResultObjectEvent;
 import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
 /**
@@ -50,7 +52,7 @@ import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
  * grouping/sorting data.
  */
 
-public class ComputedColumnHelper implements IResultObjectEvent
+public class ComputedColumnHelper implements IParallelResultObjectEvent
 {
 
 	private ComputedColumnHelperInstance dataSetInstance;
@@ -140,6 +142,47 @@ public class ComputedColumnHelper implements IResultObjectEvent
 		return true;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent#prepareParallelProcess(org.eclipse.birt.data.engine.odi.IResultClass)
+	 */
+	public boolean prepareParallelProcess( IResultClass resultClass )
+			throws DataException
+	{
+		if ( this.mode == TransformationConstants.ALL_MODEL )
+		{
+			return this.dataSetInstance.prepareParallelProcess( resultClass )
+					&& this.resultSetInstance.prepareParallelProcess( resultClass );
+		}
+		else if ( this.getCurrentInstance( ) != null )
+			return this.getCurrentInstance( )
+					.prepareParallelProcess( resultClass );
+
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent#processInParallel(org.eclipse.birt.data.engine.odi.IResultObject,
+	 *      int)
+	 */
+	public boolean processInParallel( IResultObject resultObject, int rowIndex )
+			throws DataException
+	{
+		if ( this.mode == TransformationConstants.ALL_MODEL )
+		{
+			this.dataSetInstance.processInParallel( resultObject, rowIndex );
+			this.resultSetInstance.processInParallel( resultObject, rowIndex );
+		}
+		else if ( this.getCurrentInstance( ) != null )
+			return this.getCurrentInstance( ).processInParallel( resultObject,
+					rowIndex );
+
+		return true;
+	}
+
 	/**
 	 * Return whether the computed column set with given model exists
 	 * 
@@ -433,130 +476,199 @@ public class ComputedColumnHelper implements IResultObjectEvent
 				// and assign it the computed value
 				for ( int i = 0; i < computedColumn.length; i++ )
 				{
-					if( isAggrComputedColumn( computedColumn[i] ))
+					processComputedColumn( i, resultObject, rowIndex, resultClass );
+				}
+			}
+			finally
+			{
+				dataSet.setMode( temp );
+			}
+			logger.exiting( ComputedColumnHelper.class.getName( ), "process" );
+			if( cachedIterator!= null )
+				this.dataSet.setResultSet( cachedIterator, true );
+			return true;
+		}
+		
+		/**
+		 * Evaluate a projected computed column and assign the value to the
+		 * result object.
+		 * 
+		 * @param i
+		 * @param resultObject
+		 * @param rowIndex
+		 * @param resultClass
+		 * @throws DataException
+		 */
+		private void processComputedColumn( int i, IResultObject resultObject,
+				int rowIndex, IResultClass resultClass ) throws DataException
+		{
+			if( isAggrComputedColumn( computedColumn[i] ))
+			{
+				return;
+			}
+			if( isRemoved( computedColumn[i].getName( ) ) )
+			{
+				return;
+			}
+
+			if ( computedColumn[i].getExpression( ) != null )
+			{
+				Object value = null;
+				try
+				{
+					String columnName = columnReferenceMap.get( computedColumn[i].getName() );
+					if ( columnName != null )
 					{
-						continue;
+						if ( resultObject != null )
+						{
+							//for these computed columns whose expression is just like dataSetRow["xxx"]
+							//fetch value just from result set directly rather than Rhino
+							value = resultObject.getFieldValue( columnName );
+						}
 					}
-					if( isRemoved( computedColumn[i].getName( ) ) )
+					else if ( computedColumn[i].getExpression( ).getHandle( ) != null
+							&& computedColumn[i].getExpression( )
+									.getHandle( ) instanceof CompiledExpression )
 					{
-						continue;
+						value = ExprEvaluateUtil.evaluateCompiledExpression( (CompiledExpression) computedColumn[i].getExpression( )
+								.getHandle( ),
+								resultObject,
+								rowIndex,
+								dataSet.getScriptScope( ),
+								cx );
 					}
-
-					if ( computedColumn[i].getExpression( ) != null )
+					else
 					{
-						Object value = null;
-						try
+						IScriptExpression expr = (IScriptExpression) computedColumn[i].getExpression( ); 
+						String exprText = expr.getText( );
+						if ( exprText != null )
 						{
-							String columnName = columnReferenceMap.get( computedColumn[i].getName() );
-							if ( columnName != null )
+							if ( expr.getHandle( ) == null )
 							{
-								if ( resultObject != null )
-								{
-									//for these computed columns whose expression is just like dataSetRow["xxx"]
-									//fetch value just from result set directly rather than Rhino
-									value = resultObject.getFieldValue( columnName );
-								}
+								expr.setHandle( cx.compile( expr.getScriptId( ),
+										null,
+										0,
+										exprText ) );
 							}
-							else if ( computedColumn[i].getExpression( ).getHandle( ) != null
-									&& computedColumn[i].getExpression( )
-											.getHandle( ) instanceof CompiledExpression )
+							if ( expr.getHandle( ) != null
+									&& expr.getHandle( ) instanceof CompiledExpression )
 							{
-								value = ExprEvaluateUtil.evaluateCompiledExpression( (CompiledExpression) computedColumn[i].getExpression( )
-										.getHandle( ),
+								value = ExprEvaluateUtil.evaluateCompiledExpression( (CompiledExpression) expr.getHandle( ),
 										resultObject,
 										rowIndex,
 										dataSet.getScriptScope( ),
 										cx );
 							}
 							else
-							{
-								IScriptExpression expr = (IScriptExpression) computedColumn[i].getExpression( ); 
-								String exprText = expr.getText( );
-								if ( exprText != null )
-								{
-									if ( expr.getHandle( ) == null )
-									{
-										expr.setHandle( cx.compile( expr.getScriptId( ),
-												null,
-												0,
-												exprText ) );
-									}
-									if ( expr.getHandle( ) != null
-											&& expr.getHandle( ) instanceof CompiledExpression )
-									{
-										value = ExprEvaluateUtil.evaluateCompiledExpression( (CompiledExpression) expr.getHandle( ),
-												resultObject,
-												rowIndex,
-												dataSet.getScriptScope( ),
-												cx );
-									}
-									else
-										value = ScriptEvalUtil.evalExpr( expr,
-												cx,
-												ScriptExpression.defaultID,
-												0 );
-								}
-							}
-							if ( computedColumn[i] instanceof GroupComputedColumn )
-							{
-								try
-								{
-									value = ( (GroupComputedColumn) computedColumn[i] ).calculate( value );
-								}
-								catch ( BirtException e )
-								{
-									throw DataException.wrap( e );
-								}
-							}
-
-							value = DataTypeUtil.convert( value,
-									resultClass.getFieldValueClass( columnIndexArray[i] ) );
+								value = ScriptEvalUtil.evalExpr( expr,
+										cx,
+										ScriptExpression.defaultID,
+										0 );
+						}
+					}
+					if ( computedColumn[i] instanceof GroupComputedColumn )
+					{
+						try
+						{
+							value = ( (GroupComputedColumn) computedColumn[i] ).calculate( value );
 						}
 						catch ( BirtException e )
 						{
-							if ( !suppressException )
-							{
-								String fieldName = resultClass.getFieldName( columnIndexArray[i] );
-								// Exception from System computed column for Sort, Group or Filter
-								if ( fieldName != null
-										&& fieldName.startsWith( "_{$TEMP_" ) )
-								{
-									throw new DataException( ResourceConstants.WRONG_SYSTEM_COMPUTED_COLUMN,
-											e );
-								}
-								//Exception from "Any" type
-								if ( resultClass.wasAnyType( columnIndexArray[i] ))
-									throw new DataException( ResourceConstants.POSSIBLE_MIXED_DATA_TYPE_IN_COLUMN,
-											e );
-	
-								//All other exceptions
-								throw new DataException( ResourceConstants.FAIL_RETRIEVE_VALUE_COMPUTED_COLUMN,
-										e,
-										resultClass.getFieldName( columnIndexArray[i] ) );
-							}
+							throw DataException.wrap( e );
 						}
-
-						resultObject.setCustomFieldValue( columnIndexArray[i],
-								value );
 					}
-					else
+
+					value = DataTypeUtil.convert( value,
+							resultClass.getFieldValueClass( columnIndexArray[i] ) );
+				}
+				catch ( BirtException e )
+				{
+					if ( !suppressException )
 					{
-						throw new DataException( ResourceConstants.EXPR_INVALID_COMPUTED_COLUMN,
-								resultObject.getResultClass( )
-										.getFieldName( columnIndexArray[i] ) );
+						String fieldName = resultClass.getFieldName( columnIndexArray[i] );
+						// Exception from System computed column for Sort, Group or Filter
+						if ( fieldName != null
+								&& fieldName.startsWith( "_{$TEMP_" ) )
+						{
+							throw new DataException( ResourceConstants.WRONG_SYSTEM_COMPUTED_COLUMN,
+									e );
+						}
+						//Exception from "Any" type
+						if ( resultClass.wasAnyType( columnIndexArray[i] ))
+							throw new DataException( ResourceConstants.POSSIBLE_MIXED_DATA_TYPE_IN_COLUMN,
+									e );
+	
+						//All other exceptions
+						throw new DataException( ResourceConstants.FAIL_RETRIEVE_VALUE_COMPUTED_COLUMN,
+								e,
+								resultClass.getFieldName( columnIndexArray[i] ) );
 					}
 				}
+
+				resultObject.setCustomFieldValue( columnIndexArray[i],
+						value );
 			}
-			finally
+			else
 			{
-				dataSet.setMode( temp );
+				throw new DataException( ResourceConstants.EXPR_INVALID_COMPUTED_COLUMN,
+						resultObject.getResultClass( )
+								.getFieldName( columnIndexArray[i] ) );
+			}
+		}
+
+		/**
+		 * Return whether the computed columns of this instance can be
+		 * evaluated for different rows at the same time. This is the case
+		 * when each computed column simply refers to a column or a constant,
+		 * so that the evaluation does not go through the shared script scope.
+		 * 
+		 * @param resultClass
+		 * @return
+		 * @throws DataException
+		 */
+		public boolean prepareParallelProcess( IResultClass resultClass )
+				throws DataException
+		{
+			if ( isPrepared == false )
+				prepare( resultClass );
+
+			for ( int i = 0; i < computedColumn.length; i++ )
+			{
+				if ( isAggrComputedColumn( computedColumn[i] )
+						|| isRemoved( computedColumn[i].getName( ) ) )
+					continue;
+				if ( computedColumn[i].getExpression( ) == null
+						|| computedColumn[i] instanceof GroupComputedColumn )
+					return false;
+				if ( columnReferenceMap.containsKey( computedColumn[i].getName( ) ) )
+					continue;
+				Object handle = computedColumn[i].getExpression( ).getHandle( );
+				if ( !( handle instanceof ColumnReferenceExpression || handle instanceof ConstantExpression ) )
+					return false;
 			}
-			logger.exiting( ComputedColumnHelper.class.getName( ), "process" );
-			if( cachedIterator!= null )
-				this.dataSet.setResultSet( cachedIterator, true );
 			return true;
 		}
-		
+
+		/**
+		 * Process a row without binding it to the data set. Only called after
+		 * prepareParallelProcess returns true.
+		 * 
+		 * @param resultObject
+		 * @param rowIndex
+		 * @return
+		 * @throws DataException
+		 */
+		public boolean processInParallel( IResultObject resultObject,
+				int rowIndex ) throws DataException
+		{
+			IResultClass resultClass = resultObject.getResultClass( );
+			for ( int i = 0; i < computedColumn.length; i++ )
+			{
+				processComputedColumn( i, resultObject, rowIndex, resultClass );
+			}
+			return true;
+		}
+
 		private boolean isAggrComputedColumn( IComputedColumn cc )
 		{
 			return cc.getAggregateFunction( ) != null;
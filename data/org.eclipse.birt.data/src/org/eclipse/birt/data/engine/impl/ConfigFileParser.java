@@ -31,6 +31,8 @@ public class ConfigFileParser
 {
 
 	private static final String PARAMETER = "parameter";
+	private static final String KEY_COLUMN = "key-column";
+	private static final String DELETED_COLUMN = "deleted-column";
 	private static final String TIMESTAMP_FORMAT = "timestamp-format";
 	private static final String TIMESTAMP_COLUMN = "timestamp-column";
 	private static final String MODE = "mode";
@@ -183,6 +185,70 @@ public class ConfigFileParser
 		throw new DataException( ResourceConstants.CONFIG_FILE_PARSER_TIMESTAMP_FORMAT_FAIL );
 	}
 
+	/**
+	 * This method is to get the key column names by the specified data set
+	 * name. The rows fetched by the query for update replace the cached rows
+	 * with the same key values.
+	 * 
+	 *@param String id the data set name
+	 *@return the parsed key column names, null if they are not specified
+	 */
+	public String[] getKeyColumnsByID( String id )
+	{
+		String value = getValueByID( id, KEY_COLUMN );
+		if ( value == null || value.trim( ).length( ) == 0 )
+		{
+			return null;
+		}
+		String[] keyColumns = value.split( "," );
+		for ( int i = 0; i < keyColumns.length; i++ )
+		{
+			keyColumns[i] = keyColumns[i].trim( );
+		}
+		return keyColumns;
+	}
+
+	/**
+	 * This method is to get the name of the column which tells that a row has
+	 * been deleted by the specified data set name.
+	 * 
+	 *@param String id the data set name
+	 *@return the parsed column name, null if it is not specified
+	 */
+	public String getDeletedColumnByID( String id )
+	{
+		String value = getValueByID( id, DELETED_COLUMN );
+		if ( value == null || value.trim( ).length( ) == 0 )
+		{
+			return null;
+		}
+		return value.trim( );
+	}
+
+	/**
+	 * Get the value of an optional element of the specified data set.
+	 * 
+	 * @param id
+	 * @param name
+	 * @return the value, null if the element is not specified
+	 */
+	private String getValueByID( String id, String name )
+	{
+		ArrayList children = node.getChildren( );
+		for ( int i = 0; i < children.size( ); i++ )
+		{
+			Node temp = (Node) children.get( i );
+			HashMap attributes = temp.getAttributes( );
+			if ( attributes.containsKey( ID )
+					&& attributes.get( ID ).equals( id ) )
+			{
+				Node child = temp.getChildByName( name );
+				return child == null ? null : child.getValue( );
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * This method is to get the parameters by the specified data set name.
 	 * 
@@ -758,6 +758,17 @@ public class DataEngineImpl extends DataEngine
 		((EngineExecutionHints)queryExecutionHints).populateCachedDataSets( this, queryDefns );
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.DataEngine#registerQueries(org.eclipse.birt.data.engine.api.IDataQueryDefinition[], java.util.Map)
+	 */
+	public void registerQueries( IDataQueryDefinition[] queryDefns,
+			Map appContext ) throws DataException
+	{
+		registerQueries( queryDefns );
+		DataSetPrefetchHelper.prefetch( this, queryDefns, appContext );
+	}
+
 	public void cancel( )
 	{
 		this.session.cancel( );
@@ -36,6 +36,7 @@ import org.eclipse.birt.data.engine.api.IDataScriptEngine;
 import org.eclipse.birt.data.engine.api.IShutdownListener;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
+import org.eclipse.birt.data.engine.executor.QueryPrefetcher;
 import org.eclipse.birt.data.engine.impl.document.NamingRelation;
 import org.eclipse.birt.data.engine.impl.document.QueryResultIDUtil;
 import org.mozilla.javascript.ImporterTopLevel;
@@ -71,6 +72,8 @@ public class DataEngineSession
 	
 	private RAOutputStream emtpryIDStream;
 	
+	private QueryPrefetcher queryPrefetcher;
+	
 	private static ThreadLocal<ClassLoader> classLoaderHolder = new ThreadLocal<ClassLoader>();
 	private static ThreadLocal<Map<String,Integer>> versionForQuRsHolder = new ThreadLocal<Map<String,Integer>>();
 	
@@ -133,6 +136,7 @@ public class DataEngineSession
 				if( mode != DataEngineContext.DIRECT_PRESENTATION )
 					versionForQuRsHolder.set( null );
 				houseKeepCancelManager( );
+				closeQueryPrefetcher( );
 				saveGeneralACL( );
 				if ( emtpryIDStream != null )
 					try
@@ -341,6 +345,7 @@ public class DataEngineSession
 	public void cancel( )
 	{
 		this.stopSign.stop( );
+		closeQueryPrefetcher( );
 		cancelManager.doCancel( );
 		if ( currentTimer == null )
 		{
@@ -432,6 +437,38 @@ public class DataEngineSession
 		this.namingRelation = namingRelation;
 	}
 	
+	/**
+	 * Returns the prefetcher executing the queries of the data sets ahead, null
+	 * if the queries are not executed ahead.
+	 * 
+	 * @return
+	 */
+	public synchronized QueryPrefetcher getQueryPrefetcher( )
+	{
+		return this.queryPrefetcher;
+	}
+	
+	/**
+	 * 
+	 * @param queryPrefetcher
+	 */
+	public synchronized void setQueryPrefetcher( QueryPrefetcher queryPrefetcher )
+	{
+		this.queryPrefetcher = queryPrefetcher;
+	}
+	
+	private void closeQueryPrefetcher( )
+	{
+		QueryPrefetcher prefetcher;
+		synchronized ( this )
+		{
+			prefetcher = this.queryPrefetcher;
+			this.queryPrefetcher = null;
+		}
+		if ( prefetcher != null )
+			prefetcher.close( );
+	}
+	
 	public CancelManager getCancelManager()
 	{
 		return this.cancelManager;
@@ -18,8 +18,10 @@ import org.eclipse.birt.data.engine.api.DataEngineContext;
 import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.CacheMapManager;
 import org.eclipse.birt.data.engine.executor.DataSetCacheConfig;
 import org.eclipse.birt.data.engine.executor.DataSetCacheConfig.DataSetCacheMode;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 
 /**
  * 
@@ -43,7 +45,11 @@ public class DataSetCacheUtil
 		String tempDir = context.getTmpdir( );
 		if (dataSetDesign != null && dataSetDesign instanceof IIncreCacheDataSetDesign)
 		{
-			return DataSetCacheConfig.getInstance( DataSetCacheMode.IN_DISK, -1, true, tempDir );
+			return DataSetCacheConfig.getInstance( DataSetCacheMode.IN_DISK,
+					-1,
+					true,
+					CacheUtil.createIncrementalTempDir( tempDir,
+							(IIncreCacheDataSetDesign) dataSetDesign ) );
 		}
 		if ( appContext != null )
 		{
@@ -190,6 +196,33 @@ public class DataSetCacheUtil
 	 * @param option
 	 * @return
 	 */
+	/**
+	 * Apply the limits of the data set cache shared by all data engines which
+	 * are set in the application context.
+	 * 
+	 * @param appContext
+	 */
+	public static void applyJVMDataSetCacheLimits( Map appContext )
+	{
+		if ( appContext == null )
+			return;
+		Object option = appContext.get( DataEngine.DATA_SET_CACHE_MAX_SIZE );
+		if ( option != null )
+		{
+			CacheMapManager.setJVMLevelCacheMaxSize( getLongValueFromString( option ) );
+		}
+		option = appContext.get( DataEngine.DATA_SET_CACHE_TIME_TO_LIVE );
+		if ( option != null )
+		{
+			CacheMapManager.setJVMLevelCacheTimeToLive( getLongValueFromString( option ) );
+		}
+	}
+	
+	private static long getLongValueFromString( Object option )
+	{
+		return Long.valueOf( option.toString( ).trim( ) ).longValue( );
+	}
+	
 	private static int getIntValueFromString(Object option) 
 	{
 		return Integer.valueOf(option.toString()).intValue();
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
+import org.eclipse.birt.data.engine.api.IBaseDataSourceDesign;
+import org.eclipse.birt.data.engine.api.IDataQueryDefinition;
+import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.IOdaDataSourceDesign;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.QueryPrefetcher;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
+
+/**
+ * Util class which starts executing the ODA queries of the data sets of a
+ * report ahead, when the queries are registered at the start of the report,
+ * see DataEngine.CONCURRENT_DATA_SET_THREADS.
+ * <p>
+ * A data set is executed ahead only if its query can be known before the data
+ * set is executed: it is an ODA data set which is not cached, its data set and
+ * data source have no scripts, and it is used by a query which is neither
+ * nested nor based on other results, and has no parameter bindings. Its
+ * parameter values are the default values and the values of the data set
+ * parameter bindings, evaluated with the report parameters. The data set
+ * still takes the result set of the query only if it then executes the same
+ * query, so a guess which turns out wrong only costs the query executed
+ * ahead.
+ */
+final class DataSetPrefetchHelper
+{
+
+	private static Logger logger = Logger.getLogger( DataSetPrefetchHelper.class.getName( ) );
+
+	private DataSetPrefetchHelper( )
+	{
+	}
+
+	/**
+	 * Starts executing ahead the queries of the data sets used by the given
+	 * queries which can be executed ahead.
+	 *
+	 * @param dataEngine
+	 * @param queryDefns
+	 * @param appContext
+	 */
+	static void prefetch( DataEngineImpl dataEngine,
+			IDataQueryDefinition[] queryDefns, Map appContext )
+	{
+		// a query registered alone is executed right after
+		int threadCount = CacheUtil.getConcurrentDataSetThreads( appContext );
+		if ( threadCount <= 0 || queryDefns == null || queryDefns.length < 2 )
+			return;
+
+		DataEngineSession session = dataEngine.getSession( );
+		int mode = dataEngine.getContext( ).getMode( );
+		if ( mode != DataEngineContext.DIRECT_PRESENTATION
+				&& mode != DataEngineContext.MODE_GENERATION )
+			return;
+
+		QueryPrefetcher prefetcher = session.getQueryPrefetcher( );
+		for ( int i = 0; i < queryDefns.length; i++ )
+		{
+			if ( !( queryDefns[i] instanceof IQueryDefinition ) )
+				continue;
+			IQueryDefinition query = (IQueryDefinition) queryDefns[i];
+			try
+			{
+				IOdaDataSetDesign dataSet = getDataSet( dataEngine,
+						query,
+						appContext );
+				if ( dataSet == null )
+					continue;
+
+				Collection parameterHints = ParameterUtil.resolveDataSetParameters( dataSet,
+						dataEngine.getContext( ).getScriptContext( ) );
+				if ( prefetcher == null )
+				{
+					prefetcher = new QueryPrefetcher( threadCount,
+							CacheUtil.getConcurrentDataSetConnections( appContext ) );
+					session.setQueryPrefetcher( prefetcher );
+				}
+				prefetcher.prefetch( dataSet,
+						(IOdaDataSourceDesign) dataEngine.getDataSourceDesign( dataSet.getDataSourceName( ) ),
+						parameterHints,
+						appContext );
+			}
+			catch ( DataException e )
+			{
+				// the data set is executed when it is needed
+				logger.log( Level.FINE, e.getMessage( ), e );
+			}
+			catch ( RuntimeException e )
+			{
+				logger.log( Level.FINE, e.getMessage( ), e );
+			}
+		}
+	}
+
+	/**
+	 * Returns the data set of a query if it can be executed ahead, else null.
+	 */
+	private static IOdaDataSetDesign getDataSet( DataEngineImpl dataEngine,
+			IQueryDefinition query, Map appContext ) throws DataException
+	{
+		if ( query.getDataSetName( ) == null
+				|| query.getParentQuery( ) != null
+				|| query.getSourceQuery( ) != null
+				|| query.getQueryResultsID( ) != null
+				|| ( query.getInputParamBindings( ) != null && !query.getInputParamBindings( )
+						.isEmpty( ) ) )
+			return null;
+
+		IBaseDataSetDesign dataSet = dataEngine.getDataSetDesign( query.getDataSetName( ) );
+		if ( !( dataSet instanceof IOdaDataSetDesign ) )
+			return null;
+		IBaseDataSourceDesign dataSource = dataEngine.getDataSourceDesign( dataSet.getDataSourceName( ) );
+		if ( !( dataSource instanceof IOdaDataSourceDesign ) )
+			return null;
+
+		if ( dataEngine.getExecutionHints( )
+				.needCacheDataSet( dataSet.getName( ) )
+				|| dataEngine.getSession( )
+						.getDataSetCacheManager( )
+						.needsToCache( dataSet, appContext ) )
+			return null;
+
+		// the query rewritten by the ODA JDBC driver is only known when the
+		// data set is executed
+		if ( JdbcPushDownHelper.isEnabled( appContext )
+				&& JdbcPushDownHelper.JDBC_DATA_SOURCE_ID.equals( ( (IOdaDataSourceDesign) dataSource ).getExtensionID( ) ) )
+			return null;
+
+		if ( hasScript( dataSet.getBeforeOpenScript( ) )
+				|| hasScript( dataSet.getAfterOpenScript( ) )
+				|| hasScript( dataSet.getOnFetchScript( ) )
+				|| hasScript( dataSet.getBeforeCloseScript( ) )
+				|| hasScript( dataSet.getAfterCloseScript( ) )
+				|| hasScript( dataSource.getBeforeOpenScript( ) )
+				|| hasScript( dataSource.getAfterOpenScript( ) )
+				|| hasScript( dataSource.getBeforeCloseScript( ) )
+				|| hasScript( dataSource.getAfterCloseScript( ) ) )
+			return null;
+
+		IOdaDataSetDesign odaDataSet = (IOdaDataSetDesign) dataSet;
+		if ( odaDataSet.getQueryText( ) == null
+				|| odaDataSet.getPrimaryResultSetName( ) != null
+				|| odaDataSet.getPrimaryResultSetNumber( ) > 0 )
+			return null;
+		return odaDataSet;
+	}
+
+	private static boolean hasScript( String script )
+	{
+		return script != null && script.trim( ).length( ) > 0;
+	}
+}
@@ -16,28 +16,40 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.data.ExpressionUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.api.IBaseExpression;
+import org.eclipse.birt.data.engine.api.IBinding;
 import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.IExpressionCollection;
 import org.eclipse.birt.data.engine.api.IFilterDefinition;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.BaseExpression;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.expression.ExprEvaluator;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataSetRuntime.Mode;
 import org.eclipse.birt.data.engine.odi.FilterUtil;
+import org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent;
+import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultIterator;
 import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.JSResultSetRow;
+import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
+
+import org.mozilla.javascript.Scriptable;
 
 import com.ibm.icu.text.Collator;
 
 /**
  * Implementation of IFilter, which will do filtering on row data.
  */
-public class FilterByRow implements IFilterByRow
+public class FilterByRow implements IFilterByRow, IParallelResultObjectEvent
 {
 
 	//
@@ -62,6 +74,10 @@ public class FilterByRow implements IFilterByRow
 	
 	private final ExprEvaluator exprEvaluator;
 
+	// numbers and quoted strings without escapes, which are literals in any
+	// script context
+	static final Pattern LITERAL_PATTERN = Pattern.compile( "-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?|\"[^\"\\\\]*\"|'[^'\\\\]*'" );
+
 	protected static Logger logger = Logger.getLogger( FilterByRow.class.getName( ) );
 
 	FilterByRow ( )
@@ -234,6 +250,28 @@ public class FilterByRow implements IFilterByRow
 		return true;
 	}
 
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent#prepareParallelProcess(org.eclipse.birt.data.engine.odi.IResultClass)
+	 */
+	public boolean prepareParallelProcess( IResultClass resultClass )
+			throws DataException
+	{
+		if ( this.currentFilters != null )
+			return this.currentFilters.prepareParallelProcess( resultClass );
+		return true;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IParallelResultObjectEvent#processInParallel(org.eclipse.birt.data.engine.odi.IResultObject, int)
+	 */
+	public boolean processInParallel( IResultObject row, int rowIndex )
+			throws DataException
+	{
+		if ( this.currentFilters != null )
+			return this.currentFilters.processInParallel( row, rowIndex );
+		return true;
+	}
+
 	/**
 	 * Get the current working filter list.
 	 * 
@@ -335,6 +373,9 @@ public class FilterByRow implements IFilterByRow
 		private Mode mode;
 		private CompareHints compareHints;
 
+		// the filters prepared for parallel process
+		private ParallelFilter[] parallelFilters;
+
 		FilterByRowHelper( DataSetRuntime dataSet, Mode mode, List filters )
 		{
 			this.dataSet = dataSet;
@@ -442,5 +483,238 @@ public class FilterByRow implements IFilterByRow
 			}
 		}
 
+
+		/**
+		 * Prepare the filters to be evaluated in parallel. This is only
+		 * possible when each filter compares a column with literal values,
+		 * in which case the filter is evaluated without the script scope.
+		 * 
+		 * @param resultClass
+		 * @return
+		 * @throws DataException
+		 */
+		public boolean prepareParallelProcess( IResultClass resultClass )
+				throws DataException
+		{
+			this.parallelFilters = null;
+			// the collator used for string comparison is not thread safe
+			if ( compareHints.getComparator( ) != null )
+				return false;
+
+			ParallelFilter[] filters = new ParallelFilter[currentFilters.size( )];
+			Mode temp = dataSet.getMode( );
+			dataSet.setMode( this.mode );
+			try
+			{
+				for ( int i = 0; i < filters.length; i++ )
+				{
+					filters[i] = prepareParallelFilter( ( (IFilterDefinition) currentFilters.get( i ) ).getExpression( ),
+							resultClass );
+					if ( filters[i] == null )
+						return false;
+				}
+			}
+			catch ( BirtException e )
+			{
+				throw DataException.wrap( e );
+			}
+			finally
+			{
+				dataSet.setMode( temp );
+			}
+			this.parallelFilters = filters;
+			return true;
+		}
+
+		/**
+		 * 
+		 * @param expr
+		 * @param resultClass
+		 * @return null if the filter can not be evaluated in parallel
+		 * @throws BirtException
+		 */
+		private ParallelFilter prepareParallelFilter( IBaseExpression expr,
+				IResultClass resultClass ) throws BirtException
+		{
+			if ( !( expr instanceof IConditionalExpression )
+					|| expr.getHandle( ) != null )
+				return null;
+			IConditionalExpression condExpr = (IConditionalExpression) expr;
+			int operator = condExpr.getOperator( );
+			if ( operator == IConditionalExpression.OP_TOP_N
+					|| operator == IConditionalExpression.OP_BOTTOM_N
+					|| operator == IConditionalExpression.OP_TOP_PERCENT
+					|| operator == IConditionalExpression.OP_BOTTOM_PERCENT )
+				return null;
+
+			ParallelFilter filter = new ParallelFilter( );
+			filter.operator = operator;
+			if ( !prepareDirectColumn( filter, condExpr.getExpression( ), resultClass ) )
+				return null;
+
+			IBaseExpression operand1 = condExpr.getOperand1( );
+			if ( operand1 instanceof IExpressionCollection )
+			{
+				Object[] exprs = ( (IExpressionCollection) operand1 ).getExpressions( )
+						.toArray( );
+				Object[] values = new Object[exprs.length];
+				for ( int i = 0; i < exprs.length; i++ )
+				{
+					if ( !isLiteral( (IBaseExpression) exprs[i] ) )
+						return null;
+					values[i] = evaluateLiteral( (IBaseExpression) exprs[i] );
+				}
+				filter.operands = ExprEvaluateUtil.flatternMultipleValues( values );
+			}
+			else
+			{
+				IBaseExpression operand2 = condExpr.getOperand2( );
+				if ( !isLiteral( operand1 ) || !isLiteral( operand2 ) )
+					return null;
+				filter.operands = new Object[]{
+						evaluateLiteral( operand1 ), evaluateLiteral( operand2 )
+				};
+			}
+			return filter;
+		}
+
+		/**
+		 * Find out the column whose value is directly used as the value of
+		 * the given expression. The rules are the same as those of
+		 * ExprEvaluator when it evaluates a filter.
+		 * 
+		 * @param filter
+		 * @param expr
+		 * @param resultClass
+		 * @return
+		 * @throws BirtException
+		 */
+		private boolean prepareDirectColumn( ParallelFilter filter,
+				IScriptExpression expr, IResultClass resultClass )
+				throws BirtException
+		{
+			if ( expr == null
+					|| BaseExpression.constantId.equals( expr.getScriptId( ) ) )
+				return false;
+
+			String columnName = ExpressionUtil.getColumnName( expr.getText( ) );
+			if ( columnName != null
+					&& resultClass.getFieldIndex( columnName ) >= 0 )
+			{
+				filter.columnName = columnName;
+				filter.dataType = expr.getDataType( );
+				return true;
+			}
+
+			String bindingName = ExpressionUtil.getColumnBindingName( expr.getText( ) );
+			if ( bindingName == null )
+				return false;
+			Scriptable scriptable = dataSet.getJSResultRowObject( );
+			if ( scriptable instanceof JSResultSetRow )
+			{
+				IBinding binding = ( (JSResultSetRow) scriptable ).getBinding( bindingName );
+				if ( binding == null
+						|| binding.getAggrFunction( ) != null
+						|| !( binding.getExpression( ) instanceof IScriptExpression )
+						|| BaseExpression.constantId.equals( binding.getExpression( )
+								.getScriptId( ) ) )
+					return false;
+				columnName = ExpressionUtil.getColumnName( ( (IScriptExpression) binding.getExpression( ) ).getText( ) );
+				if ( columnName != null
+						&& resultClass.getFieldIndex( columnName ) >= 0 )
+				{
+					filter.columnName = columnName;
+					filter.dataType = binding.getDataType( );
+					return true;
+				}
+			}
+			else if ( resultClass.getFieldIndex( bindingName ) >= 0 )
+			{
+				filter.columnName = bindingName;
+				filter.dataType = expr.getDataType( );
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Return whether the value of an operand does not depend on the row.
+		 * 
+		 * @param expr
+		 * @return
+		 */
+		private boolean isLiteral( IBaseExpression expr )
+		{
+			if ( expr == null )
+				return true;
+			if ( !( expr instanceof IScriptExpression ) )
+				return false;
+			if ( BaseExpression.constantId.equals( expr.getScriptId( ) ) )
+				return true;
+			String text = ( (IScriptExpression) expr ).getText( );
+			return text != null
+					&& LITERAL_PATTERN.matcher( text.trim( ) ).matches( );
+		}
+
+		/**
+		 * 
+		 * @param expr
+		 * @return
+		 * @throws BirtException
+		 */
+		private Object evaluateLiteral( IBaseExpression expr )
+				throws BirtException
+		{
+			if ( expr == null )
+				return null;
+			return exprEvaluator.evaluateRawExpression2( expr,
+					dataSet.getScriptScope( ),
+					dataSet.getSession( ).getEngineContext( ).getScriptContext( ),
+					dataSet );
+		}
+
+		/**
+		 * Evaluate the filters prepared by prepareParallelProcess on a row.
+		 * 
+		 * @param row
+		 * @param rowIndex
+		 * @return
+		 * @throws DataException
+		 */
+		public boolean processInParallel( IResultObject row, int rowIndex )
+				throws DataException
+		{
+			for ( int i = 0; i < parallelFilters.length; i++ )
+			{
+				ParallelFilter filter = parallelFilters[i];
+				try
+				{
+					Object value = DataTypeUtil.convert( row.getFieldValue( filter.columnName ),
+							filter.dataType );
+					Object result = ScriptEvalUtil.evalConditionalExpr( value,
+							filter.operator,
+							filter.operands,
+							compareHints );
+					if ( DataTypeUtil.toBoolean( result ).booleanValue( ) == false )
+						return false;
+				}
+				catch ( BirtException e )
+				{
+					throw DataException.wrap( e );
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A filter which compares the value of a column with literal values.
+	 */
+	private static class ParallelFilter
+	{
+		private String columnName;
+		private int dataType;
+		private int operator;
+		private Object[] operands;
 	}
 }
@@ -45,6 +45,24 @@ public interface IIncreCacheDataSetDesign extends IOdaDataSetDesign
 	 */
 	public String getTimestampColumn( );
 
+	/**
+	 * get the key column names. When they are specified, the delta data
+	 * replaces the cached rows with the same key values instead of being
+	 * appended to the cache.
+	 * 
+	 * @return the key column names, null if the delta data is appended
+	 */
+	public String[] getKeyColumns( );
+
+	/**
+	 * get the name of the column telling whether a row of the delta data has
+	 * been deleted, in which case the cached row with the same key values is
+	 * removed. It is only used with key columns.
+	 * 
+	 * @return the column name, null if rows are not deleted
+	 */
+	public String getDeletedColumn( );
+
 	/**
 	 * get the parsed query for updating to retrieve the delta data.
 	 * 
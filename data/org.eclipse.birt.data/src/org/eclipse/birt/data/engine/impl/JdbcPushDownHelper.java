@@ -0,0 +1,909 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.ExpressionUtil;
+import org.eclipse.birt.core.data.PushDownPlan;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
+import org.eclipse.birt.data.engine.api.IBaseExpression;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.IColumnDefinition;
+import org.eclipse.birt.data.engine.api.IComputedColumn;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.IExpressionCollection;
+import org.eclipse.birt.data.engine.api.IFilterDefinition;
+import org.eclipse.birt.data.engine.api.IGroupDefinition;
+import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.BaseExpression;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.transform.FilterUtil;
+import org.eclipse.birt.data.engine.expression.ExpressionCompilerUtil;
+
+/**
+ * Util class which plans the part of the processing of a data set of the ODA
+ * JDBC driver that can be pushed down into its SQL query, see
+ * DataEngine.JDBC_PUSH_DOWN.
+ * <p>
+ * The data engine still applies all the filters, groups and aggregations of
+ * the query to the rows it receives, so the plan only has to let through
+ * every row, or one row for every group of rows, which affects the result:
+ * <ul>
+ * <li>a filter comparing a data set column with literals is pushed down as a
+ * condition which is met by every row the filter keeps. Filters are pushed
+ * down only when no filter applied along with them or before them is a
+ * Top/Bottom N filter, and when no computed column depends on the other
+ * rows.</li>
+ * <li>a summary query whose groups are on data set columns, and whose
+ * aggregations are MIN and MAX of data set columns, has the rows grouped by
+ * all the group columns; the MIN or MAX of the partial MIN or MAX of the
+ * groups is that of their rows. The group columns are of types whose values
+ * are equal in SQL only if they are equal in the data engine.</li>
+ * <li>a Top/Bottom N filter, which is the only filter of the data set, is
+ * pushed down as an ORDER BY and a maximum number of rows. The filter keeps the
+ * first N rows with the greatest (least) values, in the order they are
+ * fetched, and the rows of the original query could have been fetched in that
+ * order.</li>
+ * <li>the rows of a query whose groups and sorts are on data set columns are
+ * ordered on them, so that the data engine finds them in order and does not
+ * sort them again. The rows are still checked while they are cached, and
+ * sorted if the database has ordered them in another way.</li>
+ * </ul>
+ * The strings are compared by the database in its own way, so only the
+ * filters for which that can only let more rows through are pushed down:
+ * equality, IN and LIKE, when no collation is used by the data engine.
+ */
+final class JdbcPushDownHelper
+{
+
+	/** the extension ID of the data source of the ODA JDBC driver */
+	static final String JDBC_DATA_SOURCE_ID = "org.eclipse.birt.report.data.oda.jdbc"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private JdbcPushDownHelper( )
+	{
+	}
+
+	/**
+	 * @param appContext
+	 * @return whether the push down is enabled by the application context
+	 */
+	static boolean isEnabled( Map appContext )
+	{
+		return appContext != null
+				&& "true".equalsIgnoreCase( String.valueOf( appContext.get( DataEngine.JDBC_PUSH_DOWN ) ) ); //$NON-NLS-1$
+	}
+
+	/**
+	 * Plans the processing of a data set which can be pushed down into its SQL
+	 * query.
+	 *
+	 * @param session
+	 * @param dataSet
+	 * @param query
+	 * @return the plan, or null if nothing can be pushed down
+	 * @throws DataException
+	 */
+	static PushDownPlan createPlan( DataEngineSession session,
+			IOdaDataSetDesign dataSet, IQueryDefinition query )
+			throws DataException
+	{
+		// the rows must be those of the data set, each one processed without
+		// looking at the others before the filters
+		if ( dataSet.getRowFetchLimit( ) > 0
+				|| hasText( dataSet.getOnFetchScript( ) )
+				|| query.getQueryResultsID( ) != null
+				|| query.getSourceQuery( ) != null )
+			return null;
+		Map<String, IColumnDefinition> columns = getColumns( dataSet );
+		if ( columns.isEmpty( ) || !isRowIndependent( dataSet ) )
+			return null;
+
+		List dataSetFilters = getList( dataSet.getFilters( ) );
+		List queryFilters = getList( query.getFilters( ) );
+		PushDownPlan plan = new PushDownPlan( );
+		try
+		{
+			if ( dataSetFilters.size( ) == 1
+					&& FilterUtil.hasMutipassFilters( dataSetFilters ) )
+			{
+				addTopN( plan,
+						(IFilterDefinition) dataSetFilters.get( 0 ),
+						dataSet,
+						columns );
+				return plan.isEmpty( ) ? null : plan;
+			}
+			if ( FilterUtil.hasMutipassFilters( dataSetFilters ) )
+				return null;
+
+			addConditions( plan, dataSetFilters, dataSet, null, columns );
+			if ( !FilterUtil.hasMutipassFilters( queryFilters ) )
+				addConditions( plan, queryFilters, dataSet, query, columns );
+			if ( session.getEngineContext( ).getMode( ) == DataEngineContext.DIRECT_PRESENTATION )
+				addGrouping( plan, dataSet, query, columns );
+			addOrdering( plan, dataSet, query, columns );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+		return plan.isEmpty( ) ? null : plan;
+	}
+
+	/**
+	 * @param dataSet
+	 * @return the result set columns of the data set by name
+	 */
+	private static Map<String, IColumnDefinition> getColumns(
+			IBaseDataSetDesign dataSet )
+	{
+		Map<String, IColumnDefinition> columns = new HashMap<String, IColumnDefinition>( );
+		Iterator it = getList( dataSet.getResultSetHints( ) ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			IColumnDefinition column = (IColumnDefinition) it.next( );
+			if ( column.getColumnName( ) != null )
+				columns.put( column.getColumnName( ), column );
+		}
+		// a computed column hides the result set column of the same name
+		it = getList( dataSet.getComputedColumns( ) ).iterator( );
+		while ( it.hasNext( ) )
+			columns.remove( ( (IComputedColumn) it.next( ) ).getName( ) );
+		return columns;
+	}
+
+	/**
+	 * @param dataSet
+	 * @return whether the computed columns of a row do not depend on the
+	 *         other rows
+	 * @throws DataException
+	 */
+	private static boolean isRowIndependent( IBaseDataSetDesign dataSet )
+			throws DataException
+	{
+		Iterator it = getList( dataSet.getComputedColumns( ) ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			IComputedColumn computedColumn = (IComputedColumn) it.next( );
+			if ( computedColumn.getAggregateFunction( ) != null
+					|| ExpressionCompilerUtil.hasAggregationInExpr( computedColumn.getExpression( ) ) )
+				return false;
+			List<String> texts = new ArrayList<String>( );
+			if ( !getTexts( computedColumn.getExpression( ), texts ) )
+				return false;
+			for ( String text : texts )
+			{
+				if ( text.indexOf( "rownum" ) >= 0 ) //$NON-NLS-1$
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the conditions of the filters which compare a data set column with
+	 * literals.
+	 *
+	 * @param plan
+	 * @param filters
+	 * @param dataSet
+	 * @param query
+	 *            the query of the filters, null for the filters of the data
+	 *            set
+	 * @param columns
+	 * @throws BirtException
+	 */
+	private static void addConditions( PushDownPlan plan, List filters,
+			IBaseDataSetDesign dataSet, IQueryDefinition query,
+			Map<String, IColumnDefinition> columns ) throws BirtException
+	{
+		for ( int i = 0; i < filters.size( ); i++ )
+		{
+			IFilterDefinition filter = (IFilterDefinition) filters.get( i );
+			// the filters applied after aggregation may be changed at view time
+			if ( !filter.updateAggregation( )
+					|| !( filter.getExpression( ) instanceof IConditionalExpression )
+					|| filter.getExpression( ).getHandle( ) != null )
+				continue;
+			IConditionalExpression expr = (IConditionalExpression) filter.getExpression( );
+			IColumnDefinition column = getDirectColumn( expr.getExpression( ),
+					query,
+					columns );
+			Object[] values = getLiterals( expr );
+			if ( column == null || values == null )
+				continue;
+
+			int operator = getOperator( expr.getOperator( ),
+					column,
+					values,
+					dataSet.getCompareLocale( ) == null );
+			if ( operator == 0 )
+				continue;
+			plan.addCondition( getNativeName( column ),
+					operator,
+					values,
+					isNullMatched( operator, dataSet.getNullsOrdering( ) ) );
+		}
+	}
+
+	/**
+	 * @param operator
+	 *            the operator of a filter
+	 * @param column
+	 * @param values
+	 * @param stringComparable
+	 *            whether strings are compared without collation
+	 * @return the operator of the condition met by at least every row the
+	 *         filter keeps, 0 if there is none
+	 */
+	private static int getOperator( int operator, IColumnDefinition column,
+			Object[] values, boolean stringComparable )
+	{
+		if ( operator == IConditionalExpression.OP_NULL )
+			return PushDownPlan.OP_NULL;
+		if ( operator == IConditionalExpression.OP_NOT_NULL )
+			return PushDownPlan.OP_NOT_NULL;
+
+		if ( isExactNumber( column ) )
+		{
+			for ( int i = 0; i < values.length; i++ )
+			{
+				if ( !( values[i] instanceof BigDecimal ) )
+					return 0;
+			}
+			switch ( operator )
+			{
+				case IConditionalExpression.OP_EQ :
+					return values.length == 1 ? PushDownPlan.OP_EQ : 0;
+				case IConditionalExpression.OP_NE :
+					return values.length == 1 ? PushDownPlan.OP_NE : 0;
+				case IConditionalExpression.OP_LT :
+					return values.length == 1 ? PushDownPlan.OP_LT : 0;
+				case IConditionalExpression.OP_LE :
+					return values.length == 1 ? PushDownPlan.OP_LE : 0;
+				case IConditionalExpression.OP_GT :
+					return values.length == 1 ? PushDownPlan.OP_GT : 0;
+				case IConditionalExpression.OP_GE :
+					return values.length == 1 ? PushDownPlan.OP_GE : 0;
+				case IConditionalExpression.OP_BETWEEN :
+					return values.length == 2 ? PushDownPlan.OP_BETWEEN : 0;
+				case IConditionalExpression.OP_NOT_BETWEEN :
+					return values.length == 2 ? PushDownPlan.OP_NOT_BETWEEN
+							: 0;
+				case IConditionalExpression.OP_IN :
+					return values.length > 0 ? PushDownPlan.OP_IN : 0;
+				default :
+					return 0;
+			}
+		}
+
+		if ( isString( column ) && stringComparable )
+		{
+			for ( int i = 0; i < values.length; i++ )
+			{
+				if ( !( values[i] instanceof String ) )
+					return 0;
+			}
+			// a database may take more strings as equal, or as matching a
+			// pattern, than the data engine does, but not less
+			switch ( operator )
+			{
+				case IConditionalExpression.OP_EQ :
+					return values.length == 1 ? PushDownPlan.OP_EQ : 0;
+				case IConditionalExpression.OP_IN :
+					return values.length > 0 ? PushDownPlan.OP_IN : 0;
+				case IConditionalExpression.OP_LIKE :
+					// some databases take brackets as a character class
+					return values.length == 1
+							&& ( (String) values[0] ).indexOf( '[' ) < 0
+							? PushDownPlan.OP_LIKE : 0;
+				default :
+					return 0;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param operator
+	 *            the operator of a condition
+	 * @param nullsOrdering
+	 *            the nulls ordering of the data set
+	 * @return whether the filter of the condition keeps the null values; the
+	 *         operands are not null
+	 */
+	private static boolean isNullMatched( int operator, String nullsOrdering )
+	{
+		if ( IBaseDataSetDesign.NULLS_ORDERING_EXCLUDE_NULLS.equals( nullsOrdering ) )
+			return false;
+		boolean nullsHighest = IBaseDataSetDesign.NULLS_ORDERING_NULLS_HIGHEST.equals( nullsOrdering );
+		switch ( operator )
+		{
+			case PushDownPlan.OP_NE :
+			case PushDownPlan.OP_NOT_BETWEEN :
+			case PushDownPlan.OP_LIKE :
+				// a null value is taken as an empty string by LIKE
+				return true;
+			case PushDownPlan.OP_LT :
+			case PushDownPlan.OP_LE :
+				return !nullsHighest;
+			case PushDownPlan.OP_GT :
+			case PushDownPlan.OP_GE :
+			case PushDownPlan.OP_BETWEEN :
+				return nullsHighest;
+			default :
+				return false;
+		}
+	}
+
+	/**
+	 * Adds the order and the maximum number of rows of a Top/Bottom N filter.
+	 *
+	 * @param plan
+	 * @param filter
+	 * @param dataSet
+	 * @param columns
+	 * @throws BirtException
+	 */
+	private static void addTopN( PushDownPlan plan, IFilterDefinition filter,
+			IBaseDataSetDesign dataSet, Map<String, IColumnDefinition> columns )
+			throws BirtException
+	{
+		IConditionalExpression expr = (IConditionalExpression) filter.getExpression( );
+		int operator = expr.getOperator( );
+		if ( ( operator != IConditionalExpression.OP_TOP_N && operator != IConditionalExpression.OP_BOTTOM_N )
+				|| dataSet.needDistinctValue( )
+				|| !filter.updateAggregation( )
+				|| expr.getHandle( ) != null )
+			return;
+		// only numbers are ordered the same way by the database
+		IColumnDefinition column = getDirectColumn( expr.getExpression( ),
+				null,
+				columns );
+		Object[] values = getLiterals( expr );
+		if ( column == null
+				|| !isExactNumber( column ) || values == null
+				|| values.length != 1 || !( values[0] instanceof BigDecimal ) )
+			return;
+		int n = (int) ( (BigDecimal) values[0] ).doubleValue( );
+		if ( n <= 0 )
+			return;
+
+		// the null values are never kept
+		String name = getNativeName( column );
+		plan.addCondition( name, PushDownPlan.OP_NOT_NULL, null, false );
+		plan.addSortKey( name,
+				operator == IConditionalExpression.OP_BOTTOM_N,
+				false );
+		plan.setMaxRows( n );
+	}
+
+	/**
+	 * Groups the rows of a summary query on its group columns, when its
+	 * aggregations are MIN and MAX of data set columns, and all the other
+	 * data set columns it uses are group columns.
+	 *
+	 * @param plan
+	 * @param dataSet
+	 * @param query
+	 * @param columns
+	 * @throws BirtException
+	 */
+	private static void addGrouping( PushDownPlan plan,
+			IBaseDataSetDesign dataSet, IQueryDefinition query,
+			Map<String, IColumnDefinition> columns ) throws BirtException
+	{
+		List groups = getList( query.getGroups( ) );
+		if ( !query.isSummaryQuery( )
+				|| query.cacheQueryResults( ) || groups.isEmpty( )
+				|| !getList( query.getSubqueries( ) ).isEmpty( )
+				|| dataSet.needDistinctValue( )
+				|| !getList( dataSet.getComputedColumns( ) ).isEmpty( )
+				|| FilterUtil.hasMutipassFilters( getList( query.getFilters( ) ) ) )
+			return;
+
+		List<String> groupColumns = new ArrayList<String>( );
+		for ( int i = 0; i < groups.size( ); i++ )
+		{
+			IGroupDefinition group = (IGroupDefinition) groups.get( i );
+			if ( group.getInterval( ) != IGroupDefinition.NO_INTERVAL
+					|| !getList( group.getSubqueries( ) ).isEmpty( )
+					|| !isDataSetRowFree( group.getFilters( ) )
+					|| !isDataSetRowFree( group.getSorts( ) ) )
+				return;
+			String keyExpr = group.getKeyColumn( ) != null
+					? ExpressionUtil.createJSRowExpression( group.getKeyColumn( ) )
+					: group.getKeyExpression( );
+			IColumnDefinition column = keyExpr == null ? null
+					: getDirectColumn( new ScriptExpression( keyExpr ),
+							query,
+							columns );
+			if ( column == null || !isGroupable( column ) )
+				return;
+			if ( !groupColumns.contains( getNativeName( column ) ) )
+				groupColumns.add( getNativeName( column ) );
+		}
+
+		// the filters of the data set are applied to the grouped rows, so they
+		// must be on group columns
+		Iterator it = getList( dataSet.getFilters( ) ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			IBaseExpression expr = ( (IFilterDefinition) it.next( ) ).getExpression( );
+			IColumnDefinition column = expr instanceof IConditionalExpression
+					&& getLiterals( (IConditionalExpression) expr ) != null
+					? getDirectColumn( ( (IConditionalExpression) expr ).getExpression( ),
+							null,
+							columns ) : null;
+			if ( column == null
+					|| !groupColumns.contains( getNativeName( column ) ) )
+				return;
+		}
+		it = getList( query.getFilters( ) ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			List<String> texts = new ArrayList<String>( );
+			if ( !getTexts( ( (IFilterDefinition) it.next( ) ).getExpression( ),
+					texts ) )
+				return;
+			for ( String text : texts )
+			{
+				if ( !isDataSetRowFree( text ) )
+					return;
+			}
+		}
+		if ( !isDataSetRowFree( query.getSorts( ) ) )
+			return;
+
+		Map<String, Integer> aggregations = new HashMap<String, Integer>( );
+		it = query.getBindings( ).values( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			IBinding binding = (IBinding) it.next( );
+			if ( !( binding.getExpression( ) == null || binding.getExpression( ) instanceof IScriptExpression ) )
+				return;
+			String text = binding.getExpression( ) == null ? null
+					: ( (IScriptExpression) binding.getExpression( ) ).getText( );
+			String function = binding.getAggrFunction( );
+			if ( function == null )
+			{
+				if ( text == null
+						|| ExpressionCompilerUtil.hasAggregationInExpr( binding.getExpression( ) ) )
+					return;
+				String columnName = ExpressionUtil.getColumnName( text );
+				if ( columnName != null )
+				{
+					IColumnDefinition column = columns.get( columnName );
+					if ( column == null
+							|| !groupColumns.contains( getNativeName( column ) ) )
+						return;
+				}
+				else if ( !isDataSetRowFree( text ) )
+					return;
+				continue;
+			}
+
+			int aggregation;
+			if ( "MIN".equalsIgnoreCase( function ) ) //$NON-NLS-1$
+				aggregation = PushDownPlan.AGGR_MIN;
+			else if ( "MAX".equalsIgnoreCase( function ) ) //$NON-NLS-1$
+				aggregation = PushDownPlan.AGGR_MAX;
+			else
+				return;
+			List arguments = getList( binding.getArguments( ) );
+			if ( binding.getFilter( ) != null || arguments.size( ) > 1 )
+				return;
+			if ( text == null && arguments.size( ) == 1 )
+			{
+				Object argument = arguments.get( 0 );
+				if ( !( argument instanceof IScriptExpression ) )
+					return;
+				text = ( (IScriptExpression) argument ).getText( );
+			}
+			String columnName = text == null ? null
+					: ExpressionUtil.getColumnName( text );
+			IColumnDefinition column = columnName == null ? null
+					: columns.get( columnName );
+			if ( column == null || !isGroupable( column ) )
+				return;
+			String name = getNativeName( column );
+			Integer previous = aggregations.put( name,
+					Integer.valueOf( aggregation ) );
+			if ( groupColumns.contains( name )
+					|| ( previous != null && previous.intValue( ) != aggregation ) )
+				return;
+		}
+
+		for ( String column : groupColumns )
+			plan.addGroupColumn( column );
+		for ( Map.Entry<String, Integer> entry : aggregations.entrySet( ) )
+			plan.setAggregation( entry.getKey( ), entry.getValue( ).intValue( ) );
+	}
+
+	/**
+	 * Orders the rows on the keys of the groups and then of the sorts of a
+	 * query, when they are all data set columns compared the same way by the
+	 * database and the data engine.
+	 *
+	 * @param plan
+	 * @param dataSet
+	 * @param query
+	 * @param columns
+	 * @throws BirtException
+	 */
+	private static void addOrdering( PushDownPlan plan,
+			IBaseDataSetDesign dataSet, IQueryDefinition query,
+			Map<String, IColumnDefinition> columns ) throws BirtException
+	{
+		List groups = getList( query.getGroups( ) );
+		List sorts = getList( query.getSorts( ) );
+		// the rows are already ordered as the sort hints tell
+		if ( ( groups.isEmpty( ) && sorts.isEmpty( ) )
+				|| !plan.getSortKeys( ).isEmpty( )
+				|| !getList( dataSet.getSortHints( ) ).isEmpty( )
+				|| ( query.getQueryExecutionHints( ) != null && !query.getQueryExecutionHints( )
+						.doSortBeforeGrouping( ) ) )
+			return;
+
+		boolean nullsHighest = IBaseDataSetDesign.NULLS_ORDERING_NULLS_HIGHEST.equals( dataSet.getNullsOrdering( ) );
+		List<String> names = new ArrayList<String>( );
+		List<Boolean> ascendings = new ArrayList<Boolean>( );
+		for ( int i = 0; i < groups.size( ); i++ )
+		{
+			IGroupDefinition group = (IGroupDefinition) groups.get( i );
+			if ( group.getInterval( ) != IGroupDefinition.NO_INTERVAL
+					|| group.getSortDirection( ) == IGroupDefinition.NO_SORT )
+				return;
+			String keyExpr = group.getKeyColumn( ) != null
+					? ExpressionUtil.createJSRowExpression( group.getKeyColumn( ) )
+					: group.getKeyExpression( );
+			IColumnDefinition column = keyExpr == null ? null
+					: getDirectColumn( new ScriptExpression( keyExpr ),
+							query,
+							columns );
+			if ( column == null || !isGroupable( column ) )
+				return;
+			names.add( getNativeName( column ) );
+			ascendings.add( Boolean.valueOf( group.getSortDirection( ) == IGroupDefinition.SORT_ASC ) );
+		}
+		for ( int i = 0; i < sorts.size( ); i++ )
+		{
+			ISortDefinition sort = (ISortDefinition) sorts.get( i );
+			IScriptExpression expr = sort.getColumn( ) != null
+					? new ScriptExpression( ExpressionUtil.createJSRowExpression( sort.getColumn( ) ) )
+					: sort.getExpression( );
+			IColumnDefinition column = getDirectColumn( expr, query, columns );
+			if ( column == null || !isGroupable( column ) )
+				return;
+			names.add( getNativeName( column ) );
+			ascendings.add( Boolean.valueOf( sort.getSortDirection( ) == ISortDefinition.SORT_ASC ) );
+		}
+
+		for ( int i = 0; i < names.size( ); i++ )
+		{
+			boolean ascending = ascendings.get( i ).booleanValue( );
+			plan.addSortKey( names.get( i ), ascending, ascending
+					? !nullsHighest : nullsHighest );
+		}
+	}
+
+	/**
+	 * Find out the data set column whose value is directly used as the value
+	 * of an expression, with the same rules as FilterByRow.
+	 *
+	 * @param expr
+	 * @param query
+	 *            the query whose bindings may be referred to, null if the
+	 *            expression is evaluated on the rows of the data set
+	 * @param columns
+	 * @return
+	 * @throws BirtException
+	 */
+	private static IColumnDefinition getDirectColumn( IScriptExpression expr,
+			IQueryDefinition query, Map<String, IColumnDefinition> columns )
+			throws BirtException
+	{
+		if ( expr == null
+				|| expr.getText( ) == null
+				|| BaseExpression.constantId.equals( expr.getScriptId( ) ) )
+			return null;
+		int dataType = expr.getDataType( );
+		String columnName = ExpressionUtil.getColumnName( expr.getText( ) );
+		if ( columnName == null )
+		{
+			String bindingName = ExpressionUtil.getColumnBindingName( expr.getText( ) );
+			if ( bindingName == null )
+				return null;
+			if ( query == null )
+			{
+				columnName = bindingName;
+			}
+			else
+			{
+				IBinding binding = (IBinding) query.getBindings( )
+						.get( bindingName );
+				if ( binding == null
+						|| binding.getAggrFunction( ) != null
+						|| !( binding.getExpression( ) instanceof IScriptExpression )
+						|| BaseExpression.constantId.equals( binding.getExpression( )
+								.getScriptId( ) ) )
+					return null;
+				columnName = ExpressionUtil.getColumnName( ( (IScriptExpression) binding.getExpression( ) ).getText( ) );
+				dataType = binding.getDataType( );
+			}
+		}
+		IColumnDefinition column = columnName == null ? null
+				: columns.get( columnName );
+		// the value is converted to the type of the expression before it is
+		// compared
+		if ( column == null
+				|| ( dataType != DataType.ANY_TYPE
+						&& dataType != DataType.UNKNOWN_TYPE && dataType != column.getDataType( ) ) )
+			return null;
+		return column;
+	}
+
+	/**
+	 * @param expr
+	 * @return the values of the literal operands of a filter, numbers as
+	 *         BigDecimal, or null if an operand is not a literal
+	 */
+	static Object[] getLiterals( IConditionalExpression expr )
+	{
+		List<Object> values = new ArrayList<Object>( );
+		IBaseExpression operand1 = expr.getOperand1( );
+		if ( operand1 instanceof IExpressionCollection )
+		{
+			Iterator it = ( (IExpressionCollection) operand1 ).getExpressions( )
+					.iterator( );
+			while ( it.hasNext( ) )
+			{
+				if ( !addLiteral( (IBaseExpression) it.next( ), values ) )
+					return null;
+			}
+		}
+		else if ( operand1 != null )
+		{
+			if ( !addLiteral( operand1, values ) )
+				return null;
+			if ( expr.getOperand2( ) != null
+					&& !addLiteral( expr.getOperand2( ), values ) )
+				return null;
+		}
+		return values.toArray( );
+	}
+
+	/**
+	 * @param expr
+	 * @param values
+	 * @return false if the expression is not a literal
+	 */
+	private static boolean addLiteral( IBaseExpression expr, List<Object> values )
+	{
+		if ( !( expr instanceof IScriptExpression )
+				|| BaseExpression.constantId.equals( expr.getScriptId( ) ) )
+			return false;
+		String text = ( (IScriptExpression) expr ).getText( );
+		if ( text == null
+				|| !FilterByRow.LITERAL_PATTERN.matcher( text.trim( ) )
+						.matches( ) )
+			return false;
+		text = text.trim( );
+		if ( text.startsWith( "\"" ) || text.startsWith( "'" ) ) //$NON-NLS-1$ //$NON-NLS-2$
+			values.add( text.substring( 1, text.length( ) - 1 ) );
+		else
+			values.add( new BigDecimal( text ) );
+		return true;
+	}
+
+	/**
+	 * @param column
+	 * @return whether the values of a column are integers or decimals in both
+	 *         the database and the data engine
+	 */
+	private static boolean isExactNumber( IColumnDefinition column )
+	{
+		switch ( column.getNativeDataType( ) )
+		{
+			case Types.TINYINT :
+			case Types.SMALLINT :
+			case Types.INTEGER :
+				return column.getDataType( ) == DataType.INTEGER_TYPE
+						|| column.getDataType( ) == DataType.DECIMAL_TYPE;
+			case Types.BIGINT :
+			case Types.NUMERIC :
+			case Types.DECIMAL :
+				return column.getDataType( ) == DataType.DECIMAL_TYPE;
+			default :
+				return false;
+		}
+	}
+
+	/**
+	 * @param column
+	 * @return whether the values of a column are strings in both the database
+	 *         and the data engine
+	 */
+	private static boolean isString( IColumnDefinition column )
+	{
+		switch ( column.getNativeDataType( ) )
+		{
+			case Types.CHAR :
+			case Types.VARCHAR :
+			case Types.NCHAR :
+			case Types.NVARCHAR :
+				return column.getDataType( ) == DataType.STRING_TYPE;
+			default :
+				return false;
+		}
+	}
+
+	/**
+	 * @param column
+	 * @return whether the values of a column are dates or times in both the
+	 *         database and the data engine
+	 */
+	private static boolean isDate( IColumnDefinition column )
+	{
+		switch ( column.getNativeDataType( ) )
+		{
+			case Types.DATE :
+			case Types.TIME :
+			case Types.TIMESTAMP :
+				return column.getDataType( ) == DataType.DATE_TYPE
+						|| column.getDataType( ) == DataType.SQL_DATE_TYPE
+						|| column.getDataType( ) == DataType.SQL_TIME_TYPE;
+			default :
+				return false;
+		}
+	}
+
+	/**
+	 * @param column
+	 * @return whether the values of a column are compared the same way by the
+	 *         database and the data engine, so that they can be grouped and
+	 *         aggregated by MIN and MAX in the database
+	 */
+	private static boolean isGroupable( IColumnDefinition column )
+	{
+		return isExactNumber( column ) || isDate( column );
+	}
+
+	/**
+	 * @param column
+	 * @return the name of the column in the result set of the SQL query
+	 */
+	private static String getNativeName( IColumnDefinition column )
+	{
+		return hasText( column.getColumnNativeName( ) )
+				? column.getColumnNativeName( ) : column.getColumnName( );
+	}
+
+	/**
+	 * @param filtersOrSorts
+	 * @return whether the filters or sorts do not refer to the data set rows
+	 * @throws BirtException
+	 */
+	private static boolean isDataSetRowFree( List filtersOrSorts )
+			throws BirtException
+	{
+		Iterator it = getList( filtersOrSorts ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Object item = it.next( );
+			IBaseExpression expr = item instanceof IFilterDefinition
+					? ( (IFilterDefinition) item ).getExpression( )
+					: ( item instanceof ISortDefinition
+							? ( (ISortDefinition) item ).getExpression( )
+							: null );
+			if ( item instanceof ISortDefinition
+					&& ( (ISortDefinition) item ).getColumn( ) != null )
+				continue;
+			List<String> texts = new ArrayList<String>( );
+			if ( !getTexts( expr, texts ) )
+				return false;
+			for ( String text : texts )
+			{
+				if ( !isDataSetRowFree( text ) )
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param text
+	 * @return whether the script does not refer to the data set row or to the
+	 *         row number
+	 */
+	private static boolean isDataSetRowFree( String text )
+	{
+		return text.indexOf( ExpressionUtil.DATASET_ROW_INDICATOR ) < 0
+				&& text.indexOf( "rownum" ) < 0; //$NON-NLS-1$
+	}
+
+	/**
+	 * Collects the script texts of an expression.
+	 *
+	 * @param expr
+	 * @param texts
+	 * @return false if the expression is not made of scripts
+	 */
+	private static boolean getTexts( IBaseExpression expr, List<String> texts )
+	{
+		if ( expr == null )
+			return true;
+		if ( expr instanceof IScriptExpression )
+		{
+			String text = ( (IScriptExpression) expr ).getText( );
+			if ( text != null )
+				texts.add( text );
+			return true;
+		}
+		if ( expr instanceof IConditionalExpression )
+		{
+			IConditionalExpression condExpr = (IConditionalExpression) expr;
+			return getTexts( condExpr.getExpression( ), texts )
+					&& getTexts( condExpr.getOperand1( ), texts )
+					&& getTexts( condExpr.getOperand2( ), texts );
+		}
+		if ( expr instanceof IExpressionCollection )
+		{
+			Iterator it = ( (IExpressionCollection) expr ).getExpressions( )
+					.iterator( );
+			while ( it.hasNext( ) )
+			{
+				if ( !getTexts( (IBaseExpression) it.next( ), texts ) )
+					return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param list
+	 * @return the list, or an empty list if it is null
+	 */
+	private static List getList( java.util.Collection list )
+	{
+		if ( list == null )
+			return new ArrayList( );
+		return list instanceof List ? (List) list : new ArrayList( list );
+	}
+
+	/**
+	 * @param text
+	 * @return
+	 */
+	private static boolean hasText( String text )
+	{
+		return text != null && text.trim( ).length( ) > 0;
+	}
+}
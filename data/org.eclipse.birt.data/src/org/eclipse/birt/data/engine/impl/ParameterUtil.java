@@ -26,6 +26,7 @@ import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ICompiledScript;
 import org.eclipse.birt.core.script.ScriptContext;
 import org.eclipse.birt.core.script.ScriptExpression;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
 import org.eclipse.birt.data.engine.api.IInputParameterBinding;
 import org.eclipse.birt.data.engine.api.IParameterDefinition;
 import org.eclipse.birt.data.engine.api.IQueryDefinition;
@@ -161,6 +162,49 @@ public class ParameterUtil
 		return Arrays.asList( paramHints );
 	}
 
+	/**
+	 * Resolve the parameters of a data set design before it is executed, from
+	 * the default values and the data set parameter bindings evaluated in the
+	 * given script context; the values set by the data set scripts and the
+	 * query parameter bindings are not known yet.
+	 * 
+	 * @param dataSetDesign
+	 * @param context
+	 * @return a Collection of ParameterHints
+	 * @throws DataException
+	 */
+	public static Collection resolveDataSetParameters(
+			IBaseDataSetDesign dataSetDesign, ScriptContext context )
+			throws DataException
+	{
+		ParameterUtil util = new ParameterUtil( null, null, null, null, context );
+		List paramDefns = dataSetDesign.getParameters( );
+		int nParams = paramDefns == null ? 0 : paramDefns.size( );
+
+		ParameterHint[] paramHints = new ParameterHint[nParams];
+		boolean[] bindingResolved = new boolean[nParams];
+		for ( int i = 0; i < nParams; i++ )
+		{
+			IParameterDefinition paramDefn = (IParameterDefinition) paramDefns.get( i );
+			paramHints[i] = util.createParameterHint( paramDefn,
+					paramDefn.getDefaultInputValue( ) );
+		}
+
+		Context cx = Context.enter( );
+		try
+		{
+			util.resolveParameterBindings( dataSetDesign.getInputParamBindings( ),
+					paramHints,
+					bindingResolved,
+					cx );
+		}
+		finally
+		{
+			Context.exit( );
+		}
+		return Arrays.asList( paramHints );
+	}
+
 	/**
 	 * Resolve a list of parameter bindings and update the hints
 	 * @param cx JS context to evaluate binding. If null, binding does not need to be evaluated
@@ -236,6 +280,7 @@ public class ParameterUtil
 
 			// Also give the value to data set RT for script access
 			if ( cx != null
+					&& this.dsRT != null
 					&& paramHints[i].isInputMode( )
 					&& paramHints[i].getName( ) != null )
 			{
@@ -46,6 +46,7 @@ import org.eclipse.birt.data.engine.impl.document.QueryResultInfo;
 import org.eclipse.birt.data.engine.impl.document.RDLoad;
 import org.eclipse.birt.data.engine.impl.document.RDUtil;
 import org.eclipse.birt.data.engine.impl.document.stream.StreamManager;
+import org.eclipse.birt.data.engine.impl.document.viewing.DataSetResultSet;
 import org.eclipse.birt.data.engine.impl.document.viewing.IDataSetResultSet;
 import org.eclipse.birt.data.engine.impl.document.viewing.NewInstanceHelper;
 import org.eclipse.birt.data.engine.odi.IDataSource;
@@ -293,11 +294,10 @@ class PreparedIVDataSourceQuery extends PreparedDataSourceQuery
 						if ( getEngineContext( ).getDocWriter( ) != null )
 						{
 							// When we can update the data set data.
+							dataSetResult.close( );
 							populatePLSDataSetData( eventHandler,
 									manager );
 
-							dataSetResult.close( );
-
 							rdLoad = RDUtil.newLoad( engine.getSession( )
 									.getTempDir( ),
 									getEngineContext( ),
@@ -353,6 +353,14 @@ class PreparedIVDataSourceQuery extends PreparedDataSourceQuery
 					}
 				}
 				
+				if ( !PLSUtil.isPLSEnabled( queryDefn )
+						&& dataSetResult instanceof DataSetResultSet )
+				{
+					// the rows the filters drop are dropped as they are read
+					DataSetResultSet dataSetResultSet = (DataSetResultSet) dataSetResult;
+					dataSetResultSet.setAcceptedStringIndexes( StringTableFilterHelper.getAcceptedIndexes( queryDefn,
+							dataSetResultSet.getStringTables( ) ) );
+				}
 				IResultClass meta = dataSetResult.getResultClass( );
 				IResultIterator resultIterator = new CachedResultSet( query,
 						populateResultClass( meta ),
@@ -448,6 +456,13 @@ class PreparedIVDataSourceQuery extends PreparedDataSourceQuery
 			dataSetDataStream.flush( );
 			cache.close( );
 
+			// the compressed string columns are saved without string tables
+			for ( int i = 1; i <= processedRC.getFieldCount( ); i++ )
+			{
+				if ( processedRC.isCompressedColumn( i ) )
+					StringTable.drop( manager, processedRC.getFieldName( i ) );
+			}
+
 			DataOutputStream plsGroupLevelStream = new DataOutputStream( manager.getOutStream( DataEngineContext.PLS_GROUPLEVEL_STREAM,
 					StreamManager.ROOT_STREAM,
 					StreamManager.SELF_SCOPE ) );
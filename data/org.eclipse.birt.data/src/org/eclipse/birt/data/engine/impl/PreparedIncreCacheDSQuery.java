@@ -94,6 +94,9 @@ public class PreparedIncreCacheDSQuery extends PreparedOdaDSQuery
 							"Incremental cache data file was deleted! path: "
 									+ FileSecurity.fileGetAbsolutePath( dataFile ) );
 				}
+				// the count of the deleted rows is not kept either
+				FileSecurity.fileDelete( new File( cacheDir,
+						IncreDataSetCacheObject.META_DATA ) );
 				queryText = icDataSetDesign.getQueryText( );
 			}
 			String dataSetType = extDataSet.getExtensionID( );
@@ -77,6 +77,7 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 	private IResultClass resultClass;
 	private IJoinConditionMatcher matcher;
 	private int joinType;
+	private boolean useHashJoin;
 
 	private DataEngineImpl dataEngine;
 	private IBaseDataSetDesign dataSetDesign;
@@ -492,6 +493,10 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 	 */
 	private void populatePreparedQuery( IQueryResults outer ) throws BirtException
 	{
+		this.useHashJoin = JointDataSetPopulatorFactory.isHashJoinApplicable( PreparedJointDataSourceQuery.this.dataSet.getJoinType( ),
+				PreparedJointDataSourceQuery.this.dataSet.getJoinConditions( ),
+				appContext );
+		
 		this.leftQueryResults = populatePreparedQuery( outer,
 				true,
 				PreparedJointDataSourceQuery.this.dataSet.getLeftDataSetDesignQulifiedName( ) );
@@ -542,11 +547,18 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 				isLeftDataSet,
 				queryDefinition );
 
-		for ( int i = 0; i < conditions.size( ); i++ )
+		// Hash join does not require the secondary data set to be sorted. The
+		// primary data set is still sorted so that the joint rows are in the
+		// same order as with sort-merge join.
+		boolean isPrimaryDataSet = isLeftDataSet == ( PreparedJointDataSourceQuery.this.dataSet.getJoinType( ) != IJointDataSetDesign.RIGHT_OUTER_JOIN );
+		if ( !this.useHashJoin || isPrimaryDataSet )
 		{
-			addSortToQuery( (IJoinCondition) conditions.get( i ),
-					isLeftDataSet,
-					queryDefinition );
+			for ( int i = 0; i < conditions.size( ); i++ )
+			{
+				addSortToQuery( (IJoinCondition) conditions.get( i ),
+						isLeftDataSet,
+						queryDefinition );
+			}
 		}
 
 		IPreparedQuery preparedQuery = PreparedQueryUtil.newInstance( dataEngine,
@@ -651,12 +663,21 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 			JointResultMetadata jrm = getJointResultMetadata( left.getResultMetaData( ),
 					right.getResultMetaData( ) );
 			resultClass = jrm.getResultClass( );
-			populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator( left.getOdiResult( ),
-					right.getOdiResult( ),
-					jrm,
-					matcher,
-					joinType, dataEngine.getSession( ),
-					dataSetDesign.getRowFetchLimit( ) );
+			if ( useHashJoin && matcher.isEquiJoin( ) )
+				populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator( left.getOdiResult( ),
+						right.getOdiResult( ),
+						jrm,
+						matcher,
+						joinType, dataEngine.getSession( ),
+						dataSetDesign.getRowFetchLimit( ),
+						appContext );
+			else
+				populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator( left.getOdiResult( ),
+						right.getOdiResult( ),
+						jrm,
+						matcher,
+						joinType, dataEngine.getSession( ),
+						dataSetDesign.getRowFetchLimit( ) );
 			
 			DataSetCacheManager dscm = dataEngine.getSession( ).getDataSetCacheManager( );
 			dscm.setDataSourceAndDataSet( 
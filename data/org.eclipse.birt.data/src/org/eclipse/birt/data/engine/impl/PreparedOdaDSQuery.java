@@ -24,6 +24,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Level;
 
+import org.eclipse.birt.core.data.PushDownPlan;
 import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
 import org.eclipse.birt.data.engine.api.IBaseQueryResults;
 import org.eclipse.birt.data.engine.api.IColumnDefinition;
@@ -489,6 +490,27 @@ public class PreparedOdaDSQuery extends PreparedDataSourceQuery
 						}
 					}
 				}
+				
+				// the cached rows of a data set must be all of its rows
+				if ( querySpec == null
+						&& JdbcPushDownHelper.isEnabled( appContext )
+						&& JdbcPushDownHelper.JDBC_DATA_SOURCE_ID.equals( extDataSet.getDataSource( )
+								.getExtensionID( ) )
+						&& !dataEngine.getSession( )
+								.getDataSetCacheManager( )
+								.needsToCache( dataSetDesign, appContext ) )
+				{
+					PushDownPlan plan = JdbcPushDownHelper.createPlan( dataEngine.getSession( ),
+							(IOdaDataSetDesign) dataSetDesign,
+							queryDefn );
+					if ( plan != null )
+					{
+						querySpec = new QuerySpecHelper( extDataSet.getDataSource( )
+								.getExtensionID( ), dataSetType ).getFactoryHelper( )
+								.createQuerySpecification( );
+						querySpec.setProperty( PushDownPlan.PROPERTY_NAME, plan );
+					}
+				}
 			}
 			
 			if( FilterPrepareUtil.containsExternalFilter( dataSetDesign.getFilters( ), dataSetType, extDataSet.getDataSource( ).getExtensionID( ) ) ||
@@ -616,6 +616,8 @@ public class PreparedQueryUtil
 						pscDataSet.setQueryTemplate( queryTemplate );
 						pscDataSet.setTimestampColumn( timestampColumn );
 						pscDataSet.setFormatPattern( formatPattern );
+						pscDataSet.setKeyColumns( parser.getKeyColumnsByID( id ) );
+						pscDataSet.setDeletedColumn( parser.getDeletedColumnByID( id ) );
 						adaptedDesign = pscDataSet;
 					}
 					else
@@ -1044,6 +1046,8 @@ class IncreCacheDataSetAdapter extends OdaDataSetAdapter
 	protected String queryTemplate;
 	protected String timestampColumn;
 	protected String formatPattern;
+	protected String[] keyColumns;
+	protected String deletedColumn;
 	protected int cacheMode;
 
 	private String queryForUpdate;
@@ -1159,6 +1163,26 @@ class IncreCacheDataSetAdapter extends OdaDataSetAdapter
 		return timestampColumn;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.impl.IIncreCacheDataSetDesign#getKeyColumns()
+	 */
+	public String[] getKeyColumns( )
+	{
+		return keyColumns;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.birt.data.engine.impl.IIncreCacheDataSetDesign#getDeletedColumn()
+	 */
+	public String getDeletedColumn( )
+	{
+		return deletedColumn;
+	}
+
 	/**
 	 * @param configFilePath
 	 *            the configFilePath to set
@@ -1186,6 +1210,24 @@ class IncreCacheDataSetAdapter extends OdaDataSetAdapter
 		this.timestampColumn = timestampColumn;
 	}
 
+	/**
+	 * @param keyColumns
+	 *            the keyColumns to set
+	 */
+	public void setKeyColumns( String[] keyColumns )
+	{
+		this.keyColumns = keyColumns;
+	}
+
+	/**
+	 * @param deletedColumn
+	 *            the deletedColumn to set
+	 */
+	public void setDeletedColumn( String deletedColumn )
+	{
+		this.deletedColumn = deletedColumn;
+	}
+
 	/**
 	 * @param formatPattern
 	 *            the formatPattern to set
@@ -52,6 +52,8 @@ import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
 import org.eclipse.birt.data.engine.api.script.IDataSourceInstanceHandle;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.BaseQuery;
+import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
+import org.eclipse.birt.data.engine.executor.DataSourceAndDataSet;
 import org.eclipse.birt.data.engine.executor.JointDataSetQuery;
 import org.eclipse.birt.data.engine.expression.CompareHints;
 import org.eclipse.birt.data.engine.expression.ExpressionCompilerUtil;
@@ -99,6 +101,10 @@ public abstract class QueryExecutor implements IQueryExecutor
 	protected boolean loadFromCache;
 	protected boolean ignoreDataSetFilter = false;
 	
+	// the data set this executor retrieves to save into the cache shared by
+	// all data engines, null if none
+	private DataSourceAndDataSet loadingDataSet;
+	
 	private Map queryAppContext;
 
 	/** Query nesting level, 1 - outermost query */
@@ -320,41 +326,52 @@ public abstract class QueryExecutor implements IQueryExecutor
 		//For cached data set, we need not execute any scripts.
 		loadFromCache = loadFromCache( );
 		
-		dataSet.setFromCache( loadFromCache );
-		
-		openDataSource( );
-		
-		// Run beforeOpen script now so the script can modify the
-		// DataSetRuntime properties
-		dataSetBeforeOpen( );
-
-		// Let subclass create a new and empty intance of the appropriate
-		// odi IQuery
-		odiQuery = createOdiQuery( );
-		odiQuery.setDistinctValueFlag( dataSet.needDistinctValue( ) );
-		odiQuery.setQueryDefinition( this.baseQueryDefn );
-		odiQuery.setExprProcessor( new ExpressionProcessor( dataSet ) );
-		
-		//Set the row fetch limit for the IQuery instance.The row fetch limit
-		//is the number of rows that a data set can fetch from data source.
-		if( dataSet.getDesign( ) != null )
-		{
-			//When it is not a subquery, the property "row fetch limit" should be applied
-			//to the query.
-			odiQuery.setRowFetchLimit( dataSet.getDesign( ).getRowFetchLimit( ) );
-		}
-		populateOdiQuery( );
 		try
 		{
-			prepareOdiQuery( );
+			dataSet.setFromCache( loadFromCache );
+
+			openDataSource( );
+
+			// Run beforeOpen script now so the script can modify the
+			// DataSetRuntime properties
+			dataSetBeforeOpen( );
+
+			// Let subclass create a new and empty intance of the appropriate
+			// odi IQuery
+			odiQuery = createOdiQuery( );
+			odiQuery.setDistinctValueFlag( dataSet.needDistinctValue( ) );
+			odiQuery.setQueryDefinition( this.baseQueryDefn );
+			odiQuery.setExprProcessor( new ExpressionProcessor( dataSet ) );
+
+			//Set the row fetch limit for the IQuery instance.The row fetch limit
+			//is the number of rows that a data set can fetch from data source.
+			if ( dataSet.getDesign( ) != null )
+			{
+				//When it is not a subquery, the property "row fetch limit" should be applied
+				//to the query.
+				odiQuery.setRowFetchLimit( dataSet.getDesign( )
+						.getRowFetchLimit( ) );
+			}
+			populateOdiQuery( );
+			try
+			{
+				prepareOdiQuery( );
+			}
+			catch ( DataException e )
+			{
+				throw new DataException( ResourceConstants.FAIL_PREPARE_EXECUTION,
+						e,
+						dataSet.getName( ) );
+			}
+			isPrepared = true;
 		}
-		catch ( DataException e )
+		finally
 		{
-			throw new DataException( ResourceConstants.FAIL_PREPARE_EXECUTION,
-					e,
-					dataSet.getName( ) );
+			// the data set will not be retrieved, so the other queries need
+			// not wait for it
+			if ( !isPrepared )
+				finishLoading( );
 		}
-		isPrepared = true;
 	}
 	
 	abstract protected String getDataSetName( );
@@ -391,7 +408,8 @@ public abstract class QueryExecutor implements IQueryExecutor
 			return false;
 		if ( !( this.baseQueryDefn instanceof IQueryDefinition ) )
 			return false;
-		return this.session.getDataSetCacheManager( )
+		DataSetCacheManager cacheManager = this.session.getDataSetCacheManager( );
+		boolean result = cacheManager
 			.doesLoadFromCache( ((DataEngineImpl)session.getEngine( )).getDataSourceDesign( this.dataSet.getDesign( ).getDataSourceName( ) ),
 				this.dataSet.getDesign( ),
 				new ParameterUtil( this.tabularOuterResults == null
@@ -402,6 +420,26 @@ public abstract class QueryExecutor implements IQueryExecutor
 						this.getQueryScope( ),
 						session.getEngineContext( ).getScriptContext( )).resolveDataSetParameters( true ),
 				this.queryAppContext );
+		// the data set missing from cache is now retrieved by this executor
+		if ( !result
+				&& cacheManager.needsToCache( this.dataSet.getDesign( ),
+						this.queryAppContext ) )
+			loadingDataSet = cacheManager.getCurrentDataSourceAndDataSet( );
+		return result;
+	}
+	
+	/**
+	 * Record that the data set is no longer retrieved by this executor, once
+	 * it has been saved into cache or could not be retrieved, so that the
+	 * queries of the other data engines waiting for it go on.
+	 */
+	private void finishLoading( )
+	{
+		if ( loadingDataSet != null )
+		{
+			session.getDataSetCacheManager( ).finishLoading( loadingDataSet );
+			loadingDataSet = null;
+		}
 	}
 
 	/**
@@ -1248,7 +1286,16 @@ public abstract class QueryExecutor implements IQueryExecutor
 		}
 		    
 		// Execute the query
-		odiResult = executeOdiQuery( eventHandler );
+		try
+		{
+			odiResult = executeOdiQuery( eventHandler );
+		}
+		finally
+		{
+			// the data set has been saved into cache, unless its retrieval
+			// failed
+			finishLoading( );
+		}
 
 		helper.setScriptable( this.dataSet.getJSResultRowObject( ) );
 		
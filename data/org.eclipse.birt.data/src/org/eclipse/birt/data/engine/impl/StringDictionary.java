@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.util.IOUtil;
+
+/**
+ * The strings of a dictionary encoded column, as saved in a report document.
+ * The code of a string is its position in the dictionary. The stream holds
+ * the strings in the order of their codes, followed by the codes in the order
+ * of their strings, the offsets of the strings and the number of strings:
+ *
+ * <pre>
+ * string[count] | int sortedCodes[count] | long offsets[count] | int count
+ * </pre>
+ *
+ * The dictionary is read in place: a string is read from the stream when it is
+ * first asked for, and the code of a string is found by a binary search of the
+ * sorted codes, so that the dictionary of a document is not loaded into the
+ * heap.
+ */
+final class StringDictionary
+{
+
+	private RAInputStream stream;
+	private int count;
+	private long sortedCodesOffset;
+	private long offsetsOffset;
+
+	// the strings read, which may be dropped when the memory runs low
+	private SoftReference<String[]> values;
+
+	/**
+	 * @param stream
+	 *            the stream of the dictionary, closed with the dictionary
+	 * @throws IOException
+	 */
+	StringDictionary( RAInputStream stream ) throws IOException
+	{
+		this.stream = stream;
+		long length = stream.length( );
+		if ( length < 4 )
+			throw new IOException( "Invalid string dictionary" ); //$NON-NLS-1$
+		stream.seek( length - 4 );
+		this.count = stream.readInt( );
+		this.sortedCodesOffset = length - 4 - 12L * count;
+		this.offsetsOffset = sortedCodesOffset + 4L * count;
+		if ( count < 0 || sortedCodesOffset < 0 )
+			throw new IOException( "Invalid string dictionary" ); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the number of strings
+	 */
+	int size( )
+	{
+		return count;
+	}
+
+	/**
+	 * @param code
+	 * @return the string of a code, null if there is none
+	 * @throws IOException
+	 */
+	synchronized String getString( int code ) throws IOException
+	{
+		if ( code < 0 || code >= count )
+			return null;
+		String[] cache = values == null ? null : values.get( );
+		if ( cache == null )
+		{
+			cache = new String[count];
+			values = new SoftReference<String[]>( cache );
+		}
+		if ( cache[code] == null )
+		{
+			stream.seek( offsetsOffset + 8L * code );
+			stream.seek( stream.readLong( ) );
+			cache[code] = IOUtil.readString( new DataInputStream( stream ) );
+		}
+		return cache[code];
+	}
+
+	/**
+	 * @param value
+	 * @return the code of a string, -1 if it is not in the dictionary
+	 * @throws IOException
+	 */
+	synchronized int getCode( String value ) throws IOException
+	{
+		if ( value == null )
+			return -1;
+		int low = 0;
+		int high = count - 1;
+		while ( low <= high )
+		{
+			int middle = ( low + high ) >>> 1;
+			stream.seek( sortedCodesOffset + 4L * middle );
+			int code = stream.readInt( );
+			int result = getString( code ).compareTo( value );
+			if ( result < 0 )
+				low = middle + 1;
+			else if ( result > 0 )
+				high = middle - 1;
+			else
+				return code;
+		}
+		return -1;
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	synchronized void close( ) throws IOException
+	{
+		values = null;
+		stream.close( );
+	}
+
+	/**
+	 * Writes a dictionary.
+	 *
+	 * @param outputStream
+	 *            closed once the dictionary is written
+	 * @param strings
+	 *            the strings in the order of their codes
+	 * @throws IOException
+	 */
+	static void write( OutputStream outputStream, final List<String> strings )
+			throws IOException
+	{
+		DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( outputStream ) );
+		int count = strings.size( );
+		long[] offsets = new long[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			offsets[i] = dos.size( );
+			IOUtil.writeString( dos, strings.get( i ) );
+		}
+
+		Integer[] sortedCodes = new Integer[count];
+		for ( int i = 0; i < count; i++ )
+			sortedCodes[i] = Integer.valueOf( i );
+		Arrays.sort( sortedCodes, new Comparator<Integer>( ) {
+
+			public int compare( Integer code1, Integer code2 )
+			{
+				return strings.get( code1.intValue( ) )
+						.compareTo( strings.get( code2.intValue( ) ) );
+			}
+		} );
+		for ( int i = 0; i < count; i++ )
+			dos.writeInt( sortedCodes[i].intValue( ) );
+		for ( int i = 0; i < count; i++ )
+			dos.writeLong( offsets[i] );
+		dos.writeInt( count );
+		dos.close( );
+	}
+}
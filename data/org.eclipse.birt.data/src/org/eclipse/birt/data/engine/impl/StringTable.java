@@ -1,7 +1,6 @@
 package org.eclipse.birt.data.engine.impl;
 
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -11,13 +10,19 @@ import java.util.List;
 import java.util.Map;
 
 import org.eclipse.birt.core.archive.RAInputStream;
-import org.eclipse.birt.core.archive.RAOutputStream;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.document.stream.StreamManager;
 
+/**
+ * The dictionary of a compressed string column saved in a report document:
+ * the column saves the index of its value in the table instead of the value.
+ * The table is saved as a StringDictionary when it is closed, and is read in
+ * place from the document when it is loaded by {@link #load}.
+ */
 public class StringTable
 {
-	private DataOutputStream dataOutputStream = null;
+	private static final String STREAM_PREFIX = "StringDictionary/"; //$NON-NLS-1$
+
 	private StreamManager manager = null;
 	private String fieldName = null;
 	private int currentIndex;
@@ -25,12 +30,75 @@ public class StringTable
 	private Map<String,Integer> stringIndexMap = null;
 	private List<String> stringList = null;
 	
+	// the dictionary the table is read from, null if it is written
+	private StringDictionary dictionary;
+
 	public StringTable( )
 	{
 		this.currentIndex = 0;
 		this.stringIndexMap = new HashMap<String,Integer>( );
 		this.stringList = new ArrayList<String>( );
 	}
+
+	private StringTable( StringDictionary dictionary, String fieldName )
+	{
+		this.dictionary = dictionary;
+		this.fieldName = fieldName;
+		this.currentIndex = dictionary.size( );
+	}
+
+	/**
+	 * Loads the table of a column saved in a report document, to read its
+	 * values.
+	 *
+	 * @param manager
+	 * @param fieldName
+	 * @return the table, null if the column is not saved with a table
+	 * @throws DataException
+	 */
+	public static StringTable load( StreamManager manager, String fieldName )
+			throws DataException
+	{
+		RAInputStream inputStream = manager.getInStream( STREAM_PREFIX + fieldName );
+		if ( inputStream == null )
+			return null;
+		try
+		{
+			// a dropped table may be left as an empty stream
+			if ( inputStream.length( ) == 0 )
+			{
+				inputStream.close( );
+				return null;
+			}
+			return new StringTable( new StringDictionary( inputStream ),
+					fieldName );
+		}
+		catch ( IOException e )
+		{
+			try
+			{
+				inputStream.close( );
+			}
+			catch ( IOException e1 )
+			{
+			}
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+	}
+
+	/**
+	 * Drops the table of a column saved in a report document, once the
+	 * column is saved again without a table.
+	 *
+	 * @param manager
+	 * @param fieldName
+	 * @throws DataException
+	 */
+	public static void drop( StreamManager manager, String fieldName )
+			throws DataException
+	{
+		manager.dropStream2( STREAM_PREFIX + fieldName );
+	}
 	
 	/**
 	 * 
@@ -60,10 +128,12 @@ public class StringTable
 	
 	
 	/**
+	 * Sets the document the table is saved into when it is closed. The
+	 * strings of a table already saved for the column are kept, so that the
+	 * rows already saved keep their values.
 	 * 
-	 * @param outputStream
-	 * @throws IOException 
-	 * @throws DataException 
+	 * @param manager
+	 * @param fieldName
 	 */
 	public void setStreamManager( StreamManager manager, String fieldName )
 	{
@@ -72,13 +142,23 @@ public class StringTable
 		
 		try
 		{
-			RAInputStream inputStream = this.manager.getInStream( "StringTable/" + this.fieldName );
-			if( inputStream != null )
+			StringTable savedTable = load( manager, fieldName );
+			if( savedTable != null )
 			{
-				loadFrom( inputStream );
-				RAOutputStream outputStream = this.manager.getOutStream( "StringTable/" + this.fieldName );
-				outputStream.seek( outputStream.length( ) );
-				this.dataOutputStream = new DataOutputStream( outputStream );
+				try
+				{
+					for ( int i = 0; i < savedTable.currentIndex; i++ )
+					{
+						String key = savedTable.getStringValue( i );
+						this.stringList.add( key );
+						this.stringIndexMap.put( key, this.currentIndex );
+						this.currentIndex++;
+					}
+				}
+				finally
+				{
+					savedTable.close( );
+				}
 			}
 		}
 		catch (DataException e)
@@ -101,21 +181,16 @@ public class StringTable
 	{
 		if( str == null )
 			return -1;
+		if( this.dictionary != null )
+			throw new IllegalStateException( "The string table of field "
+					+ this.fieldName
+					+ " is loaded from a document and can not be written" ); //$NON-NLS-1$ //$NON-NLS-2$
 		Integer index = this.stringIndexMap.get( str );
 		if( index == null )
 		{
 			this.stringIndexMap.put( str, this.currentIndex );
 			this.currentIndex++;
 			this.stringList.add( str );
-			if( dataOutputStream != null )
-			{
-				this.dataOutputStream.writeUTF( str );
-			}
-			else if( this.manager != null )
-			{
-				this.dataOutputStream = new DataOutputStream( this.manager.getOutStream( "StringTable/" + this.fieldName ) );
-				this.dataOutputStream.writeUTF( str );
-			}
 			return this.currentIndex - 1;
 		}
 		else
@@ -124,28 +199,70 @@ public class StringTable
 		}
 	}
 	
+	/**
+	 * Finds the index of a string without adding it to the table.
+	 *
+	 * @param str
+	 * @return the index, -1 if the string is not in the table
+	 * @throws IOException
+	 */
+	public int findIndex( String str ) throws IOException
+	{
+		if( str == null )
+			return -1;
+		if( this.dictionary != null )
+			return this.dictionary.getCode( str );
+		Integer index = this.stringIndexMap.get( str );
+		return index == null ? -1 : index;
+	}
+
 	/**
 	 * 
 	 * @param index
 	 * @return
+	 * @throws IOException
 	 */
-	public String getStringValue( int index )
+	public String getStringValue( int index ) throws IOException
 	{
-		if( index < 0 || index > this.stringList.size( ) )
+		if( this.dictionary != null )
+			return this.dictionary.getString( index );
+		if( index < 0 || index >= this.stringList.size( ) )
 			return null;
 		return this.stringList.get( index );
 	}
 	
 	/**
+	 * Saves the table into the document it is set to, or closes the document
+	 * stream it is read from.
 	 * 
 	 * @throws IOException
 	 */
 	public void close( ) throws IOException
 	{
-		if( this.dataOutputStream != null )
+		if( this.dictionary != null )
 		{
-			this.dataOutputStream.close( );
-			this.dataOutputStream = null;
+			this.dictionary.close( );
+			this.dictionary = null;
+		}
+		else if( this.manager != null )
+		{
+			try
+			{
+				// the table is saved even if it is empty, as it tells that
+				// the values of the column are saved as indexes. It keeps the
+				// strings already saved, so rewriting the stream leaves no
+				// bytes of the former table after its end
+				StringDictionary.write( this.manager.getOutStream( STREAM_PREFIX
+						+ this.fieldName ),
+						this.stringList );
+			}
+			catch ( DataException e )
+			{
+				IOException ioe = new IOException( e.getLocalizedMessage( ) );
+				ioe.initCause( e );
+				throw ioe;
+			}
+			this.manager = null;
 		}
 	}
 }
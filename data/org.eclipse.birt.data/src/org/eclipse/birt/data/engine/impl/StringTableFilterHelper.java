@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.ExpressionUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.IFilterDefinition;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.BaseExpression;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.transform.FilterUtil;
+
+/**
+ * Util class which turns the filters of a query comparing a compressed string
+ * column of the data set saved in a report document with string literals into
+ * the string table indexes the column must have, so that the rows of the data
+ * set can be dropped by comparing the indexes saved for them, before their
+ * values are looked up.
+ * <p>
+ * A row is only dropped if a filter drops it anyway: the filter is applied
+ * before the aggregations, on the rows of the data set, and keeps only the
+ * rows whose value equals one of the literals.
+ */
+final class StringTableFilterHelper
+{
+
+	private StringTableFilterHelper( )
+	{
+	}
+
+	/**
+	 * @param query
+	 *            the query run on the data set saved in a report document
+	 * @param stringTables
+	 *            the string tables of the compressed string columns of the
+	 *            data set, by column name
+	 * @return the indexes the rows must have to be kept, by column name
+	 * @throws DataException
+	 */
+	static Map<String, BitSet> getAcceptedIndexes( IQueryDefinition query,
+			Map<String, StringTable> stringTables ) throws DataException
+	{
+		Map<String, BitSet> acceptedIndexes = new HashMap<String, BitSet>( );
+		List filters = query.getFilters( );
+		if ( stringTables == null
+				|| stringTables.isEmpty( ) || filters == null
+				|| FilterUtil.hasMutipassFilters( filters ) )
+			return acceptedIndexes;
+		try
+		{
+			for ( int i = 0; i < filters.size( ); i++ )
+			{
+				IFilterDefinition filter = (IFilterDefinition) filters.get( i );
+				if ( !filter.updateAggregation( )
+						|| !( filter.getExpression( ) instanceof IConditionalExpression )
+						|| filter.getExpression( ).getHandle( ) != null )
+					continue;
+				IConditionalExpression expr = (IConditionalExpression) filter.getExpression( );
+				if ( expr.getOperator( ) != IConditionalExpression.OP_EQ
+						&& expr.getOperator( ) != IConditionalExpression.OP_IN )
+					continue;
+				String columnName = getColumnName( expr.getExpression( ),
+						query );
+				StringTable stringTable = columnName == null ? null
+						: stringTables.get( columnName );
+				Object[] values = JdbcPushDownHelper.getLiterals( expr );
+				if ( stringTable == null
+						|| values == null || values.length == 0
+						|| ( expr.getOperator( ) == IConditionalExpression.OP_EQ && values.length != 1 ) )
+					continue;
+
+				BitSet accepted = getIndexes( stringTable, values );
+				if ( accepted == null )
+					continue;
+				// the filters are all applied
+				BitSet previous = acceptedIndexes.get( columnName );
+				if ( previous != null )
+					accepted.and( previous );
+				acceptedIndexes.put( columnName, accepted );
+			}
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+		return acceptedIndexes;
+	}
+
+	/**
+	 * @param stringTable
+	 * @param values
+	 * @return the indexes of the values, null if a value is not a string
+	 * @throws IOException
+	 */
+	private static BitSet getIndexes( StringTable stringTable, Object[] values )
+			throws IOException
+	{
+		BitSet indexes = new BitSet( );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			if ( !( values[i] instanceof String ) )
+				return null;
+			// a string which is not in the table is the value of no row
+			int index = stringTable.findIndex( (String) values[i] );
+			if ( index >= 0 )
+				indexes.set( index );
+		}
+		return indexes;
+	}
+
+	/**
+	 * Finds out the data set column whose value is directly used as the value
+	 * of an expression, with the same rules as FilterByRow.
+	 *
+	 * @param expr
+	 * @param query
+	 * @return the column name, or null
+	 * @throws BirtException
+	 */
+	private static String getColumnName( IScriptExpression expr,
+			IQueryDefinition query ) throws BirtException
+	{
+		if ( expr == null
+				|| expr.getText( ) == null
+				|| BaseExpression.constantId.equals( expr.getScriptId( ) ) )
+			return null;
+		int dataType = expr.getDataType( );
+		String columnName = ExpressionUtil.getColumnName( expr.getText( ) );
+		if ( columnName == null )
+		{
+			String bindingName = ExpressionUtil.getColumnBindingName( expr.getText( ) );
+			if ( bindingName == null )
+				return null;
+			IBinding binding = (IBinding) query.getBindings( ).get( bindingName );
+			if ( binding == null
+					|| binding.getAggrFunction( ) != null
+					|| !( binding.getExpression( ) instanceof IScriptExpression )
+					|| BaseExpression.constantId.equals( binding.getExpression( )
+							.getScriptId( ) ) )
+				return null;
+			columnName = ExpressionUtil.getColumnName( ( (IScriptExpression) binding.getExpression( ) ).getText( ) );
+			dataType = binding.getDataType( );
+		}
+		// the value is converted to the type of the expression before it is
+		// compared
+		if ( dataType != DataType.ANY_TYPE
+				&& dataType != DataType.UNKNOWN_TYPE
+				&& dataType != DataType.STRING_TYPE )
+			return null;
+		return columnName;
+	}
+}
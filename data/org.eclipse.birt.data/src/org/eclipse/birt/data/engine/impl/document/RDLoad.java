@@ -361,6 +361,9 @@ public class RDLoad
 			targetResultClass = this.loadResultClass();
 		}
 		
+		if ( stringTableMap == null )
+			stringTableMap = loadStringTables( targetResultClass );
+
 		return new DataSetResultSet( stream,
 				lensStream,
 				targetResultClass,
@@ -373,6 +376,34 @@ public class RDLoad
 	}
 	
 	
+	/**
+	 * Loads the string tables the compressed string columns of the data set
+	 * are saved with. They are closed with the data set result set.
+	 * 
+	 * @param resultClass
+	 * @return the string tables by column name
+	 * @throws DataException
+	 */
+	private Map<String, StringTable> loadStringTables( IResultClass resultClass )
+			throws DataException
+	{
+		Map<String, StringTable> stringTableMap = new HashMap<String, StringTable>( );
+		if ( version < VersionManager.VERSION_4_2_3_1 )
+			return stringTableMap;
+		for ( int i = 1; i <= resultClass.getFieldCount( ); i++ )
+		{
+			if ( resultClass.getFieldMetaData( i ).getDataType( ) != String.class
+					|| !resultClass.isCompressedColumn( i ) )
+				continue;
+			String fieldName = resultClass.getFieldName( i );
+			StringTable stringTable = StringTable.load( streamManager,
+					fieldName );
+			if ( stringTable != null )
+				stringTableMap.put( fieldName, stringTable );
+		}
+		return stringTableMap;
+	}
+
 	private int resolveVersionConflict( )
 	{
 		if ( version == VersionManager.VERSION_3_7_2_1
@@ -24,6 +24,7 @@ import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.expression.CompareHints;
 import org.eclipse.birt.data.engine.impl.StringTable;
 import org.eclipse.birt.data.engine.impl.document.stream.StreamManager;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
 import org.eclipse.birt.data.engine.impl.index.IAuxiliaryIndexCreator;
 import org.eclipse.birt.data.engine.impl.index.IIndexSerializer;
 import org.eclipse.birt.data.engine.odi.IResultClass;
@@ -101,11 +102,21 @@ public class StreamWrapper
 		return this.streamForDataSet;
 	}
 	
+	/**
+	 * Returns the string tables the values of the compressed string columns
+	 * are saved with, by column name. They are saved with the data set when
+	 * they are closed.
+	 * 
+	 * @param resultClass
+	 * @return
+	 * @throws DataException
+	 */
 	public Map<String, StringTable> getOutputStringTable(
 			IResultClass resultClass ) throws DataException
 	{
-		if ( !this.enableIndexStream )
-			return new HashMap<String, StringTable>();
+		// the rows saved by former versions keep their values
+		if ( manager.getVersion( ) < VersionManager.VERSION_4_2_3_1 )
+			return new HashMap<String, StringTable>( );
 		if( cachedStringTable.containsKey( resultClass ) )
 			return cachedStringTable.get( resultClass );
 		Map<String, StringTable> result = new HashMap<String, StringTable>( );
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.core.archive.IDocArchiveReader;
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.RAInputStream;
 import org.eclipse.birt.core.archive.RAOutputStream;
@@ -173,14 +174,23 @@ public class StreamManager
 	public RAInputStream getInStream( String streamSubName ) throws DataException
 	{
 		StreamID streamID = getStreamID( 0, ROOT_STREAM, BASE_SCOPE);
+		String name = "/" + streamID.getStartStream( ) + "/" + streamSubName;
 		RAInputStream inputStream;
 		try
 		{
-			if( !context.getDocWriter( ).exists( "/" + streamID.getStartStream( ) + "/" + streamSubName ) )
+			if ( context.getDocWriter( ) == null )
+			{
+				// presentation reads the streams from the report document
+				IDocArchiveReader reader = context.getDocReader( );
+				if ( reader == null || !reader.exists( name ) )
+					return null;
+				return reader.getStream( name );
+			}
+			if( !context.getDocWriter( ).exists( name ) )
 			{
 				return null;
 			}
-			inputStream = context.getDocWriter( ).getInputStream( "/" + streamID.getStartStream( ) + "/" + streamSubName );
+			inputStream = context.getDocWriter( ).getInputStream( name );
 		}
 		catch ( IOException e )
 		{
@@ -98,6 +98,9 @@ public class VersionManager
 
 	//Materialize nested aggregation for xtab query
 	public final static int VERSION_4_2_3 = 310;
+
+	//Save compressed string columns with string dictionaries
+	public final static int VERSION_4_2_3_1 = 320;
 	
 	private DataEngineContext dataEngineContext;
 	private static Logger logger = Logger.getLogger( VersionManager.class.getName( ) );
@@ -241,6 +244,6 @@ public class VersionManager
 	 */
 	public static int getLatestVersion( )
 	{
-		return VERSION_4_2_3;
+		return VERSION_4_2_3_1;
 	}
 }
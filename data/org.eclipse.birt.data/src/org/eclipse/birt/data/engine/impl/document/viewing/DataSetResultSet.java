@@ -14,6 +14,7 @@ import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +56,7 @@ public class DataSetResultSet implements IDataSetResultSet
 	private IOrderedIntSet prefilteredRowIds;
 	private Map index;
 	private Map<String, StringTable> stringTableMap;
+	private Map<String, BitSet> acceptedStringIndexes;
 	private boolean includeInnerID = true;
 	private boolean readInnerId = false;
 	private IOrderedIntSetIterator rowIdIterator;
@@ -173,7 +175,7 @@ public class DataSetResultSet implements IDataSetResultSet
 			return this.getResultObject( );
 		}
 
-		if ( this.rowIndex < this.rowCount - 1 || this.rowCount == -1 )
+		while ( this.rowIndex < this.rowCount - 1 || this.rowCount == -1 )
 		{
 			try
 			{
@@ -182,12 +184,16 @@ public class DataSetResultSet implements IDataSetResultSet
 						rsMetaData,
 						colCount,
 						this.stringTableMap,
-						this.index, version, readInnerId );
+						this.index, version, readInnerId,
+						this.acceptedStringIndexes );
+				if ( this.currentObject == null )
+					continue;
 				if ( this.includeInnerID && !readInnerId )
 				{
 					this.currentObject.setCustomFieldValue( ExprMetaUtil.POS_NAME,
 							this.getCurrentIndex( ) );					
 				}
+				return this.currentObject;
 			}
 			catch ( Exception e )
 			{
@@ -196,13 +202,34 @@ public class DataSetResultSet implements IDataSetResultSet
 						"Result Data" );
 			}
 		}
-		else
-		{
-			this.currentObject = null;
-		}
+		this.currentObject = null;
 		return this.currentObject;
 	}
 
+	/**
+	 * Returns the string tables of the compressed string columns, by column
+	 * name.
+	 * 
+	 * @return
+	 */
+	public Map<String, StringTable> getStringTables( )
+	{
+		return this.stringTableMap;
+	}
+
+	/**
+	 * Sets the string table indexes a compressed string column must have for
+	 * the rows to be returned by next(); the other rows are skipped without
+	 * looking up their values.
+	 * 
+	 * @param acceptedIndexes
+	 *            the accepted indexes by column name
+	 */
+	public void setAcceptedStringIndexes( Map<String, BitSet> acceptedIndexes )
+	{
+		this.acceptedStringIndexes = acceptedIndexes;
+	}
+
 	public IResultObject getResultObject( )
 	{
 		return this.currentObject;
@@ -300,6 +327,13 @@ public class DataSetResultSet implements IDataSetResultSet
 			}
 			if( disRowLensStream != null )
 				disRowLensStream.close( );
+			if ( stringTableMap != null )
+			{
+				for ( StringTable stringTable : stringTableMap.values( ) )
+				{
+					stringTable.close( );
+				}
+			}
 		}
 		catch ( IOException e )
 		{
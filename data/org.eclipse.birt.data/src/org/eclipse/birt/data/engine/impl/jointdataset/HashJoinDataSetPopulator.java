@@ -0,0 +1,809 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+import org.eclipse.birt.data.engine.executor.cache.disk.PartitionedRowFiles;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * An implementation of IDataSetPopulator which evaluates inner, left outer and
+ * right outer equi-joins through hashing. The rows of the secondary data set
+ * are put into a hash table keyed by their join values, and then each row of
+ * the primary data set looks up its matching rows in the table. Neither data
+ * set needs to be sorted on the join keys, and the rows are produced in the
+ * order of the primary data set.
+ *
+ * When the secondary data set does not fit into the memory buffer given by
+ * DataEngine.MEMORY_BUFFER_SIZE, both data sets are partitioned on the hash of
+ * their join values into temporary files, and the partitions are joined one
+ * after another (grace hash join). The primary rows are written with their
+ * index, and the joint rows of each partition are written to temporary files
+ * in primary order, which are then merged on the primary index. So the rows
+ * are still produced in the order of the primary data set.
+ *
+ * The partitions are not partitioned again: the secondary rows of a partition
+ * are loaded into memory as a whole even if they exceed the memory buffer,
+ * which happens when the join values are skewed, or when the row count of the
+ * secondary data set is not known and there are more than MAX_PARTITION_COUNT
+ * times the rows which fit into the buffer.
+ */
+public class HashJoinDataSetPopulator implements IDataSetPopulator
+{
+	// the maximum number of partitions used when spilling to disk
+	private static final int MAX_PARTITION_COUNT = 128;
+
+	// the estimated memory used by a hash table entry besides the row itself
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private static final String KEY_COLUMN_PREFIX = "_{$TEMP_JOIN_KEY_";
+
+	private static final String INDEX_COLUMN_NAME = "_{$TEMP_JOIN_ROW_INDEX$}_";
+
+	//
+	private JointResultMetadata meta;
+
+	private IResultIterator primaryIterator;
+	private IResultIterator secondaryIterator;
+	private int joinType;
+
+	private IJoinConditionMatcher jcm;
+
+	private DataEngineSession session;
+
+	private long memoryBufferSize;
+
+	private int rowFetchLimit;
+
+	private int rowCount;
+
+	// indicate whether this object is initialized.
+	private boolean beInitialized = false;
+
+	// the hash table of the secondary rows, or of the secondary rows in the
+	// current partition when spilled to disk
+	private HashJoinTable table;
+
+	// the value families of all the secondary rows
+	private HashJoinTable familyTable;
+
+	private IResultObject curPrimaryResultObject;
+	private List<IResultObject> curMatchedResultObjects;
+	private int curMatchedIndex;
+	private boolean curOuterPending;
+
+	// the status of grace hash join
+	private PartitionedRowFiles primaryPartitions;
+	private PartitionedRowFiles secondaryPartitions;
+	private PartitionedRowFiles unroutablePrimaryRows;
+	private BitSet unroutableMatched;
+	private int primaryFieldCount;
+	private int secondaryFieldCount;
+	private int curPartition;
+	private boolean probingUnroutable;
+	private int unroutableIndex;
+
+	// the joint rows of the partitions, merged in primary order
+	private PartitionedRowFiles joinedRows;
+	private int joinedFieldCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param left
+	 * @param right
+	 * @param meta
+	 * @param jcm
+	 * @param joinType
+	 * @param session
+	 * @param rowFetchLimit
+	 * @param memoryBufferSize
+	 *            the memory which can be used by the hash table in bytes, 0
+	 *            means no limitation
+	 */
+	public HashJoinDataSetPopulator( IResultIterator left,
+			IResultIterator right, JointResultMetadata meta,
+			IJoinConditionMatcher jcm, int joinType,
+			DataEngineSession session, int rowFetchLimit, long memoryBufferSize )
+	{
+		assert joinType != IJointDataSetDesign.FULL_OUTER_JOIN;
+		assert jcm.isEquiJoin( );
+
+		this.meta = meta;
+		this.joinType = joinType;
+		this.jcm = jcm;
+		this.session = session;
+		if ( isPrimaryLeft( ) )
+		{
+			this.primaryIterator = left;
+			this.secondaryIterator = right;
+		}
+		else
+		{
+			this.primaryIterator = right;
+			this.secondaryIterator = left;
+		}
+		this.rowFetchLimit = rowFetchLimit;
+		this.memoryBufferSize = memoryBufferSize;
+		this.rowCount = 0;
+	}
+
+	/**
+	 * Return whether primary iterator is left.
+	 *
+	 * @return
+	 */
+	private boolean isPrimaryLeft( )
+	{
+		return joinType != IJointDataSetDesign.RIGHT_OUTER_JOIN;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.odi.IDataSetPopulator#next()
+	 */
+	public IResultObject next( ) throws DataException
+	{
+		if ( this.rowFetchLimit <= 0 || this.rowCount < this.rowFetchLimit )
+		{
+			if ( !beInitialized )
+			{
+				buildSecondary( );
+				if ( secondaryPartitions != null )
+				{
+					partitionPrimary( );
+					joinPartitions( );
+				}
+				beInitialized = true;
+			}
+
+			IResultObject result = joinedRows == null ? doNext( )
+					: nextJoinedRow( );
+			if ( result != null )
+				this.rowCount++;
+			else
+				close( );
+			return result;
+		}
+
+		close( );
+		return null;
+	}
+
+	/**
+	 *
+	 * @return
+	 * @throws DataException
+	 */
+	private IResultObject doNext( ) throws DataException
+	{
+		while ( true )
+		{
+			if ( curMatchedResultObjects != null
+					&& curMatchedIndex < curMatchedResultObjects.size( ) )
+			{
+				return createResultObject( curPrimaryResultObject,
+						curMatchedResultObjects.get( curMatchedIndex++ ) );
+			}
+			if ( curOuterPending )
+			{
+				curOuterPending = false;
+				return createResultObject( curPrimaryResultObject, null );
+			}
+
+			boolean hasNext = secondaryPartitions == null
+					? nextPrimary( ) : nextPartitionedPrimary( );
+			if ( !hasNext )
+				return null;
+		}
+	}
+
+	/**
+	 * Build the hash table from the secondary rows. Switch to partitioned mode
+	 * once the memory buffer is exhausted.
+	 *
+	 * @throws DataException
+	 */
+	private void buildSecondary( ) throws DataException
+	{
+		SizeOfUtil sizeOfUtil = memoryBufferSize > 0
+				? new SizeOfUtil( secondaryIterator.getResultClass( ) ) : null;
+		long usedMemorySize = 0;
+		IResultObject resultObject;
+
+		while ( !session.getStopSign( ).isStopped( )
+				&& ( resultObject = secondaryIterator.getCurrentResult( ) ) != null )
+		{
+			Object[] key = jcm.getCompareValue( !isPrimaryLeft( ) );
+			if ( familyTable == null )
+			{
+				table = new HashJoinTable( key.length );
+				familyTable = table;
+			}
+
+			if ( secondaryPartitions == null )
+			{
+				table.add( key, resultObject );
+				if ( sizeOfUtil != null )
+				{
+					usedMemorySize += sizeOfUtil.sizeOf( resultObject )
+							+ ENTRY_OVERHEAD;
+					if ( usedMemorySize > memoryBufferSize )
+						spillSecondary( usedMemorySize );
+				}
+			}
+			else
+			{
+				familyTable.addFamilies( key );
+				secondaryPartitions.write( getPartition( key ),
+						createSpillResultObject( secondaryPartitions,
+								resultObject,
+								key,
+								-1 ) );
+			}
+			secondaryIterator.next( );
+		}
+
+		if ( secondaryPartitions != null )
+			secondaryPartitions.endWrite( );
+	}
+
+	/**
+	 * Move the secondary rows held in memory to partition files.
+	 *
+	 * @param usedMemorySize
+	 * @throws DataException
+	 */
+	private void spillSecondary( long usedMemorySize ) throws DataException
+	{
+		IResultClass secondaryClass = secondaryIterator.getResultClass( );
+		int keyCount = 0;
+
+		// estimate the partition count from the average row size, so that
+		// each partition fits into the memory buffer with some headroom
+		long averageRowSize = usedMemorySize / table.getRowCount( ) + 1;
+		long totalSize = averageRowSize
+				* Math.max( secondaryIterator.getRowCount( ), table.getRowCount( ) );
+		int partitionCount = (int) Math.min( MAX_PARTITION_COUNT,
+				Math.max( 2, totalSize * 2 / memoryBufferSize + 1 ) );
+
+		Iterator<Map.Entry<HashJoinKey, List<IResultObject>>> it = table.iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<HashJoinKey, List<IResultObject>> entry = it.next( );
+			Object[] key = entry.getKey( ).getValues( );
+			if ( secondaryPartitions == null )
+			{
+				keyCount = key.length;
+				secondaryPartitions = new PartitionedRowFiles( createSpillResultClass( secondaryClass,
+						keyCount,
+						false ),
+						partitionCount,
+						session );
+			}
+			int partition = getPartition( key );
+			for ( int i = 0; i < entry.getValue( ).size( ); i++ )
+			{
+				secondaryPartitions.write( partition,
+						createSpillResultObject( secondaryPartitions,
+								entry.getValue( ).get( i ),
+								key,
+								-1 ) );
+			}
+		}
+
+		// the table only keeps the value families from now on
+		table.clear( );
+		this.secondaryFieldCount = secondaryClass.getFieldCount( );
+	}
+
+	/**
+	 * Write the primary rows with their index to partition files. The rows
+	 * which can not be routed to a single partition are kept separately and
+	 * probed against all the partitions.
+	 *
+	 * @throws DataException
+	 */
+	private void partitionPrimary( ) throws DataException
+	{
+		IResultClass primaryClass = primaryIterator.getResultClass( );
+		// the index is written after the original columns
+		this.primaryFieldCount = primaryClass.getFieldCount( ) + 1;
+		int primaryIndex = 0;
+		IResultObject resultObject;
+
+		while ( !session.getStopSign( ).isStopped( )
+				&& ( resultObject = primaryIterator.getCurrentResult( ) ) != null )
+		{
+			Object[] key = jcm.getCompareValue( isPrimaryLeft( ) );
+			if ( primaryPartitions == null )
+			{
+				IResultClass spillClass = createSpillResultClass( primaryClass,
+						key.length,
+						true );
+				primaryPartitions = new PartitionedRowFiles( spillClass,
+						secondaryPartitions.getPartitionCount( ),
+						session );
+				unroutablePrimaryRows = new PartitionedRowFiles( spillClass,
+						1,
+						session );
+			}
+
+			if ( familyTable.isRoutable( key ) )
+				primaryPartitions.write( getPartition( key ),
+						createSpillResultObject( primaryPartitions,
+								resultObject,
+								key,
+								primaryIndex ) );
+			else
+				unroutablePrimaryRows.write( 0,
+						createSpillResultObject( unroutablePrimaryRows,
+								resultObject,
+								key,
+								primaryIndex ) );
+			primaryIndex++;
+			primaryIterator.next( );
+		}
+
+		if ( primaryPartitions != null )
+		{
+			primaryPartitions.endWrite( );
+			unroutablePrimaryRows.endWrite( );
+			unroutableMatched = new BitSet( unroutablePrimaryRows.getRowCount( 0 ) );
+		}
+		curPartition = -1;
+		probingUnroutable = true;
+	}
+
+	/**
+	 * Join all the partitions, and write the joint rows with the index of their
+	 * primary row to temporary files: one file for the primary rows of each
+	 * partition, one for the unroutable primary rows probed against each
+	 * partition, and one for the unmatched unroutable primary rows of outer
+	 * joins. The rows of each file are in primary order, so the files are then
+	 * read merged on the primary index.
+	 *
+	 * @throws DataException
+	 */
+	private void joinPartitions( ) throws DataException
+	{
+		int partitionCount = secondaryPartitions.getPartitionCount( );
+		IResultClass jointClass = meta.getResultClass( );
+		this.joinedFieldCount = jointClass.getFieldCount( );
+		joinedRows = new PartitionedRowFiles( createSpillResultClass( jointClass,
+				0,
+				true ),
+				partitionCount * 2 + 1,
+				session );
+
+		Object[] noKey = new Object[0];
+		IResultObject resultObject;
+		while ( ( resultObject = doNext( ) ) != null )
+		{
+			int file;
+			if ( !probingUnroutable )
+				file = curPartition;
+			else if ( curPartition < partitionCount )
+				file = partitionCount + curPartition;
+			else
+				file = partitionCount * 2;
+			joinedRows.write( file,
+					createSpillResultObject( joinedRows,
+							resultObject,
+							noKey,
+							getPrimaryIndex( curPrimaryResultObject,
+									primaryFieldCount ) ) );
+		}
+		joinedRows.endWrite( );
+
+		// only the joint rows are read from now on
+		secondaryPartitions.close( );
+		secondaryPartitions = null;
+		if ( primaryPartitions != null )
+		{
+			primaryPartitions.close( );
+			primaryPartitions = null;
+			unroutablePrimaryRows.close( );
+			unroutablePrimaryRows = null;
+		}
+		table = null;
+		familyTable = null;
+
+		final int indexField = joinedFieldCount + 1;
+		joinedRows.startMerge( new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				try
+				{
+					int index1 = getPrimaryIndex( (IResultObject) o1,
+							indexField );
+					int index2 = getPrimaryIndex( (IResultObject) o2,
+							indexField );
+					return index1 < index2 ? -1 : ( index1 == index2 ? 0 : 1 );
+				}
+				catch ( DataException e )
+				{
+					throw new IllegalStateException( e.getLocalizedMessage( ) );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Return the next joint row merged from the partitions in primary order.
+	 *
+	 * @return null if there is no more rows
+	 * @throws DataException
+	 */
+	private IResultObject nextJoinedRow( ) throws DataException
+	{
+		if ( session.getStopSign( ).isStopped( ) )
+			return null;
+		IResultObject resultObject = joinedRows.fetchMerged( );
+		if ( resultObject == null )
+			return null;
+		Object[] fields = new Object[joinedFieldCount];
+		for ( int i = 0; i < joinedFieldCount; i++ )
+		{
+			fields[i] = resultObject.getFieldValue( i + 1 );
+		}
+		return new ResultObject( meta.getResultClass( ), fields );
+	}
+
+	/**
+	 * Return the index of the primary row written at the given field.
+	 *
+	 * @param resultObject
+	 * @param indexField
+	 * @return
+	 * @throws DataException
+	 */
+	private static int getPrimaryIndex( IResultObject resultObject,
+			int indexField ) throws DataException
+	{
+		return ( (Integer) resultObject.getFieldValue( indexField ) ).intValue( );
+	}
+
+	/**
+	 * Move to next primary row in memory mode.
+	 *
+	 * @return false if there is no more primary rows
+	 * @throws DataException
+	 */
+	private boolean nextPrimary( ) throws DataException
+	{
+		IResultObject resultObject = primaryIterator.getCurrentResult( );
+		if ( resultObject == null || session.getStopSign( ).isStopped( ) )
+			return false;
+
+		Object[] key = jcm.getCompareValue( isPrimaryLeft( ) );
+		primaryIterator.next( );
+
+		curPrimaryResultObject = resultObject;
+		curMatchedResultObjects = getMatches( key );
+		curMatchedIndex = 0;
+		curOuterPending = joinType != IJointDataSetDesign.INNER_JOIN
+				&& curMatchedResultObjects.isEmpty( );
+		return true;
+	}
+
+	/**
+	 * Move to next primary row in partitioned mode. The primary rows of a
+	 * partition are probed first, then all the unroutable primary rows are
+	 * probed against the same partition. At last, the unroutable primary rows
+	 * which match no partition are returned for outer joins.
+	 *
+	 * @return false if there is no more primary rows
+	 * @throws DataException
+	 */
+	private boolean nextPartitionedPrimary( ) throws DataException
+	{
+		if ( primaryPartitions == null )
+			return false;
+
+		int partitionCount = secondaryPartitions.getPartitionCount( );
+		while ( !session.getStopSign( ).isStopped( ) )
+		{
+			if ( curPartition >= 0 && !probingUnroutable )
+			{
+				IResultObject resultObject = primaryPartitions.fetch( curPartition );
+				if ( resultObject != null )
+				{
+					curPrimaryResultObject = resultObject;
+					curMatchedResultObjects = getMatches( getSpilledKey( resultObject,
+							primaryFieldCount ) );
+					curMatchedIndex = 0;
+					curOuterPending = joinType != IJointDataSetDesign.INNER_JOIN
+							&& curMatchedResultObjects.isEmpty( );
+					return true;
+				}
+				primaryPartitions.close( curPartition );
+				probingUnroutable = true;
+				unroutableIndex = 0;
+				unroutablePrimaryRows.reset( 0 );
+			}
+
+			if ( curPartition >= 0 )
+			{
+				IResultObject resultObject = unroutablePrimaryRows.fetch( 0 );
+				if ( resultObject != null )
+				{
+					int index = unroutableIndex++;
+					curPrimaryResultObject = resultObject;
+					curMatchedIndex = 0;
+					if ( curPartition < partitionCount )
+					{
+						curMatchedResultObjects = getMatches( getSpilledKey( resultObject,
+								primaryFieldCount ) );
+						curOuterPending = false;
+						if ( !curMatchedResultObjects.isEmpty( ) )
+							unroutableMatched.set( index );
+					}
+					else
+					{
+						// the final pass
+						curMatchedResultObjects = null;
+						curOuterPending = !unroutableMatched.get( index );
+					}
+					return true;
+				}
+				if ( curPartition >= partitionCount )
+					return false;
+			}
+
+			curPartition++;
+			if ( curPartition < partitionCount )
+			{
+				loadPartition( curPartition );
+				primaryPartitions.reset( curPartition );
+				probingUnroutable = false;
+			}
+			else
+			{
+				// only outer joins need the final pass over the unroutable
+				// primary rows which have not been matched
+				if ( joinType == IJointDataSetDesign.INNER_JOIN )
+					return false;
+				table = null;
+				unroutableIndex = 0;
+				unroutablePrimaryRows.reset( 0 );
+				probingUnroutable = true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Load the secondary rows of a partition into the hash table.
+	 *
+	 * @param partition
+	 * @throws DataException
+	 */
+	private void loadPartition( int partition ) throws DataException
+	{
+		table = null;
+		secondaryPartitions.reset( partition );
+		IResultObject resultObject;
+		while ( ( resultObject = secondaryPartitions.fetch( partition ) ) != null )
+		{
+			Object[] key = getSpilledKey( resultObject, secondaryFieldCount );
+			if ( table == null )
+				table = new HashJoinTable( key.length );
+			table.add( key, resultObject );
+		}
+		secondaryPartitions.close( partition );
+	}
+
+	/**
+	 * Return the secondary rows matching the key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private List<IResultObject> getMatches( Object[] key )
+	{
+		if ( table == null )
+			return Collections.emptyList( );
+		return table.getMatches( key );
+	}
+
+	/**
+	 * Return the partition of a key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private int getPartition( Object[] key )
+	{
+		// scramble the hash code so that the rows in one partition are still
+		// well distributed in the hash table
+		int hash = HashJoinKey.hashOf( key ) * 0x9E3779B9;
+		return ( hash >>> 1 ) % secondaryPartitions.getPartitionCount( );
+	}
+
+	/**
+	 * Release the temporary files.
+	 */
+	private void close( )
+	{
+		if ( secondaryPartitions != null )
+		{
+			secondaryPartitions.close( );
+			secondaryPartitions = null;
+		}
+		if ( primaryPartitions != null )
+		{
+			primaryPartitions.close( );
+			primaryPartitions = null;
+		}
+		if ( unroutablePrimaryRows != null )
+		{
+			unroutablePrimaryRows.close( );
+			unroutablePrimaryRows = null;
+		}
+		if ( joinedRows != null )
+		{
+			joinedRows.close( );
+			joinedRows = null;
+		}
+		table = null;
+		familyTable = null;
+		curMatchedResultObjects = null;
+		curOuterPending = false;
+	}
+
+	/**
+	 * Create the meta data of the rows written to partition files, which are
+	 * the original columns followed by the row index if needed, and then by the
+	 * join key values.
+	 *
+	 * @param rsMeta
+	 * @param keyCount
+	 * @param withIndex
+	 * @return
+	 * @throws DataException
+	 */
+	private static IResultClass createSpillResultClass( IResultClass rsMeta,
+			int keyCount, boolean withIndex ) throws DataException
+	{
+		List columns = new ArrayList( );
+		for ( int i = 1; i <= rsMeta.getFieldCount( ); i++ )
+		{
+			columns.add( rsMeta.getFieldMetaData( i ) );
+		}
+		if ( withIndex )
+		{
+			columns.add( new ResultFieldMetadata( 0,
+					INDEX_COLUMN_NAME,
+					INDEX_COLUMN_NAME,
+					Integer.class,
+					null,
+					true ) );
+		}
+		for ( int i = 0; i < keyCount; i++ )
+		{
+			String name = KEY_COLUMN_PREFIX + i + "}";
+			columns.add( new ResultFieldMetadata( 0,
+					name,
+					name,
+					Object.class,
+					null,
+					true ) );
+		}
+		return new ResultClass( columns );
+	}
+
+	/**
+	 *
+	 * @param partitions
+	 * @param resultObject
+	 * @param key
+	 * @param index
+	 *            the index of the row, -1 if the rows of the partitions have
+	 *            no index
+	 * @return
+	 * @throws DataException
+	 */
+	private IResultObject createSpillResultObject(
+			PartitionedRowFiles partitions, IResultObject resultObject,
+			Object[] key, int index ) throws DataException
+	{
+		int fieldCount = partitions.getResultClass( ).getFieldCount( )
+				- key.length;
+		Object[] fields = new Object[fieldCount + key.length];
+		int originalCount = index < 0 ? fieldCount : fieldCount - 1;
+		for ( int i = 0; i < originalCount; i++ )
+		{
+			fields[i] = resultObject.getFieldValue( i + 1 );
+		}
+		if ( index >= 0 )
+			fields[originalCount] = Integer.valueOf( index );
+		System.arraycopy( key, 0, fields, fieldCount, key.length );
+		return new ResultObject( partitions.getResultClass( ), fields );
+	}
+
+	/**
+	 * Return the join key values written after the original columns.
+	 *
+	 * @param resultObject
+	 * @param fieldCount
+	 * @return
+	 * @throws DataException
+	 */
+	private static Object[] getSpilledKey( IResultObject resultObject,
+			int fieldCount ) throws DataException
+	{
+		int keyCount = resultObject.getResultClass( ).getFieldCount( )
+				- fieldCount;
+		Object[] key = new Object[keyCount];
+		for ( int i = 0; i < keyCount; i++ )
+		{
+			key[i] = resultObject.getFieldValue( fieldCount + i + 1 );
+		}
+		return key;
+	}
+
+	/**
+	 * Create an instance of IResultObject.
+	 *
+	 * @param primary
+	 * @param secondary
+	 * @return
+	 * @throws DataException
+	 */
+	private IResultObject createResultObject( IResultObject primary,
+			IResultObject secondary ) throws DataException
+	{
+		Object[] fields = new Object[meta.getResultClass( ).getFieldCount( )];
+		for ( int i = 1; i <= fields.length; i++ )
+		{
+			IResultObject ri = null;
+
+			if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_LEFT )
+			{
+				if ( isPrimaryLeft( ) )
+					ri = primary;
+				else
+					ri = secondary;
+			}
+			else if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_RIGHT )
+			{
+				if ( isPrimaryLeft( ) )
+					ri = secondary;
+				else
+					ri = primary;
+			}
+
+			fields[i - 1] = ri == null ? null
+					: ri.getFieldValue( meta.getSourceIndex( i ) );
+		}
+		return new ResultObject( meta.getResultClass( ), fields );
+	}
+}
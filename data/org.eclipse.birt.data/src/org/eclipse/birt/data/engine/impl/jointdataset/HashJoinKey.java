@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.Date;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * The key of a row in hash join. Equality is decided by
+ * JointDataSetUtil.compare so that the hash join matches exactly the same rows
+ * as the sort-merge join. The hash code is only computed from the values of
+ * the same value family, so a key can only be looked up by hash when each of
+ * its values belongs to the same family as the build side values of that
+ * column. See HashJoinTable#isRoutable.
+ */
+final class HashJoinKey
+{
+	// value families
+	static final int FAMILY_NULL = 0;
+	static final int FAMILY_NUMBER = 1;
+	static final int FAMILY_STRING = 2;
+	static final int FAMILY_DATE = 4;
+	static final int FAMILY_BOOLEAN = 8;
+	static final int FAMILY_OTHER = 16;
+
+	//
+	private Object[] values;
+	private int hash;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param values
+	 */
+	HashJoinKey( Object[] values )
+	{
+		this.values = values;
+		this.hash = hashOf( values );
+	}
+
+	/**
+	 * Return the values of this key.
+	 *
+	 * @return
+	 */
+	Object[] getValues( )
+	{
+		return this.values;
+	}
+
+	/*
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode( )
+	{
+		return this.hash;
+	}
+
+	/*
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	public boolean equals( Object obj )
+	{
+		if ( this == obj )
+			return true;
+		if ( !( obj instanceof HashJoinKey ) )
+			return false;
+		HashJoinKey other = (HashJoinKey) obj;
+		if ( other.hash != this.hash )
+			return false;
+		return matches( other.values );
+	}
+
+	/**
+	 * Return whether the given key values match the values of this key.
+	 *
+	 * @param keyValues
+	 * @return
+	 */
+	boolean matches( Object[] keyValues )
+	{
+		if ( keyValues.length != this.values.length )
+			return false;
+		try
+		{
+			for ( int i = 0; i < this.values.length; i++ )
+			{
+				if ( JointDataSetUtil.compare( this.values[i], keyValues[i] ) != 0 )
+					return false;
+			}
+			return true;
+		}
+		catch ( DataException e )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Return the value family of an object.
+	 *
+	 * @param value
+	 * @return
+	 */
+	static int getFamily( Object value )
+	{
+		if ( value == null )
+			return FAMILY_NULL;
+		if ( value instanceof Number )
+			return FAMILY_NUMBER;
+		if ( value instanceof String )
+			return FAMILY_STRING;
+		if ( value instanceof Date )
+			return FAMILY_DATE;
+		if ( value instanceof Boolean )
+			return FAMILY_BOOLEAN;
+		return FAMILY_OTHER;
+	}
+
+	/**
+	 * Compute the hash code of key values. Values which are equal according to
+	 * JointDataSetUtil.compare and belong to the same family always have the
+	 * same hash code.
+	 *
+	 * @param values
+	 * @return
+	 */
+	static int hashOf( Object[] values )
+	{
+		int result = 1;
+		for ( int i = 0; i < values.length; i++ )
+		{
+			result = 31 * result + hashOf( values[i] );
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static int hashOf( Object value )
+	{
+		switch ( getFamily( value ) )
+		{
+			case FAMILY_NUMBER :
+				// Numbers of different classes are compared by their double
+				// value, so the hash code is taken from it as well.
+				double d = ( (Number) value ).doubleValue( );
+				if ( d == 0d )
+					d = 0d;
+				long bits = Double.doubleToLongBits( d );
+				return (int) ( bits ^ ( bits >>> 32 ) );
+			case FAMILY_STRING :
+				return value.hashCode( );
+			case FAMILY_DATE :
+				long time = ( (Date) value ).getTime( );
+				return (int) ( time ^ ( time >>> 32 ) );
+			case FAMILY_BOOLEAN :
+				return value.hashCode( );
+			default :
+				// Null values and values of unknown class only take part in
+				// equality test.
+				return 0;
+		}
+	}
+}
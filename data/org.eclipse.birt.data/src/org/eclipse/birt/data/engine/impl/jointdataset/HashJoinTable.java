@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * The in-memory hash table built from the rows of the secondary data set of a
+ * hash join. Rows with equal keys are kept in the order they are added.
+ */
+class HashJoinTable
+{
+	//
+	private Map<HashJoinKey, List<IResultObject>> buckets;
+	private int[] families;
+	private int rowCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param keyCount
+	 */
+	HashJoinTable( int keyCount )
+	{
+		this.buckets = new LinkedHashMap<HashJoinKey, List<IResultObject>>( );
+		this.families = new int[keyCount];
+		this.rowCount = 0;
+	}
+
+	/**
+	 * Add a row with its key values to the table.
+	 *
+	 * @param keyValues
+	 * @param row
+	 */
+	void add( Object[] keyValues, IResultObject row )
+	{
+		addFamilies( keyValues );
+		HashJoinKey key = new HashJoinKey( keyValues );
+		List<IResultObject> bucket = buckets.get( key );
+		if ( bucket == null )
+		{
+			bucket = new ArrayList<IResultObject>( 1 );
+			buckets.put( key, bucket );
+		}
+		bucket.add( row );
+		rowCount++;
+	}
+
+	/**
+	 * Record the value families of key values of a row from the secondary
+	 * data set. This is also used when rows are partitioned rather than added
+	 * to the table.
+	 *
+	 * @param keyValues
+	 */
+	void addFamilies( Object[] keyValues )
+	{
+		for ( int i = 0; i < families.length; i++ )
+		{
+			families[i] |= HashJoinKey.getFamily( keyValues[i] );
+		}
+	}
+
+	/**
+	 * Return whether the rows matching the given key values can be found
+	 * through hashing. This is the case when each non-null value belongs to
+	 * the only value family seen in that column of the secondary data set.
+	 * Otherwise, a value might be equal to a value of another family (for
+	 * example "1" and 1), and all the keys have to be examined.
+	 *
+	 * @param keyValues
+	 * @return
+	 */
+	boolean isRoutable( Object[] keyValues )
+	{
+		for ( int i = 0; i < families.length; i++ )
+		{
+			int family = HashJoinKey.getFamily( keyValues[i] );
+			if ( family != HashJoinKey.FAMILY_NULL
+					&& families[i] != HashJoinKey.FAMILY_NULL
+					&& families[i] != family )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the rows whose keys match the given key values.
+	 *
+	 * @param keyValues
+	 * @return
+	 */
+	List<IResultObject> getMatches( Object[] keyValues )
+	{
+		if ( isRoutable( keyValues ) )
+		{
+			List<IResultObject> bucket = buckets.get( new HashJoinKey( keyValues ) );
+			if ( bucket == null )
+				return Collections.emptyList( );
+			return bucket;
+		}
+
+		List<IResultObject> result = new ArrayList<IResultObject>( );
+		Iterator<Map.Entry<HashJoinKey, List<IResultObject>>> it = buckets.entrySet( )
+				.iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<HashJoinKey, List<IResultObject>> entry = it.next( );
+			if ( entry.getKey( ).matches( keyValues ) )
+				result.addAll( entry.getValue( ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Return the iterator of the keys and their rows in this table.
+	 *
+	 * @return
+	 */
+	Iterator<Map.Entry<HashJoinKey, List<IResultObject>>> iterator( )
+	{
+		return this.buckets.entrySet( ).iterator( );
+	}
+
+	/**
+	 * Return the number of rows in this table.
+	 *
+	 * @return
+	 */
+	int getRowCount( )
+	{
+		return this.rowCount;
+	}
+
+	/**
+	 * Release all the rows held by this table.
+	 */
+	void clear( )
+	{
+		this.buckets.clear( );
+		this.rowCount = 0;
+	}
+}
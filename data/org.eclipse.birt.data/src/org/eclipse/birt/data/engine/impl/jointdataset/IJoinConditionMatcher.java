@@ -43,4 +43,12 @@ public interface IJoinConditionMatcher
 	 * @throws DataException
 	 */
 	Object[] getCompareValue( boolean left ) throws DataException;
+	
+	/**
+	 * Return whether all the join conditions are equality conditions, in
+	 * which case the join can be evaluated through hashing.
+	 * 
+	 * @return
+	 */
+	boolean isEquiJoin( );
 }
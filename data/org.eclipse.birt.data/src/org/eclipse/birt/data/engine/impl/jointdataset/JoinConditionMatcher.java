@@ -28,6 +28,7 @@ public class JoinConditionMatcher implements IJoinConditionMatcher
 	//
 	private JoinConditionMatchUnit[] left = new JoinConditionMatchUnit[0];
 	private JoinConditionMatchUnit[] right = new JoinConditionMatchUnit[0];
+	private boolean equiJoin = true;
 	
 	/**
 	 * Constructor.
@@ -57,6 +58,8 @@ public class JoinConditionMatcher implements IJoinConditionMatcher
 					this.right,
 					rightRi,
 					rightScope );
+			if ( ( (IJoinCondition) joinConditions.get( i ) ).getOperator( ) != IJoinCondition.OP_EQ )
+				this.equiJoin = false;
 		}
 		
 	}
@@ -124,5 +127,12 @@ public class JoinConditionMatcher implements IJoinConditionMatcher
 		return result;
 	}
 
-
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IJoinConditionMatcher#isEquiJoin()
+	 */
+	public boolean isEquiJoin( )
+	{
+		return this.equiJoin;
+	}
 }
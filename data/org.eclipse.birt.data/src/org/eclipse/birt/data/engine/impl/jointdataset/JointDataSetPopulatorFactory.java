@@ -10,7 +10,14 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.impl.jointdataset;
 
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IJoinCondition;
+import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
 import org.eclipse.birt.data.engine.odi.IResultIterator;
@@ -54,4 +61,54 @@ public class JointDataSetPopulatorFactory
 	{
 		return new BaseJointDataSetPopulator( left, right, meta, jcm , joinType, null, session, rowFetchLimit );
 	}
+	
+	/**
+	 * Return instance of IJointDataSetPopulator which is used for left, right,
+	 * and inner equi-join through hashing. The data sets need not be sorted on
+	 * the join keys.
+	 * 
+	 * @param left
+	 * @param right
+	 * @param meta
+	 * @param jcm
+	 * @param joinType
+	 * @param session
+	 * @param rowFetchLimit
+	 * @param appContext
+	 * @return
+	 * @throws DataException
+	 */
+	public static IDataSetPopulator getHashJoinDataSetPopulator( IResultIterator left, IResultIterator right, JointResultMetadata meta, IJoinConditionMatcher jcm , int joinType, DataEngineSession session, int rowFetchLimit, Map appContext ) throws DataException
+	{
+		return new HashJoinDataSetPopulator( left, right, meta, jcm , joinType, session, rowFetchLimit, CacheUtil.computeMemoryBufferSize( appContext ) );
+	}
+	
+	/**
+	 * Return whether the join can be done through hashing, that is all the
+	 * join conditions are equality conditions, the join is not a full outer
+	 * join, and hash join is not disabled in the application context.
+	 * 
+	 * @param joinType
+	 * @param joinConditions
+	 * @param appContext
+	 * @return
+	 */
+	public static boolean isHashJoinApplicable( int joinType, List joinConditions, Map appContext )
+	{
+		if ( joinType == IJointDataSetDesign.FULL_OUTER_JOIN )
+			return false;
+		if ( joinConditions == null || joinConditions.isEmpty( ) )
+			return false;
+		if ( appContext != null
+				&& appContext.get( DataEngine.JOINT_DATA_SET_HASH_JOIN ) != null
+				&& !Boolean.valueOf( appContext.get( DataEngine.JOINT_DATA_SET_HASH_JOIN )
+						.toString( ) ).booleanValue( ) )
+			return false;
+		for ( int i = 0; i < joinConditions.size( ); i++ )
+		{
+			if ( ( (IJoinCondition) joinConditions.get( i ) ).getOperator( ) != IJoinCondition.OP_EQ )
+				return false;
+		}
+		return true;
+	}
 }
@@ -20,6 +20,7 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -65,6 +66,12 @@ public class PreparedStatement extends ExceptionHandler
 	private ArrayList<Property> m_properties;
 	private int m_maxRows;
 	private ArrayList<SortSpec> m_sortSpecs;
+	// the input parameter values last set, by name or by index
+	private HashMap<Object, Object> m_parameterValues;
+	
+	// a statement of the same query executed ahead, whose result set is
+	// taken by the next execution of this
+	private PreparedStatement m_executedStatement;
 	
 	private Boolean m_supportsNamedResults;
 	private Boolean m_supportsOutputParameters;
@@ -572,7 +579,15 @@ public class PreparedStatement extends ExceptionHandler
 			{
 			    // hold onto its returned result set
 			    // for subsequent call to getResultSet()
-			    m_driverResultSet = m_statement.executeQuery( );
+			    if( m_executedStatement != null && 
+			        m_executedStatement.m_driverResultSet != null )
+			    {
+			        // take the result set of the query executed ahead
+			        m_driverResultSet = m_executedStatement.m_driverResultSet;
+			        m_executedStatement.m_driverResultSet = null;
+			    }
+			    else
+			        m_driverResultSet = m_statement.executeQuery( );
 			    ret = true;
 			}
 
@@ -939,10 +954,92 @@ public class PreparedStatement extends ExceptionHandler
 			getLogger().logp( Level.WARNING, sm_className, methodName, 
 							"Cannot close statement.", ex ); //$NON-NLS-1$
 		}
+		finally
+		{
+			closeExecutedStatement();
+		}
 		
 		getLogger().exiting( sm_className, methodName );
 	}
 	
+	/**
+	 * Returns what the query of this statement is executed with: its data set 
+	 * type, query text, properties, maximum number of rows and input parameter 
+	 * values. Two statements of the same data source connection properties 
+	 * with equal keys execute the same query.
+	 * @return	the execution key, or null if this is an advanced query or has 
+	 * 			sort specifications, which the key does not describe.
+	 */
+	public Object getExecutionKey( )
+	{
+		if( isAdvancedQuery() || m_queryText == null || 
+			( m_sortSpecs != null && ! m_sortSpecs.isEmpty() ) )
+			return null;
+		
+		// a property set again replaces its value
+		HashMap<String, String> properties = new HashMap<String, String>();
+		if( m_properties != null )
+		{
+			for( Property property : m_properties )
+				properties.put( property.getName(), property.getValue() );
+		}
+		
+		HashMap<Object, Object> parameterValues = ( m_parameterValues == null ) ?
+				new HashMap<Object, Object>() : 
+				new HashMap<Object, Object>( m_parameterValues );
+		
+		return Arrays.asList( new Object[] { m_dataSetType, m_queryText, properties, 
+				Integer.valueOf( m_maxRows ), parameterValues } );
+	}
+	
+	/**
+	 * Specifies a statement with the same execution key as this, which has 
+	 * been executed ahead on a connection of its own.  The next call to 
+	 * <code>execute</code> takes its result set instead of executing the 
+	 * query of this statement again.  The given statement and its connection 
+	 * are closed when this is closed.
+	 * @param executedStatement	an executed statement of a simple query.
+	 * @see #getExecutionKey()
+	 */
+	public void setExecutedStatement( PreparedStatement executedStatement )
+	{
+		final String methodName = "setExecutedStatement"; //$NON-NLS-1$
+		getLogger().entering( sm_className, methodName, executedStatement );
+		
+		assert( executedStatement != this );
+		closeExecutedStatement();
+		m_executedStatement = executedStatement;
+		
+		getLogger().exiting( sm_className, methodName );
+	}
+	
+	private void closeExecutedStatement()
+	{
+		if( m_executedStatement == null )
+			return;
+		
+		PreparedStatement executedStatement = m_executedStatement;
+		m_executedStatement = null;
+		try
+		{
+			executedStatement.close();
+		}
+		catch( DataException ex )
+		{
+			getLogger().logp( Level.FINE, sm_className, "closeExecutedStatement", //$NON-NLS-1$
+							"Cannot close the statement executed ahead.", ex ); //$NON-NLS-1$
+		}
+		try
+		{
+			executedStatement.m_connection.close();
+		}
+		catch( DataException ex )
+		{
+			getLogger().logp( Level.FINE, sm_className, "closeExecutedStatement", //$NON-NLS-1$
+							"Cannot close the connection of the statement executed ahead.", ex ); //$NON-NLS-1$
+		}
+	}
+	
 	private void flushResultSets()
 	{
 	    try
@@ -2912,6 +3009,9 @@ public class PreparedStatement extends ExceptionHandler
 		String methodName = "clearParameterValues"; //$NON-NLS-1$
 		getLogger().entering( sm_className, methodName );
 		
+		if( m_parameterValues != null )
+			m_parameterValues.clear();
+		
 		try
 		{
 			getStatement().clearInParameters();
@@ -3086,6 +3186,13 @@ public class PreparedStatement extends ExceptionHandler
 	{
 		final String methodName = "setParameterValue( String, int, Object )"; //$NON-NLS-1$
 		
+		// keep the value for the execution key
+		if( m_parameterValues == null )
+			m_parameterValues = new HashMap<Object, Object>();
+		m_parameterValues.put( ( paramName != null ) ? paramName : 
+										(Object) Integer.valueOf( paramIndex ), 
+							   paramValue );
+		
 		// delegate to ParameterName for the proper name to use when
 		// interacting with underlying oda runtime driver
 		ParameterName paramNameObj = null;
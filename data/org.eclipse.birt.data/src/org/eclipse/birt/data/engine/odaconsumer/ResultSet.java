@@ -14,11 +14,16 @@
 
 package org.eclipse.birt.data.engine.odaconsumer;
 
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.IBlockFetchResultSet;
+import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultObject;
@@ -34,12 +39,41 @@ import org.eclipse.datatools.connectivity.oda.OdaException;
 /**
  * <code>ResultSet</code> maintains an incremental pointer to rows in the  
  * result set.
+ * <p>
+ * When the driver's result set implements <code>IBlockFetchResultSet</code>,
+ * the rows are read from it a block at a time, and handed out one by one from
+ * the block.
+ * <p>
+ * When prefetching is set, the rows are read ahead on a background thread
+ * from the first fetch on, so that reading the rows from the data source and
+ * processing the fetched rows overlap.
  */
 public class ResultSet extends ExceptionHandler
 {
+	/** the number of rows read at a time from a block fetch result set */
+	static final int FETCH_BLOCK_SIZE = 256;
+
 	private IResultSet m_resultSet;
 	private IResultClass m_resultClass;		// cached result class
 
+	// block fetch variables; m_blockFetchResolved is set once it is known
+	// whether the rows are read by blocks, m_blockFetcher being null if not
+	private boolean m_blockFetchResolved;
+	private IBlockFetchResultSet m_blockFetcher;
+	private int[] m_blockColumnPositions;
+	private int[] m_blockColumnTypes;
+	private Object[][] m_block;
+	private int m_blockRowCount;
+	private int m_blockRowIndex;
+	private boolean m_blockFetchDone;
+	private int m_rowPosition;
+	private int m_maxRows;
+
+	// prefetch variables; m_prefetcher is set on the first fetch
+	private int m_prefetchBlockCount;
+	private ExecutorService m_prefetchExecutor;
+	private volatile RowPrefetcher m_prefetcher;
+
 	// trace logging variables
 	private static String sm_className = ResultSet.class.getName();
 		
@@ -104,6 +138,7 @@ public class ResultSet extends ExceptionHandler
 	public void setMaxRows( int max ) throws DataException
 	{
 	    final String methodName = "setMaxRows"; //$NON-NLS-1$
+		m_maxRows = max;
 		try
 		{
 			m_resultSet.setMaxRows( max );
@@ -119,6 +154,34 @@ public class ResultSet extends ExceptionHandler
 		}
 	}
 	
+	/**
+	 * Specifies that the rows are read ahead on a background thread, a block
+	 * at a time. It takes effect on the first fetch, and must be specified 
+	 * before it.
+	 * @param blockCount	the maximum number of blocks of rows read ahead of
+	 * 				the fetched rows; 0 means the rows are not read ahead.
+	 * @param executor	the threads the rows are read on.
+	 */
+	public void setPrefetch( int blockCount, ExecutorService executor )
+	{
+		assert m_prefetcher == null;
+		assert blockCount <= 0 || executor != null;
+		m_prefetchBlockCount = blockCount;
+		m_prefetchExecutor = executor;
+	}
+	
+	/**
+	 * Stops reading the rows ahead, if they are. The rows which are read but 
+	 * not fetched yet are dropped, and no more rows are fetched. It can be 
+	 * called from any thread, to cancel the fetching of the rows.
+	 */
+	public void cancelPrefetch( )
+	{
+		RowPrefetcher prefetcher = m_prefetcher;
+		if( prefetcher != null )
+			prefetcher.stop( );
+	}
+	
 	/**
 	 * Returns the IResultObject representing the next row in the result set.
 	 * @return 	the IResultObject representing the next row; null if there are 
@@ -129,10 +192,43 @@ public class ResultSet extends ExceptionHandler
 	{
 		if ( m_resultSet == null )
 			return null;
-
+		
+		if( m_prefetchBlockCount > 0 )
+		{
+			if( m_prefetcher == null )
+			{
+				RowPrefetcher prefetcher = new RowPrefetcher( this, 
+						m_prefetchBlockCount, FETCH_BLOCK_SIZE );
+				m_prefetcher = prefetcher;
+				prefetcher.start( m_prefetchExecutor );
+			}
+			return m_prefetcher.next( );
+		}
+		return fetchRow( );
+	}
+	
+	/*
+	 * Reads the next row from the driver's result set.
+	 */
+	private IResultObject fetchRow( ) throws DataException
+	{
 	    final String methodName = "fetch"; //$NON-NLS-1$
         final String errorCode = ResourceConstants.CANNOT_FETCH_NEXT_ROW;
 
+		if( isBlockFetch() )
+		{
+			Object[] blockFields = fetchFromBlock();
+			if( blockFields == null )
+				return null;
+			
+			IResultObject blockRow = new ResultObject( m_resultClass, blockFields );
+
+			getLogger().logp( Level.FINEST, sm_className, methodName, 
+			            		"Fetched next row: {0} .", blockRow ); //$NON-NLS-1$
+
+			return blockRow;
+		}
+
 		try
 		{
 			if( ! m_resultSet.next( ) )
@@ -215,6 +311,195 @@ public class ResultSet extends ExceptionHandler
 
 		return ret;
 	}
+	
+	/**
+	 * Returns the IResultObjects representing the next rows in the result set.
+	 * @param count	the maximum number of rows to fetch
+	 * @return	the next rows; fewer than <code>count</code>, possibly none, 
+	 * 			when there are no more rows available or the max rows limit 
+	 * 			has been reached.
+	 * @throws DataException	if data source error occurs.
+	 */
+	public IResultObject[] fetch( int count ) throws DataException
+	{
+		IResultObject[] rows = new IResultObject[ count ];
+		int fetched = 0;
+		while( fetched < count && ( rows[fetched] = fetch() ) != null )
+			fetched++;
+		return trimRows( rows, fetched );
+	}
+	
+	/*
+	 * Reads the next rows from the driver's result set, on the thread of a 
+	 * prefetcher; fewer than count when there are no more rows.
+	 */
+	IResultObject[] readRows( int count ) throws DataException
+	{
+		IResultObject[] rows = new IResultObject[ count ];
+		int read = 0;
+		while( read < count && ( rows[read] = fetchRow() ) != null )
+			read++;
+		return trimRows( rows, read );
+	}
+	
+	private static IResultObject[] trimRows( IResultObject[] rows, int count )
+	{
+		if( count == rows.length )
+			return rows;
+		IResultObject[] result = new IResultObject[ count ];
+		System.arraycopy( rows, 0, result, 0, count );
+		return result;
+	}
+
+	/*
+	 * Returns whether the rows are read a block at a time, which is so when 
+	 * the driver's result set supports it and each column has a type it can 
+	 * read.
+	 */
+	private boolean isBlockFetch()
+	{
+		if( m_blockFetchResolved )
+			return m_blockFetcher != null;
+		m_blockFetchResolved = true;
+		
+		IBlockFetchResultSet blockFetcher = getBlockFetchResultSet( m_resultSet );
+		if( blockFetcher == null )
+			return false;
+		
+		int columnCount = m_resultClass.getFieldCount();
+		int[] driverPositions = 
+			( (ResultClass) m_resultClass ).getFieldDriverPositions();
+		int[] columnPositions = new int[ columnCount ];
+		int[] columnTypes = new int[ columnCount ];
+		for( int i = 1; i <= columnCount; i++ )
+		{
+			if ( m_resultClass.isCustomField( i ) == true )
+				continue;
+			
+			int type = getBlockFetchType( m_resultClass.getFieldValueClass( i ) );
+			if( type == DataType.UNKNOWN_TYPE )
+				return false;
+			columnPositions[i - 1] = driverPositions[i - 1];
+			columnTypes[i - 1] = type;
+		}
+
+		m_blockFetcher = blockFetcher;
+		m_blockColumnPositions = columnPositions;
+		m_blockColumnTypes = columnTypes;
+		m_block = new Object[ FETCH_BLOCK_SIZE ][];
+		return true;
+	}
+	
+	/*
+	 * Returns the type a column of the given value class is read as by a 
+	 * block fetch result set; UNKNOWN_TYPE if it cannot be.
+	 */
+	private static int getBlockFetchType( Class dataType )
+	{
+		if( dataType == Integer.class )
+			return DataType.INTEGER_TYPE;
+		if( dataType == Double.class )
+			return DataType.DOUBLE_TYPE;
+		if( dataType == String.class )
+			return DataType.STRING_TYPE;
+		if( dataType == BigDecimal.class )
+			return DataType.DECIMAL_TYPE;
+		if( dataType == java.sql.Date.class )
+			return DataType.SQL_DATE_TYPE;
+		if( dataType == Time.class )
+			return DataType.SQL_TIME_TYPE;
+		if( dataType == java.util.Date.class || dataType == Timestamp.class )
+			return DataType.DATE_TYPE;
+		if( dataType == IBlob.class )
+			return DataType.BLOB_TYPE;
+		if( dataType == Boolean.class )
+			return DataType.BOOLEAN_TYPE;
+		if( dataType == Object.class )
+			return DataType.JAVA_OBJECT_TYPE;
+		return DataType.UNKNOWN_TYPE;
+	}
+	
+	/*
+	 * Returns the driver's result set if it supports block fetch. The ODA 
+	 * consumer helper wraps the driver's result set in its own, which keeps
+	 * the wrapped object behind a no-argument getObject method.
+	 */
+	private IBlockFetchResultSet getBlockFetchResultSet( IResultSet resultSet )
+	{
+		if( resultSet instanceof IBlockFetchResultSet )
+			return (IBlockFetchResultSet) resultSet;
+		
+		final String methodName = "getBlockFetchResultSet"; //$NON-NLS-1$
+		for( Class clazz = resultSet.getClass(); clazz != null; clazz = clazz.getSuperclass() )
+		{
+			Method getter;
+			try
+			{
+				getter = clazz.getDeclaredMethod( "getObject" ); //$NON-NLS-1$
+			}
+			catch( NoSuchMethodException ex )
+			{
+				continue;
+			}
+			try
+			{
+				getter.setAccessible( true );
+				Object wrapped = getter.invoke( resultSet );
+				return ( wrapped instanceof IBlockFetchResultSet ) ? 
+						(IBlockFetchResultSet) wrapped : null;
+			}
+			catch( Exception ex )
+			{
+				getLogger().logp( Level.FINE, sm_className, methodName,
+						"Cannot get the driver's result set; rows are fetched one at a time.", ex ); //$NON-NLS-1$
+				return null;
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns the column values of the next row of the current block, reading 
+	 * the next block when the current one is used up; null when there are no
+	 * more rows.
+	 */
+	private Object[] fetchFromBlock() throws DataException
+	{
+		if( m_maxRows > 0 && m_rowPosition >= m_maxRows )
+			return null;
+		
+		if( m_blockRowIndex == m_blockRowCount )
+		{
+			if( m_blockFetchDone )
+				return null;
+			
+			final String methodName = "fetchFromBlock"; //$NON-NLS-1$
+			m_blockRowIndex = 0;
+			m_blockRowCount = 0;
+			try
+			{
+				m_blockRowCount = m_blockFetcher.fetch( m_blockColumnPositions, 
+								m_blockColumnTypes, m_block );
+			}
+			catch( BirtException ex )
+			{
+			    throwException( ex, ResourceConstants.CANNOT_FETCH_NEXT_ROW, methodName );
+			}
+			catch( UnsupportedOperationException ex )
+			{
+			    throwException( ex, ResourceConstants.CANNOT_FETCH_NEXT_ROW, methodName );
+			}
+			if( m_blockRowCount < m_block.length )
+				m_blockFetchDone = true;
+			if( m_blockRowCount == 0 )
+				return null;
+		}
+		
+		Object[] fields = m_block[ m_blockRowIndex ];
+		m_block[ m_blockRowIndex++ ] = null;
+		m_rowPosition++;
+		return fields;
+	}
 
     private int getInt( int driverPosition ) throws DataException
 	{
@@ -462,6 +747,14 @@ public class ResultSet extends ExceptionHandler
 	 */
 	public int getRowPosition( ) throws DataException
 	{
+		// the rows are read ahead of the fetched rows
+		if( m_prefetcher != null )
+			return m_prefetcher.getRowPosition( );
+		
+		// the driver's result set is ahead of the rows fetched from a block
+		if( m_blockFetcher != null )
+			return m_rowPosition;
+		
 	    final String methodName = "getRowPosition"; //$NON-NLS-1$
 		try
 		{
@@ -488,6 +781,10 @@ public class ResultSet extends ExceptionHandler
 	    final String methodName = "close"; //$NON-NLS-1$
 	    getLogger().entering( sm_className, methodName );
 	    
+	    // the driver's result set can only be closed once it is not read
+	    if( m_prefetcher != null )
+	    	m_prefetcher.close( );
+	    
 		try
 		{
 			m_resultSet.close( );
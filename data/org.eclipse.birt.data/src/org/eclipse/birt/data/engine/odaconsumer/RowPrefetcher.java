@@ -0,0 +1,247 @@
+/*
+ *****************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *
+ ******************************************************************************
+ */
+
+package org.eclipse.birt.data.engine.odaconsumer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Reads the rows of a <code>ResultSet</code> on a background thread, a block
+ * at a time, into a bounded queue the rows are then fetched from. The reading
+ * thread waits while the queue is full, so that at most the given number of
+ * blocks are read ahead of the fetched rows.
+ * <p>
+ * A block shorter than the block size is the last one. An exception thrown
+ * while reading the rows is put into the queue in place of the next block,
+ * and is thrown again when the rows before it are fetched.
+ */
+final class RowPrefetcher implements Runnable
+{
+	// how long a thread waits on the queue before it checks whether it is
+	// stopped, in milliseconds
+	private static final long POLL_INTERVAL = 100;
+
+	private final ResultSet m_resultSet;
+	private final int m_blockSize;
+	private final BlockingQueue<Object> m_queue;
+	private final ClassLoader m_contextClassLoader;
+	private volatile boolean m_stopped;
+	private Future<?> m_future;
+
+	// the fetching side
+	private IResultObject[] m_block;
+	private int m_blockRowIndex;
+	private boolean m_done;
+	private int m_rowPosition;
+
+	/**
+	 * @param resultSet	the result set whose rows are read
+	 * @param blockCount	the maximum number of blocks read ahead
+	 * @param blockSize	the number of rows of a block
+	 */
+	RowPrefetcher( ResultSet resultSet, int blockCount, int blockSize )
+	{
+		assert blockCount > 0 && blockSize > 0;
+		m_resultSet = resultSet;
+		m_blockSize = blockSize;
+		m_queue = new ArrayBlockingQueue<Object>( blockCount );
+		m_contextClassLoader = Thread.currentThread( ).getContextClassLoader( );
+	}
+
+	/**
+	 * Starts reading the rows.
+	 * @param executor	the threads the rows are read on
+	 */
+	void start( ExecutorService executor )
+	{
+		m_future = executor.submit( this );
+	}
+
+	/*
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run( )
+	{
+		// the driver may load its classes through the context class loader
+		Thread thread = Thread.currentThread( );
+		ClassLoader classLoader = thread.getContextClassLoader( );
+		thread.setContextClassLoader( m_contextClassLoader );
+		try
+		{
+			while( ! m_stopped )
+			{
+				IResultObject[] rows = m_resultSet.readRows( m_blockSize );
+				if( ! put( rows ) || rows.length < m_blockSize )
+					return;
+			}
+		}
+		catch( DataException ex )
+		{
+			put( ex );
+		}
+		catch( RuntimeException ex )
+		{
+			put( ex );
+		}
+		catch( Error ex )
+		{
+			put( ex );
+		}
+		finally
+		{
+			thread.setContextClassLoader( classLoader );
+		}
+	}
+
+	/*
+	 * Puts an item into the queue, waiting for room; returns false if the
+	 * reading is stopped first.
+	 */
+	private boolean put( Object item )
+	{
+		try
+		{
+			while( ! m_stopped )
+			{
+				if( m_queue.offer( item, POLL_INTERVAL, TimeUnit.MILLISECONDS ) )
+					return true;
+			}
+		}
+		catch( InterruptedException ex )
+		{
+			// the threads are being shut down
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next row read.
+	 * @return	the next row; null when there are no more rows or the reading
+	 * 			is stopped.
+	 * @throws DataException	if an error occurred when reading the row.
+	 */
+	IResultObject next( ) throws DataException
+	{
+		while( m_block == null || m_blockRowIndex == m_block.length )
+		{
+			if( m_done )
+				return null;
+			Object item = take( );
+			if( ! ( item instanceof IResultObject[] ) )
+			{
+				m_done = true;
+				m_block = null;
+				if( item instanceof DataException )
+					throw (DataException) item;
+				if( item instanceof RuntimeException )
+					throw (RuntimeException) item;
+				if( item instanceof Error )
+					throw (Error) item;
+				return null;
+			}
+			m_block = (IResultObject[]) item;
+			m_blockRowIndex = 0;
+			if( m_block.length < m_blockSize )
+				m_done = true;
+		}
+
+		IResultObject row = m_block[ m_blockRowIndex ];
+		m_block[ m_blockRowIndex++ ] = null;
+		m_rowPosition++;
+		return row;
+	}
+
+	/*
+	 * Takes the next item from the queue, waiting for it; returns null if the
+	 * reading is stopped first.
+	 */
+	private Object take( )
+	{
+		try
+		{
+			while( ! m_stopped )
+			{
+				Object item = m_queue.poll( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+				if( item != null )
+					return item;
+			}
+		}
+		catch( InterruptedException ex )
+		{
+			stop( );
+			Thread.currentThread( ).interrupt( );
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of rows fetched.
+	 */
+	int getRowPosition( )
+	{
+		return m_rowPosition;
+	}
+
+	/**
+	 * Stops reading the rows. The blocks read but not fetched yet are dropped,
+	 * and no more blocks are fetched. It can be called from any thread.
+	 */
+	void stop( )
+	{
+		m_stopped = true;
+		m_queue.clear( );
+	}
+
+	/**
+	 * Stops reading the rows and waits until the reading thread no longer
+	 * uses the result set, so that the result set can be closed.
+	 */
+	void close( )
+	{
+		stop( );
+		if( m_future == null )
+			return;
+
+		boolean interrupted = false;
+		while( true )
+		{
+			try
+			{
+				m_future.get( );
+				break;
+			}
+			catch( InterruptedException ex )
+			{
+				// the result set must not be closed while it is read
+				interrupted = true;
+			}
+			catch( ExecutionException ex )
+			{
+				// the exceptions are handed to the fetching side
+				break;
+			}
+		}
+		m_queue.clear( );
+		if( interrupted )
+			Thread.currentThread( ).interrupt( );
+	}
+}
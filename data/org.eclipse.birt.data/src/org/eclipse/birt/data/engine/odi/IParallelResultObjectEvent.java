@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.odi;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * A result object event which is able to process different result objects
+ * concurrently. Such an event is only processed in parallel when all the work
+ * it has to do for the current result set is free of side effects, which is
+ * decided by prepareParallelProcess. Otherwise it is processed row by row
+ * through the process method of IResultObjectEvent.
+ */
+
+public interface IParallelResultObjectEvent extends IResultObjectEvent
+{
+	/**
+	 * Prepare the event to process the result objects of given meta data, and
+	 * return whether these result objects can be processed in parallel. This
+	 * method is called by the thread which fetches the result objects before
+	 * any of them is processed.
+	 *
+	 * @param resultClass
+	 * @return true if processInParallel can be called concurrently for
+	 *         different result objects
+	 * @throws DataException
+	 */
+	public boolean prepareParallelProcess( IResultClass resultClass )
+			throws DataException;
+
+	/**
+	 * Process the provided result object in the same way as process, without
+	 * touching any state shared with other result objects. This method is only
+	 * called after prepareParallelProcess returns true.
+	 *
+	 * @param resultObject
+	 * @param rowIndex
+	 * @return true if resultObject should be accepted, false if resultObject
+	 *         should be excluded
+	 * @throws DataException
+	 */
+	public boolean processInParallel( IResultObject resultObject, int rowIndex )
+			throws DataException;
+}
@@ -41,6 +41,8 @@ public class CubeMaterializer
 {
 	private IDocumentManager documentManager;
 	private DataEngine dataEngine;
+	private int parallelBuildThreads = 0;
+	private boolean bitmapIndex = false;
 	
 	/**
 	 * 
@@ -98,6 +100,29 @@ public class CubeMaterializer
 		dataEngine.addShutdownListener( new DocManagerReleaser( dataEngine ) );
 	}
 	
+	/**
+	 * Set the number of threads used to build the cubes, see
+	 * DataEngine.PARALLEL_CUBE_BUILD_THREADS. Zero or one builds the cubes in
+	 * the calling thread only.
+	 * 
+	 * @param parallelBuildThreads
+	 */
+	public void setParallelBuildThreads( int parallelBuildThreads )
+	{
+		this.parallelBuildThreads = parallelBuildThreads;
+	}
+	
+	/**
+	 * Set whether the fact table segments of the cubes are saved with a bitmap
+	 * index, see DataEngine.FACT_TABLE_BITMAP_INDEX.
+	 * 
+	 * @param bitmapIndex
+	 */
+	public void setBitmapIndex( boolean bitmapIndex )
+	{
+		this.bitmapIndex = bitmapIndex;
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -234,6 +259,8 @@ public class CubeMaterializer
 			throw new DataException( ResourceConstants.MISSING_DIMENSION_IN_CUBE, name );
 		}
 		Cube cube = new Cube( name, documentManager );
+		cube.setParallelBuildThreads( parallelBuildThreads );
+		cube.setBitmapIndex( bitmapIndex );
 		cube.create(factTableJointColumnNames, DimJointColumnNames, dimensions,
 				factTable, measureColumns, calculatedMeasure, measureAggrFunctionNames, cacheSize, stopSign);
 		cube.close( );
@@ -265,6 +292,11 @@ public class CubeMaterializer
 			while ( FTSUName != null )
 			{
 				saveDocObjToReportDocument( FTSUName, writer, stopSign );
+				String FTSUIndexName = NamingUtil.getFTSUIndexName( FTSUName );
+				if ( documentManager.exist( FTSUIndexName ) )
+				{
+					saveDocObjToReportDocument( FTSUIndexName, writer, stopSign );
+				}
 				FTSUName = documentObject.readString( );
 			}
 		}
@@ -39,6 +39,8 @@ public class Cube implements ICube
 	protected IDocumentManager documentManager;
 	protected IDimension[] dimension;
 	private FactTable factTable;
+	private int parallelBuildThreads = 0;
+	private boolean bitmapIndex = false;
 
 	private static Logger logger = Logger.getLogger( Cube.class.getName( ) );
 
@@ -58,6 +60,28 @@ public class Cube implements ICube
 		logger.exiting( Cube.class.getName( ), "Cube" );
 	}
 
+	/**
+	 * Set the number of threads used to create the fact table of this cube.
+	 * Zero or one creates it in the calling thread only.
+	 * 
+	 * @param parallelBuildThreads
+	 */
+	public void setParallelBuildThreads( int parallelBuildThreads )
+	{
+		this.parallelBuildThreads = parallelBuildThreads;
+	}
+
+	/**
+	 * Set whether the segments of the fact table of this cube are saved with
+	 * a bitmap index.
+	 * 
+	 * @param bitmapIndex
+	 */
+	public void setBitmapIndex( boolean bitmapIndex )
+	{
+		this.bitmapIndex = bitmapIndex;
+	}
+
 	/**
 	 * 
 	 * @param keyColumnNames
@@ -124,6 +148,8 @@ public class Cube implements ICube
 		}
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
 		factTableConstructor.setMemoryCacheSize( cacheSize );
+		factTableConstructor.setParallelBuildThreads( parallelBuildThreads );
+		factTableConstructor.setBitmapIndex( bitmapIndex );
 		factTable = factTableConstructor.saveFactTable( name,
 				factTableJointColumnNames,
 				DimJointColumnNames,
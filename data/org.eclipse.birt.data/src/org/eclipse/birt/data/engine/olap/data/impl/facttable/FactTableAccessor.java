@@ -22,6 +22,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -29,6 +31,7 @@ import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.StopSign;
@@ -62,6 +65,13 @@ public class FactTableAccessor
 	private IDocumentManager documentManager =null;
 	private static Logger logger = Logger.getLogger( FactTableAccessor.class.getName( ) );
 	private long memoryCacheSize = 0;
+	private int parallelBuildThreads = 0;
+	private boolean bitmapIndex = false;
+	
+	/**
+	 * the number of fact table rows located by a task of the parallel build
+	 */
+	private static final int ROWS_PER_TASK = 4096;
 	
 	public FactTableAccessor( IDocumentManager documentManager )
 	{
@@ -121,62 +131,52 @@ public class FactTableAccessor
 				segmentCount );
 		
 		int[][][] columnIndex = getColumnIndex( DimJointColumnNames, dimensions );
-		DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
-		for ( int i = 0; i < dimensionSeekers.length; i++ )
-		{
-			dimensionSeekers[i] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[i],
-					dimensions[i].getAllRows( stopSign ) ) );
-		}
+		DimensionPositionSeeker[] dimensionSeekers = getDimensionSeekers( columnIndex,
+				dimensions,
+				stopSign );
 		
-		int[] dimensionPosition = new int[dimensions.length];
 		DocumentObjectCache documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
-		CombinedPositionContructor combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
+		FactTableRowLocator rowLocator = new FactTableRowLocator( factTableName,
+				factTableJointColumnNames,
+				dimensions,
+				dimensionSeekers,
+				subDimensions );
 		
 		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager, factTableName );
-		FactTableRow currentRow = sortedFactTableRows.pop( );
-		boolean invalidDimensionKey = false;
 		int invalidRowNumber = 0;
-		while ( currentRow != null && !stopSign.isStopped( ) )
-		{			
-			invalidDimensionKey = false;
-			for ( int i = 0; i < dimensionPosition.length; i++ )
+		if ( parallelBuildThreads > 1 )
+		{
+			invalidRowNumber = saveFactTableRowsInParallel( sortedFactTableRows,
+					rowLocator,
+					measureInfo,
+					documentObjectManager,
+					saveHelper,
+					stopSign );
+		}
+		else
+		{
+			byte[][] combinedPosition = new byte[1][];
+			FactTableRow currentRow = sortedFactTableRows.pop( );
+			while ( currentRow != null && !stopSign.isStopped( ) )
 			{
-				dimensionPosition[i] = dimensionSeekers[i].find( currentRow.getDimensionKeys()[i] );
-				if ( dimensionPosition[i] < 0 )
+				String FTSUDocName = rowLocator.locate( currentRow,
+						combinedPosition,
+						0 );
+				if ( FTSUDocName == null )
 				{
-					invalidDimensionKey = true;
-					logger.fine( "The fact table of cube " 
-							+ factTableName + 
-							" has an invalid data row where the value of dimension key " + 
-							Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
-							currentRow.getDimensionKeys()[i].toString( ) + 
-							" which however does not exist in dimension "+ 
-							dimensions[i].getName( ) +"." );
+					invalidRowNumber++;
+				}
+				else
+				{
+					writeFactTableRow( FTSUDocName,
+							combinedPosition[0],
+							currentRow,
+							measureInfo,
+							documentObjectManager,
+							saveHelper );
 				}
-			}
-			if( invalidDimensionKey )
-			{
 				currentRow = sortedFactTableRows.pop( );
-				invalidRowNumber ++;
-				continue;
-			}
-			int[] subDimensionIndex = getSubDimensionIndex( dimensionPosition,
-					subDimensions );
-			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
-					NamingUtil.getFactTableName( factTableName ),
-					subDimensionIndex );
-			saveHelper.add( FTSUDocName );
-			
-			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
-			documentObject.writeBytes( new Bytes( combinedPositionCalculator.
-					calculateCombinedPosition( subDimensionIndex, dimensionPosition ).toByteArray( ) ) );
-			for( int i=0;i<measureInfo.length;i++)
-			{
-				DocumentObjectUtil.writeValue( documentObject,
-						measureInfo[i].getDataType(),
-						currentRow.getMeasures()[i] );
 			}
-			currentRow = sortedFactTableRows.pop( );
 		}
 		saveHelper.save( );
 		if( invalidRowNumber > 0 )
@@ -187,15 +187,232 @@ public class FactTableAccessor
 				+ "invalid rows where the value of dimension key does not exist in dimension.");
 		}
 		documentObjectManager.closeAll( );
-		documentManager.flush( );
-		return new FactTable( factTableName,
+		FactTable factTable = new FactTable( factTableName,
 				documentManager,
 				dimensionInfo,
 				measureInfo,
 				calMeasureInfo,
 				segmentCount,
 				subDimensions);
+		if ( bitmapIndex )
+		{
+			FactTableSegmentIndex.saveAll( factTable, stopSign );
+		}
+		documentManager.flush( );
+		return factTable;
+		
+	}
+
+	/**
+	 * Create the seekers finding the position of the dimension members. The
+	 * dimension rows are read one dimension after another, while the keys of
+	 * the different dimensions are sorted at the same time in parallel build
+	 * mode.
+	 * 
+	 * @param columnIndex
+	 * @param dimensions
+	 * @param stopSign
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private DimensionPositionSeeker[] getDimensionSeekers(
+			final int[][][] columnIndex, Dimension[] dimensions,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		final DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
+		if ( parallelBuildThreads <= 1 || dimensions.length <= 1 )
+		{
+			for ( int i = 0; i < dimensionSeekers.length; i++ )
+			{
+				dimensionSeekers[i] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[i],
+						dimensions[i].getAllRows( stopSign ) ) );
+			}
+			return dimensionSeekers;
+		}
+
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		for ( int i = 0; i < dimensionSeekers.length; i++ )
+		{
+			// the dimension rows are read from the shared document manager
+			final int index = i;
+			final IDiskArray dimensionRows = dimensions[i].getAllRows( stopSign );
+			futures.add( CacheUtil.getExecutorService( ).submit( new Callable<Object>( ) {
+
+				public Object call( ) throws IOException
+				{
+					dimensionSeekers[index] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[index],
+							dimensionRows ) );
+					return null;
+				}
+			} ) );
+		}
+		waitFor( futures );
+		return dimensionSeekers;
+	}
+
+	/**
+	 * Save the fact table rows by batches. The segment and the combined
+	 * position of the rows of a batch are calculated by several threads, then
+	 * the rows are written in order to their segments.
+	 * 
+	 * @param sortedFactTableRows
+	 * @param rowLocator
+	 * @param measureInfo
+	 * @param documentObjectManager
+	 * @param saveHelper
+	 * @param stopSign
+	 * @return the number of invalid rows
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private int saveFactTableRowsInParallel(
+			FacttableRowContainer sortedFactTableRows,
+			final FactTableRowLocator rowLocator, MeasureInfo[] measureInfo,
+			DocumentObjectCache documentObjectManager,
+			FTSUNameSaveHelper saveHelper, StopSign stopSign )
+			throws IOException, DataException
+	{
+		final FactTableRow[] rows = new FactTableRow[parallelBuildThreads
+				* ROWS_PER_TASK];
+		final String[] FTSUDocNames = new String[rows.length];
+		final byte[][] combinedPositions = new byte[rows.length][];
+		int invalidRowNumber = 0;
+		while ( !stopSign.isStopped( ) )
+		{
+			int count = 0;
+			FactTableRow currentRow = null;
+			while ( count < rows.length
+					&& ( currentRow = sortedFactTableRows.pop( ) ) != null )
+			{
+				rows[count++] = currentRow;
+			}
+			if ( count == 0 )
+			{
+				break;
+			}
+
+			List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+			for ( int start = ROWS_PER_TASK; start < count; start += ROWS_PER_TASK )
+			{
+				final int from = start;
+				final int to = Math.min( count, start + ROWS_PER_TASK );
+				futures.add( CacheUtil.getExecutorService( ).submit( new Callable<Object>( ) {
+
+					public Object call( ) throws IOException
+					{
+						locateRows( rowLocator,
+								rows,
+								from,
+								to,
+								FTSUDocNames,
+								combinedPositions );
+						return null;
+					}
+				} ) );
+			}
+			locateRows( rowLocator,
+					rows,
+					0,
+					Math.min( count, ROWS_PER_TASK ),
+					FTSUDocNames,
+					combinedPositions );
+			waitFor( futures );
+
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( FTSUDocNames[i] == null )
+				{
+					invalidRowNumber++;
+				}
+				else
+				{
+					writeFactTableRow( FTSUDocNames[i],
+							combinedPositions[i],
+							rows[i],
+							measureInfo,
+							documentObjectManager,
+							saveHelper );
+				}
+				rows[i] = null;
+			}
+			if ( currentRow == null )
+			{
+				break;
+			}
+		}
+		return invalidRowNumber;
+	}
+
+	/**
+	 * 
+	 * @param rowLocator
+	 * @param rows
+	 * @param from
+	 * @param to
+	 * @param FTSUDocNames
+	 * @param combinedPositions
+	 * @throws IOException
+	 */
+	private static void locateRows( FactTableRowLocator rowLocator,
+			FactTableRow[] rows, int from, int to, String[] FTSUDocNames,
+			byte[][] combinedPositions ) throws IOException
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			FTSUDocNames[i] = rowLocator.locate( rows[i], combinedPositions, i );
+		}
+	}
+
+	/**
+	 * Wait for the tasks of the parallel build, the IOException thrown by a
+	 * task is thrown again.
+	 * 
+	 * @param futures
+	 * @throws IOException
+	 */
+	private static void waitFor( List<Future<Object>> futures )
+			throws IOException
+	{
+		try
+		{
+			CacheUtil.waitFor( futures );
+		}
+		catch ( RuntimeException e )
+		{
+			if ( e.getCause( ) instanceof IOException )
+				throw (IOException) e.getCause( );
+			throw e;
+		}
+	}
+
+	/**
+	 * 
+	 * @param FTSUDocName
+	 * @param combinedPosition
+	 * @param row
+	 * @param measureInfo
+	 * @param documentObjectManager
+	 * @param saveHelper
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static void writeFactTableRow( String FTSUDocName,
+			byte[] combinedPosition, FactTableRow row,
+			MeasureInfo[] measureInfo,
+			DocumentObjectCache documentObjectManager,
+			FTSUNameSaveHelper saveHelper ) throws IOException, DataException
+	{
+		saveHelper.add( FTSUDocName );
 		
+		IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
+		documentObject.writeBytes( new Bytes( combinedPosition ) );
+		for( int i=0;i<measureInfo.length;i++)
+		{
+			DocumentObjectUtil.writeValue( documentObject,
+					measureInfo[i].getDataType(),
+					row.getMeasures()[i] );
+		}
 	}
 
 	private FacttableRowContainer populatedSortedFacttableRowsWithAggregationCalculation(
@@ -529,6 +746,29 @@ public class FactTableAccessor
 		this.memoryCacheSize = memoryCacheSize;
 	}
 
+	/**
+	 * Set the number of threads used to save the fact table. Zero or one saves
+	 * the fact table in the calling thread only.
+	 * 
+	 * @param parallelBuildThreads
+	 */
+	public void setParallelBuildThreads( int parallelBuildThreads )
+	{
+		this.parallelBuildThreads = parallelBuildThreads;
+	}
+
+	/**
+	 * Set whether a bitmap index is saved with each segment of the fact
+	 * table, so that the rows selected by dimension filters are read without
+	 * reading the whole segments.
+	 * 
+	 * @param bitmapIndex
+	 */
+	public void setBitmapIndex( boolean bitmapIndex )
+	{
+		this.bitmapIndex = bitmapIndex;
+	}
+
 	private static int getObjectSize( int[] dataType) {
 		int size = 0;
 		for( int i = 0; i < dataType.length; i++ )
@@ -687,7 +927,7 @@ public class FactTableAccessor
 	 * @param dimensionDivision
 	 * @return
 	 */
-	private static int[] getSubDimensionIndex( int[] dimensionPosition,
+	static int[] getSubDimensionIndex( int[] dimensionPosition,
 			DimensionDivision[] dimensionDivision )
 	{
 		assert dimensionPosition.length == dimensionDivision.length;
@@ -772,10 +1012,11 @@ public class FactTableAccessor
 				'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'
 		};
 
-		private static char[] buffer = new char[500];
-
 		public static String getDocumentObjectName( String factTableName, int[] subDimensionNumber )
 		{
+			// the names are also built by the threads saving a fact table in
+			// parallel
+			char[] buffer = new char[subDimensionNumber.length * 11];
 			int radix = 10;
 			
 			int position = 0;
@@ -813,6 +1054,85 @@ interface FacttableRowContainer
 	public FactTableRow pop( ) throws IOException;
 	public int size( );
 }
+/**
+ * Find the segment and the combined position of the fact table rows. It may
+ * be used by several threads at the same time.
+ */
+class FactTableRowLocator
+{
+	private static Logger logger = Logger.getLogger( FactTableRowLocator.class.getName( ) );
+	private String factTableName;
+	private String[][] factTableJointColumnNames;
+	private Dimension[] dimensions;
+	private DimensionPositionSeeker[] dimensionSeekers;
+	private DimensionDivision[] subDimensions;
+	private CombinedPositionContructor combinedPositionCalculator;
+	
+	/**
+	 * 
+	 * @param factTableName
+	 * @param factTableJointColumnNames
+	 * @param dimensions
+	 * @param dimensionSeekers
+	 * @param subDimensions
+	 */
+	FactTableRowLocator( String factTableName,
+			String[][] factTableJointColumnNames, Dimension[] dimensions,
+			DimensionPositionSeeker[] dimensionSeekers,
+			DimensionDivision[] subDimensions )
+	{
+		this.factTableName = factTableName;
+		this.factTableJointColumnNames = factTableJointColumnNames;
+		this.dimensions = dimensions;
+		this.dimensionSeekers = dimensionSeekers;
+		this.subDimensions = subDimensions;
+		this.combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 * @param combinedPositions
+	 *            receives the combined position of the row at the index
+	 * @param index
+	 * @return the name of the segment document object of the row, or null if
+	 *         a dimension key of the row does not exist in its dimension
+	 * @throws IOException
+	 */
+	String locate( FactTableRow row, byte[][] combinedPositions, int index )
+			throws IOException
+	{
+		int[] dimensionPosition = new int[dimensionSeekers.length];
+		boolean invalidDimensionKey = false;
+		for ( int i = 0; i < dimensionPosition.length; i++ )
+		{
+			dimensionPosition[i] = dimensionSeekers[i].find( row.getDimensionKeys()[i] );
+			if ( dimensionPosition[i] < 0 )
+			{
+				invalidDimensionKey = true;
+				logger.fine( "The fact table of cube " 
+						+ factTableName + 
+						" has an invalid data row where the value of dimension key " + 
+						Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
+						row.getDimensionKeys()[i].toString( ) + 
+						" which however does not exist in dimension "+ 
+						dimensions[i].getName( ) +"." );
+			}
+		}
+		if ( invalidDimensionKey )
+		{
+			return null;
+		}
+		int[] subDimensionIndex = FactTableAccessor.getSubDimensionIndex( dimensionPosition,
+				subDimensions );
+		combinedPositions[index] = combinedPositionCalculator.calculateCombinedPosition( subDimensionIndex,
+				dimensionPosition )
+				.toByteArray( );
+		return FactTableAccessor.FTSUDocumentObjectNamingUtil.getDocumentObjectName( NamingUtil.getFactTableName( factTableName ),
+				subDimensionIndex );
+	}
+}
+
 /**
  * 
  * @author Administrator
@@ -1040,7 +1360,7 @@ class DimensionDivider
 		 * @return
 		 * @throws IOException
 		 */
-		private int traverseFind( DimensionKey key ) throws IOException
+		private synchronized int traverseFind( DimensionKey key ) throws IOException
 		{
 			for ( int i = position; i < diskMemberArray.size( ); i++ )
 			{
@@ -35,6 +35,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionResultIter
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.FTSUDocumentObjectNamingUtil;
 import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.CompressedBitmap;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
 import org.eclipse.birt.data.engine.olap.util.filter.ICubePosFilter;
@@ -87,6 +88,10 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private int[] lastCurrentPos;
 	private boolean lastFilterResult;
 	private boolean isDuplicatedRow;
+	// the offsets of the rows of the current segment selected by its bitmap
+	// index, null if all the rows of the segment are read
+	private int[] selectedRowOffsets;
+	private int selectedRowPointer;
 	
 	/**
 	 * 
@@ -236,6 +241,14 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				{
 					return false;
 				}
+				if ( selectedRowOffsets != null )
+				{
+					if ( selectedRowPointer >= selectedRowOffsets.length )
+					{
+						break;
+					}
+					currentSegment.seek( selectedRowOffsets[selectedRowPointer++] );
+				}
 				Bytes combinedDimensionPosition = currentSegment.readBytes( );
 				if( this.lastCombinedDimensionPosition == null )
 				{
@@ -519,11 +532,6 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				continue;
 			}
 			
-			if( currentSegment != null )
-				currentSegment.close( );
-			
-			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
-			
 			for ( int i = 0; i < dimensionIndex.length; i++ )
 			{
 				if ( dimensionIndex[i] != -1 )
@@ -539,11 +547,82 @@ public class FactTableRowIterator implements IFactTableRowIterator
 					}
 				}
 			}
+			
+			if ( !selectIndexedRows( FTSUDocName ) )
+			{
+				continue;
+			}
+			
+			if( currentSegment != null )
+				currentSegment.close( );
+			
+			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
 			break;
 		}
 		return true;
 	}
 
+	/**
+	 * Select the rows of a segment through its bitmap index, if the segment is
+	 * indexed and some dimensions are filtered. The selected rows are read one
+	 * by one only if they are less than half of the segment rows, otherwise
+	 * the whole segment is read.
+	 * 
+	 * @param FTSUDocName
+	 * @return false if no row of the segment is selected
+	 * @throws IOException
+	 */
+	private boolean selectIndexedRows( String FTSUDocName ) throws IOException
+	{
+		selectedRowOffsets = null;
+		selectedRowPointer = 0;
+		boolean existDimensionFilter = false;
+		for ( int i = 0; i < dimensionIndex.length; i++ )
+		{
+			if ( dimensionIndex[i] != -1 )
+			{
+				existDimensionFilter = true;
+			}
+		}
+		if ( !existDimensionFilter )
+		{
+			return true;
+		}
+		FactTableSegmentIndex index = FactTableSegmentIndex.open( factTable.getDocumentManager( ),
+				FTSUDocName );
+		if ( index == null )
+		{
+			return true;
+		}
+		try
+		{
+			CompressedBitmap rows = null;
+			for ( int i = 0; i < dimensionIndex.length; i++ )
+			{
+				if ( dimensionIndex[i] != -1 )
+				{
+					CompressedBitmap dimensionRows = index.getRows( i,
+							selectedPosOfCurSegment[i] );
+					rows = rows == null ? dimensionRows
+							: rows.and( dimensionRows );
+					if ( rows.isEmpty( ) )
+					{
+						return false;
+					}
+				}
+			}
+			if ( rows.getCardinality( ) * 2 < index.getRowCount( ) )
+			{
+				selectedRowOffsets = index.getRowOffsets( rows.toArray( ) );
+			}
+			return true;
+		}
+		finally
+		{
+			index.close( );
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.impl.facttable.IFactTableRowIterator#getDimensionCount()
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.Traversalor;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.FTSUDocumentObjectNamingUtil;
+import org.eclipse.birt.data.engine.olap.data.util.CompressedBitmap;
+
+/**
+ * The bitmap index of a fact table segment. For each dimension, it keeps the
+ * set of the rows of the segment which have each dimension position found in
+ * the segment. The offsets of the rows in the segment are saved as well, so
+ * that the rows selected by the dimension filters are read without reading the
+ * other rows.
+ */
+
+class FactTableSegmentIndex
+{
+	private IDocumentObject documentObject;
+	private int rowCount;
+	/**
+	 * the offset of the row offsets in the index
+	 */
+	private long rowOffsetsStart;
+	/**
+	 * the offset of the bitmaps of each dimension in the index
+	 */
+	private long[] dimensionStarts;
+
+	private FactTableSegmentIndex( IDocumentObject documentObject )
+			throws IOException
+	{
+		this.documentObject = documentObject;
+		this.rowCount = documentObject.readInt( );
+		this.rowOffsetsStart = documentObject.getFilePointer( );
+		documentObject.seek( rowOffsetsStart + rowCount * 4L );
+		this.dimensionStarts = new long[documentObject.readInt( )];
+		for ( int i = 0; i < dimensionStarts.length; i++ )
+		{
+			int length = documentObject.readInt( );
+			dimensionStarts[i] = documentObject.getFilePointer( );
+			documentObject.seek( dimensionStarts[i] + length );
+		}
+	}
+
+	/**
+	 * Open the index of a segment.
+	 *
+	 * @param documentManager
+	 * @param FTSUDocName
+	 * @return the index, or null if the segment is not indexed
+	 * @throws IOException
+	 */
+	static FactTableSegmentIndex open( IDocumentManager documentManager,
+			String FTSUDocName ) throws IOException
+	{
+		String indexName = NamingUtil.getFTSUIndexName( FTSUDocName );
+		if ( !documentManager.exist( indexName ) )
+		{
+			return null;
+		}
+		return new FactTableSegmentIndex( documentManager.openDocumentObject( indexName ) );
+	}
+
+	/**
+	 * @return the count of rows in the segment
+	 */
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @param dimensionIndex
+	 * @param positions
+	 *            the selected dimension positions, in ascending order
+	 * @return the rows of the segment having one of the dimension positions
+	 * @throws IOException
+	 */
+	CompressedBitmap getRows( int dimensionIndex, int[] positions )
+			throws IOException
+	{
+		CompressedBitmap result = new CompressedBitmap( );
+		documentObject.seek( dimensionStarts[dimensionIndex] );
+		int count = documentObject.readInt( );
+		for ( int i = 0; i < count; i++ )
+		{
+			int position = documentObject.readInt( );
+			int length = documentObject.readInt( );
+			if ( Arrays.binarySearch( positions, position ) >= 0 )
+			{
+				result = result.or( CompressedBitmap.read( documentObject ) );
+			}
+			else
+			{
+				documentObject.seek( documentObject.getFilePointer( ) + length );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param rows
+	 *            the rows in ascending order
+	 * @return the offsets of the rows in the segment
+	 * @throws IOException
+	 */
+	int[] getRowOffsets( int[] rows ) throws IOException
+	{
+		int[] offsets = new int[rows.length];
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			documentObject.seek( rowOffsetsStart + rows[i] * 4L );
+			offsets[i] = documentObject.readInt( );
+		}
+		return offsets;
+	}
+
+	void close( ) throws IOException
+	{
+		documentObject.close( );
+	}
+
+	/**
+	 * Save the index of all the segments of a fact table.
+	 *
+	 * @param factTable
+	 * @param stopSign
+	 * @throws IOException
+	 */
+	static void saveAll( FactTable factTable, StopSign stopSign )
+			throws IOException
+	{
+		DimensionDivision[] dimensionDivisions = factTable.getDimensionDivision( );
+		int[] subDimensionCount = new int[dimensionDivisions.length];
+		for ( int i = 0; i < subDimensionCount.length; i++ )
+		{
+			subDimensionCount[i] = dimensionDivisions[i].getRanges( ).length;
+		}
+		Traversalor traversalor = new Traversalor( subDimensionCount );
+		while ( traversalor.next( ) && !stopSign.isStopped( ) )
+		{
+			int[] subDimensionIndex = traversalor.getIntArray( );
+			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( NamingUtil.getFactTableName( factTable.getName( ) ),
+					subDimensionIndex );
+			if ( factTable.getDocumentManager( ).exist( FTSUDocName ) )
+			{
+				save( factTable, FTSUDocName, subDimensionIndex );
+			}
+		}
+	}
+
+	/**
+	 * Read a segment and save its index.
+	 *
+	 * @param factTable
+	 * @param FTSUDocName
+	 * @param subDimensionIndex
+	 * @throws IOException
+	 */
+	private static void save( FactTable factTable, String FTSUDocName,
+			int[] subDimensionIndex ) throws IOException
+	{
+		IDocumentManager documentManager = factTable.getDocumentManager( );
+		MeasureInfo[] measureInfo = factTable.getMeasureInfo( );
+		int dimensionCount = factTable.getDimensionInfo( ).length;
+		Map[] positionRows = new Map[dimensionCount];
+		for ( int i = 0; i < dimensionCount; i++ )
+		{
+			positionRows[i] = new HashMap( );
+		}
+
+		IDocumentObject segment = documentManager.openDocumentObject( FTSUDocName );
+		IDocumentObject index = documentManager.createDocumentObject( NamingUtil.getFTSUIndexName( FTSUDocName ) );
+		// the row offsets are written before the row count is known
+		index.writeInt( 0 );
+		int rowCount = 0;
+		long length = segment.length( );
+		while ( segment.getFilePointer( ) < length )
+		{
+			index.writeInt( (int) segment.getFilePointer( ) );
+			int[] dimensionPosition = factTable.getCombinedPositionCalculator( )
+					.calculateDimensionPosition( subDimensionIndex,
+							segment.readBytes( ).bytesValue( ) );
+			for ( int i = 0; i < measureInfo.length; i++ )
+			{
+				DocumentObjectUtil.readValue( segment,
+						measureInfo[i].getDataType( ) );
+			}
+			for ( int i = 0; i < dimensionCount; i++ )
+			{
+				Integer position = Integer.valueOf( dimensionPosition[i] );
+				CompressedBitmap rows = (CompressedBitmap) positionRows[i].get( position );
+				if ( rows == null )
+				{
+					rows = new CompressedBitmap( );
+					positionRows[i].put( position, rows );
+				}
+				rows.add( rowCount );
+			}
+			rowCount++;
+		}
+		segment.close( );
+
+		index.writeInt( dimensionCount );
+		for ( int i = 0; i < dimensionCount; i++ )
+		{
+			long lengthOffset = index.getFilePointer( );
+			index.writeInt( 0 );
+			Integer[] positions = (Integer[]) positionRows[i].keySet( )
+					.toArray( new Integer[0] );
+			Arrays.sort( positions );
+			index.writeInt( positions.length );
+			for ( int j = 0; j < positions.length; j++ )
+			{
+				index.writeInt( positions[j].intValue( ) );
+				long bitmapOffset = index.getFilePointer( );
+				index.writeInt( 0 );
+				( (CompressedBitmap) positionRows[i].get( positions[j] ) ).write( index );
+				writeLength( index, bitmapOffset );
+			}
+			writeLength( index, lengthOffset );
+		}
+		index.seek( 0 );
+		index.writeInt( rowCount );
+		index.close( );
+	}
+
+	/**
+	 * Write at the offset the length of the data written after it.
+	 *
+	 * @param documentObject
+	 * @param offset
+	 * @throws IOException
+	 */
+	private static void writeLength( IDocumentObject documentObject,
+			long offset ) throws IOException
+	{
+		long end = documentObject.getFilePointer( );
+		documentObject.seek( offset );
+		documentObject.writeInt( (int) ( end - offset - 4 ) );
+		documentObject.seek( end );
+	}
+}
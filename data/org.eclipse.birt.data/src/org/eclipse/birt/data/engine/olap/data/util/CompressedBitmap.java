@@ -0,0 +1,579 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+
+/**
+ * A compressed set of non-negative integers. The integers are grouped by their
+ * upper 16 bits into chunks. A chunk holding few integers keeps their lower 16
+ * bits in a sorted array, and a chunk holding many integers keeps a bitmap of
+ * 65536 bits.
+ */
+
+public class CompressedBitmap
+{
+	/**
+	 * the maximum count of integers kept in the array of a chunk
+	 */
+	static final int MAX_ARRAY_SIZE = 4096;
+	private static final int BITMAP_LENGTH = 1024;
+
+	private char[] keys;
+	/**
+	 * the chunks, either a char array or a long array
+	 */
+	private Object[] chunks;
+	private int[] cardinalities;
+	private int size;
+
+	public CompressedBitmap( )
+	{
+		this( 4 );
+	}
+
+	private CompressedBitmap( int capacity )
+	{
+		keys = new char[Math.max( capacity, 1 )];
+		chunks = new Object[keys.length];
+		cardinalities = new int[keys.length];
+	}
+
+	/**
+	 * Add an integer into this set.
+	 *
+	 * @param value
+	 *            a non-negative integer
+	 */
+	public void add( int value )
+	{
+		assert value >= 0;
+		char key = (char) ( value >>> 16 );
+		char low = (char) value;
+		int index = findChunk( key );
+		if ( index < 0 )
+		{
+			index = -index - 1;
+			insertChunk( index, key, new char[4], 0 );
+		}
+		if ( chunks[index] instanceof long[] )
+		{
+			long[] bitmap = (long[]) chunks[index];
+			if ( ( bitmap[low >>> 6] & ( 1L << low ) ) == 0 )
+			{
+				bitmap[low >>> 6] |= 1L << low;
+				cardinalities[index]++;
+			}
+			return;
+		}
+		char[] array = (char[]) chunks[index];
+		int count = cardinalities[index];
+		int pos = binarySearch( array, count, low );
+		if ( pos >= 0 )
+		{
+			return;
+		}
+		pos = -pos - 1;
+		if ( count == MAX_ARRAY_SIZE )
+		{
+			long[] bitmap = toBitmap( array, count );
+			bitmap[low >>> 6] |= 1L << low;
+			chunks[index] = bitmap;
+			cardinalities[index]++;
+			return;
+		}
+		if ( count == array.length )
+		{
+			char[] newArray = new char[Math.min( MAX_ARRAY_SIZE, count * 2 )];
+			System.arraycopy( array, 0, newArray, 0, count );
+			array = newArray;
+			chunks[index] = array;
+		}
+		System.arraycopy( array, pos, array, pos + 1, count - pos );
+		array[pos] = low;
+		cardinalities[index]++;
+	}
+
+	/**
+	 * @param value
+	 * @return whether this set contains the integer
+	 */
+	public boolean contains( int value )
+	{
+		int index = findChunk( (char) ( value >>> 16 ) );
+		if ( value < 0 || index < 0 )
+		{
+			return false;
+		}
+		char low = (char) value;
+		if ( chunks[index] instanceof long[] )
+		{
+			return ( ( (long[]) chunks[index] )[low >>> 6] & ( 1L << low ) ) != 0;
+		}
+		return binarySearch( (char[]) chunks[index], cardinalities[index], low ) >= 0;
+	}
+
+	/**
+	 * @return the count of integers in this set
+	 */
+	public int getCardinality( )
+	{
+		int cardinality = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			cardinality += cardinalities[i];
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return whether this set is empty
+	 */
+	public boolean isEmpty( )
+	{
+		return size == 0;
+	}
+
+	/**
+	 * @param other
+	 * @return the intersection of this set and the other set
+	 */
+	public CompressedBitmap and( CompressedBitmap other )
+	{
+		CompressedBitmap result = new CompressedBitmap( Math.min( size,
+				other.size ) );
+		int i = 0, j = 0;
+		while ( i < size && j < other.size )
+		{
+			if ( keys[i] < other.keys[j] )
+			{
+				i++;
+			}
+			else if ( keys[i] > other.keys[j] )
+			{
+				j++;
+			}
+			else
+			{
+				result.appendChunk( keys[i], and( chunks[i],
+						cardinalities[i],
+						other.chunks[j],
+						other.cardinalities[j] ) );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param other
+	 * @return the union of this set and the other set
+	 */
+	public CompressedBitmap or( CompressedBitmap other )
+	{
+		CompressedBitmap result = new CompressedBitmap( size + other.size );
+		int i = 0, j = 0;
+		while ( i < size || j < other.size )
+		{
+			if ( j >= other.size || ( i < size && keys[i] < other.keys[j] ) )
+			{
+				result.appendChunk( keys[i], copy( chunks[i],
+						cardinalities[i] ) );
+				i++;
+			}
+			else if ( i >= size || keys[i] > other.keys[j] )
+			{
+				result.appendChunk( other.keys[j], copy( other.chunks[j],
+						other.cardinalities[j] ) );
+				j++;
+			}
+			else
+			{
+				result.appendChunk( keys[i], or( chunks[i],
+						cardinalities[i],
+						other.chunks[j],
+						other.cardinalities[j] ) );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the integers of this set in ascending order
+	 */
+	public int[] toArray( )
+	{
+		int[] result = new int[getCardinality( )];
+		int pos = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			int high = keys[i] << 16;
+			if ( chunks[i] instanceof long[] )
+			{
+				long[] bitmap = (long[]) chunks[i];
+				for ( int k = 0; k < bitmap.length; k++ )
+				{
+					long word = bitmap[k];
+					while ( word != 0 )
+					{
+						result[pos++] = high
+								| ( k << 6 )
+								| Long.numberOfTrailingZeros( word );
+						word &= word - 1;
+					}
+				}
+			}
+			else
+			{
+				char[] array = (char[]) chunks[i];
+				for ( int k = 0; k < cardinalities[i]; k++ )
+				{
+					result[pos++] = high | array[k];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Write this set to a document object.
+	 *
+	 * @param documentObject
+	 * @throws IOException
+	 */
+	public void write( IDocumentObject documentObject ) throws IOException
+	{
+		documentObject.writeInt( size );
+		for ( int i = 0; i < size; i++ )
+		{
+			documentObject.writeShort( keys[i] );
+			documentObject.writeInt( cardinalities[i] );
+			if ( chunks[i] instanceof long[] )
+			{
+				long[] bitmap = (long[]) chunks[i];
+				for ( int k = 0; k < bitmap.length; k++ )
+				{
+					documentObject.writeInt( (int) ( bitmap[k] >>> 32 ) );
+					documentObject.writeInt( (int) bitmap[k] );
+				}
+			}
+			else
+			{
+				char[] array = (char[]) chunks[i];
+				for ( int k = 0; k < cardinalities[i]; k++ )
+				{
+					documentObject.writeShort( array[k] );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a set written by the write method.
+	 *
+	 * @param documentObject
+	 * @return
+	 * @throws IOException
+	 */
+	public static CompressedBitmap read( IDocumentObject documentObject )
+			throws IOException
+	{
+		int size = documentObject.readInt( );
+		CompressedBitmap result = new CompressedBitmap( size );
+		for ( int i = 0; i < size; i++ )
+		{
+			char key = (char) documentObject.readShort( );
+			int cardinality = documentObject.readInt( );
+			if ( cardinality > MAX_ARRAY_SIZE )
+			{
+				long[] bitmap = new long[BITMAP_LENGTH];
+				for ( int k = 0; k < bitmap.length; k++ )
+				{
+					long high = documentObject.readInt( );
+					bitmap[k] = ( high << 32 )
+							| ( documentObject.readInt( ) & 0xFFFFFFFFL );
+				}
+				result.insertChunk( i, key, bitmap, cardinality );
+			}
+			else
+			{
+				char[] array = new char[Math.max( cardinality, 1 )];
+				for ( int k = 0; k < cardinality; k++ )
+				{
+					array[k] = (char) documentObject.readShort( );
+				}
+				result.insertChunk( i, key, array, cardinality );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param key
+	 * @return the index of the chunk, or (-(insertion point) - 1) if there is
+	 *         no such chunk
+	 */
+	private int findChunk( char key )
+	{
+		int low = 0, high = size - 1;
+		while ( low <= high )
+		{
+			int mid = ( low + high ) >>> 1;
+			if ( keys[mid] < key )
+				low = mid + 1;
+			else if ( keys[mid] > key )
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -( low + 1 );
+	}
+
+	private void insertChunk( int index, char key, Object chunk,
+			int cardinality )
+	{
+		if ( size == keys.length )
+		{
+			char[] newKeys = new char[size * 2];
+			Object[] newChunks = new Object[size * 2];
+			int[] newCardinalities = new int[size * 2];
+			System.arraycopy( keys, 0, newKeys, 0, size );
+			System.arraycopy( chunks, 0, newChunks, 0, size );
+			System.arraycopy( cardinalities, 0, newCardinalities, 0, size );
+			keys = newKeys;
+			chunks = newChunks;
+			cardinalities = newCardinalities;
+		}
+		System.arraycopy( keys, index, keys, index + 1, size - index );
+		System.arraycopy( chunks, index, chunks, index + 1, size - index );
+		System.arraycopy( cardinalities,
+				index,
+				cardinalities,
+				index + 1,
+				size - index );
+		keys[index] = key;
+		chunks[index] = chunk;
+		cardinalities[index] = cardinality;
+		size++;
+	}
+
+	/**
+	 * Append a chunk whose key is greater than the keys of this set. Empty
+	 * chunks are dropped.
+	 *
+	 * @param key
+	 * @param chunk
+	 *            the chunk and its cardinality
+	 */
+	private void appendChunk( char key, Object[] chunk )
+	{
+		int cardinality = ( (Integer) chunk[1] ).intValue( );
+		if ( cardinality > 0 )
+		{
+			insertChunk( size, key, chunk[0], cardinality );
+		}
+	}
+
+	private static Object[] copy( Object chunk, int cardinality )
+	{
+		Object copy = chunk instanceof long[]
+				? (Object) ( (long[]) chunk ).clone( )
+				: ( (char[]) chunk ).clone( );
+		return new Object[]{
+				copy, Integer.valueOf( cardinality )
+		};
+	}
+
+	private static Object[] and( Object chunk1, int cardinality1,
+			Object chunk2, int cardinality2 )
+	{
+		if ( chunk1 instanceof long[] && chunk2 instanceof long[] )
+		{
+			long[] bitmap1 = (long[]) chunk1;
+			long[] bitmap2 = (long[]) chunk2;
+			long[] bitmap = new long[BITMAP_LENGTH];
+			for ( int k = 0; k < BITMAP_LENGTH; k++ )
+			{
+				bitmap[k] = bitmap1[k] & bitmap2[k];
+			}
+			return toChunk( bitmap );
+		}
+		if ( chunk1 instanceof long[] )
+		{
+			return and( chunk2, cardinality2, chunk1, cardinality1 );
+		}
+		char[] array1 = (char[]) chunk1;
+		char[] result = new char[Math.max( cardinality1, 1 )];
+		int count = 0;
+		if ( chunk2 instanceof long[] )
+		{
+			long[] bitmap = (long[]) chunk2;
+			for ( int k = 0; k < cardinality1; k++ )
+			{
+				char low = array1[k];
+				if ( ( bitmap[low >>> 6] & ( 1L << low ) ) != 0 )
+					result[count++] = low;
+			}
+		}
+		else
+		{
+			char[] array2 = (char[]) chunk2;
+			int i = 0, j = 0;
+			while ( i < cardinality1 && j < cardinality2 )
+			{
+				if ( array1[i] < array2[j] )
+					i++;
+				else if ( array1[i] > array2[j] )
+					j++;
+				else
+				{
+					result[count++] = array1[i];
+					i++;
+					j++;
+				}
+			}
+		}
+		return new Object[]{
+				result, Integer.valueOf( count )
+		};
+	}
+
+	private static Object[] or( Object chunk1, int cardinality1,
+			Object chunk2, int cardinality2 )
+	{
+		if ( chunk1 instanceof long[] || chunk2 instanceof long[] )
+		{
+			long[] bitmap = new long[BITMAP_LENGTH];
+			orInto( bitmap, chunk1, cardinality1 );
+			orInto( bitmap, chunk2, cardinality2 );
+			return new Object[]{
+					bitmap, Integer.valueOf( cardinality( bitmap ) )
+			};
+		}
+		char[] array1 = (char[]) chunk1;
+		char[] array2 = (char[]) chunk2;
+		char[] result = new char[cardinality1 + cardinality2];
+		int count = 0;
+		int i = 0, j = 0;
+		while ( i < cardinality1 || j < cardinality2 )
+		{
+			if ( j >= cardinality2
+					|| ( i < cardinality1 && array1[i] < array2[j] ) )
+				result[count++] = array1[i++];
+			else if ( i >= cardinality1 || array1[i] > array2[j] )
+				result[count++] = array2[j++];
+			else
+			{
+				result[count++] = array1[i++];
+				j++;
+			}
+		}
+		if ( count > MAX_ARRAY_SIZE )
+		{
+			return new Object[]{
+					toBitmap( result, count ), Integer.valueOf( count )
+			};
+		}
+		return new Object[]{
+				result, Integer.valueOf( count )
+		};
+	}
+
+	private static void orInto( long[] bitmap, Object chunk, int cardinality )
+	{
+		if ( chunk instanceof long[] )
+		{
+			long[] other = (long[]) chunk;
+			for ( int k = 0; k < BITMAP_LENGTH; k++ )
+			{
+				bitmap[k] |= other[k];
+			}
+		}
+		else
+		{
+			char[] array = (char[]) chunk;
+			for ( int k = 0; k < cardinality; k++ )
+			{
+				bitmap[array[k] >>> 6] |= 1L << array[k];
+			}
+		}
+	}
+
+	/**
+	 * @param bitmap
+	 * @return the bitmap, or an array if the bitmap holds few integers
+	 */
+	private static Object[] toChunk( long[] bitmap )
+	{
+		int cardinality = cardinality( bitmap );
+		if ( cardinality > MAX_ARRAY_SIZE )
+		{
+			return new Object[]{
+					bitmap, Integer.valueOf( cardinality )
+			};
+		}
+		char[] array = new char[Math.max( cardinality, 1 )];
+		int count = 0;
+		for ( int k = 0; k < bitmap.length; k++ )
+		{
+			long word = bitmap[k];
+			while ( word != 0 )
+			{
+				array[count++] = (char) ( ( k << 6 ) | Long.numberOfTrailingZeros( word ) );
+				word &= word - 1;
+			}
+		}
+		return new Object[]{
+				array, Integer.valueOf( cardinality )
+		};
+	}
+
+	private static long[] toBitmap( char[] array, int count )
+	{
+		long[] bitmap = new long[BITMAP_LENGTH];
+		for ( int k = 0; k < count; k++ )
+		{
+			bitmap[array[k] >>> 6] |= 1L << array[k];
+		}
+		return bitmap;
+	}
+
+	private static int cardinality( long[] bitmap )
+	{
+		int cardinality = 0;
+		for ( int k = 0; k < bitmap.length; k++ )
+		{
+			cardinality += Long.bitCount( bitmap[k] );
+		}
+		return cardinality;
+	}
+
+	private static int binarySearch( char[] array, int count, char value )
+	{
+		int low = 0, high = count - 1;
+		while ( low <= high )
+		{
+			int mid = ( low + high ) >>> 1;
+			if ( array[mid] < value )
+				low = mid + 1;
+			else if ( array[mid] > value )
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -( low + 1 );
+	}
+}
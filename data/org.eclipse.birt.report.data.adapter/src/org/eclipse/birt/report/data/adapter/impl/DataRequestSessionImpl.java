@@ -1057,6 +1057,10 @@ public class DataRequestSessionImpl extends DataRequestSession
 						cubeMetaMap.get( cubeHandle ),
 						appContext );
 			}
+			cubeMaterializer.setParallelBuildThreads( computeParallelBuildThreads( appContext ) );
+			cubeMaterializer.setBitmapIndex( appContext != null
+					&& "true".equalsIgnoreCase( String.valueOf( appContext.get( DataEngine.FACT_TABLE_BITMAP_INDEX ) )
+							.trim( ) ) );
 			cubeMaterializer.createCube( cubeHandle.getQualifiedName( ),
 					factTableKey,
 					dimensionKey,
@@ -1095,6 +1099,31 @@ public class DataRequestSessionImpl extends DataRequestSession
 		return populateMemBufferSize( appContext.get( DataEngine.MEMORY_BUFFER_SIZE )) * 1024 * 1024;
 	}
 
+	/**
+	 * Return the number of threads used to build a cube.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	private static int computeParallelBuildThreads( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object threads = appContext.get( DataEngine.PARALLEL_CUBE_BUILD_THREADS );
+		if ( threads == null )
+			return 0;
+		if ( "true".equalsIgnoreCase( threads.toString( ).trim( ) ) )
+			return Runtime.getRuntime( ).availableProcessors( );
+		try
+		{
+			return Integer.parseInt( threads.toString( ).trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return 0;
+		}
+	}
+
 	/**
 	 *
 	 * @param propValue
@@ -2047,7 +2076,8 @@ public class DataRequestSessionImpl extends DataRequestSession
 	{
 		try
 		{
-			this.dataEngine.registerQueries( queryDefns );
+			this.dataEngine.registerQueries( queryDefns,
+					this.sessionContext.getAppContext( ) );
 			this.registeredQueries = queryDefns;
 		}
 		catch ( DataException e )
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+
+import org.eclipse.birt.core.data.PushDownPlan;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test case for SqlPushDownBuilder
+ */
+public class SqlPushDownBuilderTest
+{
+
+	private final static String SELECT_SQL = "select * from T";
+
+	/**
+	 * Test the conditions, with and without the null values.
+	 */
+	@Test
+	public void testConditions( )
+	{
+		PushDownPlan plan = new PushDownPlan( );
+		plan.addCondition( "A", PushDownPlan.OP_GE, new Object[]{
+			new BigDecimal( "2" )
+		}, false );
+		plan.addCondition( "B", PushDownPlan.OP_LIKE, new Object[]{
+			"O'k%"
+		}, true );
+		plan.addCondition( "C", PushDownPlan.OP_IN, new Object[]{
+				Integer.valueOf( 1 ), Double.valueOf( 2.5 )
+		}, false );
+		plan.addCondition( "D", PushDownPlan.OP_NOT_NULL, null, false );
+		assertEquals( "SELECT * FROM ( select * from T ) BIRT_PUSHDOWN"
+				+ " WHERE \"A\" >= 2"
+				+ " AND ( \"B\" LIKE 'O''k%' OR \"B\" IS NULL )"
+				+ " AND \"C\" IN ( 1, 2.5 )"
+				+ " AND \"D\" IS NOT NULL",
+				SqlPushDownBuilder.build( SELECT_SQL + " ;", plan, "\"", null, null ) );
+	}
+
+	/**
+	 * Test that the grouped rows keep the columns of the original query.
+	 */
+	@Test
+	public void testGrouping( )
+	{
+		PushDownPlan plan = new PushDownPlan( );
+		plan.addGroupColumn( "A" );
+		plan.setAggregation( "B", PushDownPlan.AGGR_MIN );
+		String[] labels = new String[]{
+				"B", "A", "C"
+		};
+		assertEquals( "SELECT MIN( \"B\" ) AS \"B\", \"A\", MAX( \"C\" ) AS \"C\""
+				+ " FROM ( select * from T ) BIRT_PUSHDOWN GROUP BY \"A\"",
+				SqlPushDownBuilder.build( SELECT_SQL, plan, "\"", labels, new int[]{
+						Types.INTEGER, Types.INTEGER, Types.VARCHAR
+				} ) );
+
+		// the columns must be known and the unused ones aggregatable
+		assertNull( SqlPushDownBuilder.build( SELECT_SQL, plan, "\"", null, null ) );
+		assertNull( SqlPushDownBuilder.build( SELECT_SQL, plan, "\"", labels, new int[]{
+				Types.INTEGER, Types.INTEGER, Types.BLOB
+		} ) );
+	}
+
+	/**
+	 * Test the order of the rows kept by a Top N filter.
+	 */
+	@Test
+	public void testOrder( )
+	{
+		PushDownPlan plan = new PushDownPlan( );
+		plan.addCondition( "A", PushDownPlan.OP_NOT_NULL, null, false );
+		plan.addSortKey( "A", false, false );
+		plan.setMaxRows( 3 );
+		// the identifiers are not quoted when the database does not support it
+		assertEquals( "SELECT * FROM ( select * from T ) BIRT_PUSHDOWN"
+				+ " WHERE A IS NOT NULL"
+				+ " ORDER BY CASE WHEN A IS NULL THEN 1 ELSE 0 END, A DESC",
+				SqlPushDownBuilder.build( SELECT_SQL, plan, " ", null, null ) );
+	}
+
+	/**
+	 * Test the queries and values which are not rewritten.
+	 */
+	@Test
+	public void testNotRewritten( )
+	{
+		PushDownPlan plan = new PushDownPlan( );
+		plan.addCondition( "A", PushDownPlan.OP_EQ, new Object[]{
+			"a\\b"
+		}, false );
+		assertNull( SqlPushDownBuilder.build( SELECT_SQL, plan, "\"", null, null ) );
+
+		plan = new PushDownPlan( );
+		plan.addCondition( "A", PushDownPlan.OP_EQ, new Object[]{
+			"a"
+		}, false );
+		assertNull( SqlPushDownBuilder.build( SELECT_SQL + " order by A",
+				plan,
+				"\"",
+				null,
+				null ) );
+		assertNull( SqlPushDownBuilder.build( "{call P()}", plan, "\"", null, null ) );
+
+		plan = new PushDownPlan( );
+		plan.addCondition( "A B", PushDownPlan.OP_NULL, null, false );
+		assertNull( SqlPushDownBuilder.build( SELECT_SQL, plan, " ", null, null ) );
+	}
+
+	/**
+	 * Test that only an order of the rows of the query itself prevents the
+	 * rewriting, not an order inside the query, a comment or a literal.
+	 */
+	@Test
+	public void testInnerOrder( )
+	{
+		PushDownPlan plan = new PushDownPlan( );
+		plan.addCondition( "A", PushDownPlan.OP_NOT_NULL, null, false );
+		String[] queries = new String[]{
+				"select * from T where A in ( select A from U order by A )",
+				"select A, row_number( ) over ( order by B ) as N from T",
+				"select * from T -- order by A\nwhere A > 0",
+				"select * from T /* order by A */ where A > 0",
+				"select * from T where B = 'order by A'",
+				"select \"order by\" from T"
+		};
+		for ( int i = 0; i < queries.length; i++ )
+		{
+			assertEquals( "SELECT * FROM ( " + queries[i]
+					+ " ) BIRT_PUSHDOWN WHERE \"A\" IS NOT NULL",
+					SqlPushDownBuilder.build( queries[i], plan, "\"", null, null ) );
+		}
+
+		// the order of the last query of a union, after a subquery
+		assertNull( SqlPushDownBuilder.build( "select A from ( select A from U ) X union select A from T order by 1",
+				plan,
+				"\"",
+				null,
+				null ) );
+		assertNull( SqlPushDownBuilder.build( "select * from T order\n/* */ by A",
+				plan,
+				"\"",
+				null,
+				null ) );
+	}
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The unit test for the bundled connection pool manager
+ */
+public class ConnectionPoolManagerTest
+{
+
+	private static final String DRIVER_CLASS = "org.apache.derby.jdbc.EmbeddedDriver";
+	private static final String URL = "jdbc:derby:memory:ConnectionPoolManagerTest;create=true";
+	private static final String QUERY = "values 1";
+
+	private ConnectionPoolManager manager;
+	private Map appContext;
+
+	@Before
+	public void connectionPoolSetUp( ) throws Exception
+	{
+		manager = new ConnectionPoolManager( );
+		appContext = new HashMap( );
+		appContext.put( ConnectionPoolManager.CONNECTION_POOL, Boolean.TRUE );
+		appContext.put( ConnectionPoolManager.CONNECTION_POOL_MAX_SIZE, "2" );
+		appContext.put( ConnectionPoolManager.CONNECTION_POOL_MAX_WAIT, "100" );
+	}
+
+	@After
+	public void connectionPoolTearDown( ) throws Exception
+	{
+		manager.close( );
+	}
+
+	private Connection getConnection( ) throws Exception
+	{
+		return manager.getConnection( DRIVER_CLASS,
+				URL,
+				new Properties( ),
+				null,
+				appContext );
+	}
+
+	private ConnectionPoolMBean getPool( )
+	{
+		assertEquals( 1, manager.getPools( ).size( ) );
+		return manager.getPools( ).get( 0 );
+	}
+
+	@Test
+	public void testPoolingOffByDefault( ) throws Exception
+	{
+		appContext.remove( ConnectionPoolManager.CONNECTION_POOL );
+		assertNull( getConnection( ) );
+		assertEquals( 0, manager.getPools( ).size( ) );
+	}
+
+	@Test
+	public void testConnectionReused( ) throws Exception
+	{
+		Connection conn = getConnection( );
+		Connection physical = conn.getMetaData( ).getConnection( );
+		conn.close( );
+		assertTrue( conn.isClosed( ) );
+		assertFalse( physical.isClosed( ) );
+
+		Connection conn2 = getConnection( );
+		assertNotSame( conn, conn2 );
+		assertSame( physical, conn2.getMetaData( ).getConnection( ) );
+		conn2.close( );
+
+		ConnectionPoolMBean pool = getPool( );
+		assertEquals( 1, pool.getCreatedCount( ) );
+		assertEquals( 2, pool.getBorrowedCount( ) );
+		assertEquals( 1, pool.getIdleCount( ) );
+		assertEquals( 0, pool.getActiveCount( ) );
+	}
+
+	@Test
+	public void testClosedConnectionNotUsable( ) throws Exception
+	{
+		Connection conn = getConnection( );
+		conn.close( );
+		try
+		{
+			conn.createStatement( );
+			fail( "A connection given back to the pool should not be usable" );
+		}
+		catch ( SQLException e )
+		{
+		}
+	}
+
+	@Test
+	public void testSettingsRestored( ) throws Exception
+	{
+		Connection conn = getConnection( );
+		assertTrue( conn.getAutoCommit( ) );
+		conn.setAutoCommit( false );
+		conn.setReadOnly( true );
+		conn.close( );
+
+		conn = getConnection( );
+		assertTrue( conn.getAutoCommit( ) );
+		assertFalse( conn.isReadOnly( ) );
+		conn.close( );
+	}
+
+	@Test
+	public void testMaxSize( ) throws Exception
+	{
+		Connection conn1 = getConnection( );
+		Connection conn2 = getConnection( );
+		try
+		{
+			getConnection( );
+			fail( "No more than the maximum size of connections should be borrowed" );
+		}
+		catch ( SQLException e )
+		{
+		}
+		assertEquals( 1, getPool( ).getWaitTimeoutCount( ) );
+		assertEquals( 2, getPool( ).getActiveCount( ) );
+
+		conn1.close( );
+		Connection conn3 = getConnection( );
+		assertNotNull( conn3 );
+		conn2.close( );
+		conn3.close( );
+		assertEquals( 2, getPool( ).getCreatedCount( ) );
+	}
+
+	@Test
+	public void testCloseConnection( ) throws Exception
+	{
+		Connection conn = getConnection( );
+		manager.closeConnection( conn );
+		assertTrue( conn.isClosed( ) );
+
+		ConnectionPoolMBean pool = getPool( );
+		assertEquals( 0, pool.getIdleCount( ) );
+		assertEquals( 0, pool.getActiveCount( ) );
+		assertEquals( 1, pool.getDestroyedCount( ) );
+
+		// Given back to the pool first, as a cancelled statement does
+		conn = getConnection( );
+		conn.close( );
+		manager.closeConnection( conn );
+		assertEquals( 0, pool.getIdleCount( ) );
+		assertEquals( 2, pool.getDestroyedCount( ) );
+	}
+
+	@Test
+	public void testIdleEviction( ) throws Exception
+	{
+		appContext.put( ConnectionPoolManager.CONNECTION_POOL_IDLE_TIMEOUT, "1" );
+		Connection conn = getConnection( );
+		conn.close( );
+		ConnectionPoolMBean pool = getPool( );
+		long deadline = System.currentTimeMillis( ) + 10000;
+		while ( pool.getIdleCount( ) > 0
+				&& System.currentTimeMillis( ) < deadline )
+		{
+			Thread.sleep( 100 );
+		}
+		assertEquals( 0, pool.getIdleCount( ) );
+		assertEquals( 1, pool.getDestroyedCount( ) );
+	}
+
+	@Test
+	public void testMinSize( ) throws Exception
+	{
+		appContext.put( ConnectionPoolManager.CONNECTION_POOL_MIN_SIZE, "2" );
+		getConnection( ).close( );
+		ConnectionPoolMBean pool = getPool( );
+		long deadline = System.currentTimeMillis( ) + 10000;
+		while ( pool.getIdleCount( ) < 2
+				&& System.currentTimeMillis( ) < deadline )
+		{
+			Thread.sleep( 100 );
+		}
+		assertEquals( 2, pool.getIdleCount( ) );
+		assertEquals( 2, pool.getCreatedCount( ) );
+	}
+
+	@Test
+	public void testStatementCache( ) throws Exception
+	{
+		Connection conn = getConnection( );
+		PreparedStatement stmt = conn.prepareStatement( QUERY );
+		stmt.setMaxRows( 1 );
+		ResultSet rs = stmt.executeQuery( );
+		assertTrue( rs.next( ) );
+		assertEquals( 1, rs.getInt( 1 ) );
+		rs.close( );
+		stmt.close( );
+		assertTrue( stmt.isClosed( ) );
+		conn.close( );
+
+		conn = getConnection( );
+		PreparedStatement stmt2 = conn.prepareStatement( QUERY );
+		assertNotSame( stmt, stmt2 );
+		assertEquals( 0, stmt2.getMaxRows( ) );
+		assertSame( conn, stmt2.getConnection( ) );
+		rs = stmt2.executeQuery( );
+		assertTrue( rs.next( ) );
+		rs.close( );
+
+		// The statement in use is not shared
+		PreparedStatement stmt3 = conn.prepareStatement( QUERY );
+		stmt3.close( );
+		stmt2.close( );
+		conn.close( );
+
+		ConnectionPoolMBean pool = getPool( );
+		assertEquals( 1, pool.getStatementCacheHitCount( ) );
+		assertEquals( 2, pool.getStatementCacheMissCount( ) );
+	}
+
+	@Test
+	public void testStatementCacheDisabled( ) throws Exception
+	{
+		appContext.put( ConnectionPoolManager.CONNECTION_POOL_STATEMENT_CACHE_SIZE,
+				"0" );
+		Connection conn = getConnection( );
+		conn.prepareStatement( QUERY ).close( );
+		conn.prepareStatement( QUERY ).close( );
+		conn.close( );
+
+		ConnectionPoolMBean pool = getPool( );
+		assertEquals( 0, pool.getStatementCacheHitCount( ) );
+		assertEquals( 0, pool.getStatementCacheMissCount( ) );
+	}
+
+	@Test
+	public void testPoolPerUser( ) throws Exception
+	{
+		Properties props = new Properties( );
+		props.setProperty( "user", "other" );
+		Connection conn1 = getConnection( );
+		Connection conn2 = manager.getConnection( DRIVER_CLASS,
+				URL,
+				props,
+				null,
+				appContext );
+		conn1.close( );
+		conn2.close( );
+		assertEquals( 2, manager.getPools( ).size( ) );
+	}
+}
@@ -23,6 +23,9 @@ import java.sql.Types;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.IBlockFetchResultSet;
+import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.data.oda.i18n.ResourceConstants;
 import org.eclipse.datatools.connectivity.oda.IBlob;
 import org.eclipse.datatools.connectivity.oda.IClob;
@@ -35,7 +38,7 @@ import org.eclipse.datatools.connectivity.oda.OdaException;
  * The class implements the org.eclipse.datatools.connectivity.oda.IResultSet interface.
  *
  */
-public class ResultSet implements IResultSet
+public class ResultSet implements IResultSet, IBlockFetchResultSet
 {
 
 	/** the JDBC ResultSet object */
@@ -199,6 +202,86 @@ public class ResultSet implements IResultSet
 		}
 	}
 
+	/*
+	 * @see org.eclipse.birt.core.data.IBlockFetchResultSet#fetch(int[], int[], java.lang.Object[][])
+	 */
+	public int fetch( int[] columnPositions, int[] columnTypes, Object[][] rows )
+			throws BirtException
+	{
+		try
+		{
+			int count = 0;
+			while ( count < rows.length && next( ) )
+			{
+				Object[] values = new Object[columnPositions.length];
+				for ( int i = 0; i < columnPositions.length; i++ )
+				{
+					if ( columnPositions[i] > 0 )
+					{
+						values[i] = getValue( columnPositions[i],
+								columnTypes[i] );
+					}
+				}
+				rows[count++] = values;
+			}
+			return count;
+		}
+		catch ( OdaException e )
+		{
+			throw new BirtException( OdaJdbcDriver.Constants.DATA_SOURCE_ID,
+					e.getLocalizedMessage( ),
+					(Object[]) null,
+					e );
+		}
+	}
+
+	/**
+	 * Reads the value of a column of the current row, through the getter of
+	 * its type
+	 * 
+	 * @param index
+	 * @param type
+	 * @return the value, or null if it is SQL NULL
+	 * @throws OdaException
+	 */
+	private Object getValue( int index, int type ) throws OdaException
+	{
+		Object value;
+		switch ( type )
+		{
+			case DataType.INTEGER_TYPE :
+				value = Integer.valueOf( getInt( index ) );
+				break;
+			case DataType.DOUBLE_TYPE :
+				value = Double.valueOf( getDouble( index ) );
+				break;
+			case DataType.DECIMAL_TYPE :
+				value = getBigDecimal( index );
+				break;
+			case DataType.STRING_TYPE :
+				value = getString( index );
+				break;
+			case DataType.BOOLEAN_TYPE :
+				value = Boolean.valueOf( getBoolean( index ) );
+				break;
+			case DataType.SQL_DATE_TYPE :
+				value = getDate( index );
+				break;
+			case DataType.SQL_TIME_TYPE :
+				value = getTime( index );
+				break;
+			case DataType.DATE_TYPE :
+				value = getTimestamp( index );
+				break;
+			case DataType.BLOB_TYPE :
+				value = getBlob( index );
+				break;
+			default :
+				value = getObject( index );
+		}
+		return wasNull( ) ? null : value;
+	}
+
 	/*
 	 *
 	 * @see org.eclipse.datatools.connectivity.oda.IResultSet#getRow()
@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.birt.core.data.PushDownPlan;
+
+/**
+ * Rewrites the text of a SQL query so that it applies a PushDownPlan. The
+ * original query becomes a derived table of a query which selects its rows
+ * with a WHERE clause, groups them with a GROUP BY clause and orders them with
+ * an ORDER BY clause; the maximum number of rows is left to the caller, which
+ * sets it on the JDBC statement. The operand values are written as SQL
+ * literals, so that the parameter markers of the rewritten query are those of
+ * the original query, in the same order.
+ */
+public class SqlPushDownBuilder
+{
+
+	/** the alias of the original query in the rewritten query */
+	private static final String DERIVED_TABLE_ALIAS = "BIRT_PUSHDOWN";
+
+	private static final Pattern SELECT_PATTERN = Pattern.compile( "(?is)select\\b.*" );
+
+	private static final Pattern ORDER_BY_PATTERN = Pattern.compile( "(?i)\\border\\s+by\\b" );
+
+	private static final Pattern SIMPLE_IDENTIFIER_PATTERN = Pattern.compile( "[A-Za-z_][A-Za-z0-9_]*" );
+
+	/**
+	 *
+	 */
+	private SqlPushDownBuilder( )
+	{
+	}
+
+	/**
+	 * Rewrites a query to apply all of a plan but its maximum number of rows.
+	 *
+	 * @param query
+	 *            the original query text
+	 * @param plan
+	 * @param quote
+	 *            the string quoting the identifiers, as returned by
+	 *            DatabaseMetaData.getIdentifierQuoteString
+	 * @param columnLabels
+	 *            the labels of the columns of the original query, needed only
+	 *            when the rows are grouped
+	 * @param columnTypes
+	 *            the java.sql.Types of the columns of the original query,
+	 *            needed only when the rows are grouped
+	 * @return the rewritten query, or null if the plan can not be applied to
+	 *         the query
+	 */
+	public static String build( String query, PushDownPlan plan, String quote,
+			String[] columnLabels, int[] columnTypes )
+	{
+		if ( query == null || plan == null )
+			return null;
+		String baseQuery = query.trim( );
+		while ( baseQuery.endsWith( ";" ) )
+			baseQuery = baseQuery.substring( 0, baseQuery.length( ) - 1 )
+					.trim( );
+		// only a plain query can be a derived table, and the order of its rows
+		// would not be kept by the rewritten query
+		if ( !SELECT_PATTERN.matcher( baseQuery ).matches( )
+				|| ORDER_BY_PATTERN.matcher( getTopLevelText( baseQuery ) )
+						.find( ) )
+			return null;
+
+		StringBuffer buffer = new StringBuffer( "SELECT " );
+		List<String> groupColumns = plan.getGroupColumns( );
+		if ( groupColumns.isEmpty( ) )
+		{
+			buffer.append( "*" );
+		}
+		else
+		{
+			if ( !appendGroupSelectList( buffer, plan, quote, columnLabels,
+					columnTypes ) )
+				return null;
+		}
+		buffer.append( " FROM ( " )
+				.append( baseQuery )
+				.append( " ) " )
+				.append( DERIVED_TABLE_ALIAS );
+
+		List<PushDownPlan.Condition> conditions = plan.getConditions( );
+		for ( int i = 0; i < conditions.size( ); i++ )
+		{
+			String condition = getCondition( conditions.get( i ), quote );
+			if ( condition == null )
+				return null;
+			buffer.append( i == 0 ? " WHERE " : " AND " ).append( condition );
+		}
+
+		for ( int i = 0; i < groupColumns.size( ); i++ )
+		{
+			String column = quoteIdentifier( groupColumns.get( i ), quote );
+			if ( column == null )
+				return null;
+			buffer.append( i == 0 ? " GROUP BY " : ", " ).append( column );
+		}
+
+		List<PushDownPlan.SortKey> sortKeys = plan.getSortKeys( );
+		for ( int i = 0; i < sortKeys.size( ); i++ )
+		{
+			PushDownPlan.SortKey sortKey = sortKeys.get( i );
+			String column = quoteIdentifier( sortKey.getColumn( ), quote );
+			if ( column == null )
+				return null;
+			// the position of null values is not the same in every database
+			buffer.append( i == 0 ? " ORDER BY " : ", " )
+					.append( "CASE WHEN " )
+					.append( column )
+					.append( sortKey.isNullsFirst( ) ? " IS NULL THEN 0 ELSE 1 END, "
+							: " IS NULL THEN 1 ELSE 0 END, " )
+					.append( column )
+					.append( sortKey.isAscending( ) ? " ASC" : " DESC" );
+		}
+		return buffer.toString( );
+	}
+
+	/**
+	 * Blanks out the text of a query which is not part of its top level
+	 * clauses: the text between parentheses, such as subqueries and window
+	 * specifications, the string literals, the quoted identifiers and the
+	 * comments.
+	 *
+	 * @param query
+	 * @return the text of the query, of the same length, with only its top
+	 *         level clauses left
+	 */
+	static String getTopLevelText( String query )
+	{
+		StringBuffer buffer = new StringBuffer( query.length( ) );
+		int depth = 0;
+		int i = 0;
+		while ( i < query.length( ) )
+		{
+			char c = query.charAt( i );
+			int end;
+			if ( c == '\'' || c == '"' || c == '`' )
+			{
+				// a doubled quote character is part of the quoted text
+				end = i + 1;
+				while ( end < query.length( ) )
+				{
+					if ( query.charAt( end ) == c )
+					{
+						if ( end + 1 < query.length( )
+								&& query.charAt( end + 1 ) == c )
+						{
+							end += 2;
+							continue;
+						}
+						end++;
+						break;
+					}
+					end++;
+				}
+			}
+			else if ( query.startsWith( "--", i ) )
+			{
+				end = query.indexOf( '\n', i );
+				if ( end < 0 )
+					end = query.length( );
+			}
+			else if ( query.startsWith( "/*", i ) )
+			{
+				end = query.indexOf( "*/", i + 2 );
+				end = end < 0 ? query.length( ) : end + 2;
+			}
+			else
+			{
+				if ( c == '(' )
+					depth++;
+				buffer.append( depth > 0 ? ' ' : c );
+				if ( c == ')' && depth > 0 )
+					depth--;
+				i++;
+				continue;
+			}
+			for ( ; i < end; i++ )
+			{
+				buffer.append( ' ' );
+			}
+		}
+		return buffer.toString( );
+	}
+
+	/**
+	 * Appends the select list of the grouped rows, which has the same columns
+	 * as the original query.
+	 *
+	 * @param buffer
+	 * @param plan
+	 * @param quote
+	 * @param columnLabels
+	 * @param columnTypes
+	 * @return false if the rows can not be grouped
+	 */
+	private static boolean appendGroupSelectList( StringBuffer buffer,
+			PushDownPlan plan, String quote, String[] columnLabels,
+			int[] columnTypes )
+	{
+		if ( columnLabels == null
+				|| columnTypes == null
+				|| columnLabels.length != columnTypes.length )
+			return false;
+
+		Set<String> labels = new HashSet<String>( );
+		for ( int i = 0; i < columnLabels.length; i++ )
+		{
+			if ( columnLabels[i] == null || !labels.add( columnLabels[i] ) )
+				return false;
+		}
+		Iterator<String> it = plan.getGroupColumns( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			if ( !labels.contains( it.next( ) ) )
+				return false;
+		}
+
+		for ( int i = 0; i < columnLabels.length; i++ )
+		{
+			String column = quoteIdentifier( columnLabels[i], quote );
+			if ( column == null )
+				return false;
+			if ( i > 0 )
+				buffer.append( ", " );
+			if ( plan.getGroupColumns( ).contains( columnLabels[i] ) )
+			{
+				buffer.append( column );
+				continue;
+			}
+			// the columns which are not aggregated are not used, but they
+			// still take a value of the group to keep the columns of the
+			// original query
+			if ( !isAggregatable( columnTypes[i] ) )
+				return false;
+			String function = plan.getAggregation( columnLabels[i] ) == PushDownPlan.AGGR_MIN
+					? "MIN" : "MAX";
+			buffer.append( function )
+					.append( "( " )
+					.append( column )
+					.append( " ) AS " )
+					.append( column );
+		}
+		return true;
+	}
+
+	/**
+	 * @param condition
+	 * @param quote
+	 * @return the SQL condition, or null if it can not be written
+	 */
+	private static String getCondition( PushDownPlan.Condition condition,
+			String quote )
+	{
+		String column = quoteIdentifier( condition.getColumn( ), quote );
+		if ( column == null )
+			return null;
+		Object[] values = condition.getValues( );
+		String[] literals = new String[values.length];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			literals[i] = getLiteral( values[i] );
+			if ( literals[i] == null )
+				return null;
+		}
+
+		String result;
+		switch ( condition.getOperator( ) )
+		{
+			case PushDownPlan.OP_EQ :
+				result = getComparison( column, "=", literals );
+				break;
+			case PushDownPlan.OP_NE :
+				result = getComparison( column, "<>", literals );
+				break;
+			case PushDownPlan.OP_LT :
+				result = getComparison( column, "<", literals );
+				break;
+			case PushDownPlan.OP_LE :
+				result = getComparison( column, "<=", literals );
+				break;
+			case PushDownPlan.OP_GT :
+				result = getComparison( column, ">", literals );
+				break;
+			case PushDownPlan.OP_GE :
+				result = getComparison( column, ">=", literals );
+				break;
+			case PushDownPlan.OP_LIKE :
+				result = getComparison( column, "LIKE", literals );
+				break;
+			case PushDownPlan.OP_BETWEEN :
+				result = literals.length != 2 ? null : column
+						+ " BETWEEN " + literals[0] + " AND " + literals[1];
+				break;
+			case PushDownPlan.OP_NOT_BETWEEN :
+				result = literals.length != 2 ? null : column
+						+ " NOT BETWEEN " + literals[0] + " AND "
+						+ literals[1];
+				break;
+			case PushDownPlan.OP_IN :
+				if ( literals.length == 0 )
+					return null;
+				StringBuffer buffer = new StringBuffer( column ).append( " IN ( " );
+				for ( int i = 0; i < literals.length; i++ )
+				{
+					if ( i > 0 )
+						buffer.append( ", " );
+					buffer.append( literals[i] );
+				}
+				result = buffer.append( " )" ).toString( );
+				break;
+			case PushDownPlan.OP_NULL :
+				result = column + " IS NULL";
+				break;
+			case PushDownPlan.OP_NOT_NULL :
+				result = column + " IS NOT NULL";
+				break;
+			default :
+				return null;
+		}
+		if ( result == null )
+			return null;
+		if ( condition.isNullMatches( ) )
+			return "( " + result + " OR " + column + " IS NULL )";
+		return result;
+	}
+
+	/**
+	 * @param column
+	 * @param operator
+	 * @param literals
+	 * @return
+	 */
+	private static String getComparison( String column, String operator,
+			String[] literals )
+	{
+		if ( literals.length != 1 )
+			return null;
+		return column + " " + operator + " " + literals[0];
+	}
+
+	/**
+	 * @param value
+	 * @return the SQL literal of a value, or null if it has none which is read
+	 *         the same way by every database
+	 */
+	static String getLiteral( Object value )
+	{
+		if ( value instanceof Integer
+				|| value instanceof Long || value instanceof Short
+				|| value instanceof Byte )
+		{
+			return value.toString( );
+		}
+		if ( value instanceof BigDecimal )
+		{
+			return ( (BigDecimal) value ).toPlainString( );
+		}
+		if ( value instanceof Double || value instanceof Float )
+		{
+			double d = ( (Number) value ).doubleValue( );
+			if ( Double.isNaN( d ) || Double.isInfinite( d ) )
+				return null;
+			return new BigDecimal( value.toString( ) ).toPlainString( );
+		}
+		if ( value instanceof String )
+		{
+			// some databases take the backslash as an escape character
+			String text = (String) value;
+			if ( text.indexOf( '\\' ) >= 0 )
+				return null;
+			return "'" + text.replaceAll( "'", "''" ) + "'";
+		}
+		if ( value instanceof java.sql.Date )
+		{
+			return "{d '" + value.toString( ) + "'}";
+		}
+		if ( value instanceof Time )
+		{
+			return "{t '" + value.toString( ) + "'}";
+		}
+		if ( value instanceof Timestamp )
+		{
+			return "{ts '" + value.toString( ) + "'}";
+		}
+		if ( value instanceof java.util.Date )
+		{
+			return "{ts '"
+					+ new Timestamp( ( (java.util.Date) value ).getTime( ) ).toString( )
+					+ "'}";
+		}
+		return null;
+	}
+
+	/**
+	 * @param identifier
+	 * @param quote
+	 * @return the quoted identifier, or null if it can not be quoted
+	 */
+	static String quoteIdentifier( String identifier, String quote )
+	{
+		if ( identifier == null || identifier.length( ) == 0 )
+			return null;
+		// a space means that quoting identifiers is not supported
+		if ( quote == null || quote.trim( ).length( ) == 0 )
+		{
+			return SIMPLE_IDENTIFIER_PATTERN.matcher( identifier ).matches( )
+					? identifier : null;
+		}
+		if ( identifier.indexOf( quote ) >= 0 )
+			return null;
+		return quote + identifier + quote;
+	}
+
+	/**
+	 * @param type
+	 * @return whether the values of a column of the given java.sql.Types can
+	 *         be aggregated by MIN and MAX
+	 */
+	private static boolean isAggregatable( int type )
+	{
+		switch ( type )
+		{
+			case Types.TINYINT :
+			case Types.SMALLINT :
+			case Types.INTEGER :
+			case Types.BIGINT :
+			case Types.REAL :
+			case Types.FLOAT :
+			case Types.DOUBLE :
+			case Types.NUMERIC :
+			case Types.DECIMAL :
+			case Types.CHAR :
+			case Types.VARCHAR :
+			case Types.NCHAR :
+			case Types.NVARCHAR :
+			case Types.DATE :
+			case Types.TIME :
+			case Types.TIMESTAMP :
+				return true;
+			default :
+				return false;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import java.sql.Timestamp;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.core.data.PushDownPlan;
 import org.eclipse.birt.report.data.oda.i18n.ResourceConstants;
 import org.eclipse.datatools.connectivity.oda.IParameterMetaData;
 import org.eclipse.datatools.connectivity.oda.IQuery;
@@ -51,6 +52,9 @@ public class Statement implements IQuery
 	/** indicates if need to call JDBC setMaxRows before execute statement */
 	protected boolean maxRowsUpToDate = false;
 
+	/** the max row value of the push down plan applied by prepare, 0 if none */
+	private int pushDownMaxRows;
+
 	/** Error message for ERRMSG_SET_PARAMETER */
 	private final static String ERRMSG_SET_PARAMETER = "Error setting value for SQL parameter #";
 	
@@ -123,6 +127,15 @@ public class Statement implements IQuery
 			// Clear any cached result set or metadata
 			this.cachedResultMetaData = null;
 			this.cachedResultSet = null;
+			this.pushDownMaxRows = 0;
+			this.maxRowsUpToDate = false;
+			
+			PushDownPlan plan = getPushDownPlan( );
+			if ( plan != null && !plan.isEmpty( ) )
+			{
+				this.preStat = prepareWithPushDown( command, plan );
+				return;
+			}
 			
 			/*
 			 * call the JDBC Connection.prepareStatement(String) method to get
@@ -137,6 +150,109 @@ public class Statement implements IQuery
 		}
 	}
 	
+	/**
+	 * @return the push down plan passed in the query specification, or null
+	 */
+	@SuppressWarnings("restriction")
+	private PushDownPlan getPushDownPlan( )
+	{
+		if ( this.querySpec == null )
+			return null;
+		Object plan = this.querySpec.getProperty( PushDownPlan.PROPERTY_NAME );
+		return plan instanceof PushDownPlan ? (PushDownPlan) plan : null;
+	}
+
+	/**
+	 * Prepares the query rewritten to apply a push down plan. The original
+	 * query is prepared instead if the plan can not be applied to it, or if
+	 * the rewritten query can not be prepared.
+	 * 
+	 * @param command
+	 * @param plan
+	 * @return
+	 * @throws SQLException
+	 */
+	private PreparedStatement prepareWithPushDown( String command,
+			PushDownPlan plan ) throws SQLException
+	{
+		PreparedStatement original = null;
+		String[] columnLabels = null;
+		int[] columnTypes = null;
+		if ( !plan.getGroupColumns( ).isEmpty( ) )
+		{
+			// the grouped rows keep the columns of the original query
+			original = conn.prepareStatement( command );
+			try
+			{
+				java.sql.ResultSetMetaData md = original.getMetaData( );
+				if ( md != null && md.getColumnCount( ) > 0 )
+				{
+					columnLabels = new String[md.getColumnCount( )];
+					columnTypes = new int[columnLabels.length];
+					for ( int i = 0; i < columnLabels.length; i++ )
+					{
+						columnLabels[i] = md.getColumnLabel( i + 1 );
+						columnTypes[i] = md.getColumnType( i + 1 );
+					}
+				}
+			}
+			catch ( Throwable e )
+			{
+				// the metadata is not available before execution
+				columnLabels = null;
+			}
+			if ( columnLabels == null )
+				return original;
+		}
+
+		String rewritten = null;
+		try
+		{
+			rewritten = SqlPushDownBuilder.build( command,
+					plan,
+					conn.getMetaData( ).getIdentifierQuoteString( ),
+					columnLabels,
+					columnTypes );
+		}
+		catch ( SQLException e )
+		{
+			rewritten = null;
+		}
+		if ( rewritten != null )
+		{
+			try
+			{
+				PreparedStatement result = conn.prepareStatement( rewritten );
+				logger.logp( java.util.logging.Level.FINE,
+						Statement.class.getName( ),
+						"prepareWithPushDown",
+						"Query rewritten to \"" + rewritten + "\"" );
+				if ( original != null )
+					original.close( );
+				this.pushDownMaxRows = plan.getMaxRows( );
+				return result;
+			}
+			catch ( SQLException e )
+			{
+				logger.log( Level.FINE, "Rewritten query can not be prepared", e );
+			}
+		}
+		return original != null ? original : conn.prepareStatement( command );
+	}
+
+	/**
+	 * @return the max row value set to the JDBC statement, the smaller one of
+	 *         the max row value of the query and that of its push down plan
+	 */
+	private int getEffectiveMaxRows( )
+	{
+		if ( pushDownMaxRows <= 0 )
+			return maxrows;
+		if ( maxrows <= 0 || pushDownMaxRows < maxrows )
+			return pushDownMaxRows;
+		return maxrows;
+	}
+	
 	/*
 	 * @see org.eclipse.datatools.connectivity.oda.IQuery#setAppContext(java.lang.Object)
 	 */
@@ -208,10 +324,12 @@ public class Statement implements IQuery
 		else if ( name.equals( ConnectionProfileProperty.PROFILE_NAME_PROP_KEY )
 				|| name.equals( ConnectionProfileProperty.PROFILE_STORE_FILE_PROP_KEY )
 				|| name.equals( ConnectionProfileProperty.PROFILE_STORE_FILE_PATH_PROP_KEY )
-				|| name.equals( "addListFile" ) )
+				|| name.equals( "addListFile" )
+				|| name.equals( PushDownPlan.PROPERTY_NAME ) )
 		{
 			//do nothing here. These are valid ODA properties. See Eclipse bug 176140
 			// Bypass Hive connection property addListFile.
+			// The push down plan is applied by prepare.
 		}
 		else
 		{
@@ -461,11 +579,12 @@ public class Statement implements IQuery
 		
 		try
 		{
-			if ( maxrows >= 0 && !maxRowsUpToDate )
+			int max = getEffectiveMaxRows( );
+			if ( max >= 0 && !maxRowsUpToDate )
 			{
 				try
 				{
-					preStat.setMaxRows( maxrows );
+					preStat.setMaxRows( max );
 				}
 				catch ( SQLException e1 )
 				{
@@ -496,9 +615,10 @@ public class Statement implements IQuery
 		assertNotNull( preStat );
 		try
 		{
-			if ( maxrows >= 0 && !maxRowsUpToDate )
+			int max = getEffectiveMaxRows( );
+			if ( max >= 0 && !maxRowsUpToDate )
 			{
-				preStat.setMaxRows( maxrows );
+				preStat.setMaxRows( max );
 				maxRowsUpToDate = true;
 			}
 			/* redirect the call to JDBC preparedStatement.execute() */
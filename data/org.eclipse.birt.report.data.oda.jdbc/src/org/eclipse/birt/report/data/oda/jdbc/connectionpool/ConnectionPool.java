@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.jdbc.JDBCDriverManager;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The pool of the connections opened with one driver, url and set of
+ * connection properties. The most recently used idle connection is borrowed
+ * first, so that the connections not needed any more stay idle long enough to
+ * be evicted.
+ */
+final class ConnectionPool implements ConnectionPoolMBean
+{
+
+	private static Logger logger = Logger.getLogger( ConnectionPool.class.getName( ) );
+
+	private final String name;
+	private final String driverClass;
+	private final String url;
+	private final Properties connectionProperties;
+	private final Collection<String> driverClassPath;
+	private final ConnectionPoolSettings settings;
+
+	/**
+	 * The idle connections, the most recently used first.
+	 */
+	private final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>( );
+
+	/**
+	 * One permit for each connection which may still be borrowed.
+	 */
+	private final Semaphore permits;
+
+	private final AtomicInteger activeCount = new AtomicInteger( );
+	private final AtomicLong createdCount = new AtomicLong( );
+	private final AtomicLong destroyedCount = new AtomicLong( );
+	private final AtomicLong borrowedCount = new AtomicLong( );
+	private final AtomicLong validationFailureCount = new AtomicLong( );
+	private final AtomicLong waitTimeoutCount = new AtomicLong( );
+	private final AtomicLong totalWaitTime = new AtomicLong( );
+	private final AtomicLong statementCacheHitCount = new AtomicLong( );
+	private final AtomicLong statementCacheMissCount = new AtomicLong( );
+
+	private volatile boolean closed;
+
+	ConnectionPool( String name, String driverClass, String url,
+			Properties connectionProperties,
+			Collection<String> driverClassPath, ConnectionPoolSettings settings )
+	{
+		this.name = name;
+		this.driverClass = driverClass;
+		this.url = url;
+		this.connectionProperties = connectionProperties;
+		this.driverClassPath = driverClassPath;
+		this.settings = settings;
+		this.permits = new Semaphore( settings.getMaxSize( ), true );
+	}
+
+	/**
+	 * Borrows a connection, waiting for one to be given back when the maximum
+	 * number of connections are already borrowed.
+	 *
+	 * @return
+	 * @throws SQLException
+	 * @throws OdaException
+	 */
+	java.sql.Connection borrow( ) throws SQLException, OdaException
+	{
+		long start = System.currentTimeMillis( );
+		try
+		{
+			if ( !permits.tryAcquire( settings.getMaxWait( ),
+					TimeUnit.MILLISECONDS ) )
+			{
+				waitTimeoutCount.incrementAndGet( );
+				throw new SQLException( "Timed out waiting for a pooled connection to " //$NON-NLS-1$
+						+ name );
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new SQLException( "Interrupted while waiting for a pooled connection to " //$NON-NLS-1$
+					+ name );
+		}
+		totalWaitTime.addAndGet( System.currentTimeMillis( ) - start );
+		activeCount.incrementAndGet( );
+
+		boolean borrowed = false;
+		try
+		{
+			PooledConnection connection = takeValidIdleConnection( );
+			if ( connection == null )
+			{
+				connection = create( );
+			}
+			borrowedCount.incrementAndGet( );
+			borrowed = true;
+			return connection.lease( );
+		}
+		finally
+		{
+			if ( !borrowed )
+			{
+				activeCount.decrementAndGet( );
+				permits.release( );
+			}
+		}
+	}
+
+	private PooledConnection takeValidIdleConnection( )
+	{
+		while ( true )
+		{
+			PooledConnection connection;
+			synchronized ( idleConnections )
+			{
+				connection = idleConnections.poll( );
+			}
+			if ( connection == null )
+			{
+				return null;
+			}
+			if ( connection.validate( settings.getValidationTimeout( ),
+					settings.getValidationQuery( ) ) )
+			{
+				return connection;
+			}
+			validationFailureCount.incrementAndGet( );
+			destroy( connection );
+		}
+	}
+
+	private PooledConnection create( ) throws SQLException, OdaException
+	{
+		java.sql.Connection physicalConnection = JDBCDriverManager.getInstance( )
+				.getConnection( driverClass,
+						url,
+						null,
+						connectionProperties,
+						driverClassPath );
+		try
+		{
+			PooledConnection connection = new PooledConnection( this,
+					physicalConnection,
+					settings.getStatementCacheSize( ) );
+			createdCount.incrementAndGet( );
+			logger.log( Level.FINE, "Pooled connection opened to " + name ); //$NON-NLS-1$
+			return connection;
+		}
+		catch ( SQLException e )
+		{
+			physicalConnection.close( );
+			throw e;
+		}
+	}
+
+	/**
+	 * Takes back a borrowed connection.
+	 *
+	 * @param connection
+	 */
+	void giveBack( PooledConnection connection )
+	{
+		try
+		{
+			boolean reusable = !closed && !connection.isBroken( );
+			if ( reusable )
+			{
+				try
+				{
+					connection.reset( );
+				}
+				catch ( SQLException e )
+				{
+					logger.log( Level.FINE,
+							"Cannot reset pooled connection to " + name, //$NON-NLS-1$
+							e );
+					reusable = false;
+				}
+			}
+			if ( reusable )
+			{
+				connection.setIdleSince( System.currentTimeMillis( ) );
+				synchronized ( idleConnections )
+				{
+					idleConnections.addFirst( connection );
+				}
+			}
+			else
+			{
+				destroy( connection );
+			}
+		}
+		finally
+		{
+			activeCount.decrementAndGet( );
+			permits.release( );
+		}
+	}
+
+	/**
+	 * Closes a connection which must not be used again, whether it is still
+	 * borrowed through the given proxy or was given back already.
+	 *
+	 * @param connection
+	 * @param proxy
+	 */
+	void discard( PooledConnection connection, java.sql.Connection proxy )
+	{
+		boolean idle;
+		synchronized ( idleConnections )
+		{
+			idle = idleConnections.remove( connection );
+		}
+		if ( idle )
+		{
+			destroy( connection );
+		}
+		else if ( connection.isLeasedAs( proxy ) )
+		{
+			connection.markBroken( );
+			try
+			{
+				proxy.close( );
+			}
+			catch ( SQLException e )
+			{
+				logger.log( Level.FINE, "Cannot close pooled connection", e ); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Closes the connections idle for longer than the idle timeout, keeping
+	 * at least the minimum size of connections open, and opens connections
+	 * while there are less than the minimum size.
+	 */
+	void evict( )
+	{
+		if ( closed )
+		{
+			return;
+		}
+		long idleTimeout = settings.getIdleTimeout( );
+		long expiry = System.currentTimeMillis( ) - idleTimeout;
+		List<PooledConnection> expired = new ArrayList<PooledConnection>( );
+		synchronized ( idleConnections )
+		{
+			while ( idleTimeout > 0
+					&& !idleConnections.isEmpty( )
+					&& idleConnections.size( ) + activeCount.get( ) > settings.getMinSize( )
+					&& idleConnections.getLast( ).getIdleSince( ) < expiry )
+			{
+				expired.add( idleConnections.removeLast( ) );
+			}
+		}
+		for ( int i = 0; i < expired.size( ); i++ )
+		{
+			destroy( expired.get( i ) );
+		}
+		while ( !closed && getIdleCount( ) + activeCount.get( ) < settings.getMinSize( ) )
+		{
+			// Hold a permit while opening, so that the pool never exceeds its
+			// maximum size.
+			if ( !permits.tryAcquire( ) )
+			{
+				break;
+			}
+			try
+			{
+				PooledConnection connection = create( );
+				connection.setIdleSince( System.currentTimeMillis( ) );
+				synchronized ( idleConnections )
+				{
+					idleConnections.addLast( connection );
+				}
+			}
+			catch ( Exception e )
+			{
+				logger.log( Level.FINE,
+						"Cannot open pooled connection to " + name, //$NON-NLS-1$
+						e );
+				break;
+			}
+			finally
+			{
+				permits.release( );
+			}
+		}
+	}
+
+	/**
+	 * Closes the idle connections, and the borrowed ones once given back.
+	 */
+	void close( )
+	{
+		closed = true;
+		clear( );
+	}
+
+	private void destroy( PooledConnection connection )
+	{
+		connection.destroy( );
+		destroyedCount.incrementAndGet( );
+		logger.log( Level.FINE, "Pooled connection closed to " + name ); //$NON-NLS-1$
+	}
+
+	void statementCacheHit( )
+	{
+		statementCacheHitCount.incrementAndGet( );
+	}
+
+	void statementCacheMiss( )
+	{
+		statementCacheMissCount.incrementAndGet( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolMBean#clear()
+	 */
+	public void clear( )
+	{
+		List<PooledConnection> connections;
+		synchronized ( idleConnections )
+		{
+			connections = new ArrayList<PooledConnection>( idleConnections );
+			idleConnections.clear( );
+		}
+		for ( int i = 0; i < connections.size( ); i++ )
+		{
+			destroy( connections.get( i ) );
+		}
+	}
+
+	public String getName( )
+	{
+		return name;
+	}
+
+	public int getMinSize( )
+	{
+		return settings.getMinSize( );
+	}
+
+	public int getMaxSize( )
+	{
+		return settings.getMaxSize( );
+	}
+
+	public int getActiveCount( )
+	{
+		return activeCount.get( );
+	}
+
+	public int getIdleCount( )
+	{
+		synchronized ( idleConnections )
+		{
+			return idleConnections.size( );
+		}
+	}
+
+	public long getCreatedCount( )
+	{
+		return createdCount.get( );
+	}
+
+	public long getDestroyedCount( )
+	{
+		return destroyedCount.get( );
+	}
+
+	public long getBorrowedCount( )
+	{
+		return borrowedCount.get( );
+	}
+
+	public long getValidationFailureCount( )
+	{
+		return validationFailureCount.get( );
+	}
+
+	public long getWaitTimeoutCount( )
+	{
+		return waitTimeoutCount.get( );
+	}
+
+	public long getTotalWaitTime( )
+	{
+		return totalWaitTime.get( );
+	}
+
+	public long getStatementCacheHitCount( )
+	{
+		return statementCacheHitCount.get( );
+	}
+
+	public long getStatementCacheMissCount( )
+	{
+		return statementCacheMissCount.get( );
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+/**
+ * Management interface of a connection pool. The pools are registered in the
+ * platform MBean server when the
+ * {@link ConnectionPoolManager#CONNECTION_POOL_JMX} setting is on.
+ */
+public interface ConnectionPoolMBean
+{
+
+	/**
+	 * @return the user and the url of the pooled connections
+	 */
+	String getName( );
+
+	/**
+	 * @return the number of connections kept open even when idle
+	 */
+	int getMinSize( );
+
+	/**
+	 * @return the maximum number of connections borrowed at the same time
+	 */
+	int getMaxSize( );
+
+	/**
+	 * @return the number of connections currently borrowed
+	 */
+	int getActiveCount( );
+
+	/**
+	 * @return the number of open connections waiting in the pool
+	 */
+	int getIdleCount( );
+
+	/**
+	 * @return the number of physical connections opened by the pool
+	 */
+	long getCreatedCount( );
+
+	/**
+	 * @return the number of physical connections closed by the pool
+	 */
+	long getDestroyedCount( );
+
+	/**
+	 * @return the number of connections handed out by the pool
+	 */
+	long getBorrowedCount( );
+
+	/**
+	 * @return the number of idle connections found broken when borrowed
+	 */
+	long getValidationFailureCount( );
+
+	/**
+	 * @return the number of borrowers that timed out waiting for a connection
+	 */
+	long getWaitTimeoutCount( );
+
+	/**
+	 * @return the total time, in milliseconds, borrowers waited for a
+	 *         connection
+	 */
+	long getTotalWaitTime( );
+
+	/**
+	 * @return the number of prepared statements served from the statement
+	 *         caches of the connections
+	 */
+	long getStatementCacheHitCount( );
+
+	/**
+	 * @return the number of prepared statements the statement caches of the
+	 *         connections had to prepare
+	 */
+	long getStatementCacheMissCount( );
+
+	/**
+	 * Closes all the idle connections of the pool.
+	 */
+	void clear( );
+}
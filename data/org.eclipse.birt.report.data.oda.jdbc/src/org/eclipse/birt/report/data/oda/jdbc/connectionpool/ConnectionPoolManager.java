@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The connection pool manager of the ODA JDBC driver, loaded by the
+ * ConnectionPoolFactory. A pool is kept for each driver, url and set of
+ * connection properties, such as the user. Pooling is off unless the
+ * {@link #CONNECTION_POOL} setting is "true"; the connections are then opened
+ * by the JDBCDriverManager as before.
+ * <p>
+ * Each setting is read from the application context of the connection, or
+ * else from the system property of the same name. The settings of a pool are
+ * those given when it was created.
+ */
+public class ConnectionPoolManager implements IConnectionPoolManager
+{
+
+	/**
+	 * Whether the connections are pooled. "true" or "false", "false" by
+	 * default.
+	 */
+	public static final String CONNECTION_POOL = "OdaJDBCDriverConnectionPool"; //$NON-NLS-1$
+
+	/**
+	 * The number of connections kept open even when idle. 0 by default.
+	 */
+	public static final String CONNECTION_POOL_MIN_SIZE = "OdaJDBCDriverConnectionPoolMinSize"; //$NON-NLS-1$
+
+	/**
+	 * The maximum number of connections borrowed from a pool at the same time.
+	 * 10 by default.
+	 */
+	public static final String CONNECTION_POOL_MAX_SIZE = "OdaJDBCDriverConnectionPoolMaxSize"; //$NON-NLS-1$
+
+	/**
+	 * How long, in milliseconds, to wait for a connection when the maximum
+	 * number are borrowed. 30 seconds by default.
+	 */
+	public static final String CONNECTION_POOL_MAX_WAIT = "OdaJDBCDriverConnectionPoolMaxWait"; //$NON-NLS-1$
+
+	/**
+	 * How long, in milliseconds, a connection stays idle before being closed;
+	 * 0 to keep the idle connections open. 5 minutes by default.
+	 */
+	public static final String CONNECTION_POOL_IDLE_TIMEOUT = "OdaJDBCDriverConnectionPoolIdleTimeout"; //$NON-NLS-1$
+
+	/**
+	 * The timeout, in seconds, of the check of an idle connection before it
+	 * is borrowed. 5 seconds by default.
+	 */
+	public static final String CONNECTION_POOL_VALIDATION_TIMEOUT = "OdaJDBCDriverConnectionPoolValidationTimeout"; //$NON-NLS-1$
+
+	/**
+	 * The query run to check an idle connection before it is borrowed. By
+	 * default the JDBC driver checks the connection itself.
+	 */
+	public static final String CONNECTION_POOL_VALIDATION_QUERY = "OdaJDBCDriverConnectionPoolValidationQuery"; //$NON-NLS-1$
+
+	/**
+	 * The number of prepared statements kept open on each connection; 0 to
+	 * close the statements. 20 by default.
+	 */
+	public static final String CONNECTION_POOL_STATEMENT_CACHE_SIZE = "OdaJDBCDriverConnectionPoolStatementCacheSize"; //$NON-NLS-1$
+
+	/**
+	 * Whether the pools are registered in the platform MBean server. "true" or
+	 * "false", "false" by default.
+	 */
+	public static final String CONNECTION_POOL_JMX = "OdaJDBCDriverConnectionPoolJMX"; //$NON-NLS-1$
+
+	private static final String MBEAN_DOMAIN = "org.eclipse.birt.report.data.oda.jdbc"; //$NON-NLS-1$
+
+	private static final long DEFAULT_EVICTION_PERIOD = 60000;
+	private static final long MIN_EVICTION_PERIOD = 1000;
+
+	private static Logger logger = Logger.getLogger( ConnectionPoolManager.class.getName( ) );
+
+	private final Map<PoolKey, ConnectionPool> pools = new ConcurrentHashMap<PoolKey, ConnectionPool>( );
+	private final Map<ConnectionPool, ObjectName> mbeanNames = new HashMap<ConnectionPool, ObjectName>( );
+
+	private Timer evictionTimer;
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#getConnection(java.lang.String, java.lang.String, java.util.Properties, java.util.Collection, java.util.Map)
+	 */
+	public java.sql.Connection getConnection( String driverClass, String url,
+			Properties connectionProps, Collection<String> driverClassPath,
+			Map appContext ) throws SQLException, OdaException
+	{
+		if ( !ConnectionPoolSettings.isEnabled( appContext, CONNECTION_POOL ) )
+		{
+			return null;
+		}
+		PoolKey key = new PoolKey( driverClass,
+				url,
+				connectionProps,
+				driverClassPath );
+		ConnectionPool pool = pools.get( key );
+		if ( pool == null )
+		{
+			pool = createPool( key, driverClassPath, appContext );
+		}
+		return pool.borrow( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#closeConnection(java.sql.Connection)
+	 */
+	public void closeConnection( java.sql.Connection connection )
+			throws OdaException, SQLException
+	{
+		PooledConnection pooled = PooledConnection.getPooledConnection( connection );
+		if ( pooled != null )
+		{
+			// The connection may be left in any state, e.g. by a cancelled
+			// query, so it is not used again.
+			pooled.getPool( ).discard( pooled, connection );
+		}
+		else if ( connection != null && !connection.isClosed( ) )
+		{
+			connection.close( );
+		}
+	}
+
+	/**
+	 * Returns the pools, for management purposes.
+	 *
+	 * @return
+	 */
+	public List<ConnectionPoolMBean> getPools( )
+	{
+		return new ArrayList<ConnectionPoolMBean>( pools.values( ) );
+	}
+
+	/**
+	 * Closes all the pools. The connections borrowed at the moment are closed
+	 * once given back.
+	 */
+	public synchronized void close( )
+	{
+		Iterator<ConnectionPool> it = pools.values( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			ConnectionPool pool = it.next( );
+			pool.close( );
+			unregister( pool );
+		}
+		pools.clear( );
+		if ( evictionTimer != null )
+		{
+			evictionTimer.cancel( );
+			evictionTimer = null;
+		}
+	}
+
+	private synchronized ConnectionPool createPool( PoolKey key,
+			Collection<String> driverClassPath, Map appContext )
+	{
+		ConnectionPool pool = pools.get( key );
+		if ( pool != null )
+		{
+			return pool;
+		}
+		Properties props = new Properties( );
+		props.putAll( key.properties );
+		ConnectionPoolSettings settings = new ConnectionPoolSettings( appContext );
+		pool = new ConnectionPool( getPoolName( key ),
+				key.driverClass,
+				key.url,
+				props,
+				driverClassPath,
+				settings );
+		pools.put( key, pool );
+		scheduleEviction( pool, settings );
+		if ( settings.isJmx( ) )
+		{
+			register( pool );
+		}
+		logger.log( Level.FINE, "Connection pool created for " //$NON-NLS-1$
+				+ pool.getName( ) );
+		return pool;
+	}
+
+	private void scheduleEviction( final ConnectionPool pool,
+			ConnectionPoolSettings settings )
+	{
+		if ( evictionTimer == null )
+		{
+			evictionTimer = new Timer( "BIRT ODA JDBC connection pool evictor", //$NON-NLS-1$
+					true );
+		}
+		long period = settings.getIdleTimeout( ) > 0
+				? Math.max( MIN_EVICTION_PERIOD, settings.getIdleTimeout( ) / 2 )
+				: DEFAULT_EVICTION_PERIOD;
+		TimerTask task = new TimerTask( ) {
+
+			public void run( )
+			{
+				try
+				{
+					pool.evict( );
+				}
+				catch ( RuntimeException e )
+				{
+					logger.log( Level.WARNING, "Connection pool eviction failed", e ); //$NON-NLS-1$
+				}
+			}
+		};
+		// Run at once to open the connections of the minimum size.
+		evictionTimer.schedule( task, 0, period );
+	}
+
+	private void register( ConnectionPool pool )
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer( );
+			ObjectName name = new ObjectName( MBEAN_DOMAIN
+					+ ":type=ConnectionPool,name=" //$NON-NLS-1$
+					+ ObjectName.quote( pool.getName( ) + "#" //$NON-NLS-1$
+							+ System.identityHashCode( pool ) ) );
+			server.registerMBean( new StandardMBean( pool,
+					ConnectionPoolMBean.class ), name );
+			mbeanNames.put( pool, name );
+		}
+		catch ( Exception e )
+		{
+			logger.log( Level.WARNING, "Cannot register connection pool MBean", e ); //$NON-NLS-1$
+		}
+	}
+
+	private void unregister( ConnectionPool pool )
+	{
+		ObjectName name = mbeanNames.remove( pool );
+		if ( name == null )
+		{
+			return;
+		}
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer( ).unregisterMBean( name );
+		}
+		catch ( Exception e )
+		{
+			logger.log( Level.FINE, "Cannot unregister connection pool MBean", e ); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns the user and the url of the pool, leaving out the url
+	 * properties which may hold a password.
+	 */
+	private static String getPoolName( PoolKey key )
+	{
+		String url = key.url == null ? "" : key.url; //$NON-NLS-1$
+		int end = url.length( );
+		int semicolon = url.indexOf( ';' );
+		if ( semicolon >= 0 )
+		{
+			end = semicolon;
+		}
+		int question = url.indexOf( '?' );
+		if ( question >= 0 && question < end )
+		{
+			end = question;
+		}
+		String user = key.properties.get( "user" ); //$NON-NLS-1$
+		return ( user == null ? "" : user + "@" ) + url.substring( 0, end ); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * What the connections of a pool are opened with.
+	 */
+	private static final class PoolKey
+	{
+
+		private final String driverClass;
+		private final String url;
+		private final Map<String, String> properties = new HashMap<String, String>( );
+		private final List<String> driverClassPath;
+
+		PoolKey( String driverClass, String url, Properties connectionProps,
+				Collection<String> driverClassPath )
+		{
+			this.driverClass = driverClass;
+			this.url = url;
+			if ( connectionProps != null )
+			{
+				for ( Enumeration<?> names = connectionProps.propertyNames( ); names.hasMoreElements( ); )
+				{
+					String name = (String) names.nextElement( );
+					properties.put( name, connectionProps.getProperty( name ) );
+				}
+			}
+			this.driverClassPath = driverClassPath == null
+					? null : new ArrayList<String>( driverClassPath );
+		}
+
+		public int hashCode( )
+		{
+			int hash = driverClass == null ? 0 : driverClass.hashCode( );
+			hash = hash * 31 + ( url == null ? 0 : url.hashCode( ) );
+			return hash * 31 + properties.hashCode( );
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof PoolKey ) )
+			{
+				return false;
+			}
+			PoolKey key = (PoolKey) obj;
+			return equals( driverClass, key.driverClass )
+					&& equals( url, key.url )
+					&& properties.equals( key.properties )
+					&& equals( driverClassPath, key.driverClassPath );
+		}
+
+		private static boolean equals( Object o1, Object o2 )
+		{
+			return o1 == null ? o2 == null : o1.equals( o2 );
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.util.Map;
+
+/**
+ * The settings of a connection pool, read from the application context of the
+ * connection which creates the pool, or else from the system properties of the
+ * same names.
+ */
+final class ConnectionPoolSettings
+{
+
+	static final int DEFAULT_MIN_SIZE = 0;
+	static final int DEFAULT_MAX_SIZE = 10;
+	static final long DEFAULT_MAX_WAIT = 30000;
+	static final long DEFAULT_IDLE_TIMEOUT = 300000;
+	static final int DEFAULT_VALIDATION_TIMEOUT = 5;
+	static final int DEFAULT_STATEMENT_CACHE_SIZE = 20;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long maxWait;
+	private final long idleTimeout;
+	private final int validationTimeout;
+	private final String validationQuery;
+	private final int statementCacheSize;
+	private final boolean jmx;
+
+	ConnectionPoolSettings( Map appContext )
+	{
+		this.maxSize = Math.max( 1,
+				getInt( appContext,
+						ConnectionPoolManager.CONNECTION_POOL_MAX_SIZE,
+						DEFAULT_MAX_SIZE ) );
+		this.minSize = Math.min( maxSize,
+				Math.max( 0,
+						getInt( appContext,
+								ConnectionPoolManager.CONNECTION_POOL_MIN_SIZE,
+								DEFAULT_MIN_SIZE ) ) );
+		this.maxWait = Math.max( 0,
+				getLong( appContext,
+						ConnectionPoolManager.CONNECTION_POOL_MAX_WAIT,
+						DEFAULT_MAX_WAIT ) );
+		this.idleTimeout = Math.max( 0,
+				getLong( appContext,
+						ConnectionPoolManager.CONNECTION_POOL_IDLE_TIMEOUT,
+						DEFAULT_IDLE_TIMEOUT ) );
+		this.validationTimeout = Math.max( 0,
+				getInt( appContext,
+						ConnectionPoolManager.CONNECTION_POOL_VALIDATION_TIMEOUT,
+						DEFAULT_VALIDATION_TIMEOUT ) );
+		String query = getString( appContext,
+				ConnectionPoolManager.CONNECTION_POOL_VALIDATION_QUERY );
+		this.validationQuery = query == null || query.trim( ).length( ) == 0
+				? null : query;
+		this.statementCacheSize = Math.max( 0,
+				getInt( appContext,
+						ConnectionPoolManager.CONNECTION_POOL_STATEMENT_CACHE_SIZE,
+						DEFAULT_STATEMENT_CACHE_SIZE ) );
+		this.jmx = isEnabled( appContext,
+				ConnectionPoolManager.CONNECTION_POOL_JMX );
+	}
+
+	/**
+	 * Returns whether a boolean setting is on.
+	 *
+	 * @param appContext
+	 * @param name
+	 * @return
+	 */
+	static boolean isEnabled( Map appContext, String name )
+	{
+		return "true".equalsIgnoreCase( getString( appContext, name ) ); //$NON-NLS-1$
+	}
+
+	private static String getString( Map appContext, String name )
+	{
+		Object value = appContext == null ? null : appContext.get( name );
+		if ( value == null )
+		{
+			value = System.getProperty( name );
+		}
+		return value == null ? null : value.toString( ).trim( );
+	}
+
+	private static int getInt( Map appContext, String name, int defaultValue )
+	{
+		return (int) getLong( appContext, name, defaultValue );
+	}
+
+	private static long getLong( Map appContext, String name, long defaultValue )
+	{
+		String value = getString( appContext, name );
+		if ( value == null )
+		{
+			return defaultValue;
+		}
+		try
+		{
+			return Long.parseLong( value );
+		}
+		catch ( NumberFormatException e )
+		{
+			return defaultValue;
+		}
+	}
+
+	int getMinSize( )
+	{
+		return minSize;
+	}
+
+	int getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	long getMaxWait( )
+	{
+		return maxWait;
+	}
+
+	long getIdleTimeout( )
+	{
+		return idleTimeout;
+	}
+
+	int getValidationTimeout( )
+	{
+		return validationTimeout;
+	}
+
+	String getValidationQuery( )
+	{
+		return validationQuery;
+	}
+
+	int getStatementCacheSize( )
+	{
+		return statementCacheSize;
+	}
+
+	boolean isJmx( )
+	{
+		return jmx;
+	}
+}
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A physical connection owned by a connection pool. Each time the connection
+ * is borrowed, the borrower is given a new proxy of it whose close() gives the
+ * connection back to the pool. The settings of the connection changed by the
+ * borrower are restored before it is borrowed again.
+ */
+final class PooledConnection
+{
+
+	/**
+	 * The class of SQL states telling that the connection itself failed.
+	 */
+	private static final String CONNECTION_EXCEPTION_SQL_STATE = "08"; //$NON-NLS-1$
+
+	private static Logger logger = Logger.getLogger( PooledConnection.class.getName( ) );
+
+	private final ConnectionPool pool;
+	private final java.sql.Connection physicalConnection;
+	private final StatementCache statementCache;
+
+	private final boolean autoCommit;
+	private final int transactionIsolation;
+	private final boolean readOnly;
+	private final String catalog;
+
+	/**
+	 * The handle of the current borrower; null while the connection is idle.
+	 */
+	private ConnectionHandle handle;
+
+	private volatile boolean broken;
+
+	/**
+	 * When the connection was last given back to the pool.
+	 */
+	private long idleSince;
+
+	PooledConnection( ConnectionPool pool,
+			java.sql.Connection physicalConnection, int statementCacheSize )
+			throws SQLException
+	{
+		this.pool = pool;
+		this.physicalConnection = physicalConnection;
+		this.statementCache = new StatementCache( this, statementCacheSize );
+		this.autoCommit = physicalConnection.getAutoCommit( );
+		this.transactionIsolation = physicalConnection.getTransactionIsolation( );
+		this.readOnly = physicalConnection.isReadOnly( );
+		this.catalog = physicalConnection.getCatalog( );
+	}
+
+	ConnectionPool getPool( )
+	{
+		return pool;
+	}
+
+	java.sql.Connection getPhysicalConnection( )
+	{
+		return physicalConnection;
+	}
+
+	StatementCache getStatementCache( )
+	{
+		return statementCache;
+	}
+
+	long getIdleSince( )
+	{
+		return idleSince;
+	}
+
+	void setIdleSince( long idleSince )
+	{
+		this.idleSince = idleSince;
+	}
+
+	boolean isBroken( )
+	{
+		return broken;
+	}
+
+	void markBroken( )
+	{
+		broken = true;
+	}
+
+	/**
+	 * Marks the connection as broken if the exception reports a failure of
+	 * the connection, so that it is closed instead of given back to the pool.
+	 *
+	 * @param e
+	 */
+	void checkBroken( SQLException e )
+	{
+		String state = e.getSQLState( );
+		if ( state != null && state.startsWith( CONNECTION_EXCEPTION_SQL_STATE ) )
+		{
+			markBroken( );
+		}
+	}
+
+	/**
+	 * Returns a new proxy of the connection for a borrower.
+	 *
+	 * @return
+	 */
+	synchronized java.sql.Connection lease( )
+	{
+		handle = new ConnectionHandle( );
+		return (java.sql.Connection) Proxy.newProxyInstance( PooledConnection.class.getClassLoader( ),
+				new Class[]{
+					java.sql.Connection.class
+				},
+				handle );
+	}
+
+	/**
+	 * Returns whether the proxy is the one of the current borrower.
+	 *
+	 * @param proxy
+	 * @return
+	 */
+	synchronized boolean isLeasedAs( java.sql.Connection proxy )
+	{
+		return handle != null && Proxy.getInvocationHandler( proxy ) == handle;
+	}
+
+	/**
+	 * Returns the PooledConnection behind a connection given out by a pool, or
+	 * null if the connection does not come from a pool.
+	 *
+	 * @param connection
+	 * @return
+	 */
+	static PooledConnection getPooledConnection( java.sql.Connection connection )
+	{
+		if ( connection == null || !Proxy.isProxyClass( connection.getClass( ) ) )
+		{
+			return null;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler( connection );
+		if ( handler instanceof ConnectionHandle )
+		{
+			return ( (ConnectionHandle) handler ).getPooledConnection( );
+		}
+		return null;
+	}
+
+	/**
+	 * Checks that the connection still works.
+	 *
+	 * @param timeout
+	 *            the timeout in seconds
+	 * @param query
+	 *            the query to run; if null, the JDBC driver checks the
+	 *            connection
+	 * @return
+	 */
+	boolean validate( int timeout, String query )
+	{
+		try
+		{
+			if ( query != null )
+			{
+				java.sql.Statement statement = physicalConnection.createStatement( );
+				try
+				{
+					statement.setQueryTimeout( timeout );
+					statement.execute( query );
+				}
+				finally
+				{
+					statement.close( );
+				}
+				return true;
+			}
+			try
+			{
+				return physicalConnection.isValid( timeout );
+			}
+			catch ( AbstractMethodError e )
+			{
+				// A driver older than JDBC 4
+				return !physicalConnection.isClosed( );
+			}
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Pooled connection is not valid", e ); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	/**
+	 * Restores the connection as it was before being borrowed.
+	 *
+	 * @throws SQLException
+	 */
+	synchronized void reset( ) throws SQLException
+	{
+		handle = null;
+		statementCache.closeLeased( );
+		if ( !physicalConnection.getAutoCommit( ) )
+		{
+			physicalConnection.rollback( );
+		}
+		if ( physicalConnection.getAutoCommit( ) != autoCommit )
+		{
+			physicalConnection.setAutoCommit( autoCommit );
+		}
+		if ( physicalConnection.getTransactionIsolation( ) != transactionIsolation )
+		{
+			physicalConnection.setTransactionIsolation( transactionIsolation );
+		}
+		if ( physicalConnection.isReadOnly( ) != readOnly )
+		{
+			physicalConnection.setReadOnly( readOnly );
+		}
+		if ( catalog != null
+				&& !catalog.equals( physicalConnection.getCatalog( ) ) )
+		{
+			physicalConnection.setCatalog( catalog );
+		}
+		physicalConnection.clearWarnings( );
+	}
+
+	/**
+	 * Closes the physical connection.
+	 */
+	synchronized void destroy( )
+	{
+		handle = null;
+		statementCache.clear( );
+		try
+		{
+			physicalConnection.close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Cannot close pooled connection", e ); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Invocation handler of the connection proxies.
+	 */
+	private final class ConnectionHandle implements InvocationHandler
+	{
+
+		private boolean closed;
+
+		PooledConnection getPooledConnection( )
+		{
+			return PooledConnection.this;
+		}
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "equals".equals( name ) ) //$NON-NLS-1$
+			{
+				return Boolean.valueOf( proxy == args[0] );
+			}
+			if ( "hashCode".equals( name ) ) //$NON-NLS-1$
+			{
+				return Integer.valueOf( System.identityHashCode( proxy ) );
+			}
+			if ( "toString".equals( name ) ) //$NON-NLS-1$
+			{
+				return "Pooled " + physicalConnection; //$NON-NLS-1$
+			}
+			synchronized ( this )
+			{
+				if ( "isClosed".equals( name ) ) //$NON-NLS-1$
+				{
+					return Boolean.valueOf( closed
+							|| physicalConnection.isClosed( ) );
+				}
+				if ( "close".equals( name ) ) //$NON-NLS-1$
+				{
+					if ( !closed )
+					{
+						closed = true;
+						pool.giveBack( PooledConnection.this );
+					}
+					return null;
+				}
+				if ( closed )
+				{
+					throw new SQLException( "Connection is closed" ); //$NON-NLS-1$
+				}
+			}
+			try
+			{
+				if ( statementCache.accept( method ) )
+				{
+					return statementCache.prepare( (java.sql.Connection) proxy,
+							args );
+				}
+				return method.invoke( physicalConnection, args );
+			}
+			catch ( InvocationTargetException e )
+			{
+				Throwable cause = e.getTargetException( );
+				if ( cause instanceof SQLException )
+				{
+					checkBroken( (SQLException) cause );
+				}
+				throw cause;
+			}
+			catch ( SQLException e )
+			{
+				checkBroken( e );
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The prepared statements of one pooled connection which are kept open after
+ * being closed by their user, so that preparing the same query again on the
+ * connection does not go to the database. The statements are handed out
+ * wrapped in a proxy whose close() gives the statement back to the cache. The
+ * least recently used statement is closed when the cache is full.
+ */
+final class StatementCache
+{
+
+	private static final int NO_RESULT_SET_TYPE = -1;
+
+	private static Logger logger = Logger.getLogger( StatementCache.class.getName( ) );
+
+	private final PooledConnection connection;
+	private final int capacity;
+
+	/**
+	 * The statements not used at the moment, in access order.
+	 */
+	private final LinkedHashMap<StatementKey, CachedStatement> idleStatements;
+
+	/**
+	 * The handles given out and not closed yet.
+	 */
+	private final Set<StatementHandle> leasedStatements = new HashSet<StatementHandle>( );
+
+	StatementCache( PooledConnection connection, int capacity )
+	{
+		this.connection = connection;
+		this.capacity = capacity;
+		this.idleStatements = new LinkedHashMap<StatementKey, CachedStatement>( 16,
+				0.75f,
+				true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<StatementKey, CachedStatement> eldest )
+			{
+				if ( size( ) > StatementCache.this.capacity )
+				{
+					closeQuietly( eldest.getValue( ).statement );
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns whether the Connection method can be served by this cache.
+	 *
+	 * @param method
+	 * @return
+	 */
+	boolean accept( Method method )
+	{
+		if ( capacity <= 0 || !"prepareStatement".equals( method.getName( ) ) )
+		{
+			return false;
+		}
+		Class<?>[] types = method.getParameterTypes( );
+		if ( types.length == 1 )
+		{
+			return types[0] == String.class;
+		}
+		return types.length == 3
+				&& types[0] == String.class && types[1] == int.class
+				&& types[2] == int.class;
+	}
+
+	/**
+	 * Prepares the statement with the arguments of an accepted
+	 * prepareStatement call.
+	 *
+	 * @param connectionProxy
+	 *            the connection given to the user
+	 * @param args
+	 * @return
+	 * @throws SQLException
+	 */
+	synchronized PreparedStatement prepare(
+			java.sql.Connection connectionProxy, Object[] args )
+			throws SQLException
+	{
+		StatementKey key = args.length == 1
+				? new StatementKey( (String) args[0],
+						NO_RESULT_SET_TYPE,
+						NO_RESULT_SET_TYPE )
+				: new StatementKey( (String) args[0],
+						( (Integer) args[1] ).intValue( ),
+						( (Integer) args[2] ).intValue( ) );
+		CachedStatement cached = idleStatements.remove( key );
+		if ( cached != null )
+		{
+			connection.getPool( ).statementCacheHit( );
+		}
+		else
+		{
+			connection.getPool( ).statementCacheMiss( );
+			java.sql.Connection physical = connection.getPhysicalConnection( );
+			PreparedStatement statement = key.resultSetType == NO_RESULT_SET_TYPE
+					? physical.prepareStatement( key.sql )
+					: physical.prepareStatement( key.sql,
+							key.resultSetType,
+							key.resultSetConcurrency );
+			cached = new CachedStatement( statement );
+		}
+		StatementHandle handle = new StatementHandle( key,
+				cached,
+				connectionProxy );
+		leasedStatements.add( handle );
+		return (PreparedStatement) Proxy.newProxyInstance( StatementCache.class.getClassLoader( ),
+				new Class[]{
+					PreparedStatement.class
+				},
+				handle );
+	}
+
+	/**
+	 * Gives back the statements the user of the connection did not close.
+	 */
+	synchronized void closeLeased( )
+	{
+		List<StatementHandle> handles = new ArrayList<StatementHandle>( leasedStatements );
+		for ( int i = 0; i < handles.size( ); i++ )
+		{
+			handles.get( i ).release( );
+		}
+	}
+
+	/**
+	 * Closes all the cached statements.
+	 */
+	synchronized void clear( )
+	{
+		Iterator<CachedStatement> it = idleStatements.values( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			closeQuietly( it.next( ).statement );
+		}
+		idleStatements.clear( );
+		leasedStatements.clear( );
+	}
+
+	/**
+	 * @return the number of statements kept open for reuse
+	 */
+	synchronized int size( )
+	{
+		return idleStatements.size( );
+	}
+
+	private synchronized void giveBack( StatementHandle handle )
+	{
+		leasedStatements.remove( handle );
+		CachedStatement cached = handle.cached;
+		if ( handle.uncacheable || connection.isBroken( ) )
+		{
+			closeQuietly( cached.statement );
+			return;
+		}
+		try
+		{
+			cached.reset( handle.changed );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Cannot reset a cached statement", e ); //$NON-NLS-1$
+			closeQuietly( cached.statement );
+			return;
+		}
+		CachedStatement replaced = idleStatements.put( handle.key, cached );
+		if ( replaced != null && replaced != cached )
+		{
+			// The same query was prepared twice on the connection.
+			closeQuietly( replaced.statement );
+		}
+	}
+
+	private static void closeQuietly( PreparedStatement statement )
+	{
+		try
+		{
+			statement.close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Cannot close a cached statement", e ); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * The query and result set options a statement was prepared with.
+	 */
+	private static final class StatementKey
+	{
+
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+
+		StatementKey( String sql, int resultSetType, int resultSetConcurrency )
+		{
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+		}
+
+		public int hashCode( )
+		{
+			return ( sql.hashCode( ) * 31 + resultSetType ) * 31
+					+ resultSetConcurrency;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof StatementKey ) )
+			{
+				return false;
+			}
+			StatementKey key = (StatementKey) obj;
+			return resultSetType == key.resultSetType
+					&& resultSetConcurrency == key.resultSetConcurrency
+					&& sql.equals( key.sql );
+		}
+	}
+
+	/**
+	 * A physical statement with the settings it was created with, which are
+	 * restored before it is reused.
+	 */
+	private static final class CachedStatement
+	{
+
+		private final PreparedStatement statement;
+		private final int maxRows;
+		private final int fetchSize;
+		private final int queryTimeout;
+
+		CachedStatement( PreparedStatement statement ) throws SQLException
+		{
+			this.statement = statement;
+			this.maxRows = statement.getMaxRows( );
+			this.fetchSize = statement.getFetchSize( );
+			this.queryTimeout = statement.getQueryTimeout( );
+		}
+
+		void reset( boolean changed ) throws SQLException
+		{
+			statement.clearParameters( );
+			statement.clearWarnings( );
+			if ( changed )
+			{
+				statement.setMaxRows( maxRows );
+				statement.setFetchSize( fetchSize );
+				statement.setQueryTimeout( queryTimeout );
+			}
+		}
+	}
+
+	/**
+	 * Invocation handler of the statement proxies.
+	 */
+	private final class StatementHandle implements InvocationHandler
+	{
+
+		private final StatementKey key;
+		private final CachedStatement cached;
+		private final java.sql.Connection connectionProxy;
+
+		private boolean closed;
+
+		/**
+		 * Whether one of the settings restored on reuse was changed.
+		 */
+		private boolean changed;
+
+		/**
+		 * Whether a setting which is not restored was changed.
+		 */
+		private boolean uncacheable;
+
+		StatementHandle( StatementKey key, CachedStatement cached,
+				java.sql.Connection connectionProxy )
+		{
+			this.key = key;
+			this.cached = cached;
+			this.connectionProxy = connectionProxy;
+		}
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "equals".equals( name ) ) //$NON-NLS-1$
+			{
+				return Boolean.valueOf( proxy == args[0] );
+			}
+			if ( "hashCode".equals( name ) ) //$NON-NLS-1$
+			{
+				return Integer.valueOf( System.identityHashCode( proxy ) );
+			}
+			if ( "toString".equals( name ) ) //$NON-NLS-1$
+			{
+				return "Pooled " + cached.statement; //$NON-NLS-1$
+			}
+			if ( "isClosed".equals( name ) ) //$NON-NLS-1$
+			{
+				return Boolean.valueOf( closed );
+			}
+			if ( "close".equals( name ) ) //$NON-NLS-1$
+			{
+				release( );
+				return null;
+			}
+			if ( closed )
+			{
+				throw new SQLException( "Statement is closed" ); //$NON-NLS-1$
+			}
+			if ( "getConnection".equals( name ) ) //$NON-NLS-1$
+			{
+				return connectionProxy;
+			}
+			if ( "setMaxRows".equals( name ) //$NON-NLS-1$
+					|| "setFetchSize".equals( name ) //$NON-NLS-1$
+					|| "setQueryTimeout".equals( name ) ) //$NON-NLS-1$
+			{
+				changed = true;
+			}
+			else if ( name.startsWith( "set" ) && !isParameterSetter( method ) ) //$NON-NLS-1$
+			{
+				uncacheable = true;
+			}
+			try
+			{
+				return method.invoke( cached.statement, args );
+			}
+			catch ( InvocationTargetException e )
+			{
+				Throwable cause = e.getTargetException( );
+				if ( cause instanceof SQLException )
+				{
+					connection.checkBroken( (SQLException) cause );
+				}
+				throw cause;
+			}
+		}
+
+		/**
+		 * The parameter setters of PreparedStatement all take the parameter
+		 * index first, while the option setters of Statement do not.
+		 */
+		private boolean isParameterSetter( Method method )
+		{
+			Class<?>[] types = method.getParameterTypes( );
+			return method.getDeclaringClass( ) != java.sql.Statement.class
+					&& types.length > 1 && types[0] == int.class;
+		}
+
+		private void release( )
+		{
+			synchronized ( StatementCache.this )
+			{
+				if ( closed )
+				{
+					return;
+				}
+				closed = true;
+				giveBack( this );
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.io.File;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.EngineConfig;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+
+/**
+ * Tests that a design opened again is copied from the cached design, and
+ * parsed again once its file is modified.
+ */
+public class DesignCacheTest extends EngineCase
+{
+
+	static final String DESIGN_RESOURCE = "org/eclipse/birt/report/engine/api/ReportEngineTest.rptdesign";
+
+	protected void setUp( ) throws Exception
+	{
+		EngineConfig config = new EngineConfig( );
+		config.setDesignCacheSize( 1 );
+		engine = createReportEngine( config );
+		removeFile( REPORT_DESIGN );
+		copyResource( DESIGN_RESOURCE, REPORT_DESIGN );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		super.tearDown( );
+		removeFile( REPORT_DESIGN );
+	}
+
+	public void testOpenCachedDesign( ) throws Exception
+	{
+		DesignCache cache = ( (ReportEngine) engine ).getDesignCache( );
+		IReportRunnable first = engine.openReportDesign( REPORT_DESIGN );
+		IReportRunnable second = engine.openReportDesign( REPORT_DESIGN );
+		assertEquals( 1, cache.size( ) );
+		assertEquals( 1, cache.getHits( ) );
+		// each open gets its own design
+		assertNotSame( first, second );
+		assertNotSame( first.getDesignHandle( ), second.getDesignHandle( ) );
+		assertEquals( first.getReportName( ), second.getReportName( ) );
+	}
+
+	public void testModifiedDesign( ) throws Exception
+	{
+		DesignCache cache = ( (ReportEngine) engine ).getDesignCache( );
+		engine.openReportDesign( REPORT_DESIGN );
+		File file = new File( REPORT_DESIGN );
+		file.setLastModified( file.lastModified( ) + 10000 );
+		engine.openReportDesign( REPORT_DESIGN );
+		assertEquals( 0, cache.getHits( ) );
+		assertEquals( 2, cache.getMisses( ) );
+
+		( (ReportEngine) engine ).removeCachedDesign( REPORT_DESIGN );
+		assertEquals( 0, cache.size( ) );
+		engine.openReportDesign( REPORT_DESIGN );
+		( (ReportEngine) engine ).clearDesignCache( );
+		assertEquals( 0, cache.size( ) );
+	}
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.IEngineTask;
+import org.eclipse.birt.report.engine.api.IPDFRenderOption;
+import org.eclipse.birt.report.engine.api.IRenderTask;
+import org.eclipse.birt.report.engine.api.IReportDocument;
+import org.eclipse.birt.report.engine.api.RenderOption;
+
+/**
+ * Tests the splitting of the pages laid out in parallel into chunks, and the
+ * pages rendered in parallel, which must be those rendered by a single task.
+ */
+public class ParallelPageRenderTest extends EngineCase
+{
+
+	static final String DESIGN_RESOURCE = "org/eclipse/birt/report/engine/api/impl/parallel_page_render.xml";
+
+	static final String WORKER_PREFIX = "BIRT Render Worker-";
+
+	protected void tearDown( ) throws Exception
+	{
+		super.tearDown( );
+		removeFile( REPORT_DESIGN );
+		removeFile( REPORT_DOCUMENT );
+	}
+
+	private List<long[]> pages( long[]... ranges )
+	{
+		List<long[]> list = new ArrayList<long[]>( );
+		for ( long[] range : ranges )
+		{
+			list.add( range );
+		}
+		return list;
+	}
+
+	public void testThreadCount( )
+	{
+		assertEquals( 1, ParallelPageRender.getThreadCount( 100, 1 ) );
+		assertEquals( 1, ParallelPageRender.getThreadCount(
+				ParallelPageRender.MAX_CHUNK_PAGES, 4 ) );
+		assertEquals( 2, ParallelPageRender.getThreadCount(
+				ParallelPageRender.MAX_CHUNK_PAGES + 1, 4 ) );
+		assertEquals( 4, ParallelPageRender.getThreadCount( 5000, 4 ) );
+	}
+
+	public void testSplitPages( )
+	{
+		List<String> chunks = ParallelPageRender.splitPages( pages( new long[]{
+				1, 30}, new long[]{41, 52} ), 2 );
+		assertEquals( 3, chunks.size( ) );
+		assertEquals( "1-20", chunks.get( 0 ) );
+		assertEquals( "21-30,41-50", chunks.get( 1 ) );
+		assertEquals( "51-52", chunks.get( 2 ) );
+	}
+
+	public void testSplitFewPages( )
+	{
+		// each thread gets a chunk
+		List<String> chunks = ParallelPageRender.splitPages( pages( new long[]{
+				3, 9} ), 3 );
+		assertEquals( 3, chunks.size( ) );
+		assertEquals( "3-5", chunks.get( 0 ) );
+		assertEquals( "6-8", chunks.get( 1 ) );
+		assertEquals( "9-9", chunks.get( 2 ) );
+	}
+
+	/**
+	 * The pages laid out by several tasks are output in order, with the
+	 * content of the pages laid out by a single task.
+	 */
+	public void testRenderPostscript( ) throws Exception
+	{
+		IReportDocument document = createReportDocument( DESIGN_RESOURCE );
+		try
+		{
+			long pageCount = document.getPageCount( );
+			// several chunks for each task
+			assertTrue( pageCount > 2 * ParallelPageRender.MAX_CHUNK_PAGES );
+
+			WorkerCheckingStream serial = new WorkerCheckingStream( );
+			assertEquals( pageCount, render( document, null, serial, "all" ) );
+			assertFalse( serial.usedWorkers );
+
+			WorkerCheckingStream parallel = new WorkerCheckingStream( );
+			assertEquals( pageCount, render( document,
+					Integer.valueOf( 3 ),
+					parallel,
+					"all" ) );
+			assertTrue( parallel.usedWorkers );
+
+			List<String> serialPages = getPages( serial.toString( ) );
+			List<String> parallelPages = getPages( parallel.toString( ) );
+			assertEquals( pageCount, serialPages.size( ) );
+			assertEquals( serialPages, parallelPages );
+			assertEquals( serial.toString( ), parallel.toString( ) );
+
+			// a page range split over the chunks
+			serial = new WorkerCheckingStream( );
+			assertEquals( 55, render( document, null, serial, "2-30,35-60" ) );
+			parallel = new WorkerCheckingStream( );
+			assertEquals( 55, render( document,
+					Integer.valueOf( 3 ),
+					parallel,
+					"2-30,35-60" ) );
+			assertTrue( parallel.usedWorkers );
+			assertEquals( getPages( serial.toString( ) ),
+					getPages( parallel.toString( ) ) );
+		}
+		finally
+		{
+			document.close( );
+		}
+	}
+
+	/**
+	 * The task cancelled while the pages are output stops the tasks laying
+	 * out the pages.
+	 */
+	public void testCancel( ) throws Exception
+	{
+		IReportDocument document = createReportDocument( DESIGN_RESOURCE );
+		try
+		{
+			long pageCount = document.getPageCount( );
+			final IRenderTask task = engine.createRenderTask( document );
+			WorkerCheckingStream output = new WorkerCheckingStream( ) {
+
+				public synchronized void write( byte[] b, int off, int len )
+				{
+					super.write( b, off, len );
+					// cancel once a few pages are output
+					if ( task.getStatus( ) == IEngineTask.STATUS_RUNNING
+							&& getPages( toString( ) ).size( ) > 2 )
+					{
+						task.cancel( );
+					}
+				}
+			};
+			try
+			{
+				task.setRenderOption( createRenderOption( Integer.valueOf( 3 ),
+						output ) );
+				task.render( );
+				assertEquals( IEngineTask.STATUS_CANCELLED, task.getStatus( ) );
+			}
+			finally
+			{
+				task.close( );
+			}
+			assertTrue( output.usedWorkers );
+			assertTrue( getPages( output.toString( ) ).size( ) < pageCount );
+
+			// the tasks laying out the pages are done once the render returns
+			for ( Thread thread : Thread.getAllStackTraces( ).keySet( ) )
+			{
+				if ( thread.getName( ).startsWith( WORKER_PREFIX ) )
+				{
+					thread.join( 10000 );
+					assertFalse( thread.isAlive( ) );
+				}
+			}
+		}
+		finally
+		{
+			document.close( );
+		}
+	}
+
+	/**
+	 * @return the number of pages rendered
+	 */
+	private long render( IReportDocument document, Integer threads,
+			ByteArrayOutputStream output, String pageRange ) throws Exception
+	{
+		IRenderTask task = engine.createRenderTask( document );
+		try
+		{
+			task.setRenderOption( createRenderOption( threads, output ) );
+			task.setPageRange( pageRange );
+			task.render( );
+			assertEquals( IEngineTask.STATUS_SUCCEEDED, task.getStatus( ) );
+			return task.getPageCount( );
+		}
+		finally
+		{
+			task.close( );
+		}
+	}
+
+	private RenderOption createRenderOption( Integer threads,
+			ByteArrayOutputStream output )
+	{
+		RenderOption option = new RenderOption( );
+		option.setOutputFormat( "postscript" ); //$NON-NLS-1$
+		option.setOutputStream( output );
+		option.setOption( IPDFRenderOption.RESERVE_DOCUMENT_PAGE_NUMBERS,
+				Boolean.TRUE );
+		if ( threads != null )
+		{
+			option.setOption( IPDFRenderOption.PARALLEL_RENDER_THREADS, threads );
+		}
+		return option;
+	}
+
+	/**
+	 * @param postscript
+	 * @return the pages of the output, from each page comment to the next
+	 */
+	private static List<String> getPages( String postscript )
+	{
+		List<String> pages = new ArrayList<String>( Arrays.asList( postscript
+				.split( "%%Page: " ) ) );
+		// the prolog of the document
+		pages.remove( 0 );
+		return pages;
+	}
+
+	/**
+	 * Keeps the output, and whether the render workers were running while it
+	 * was written.
+	 */
+	private static class WorkerCheckingStream extends ByteArrayOutputStream
+	{
+
+		boolean usedWorkers;
+		private int writeCount;
+
+		public synchronized void write( byte[] b, int off, int len )
+		{
+			super.write( b, off, len );
+			checkWorkers( );
+		}
+
+		public synchronized void write( int b )
+		{
+			super.write( b );
+			checkWorkers( );
+		}
+
+		private void checkWorkers( )
+		{
+			if ( usedWorkers || writeCount++ % 100 != 0 )
+			{
+				return;
+			}
+			for ( Thread thread : Thread.getAllStackTraces( ).keySet( ) )
+			{
+				if ( thread.getName( ).startsWith( WORKER_PREFIX ) )
+				{
+					usedWorkers = true;
+					return;
+				}
+			}
+		}
+	}
+}
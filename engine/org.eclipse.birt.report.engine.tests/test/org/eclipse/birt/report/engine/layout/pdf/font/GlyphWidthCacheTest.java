@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import junit.framework.TestCase;
+
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * Tests that the widths of the words measured with the cached character widths
+ * are the widths measured by the font.
+ */
+public class GlyphWidthCacheTest extends TestCase
+{
+
+	public void testWidth( ) throws Exception
+	{
+		BaseFont bf = BaseFont.createFont( BaseFont.HELVETICA,
+				BaseFont.WINANSI, false );
+		GlyphWidthCache cache = GlyphWidthCache.getCache( bf );
+		assertSame( cache, GlyphWidthCache.getCache( bf ) );
+		assertNull( GlyphWidthCache.getCache( null ) );
+
+		String[] words = new String[]{"", "1,234.56", "Total:", "WWii",
+				"\u00e9t\u00e9", "\u4e2d\u6587", "\ud840\udc00x"};
+		for ( int i = 0; i < words.length; i++ )
+		{
+			assertEquals( words[i], bf.getWidth( words[i] ), cache.getWidth(
+					bf, words[i] ) );
+			// measured again from the cached widths
+			assertEquals( words[i], bf.getWidth( words[i] ), cache.getWidth(
+					bf, words[i] ) );
+		}
+	}
+
+	public void testHitCount( ) throws Exception
+	{
+		BaseFont bf = BaseFont.createFont( BaseFont.COURIER,
+				BaseFont.WINANSI, false );
+		GlyphWidthCache cache = GlyphWidthCache.getCache( bf );
+		long hits = cache.getHitCount( );
+		long misses = cache.getMissCount( );
+		cache.getWidth( bf, "1001" );
+		assertEquals( misses + 2, cache.getMissCount( ) );
+		assertEquals( hits + 2, cache.getHitCount( ) );
+
+		FontInfo fontInfo = new FontInfo( bf, 10, 0, 400, false );
+		assertEquals( bf.getWidthPoint( "1001", 10 ), fontInfo
+				.getWordWidth( "1001" ), 0f );
+		assertEquals( hits + 6, cache.getHitCount( ) );
+	}
+}
@@ -490,6 +490,35 @@ public class EngineConfig extends PlatformConfig implements IEngineConfig
 		return 0;
 	}
 
+	/**
+	 * Set the maximum count of the report designs opened from files which are
+	 * kept parsed by the engine. A design opened again is then copied from the
+	 * parsed one, unless its file or the file of a library it uses has been
+	 * modified.
+	 * 
+	 * @param size
+	 *            the count of designs, 0 to parse each design opened
+	 */
+	public void setDesignCacheSize( int size )
+	{
+		setProperty( DESIGN_CACHE_SIZE, Integer.valueOf( size ) );
+	}
+
+	/**
+	 * Get the maximum count of the report designs kept parsed by the engine.
+	 * 
+	 * @return the count of designs, 0 if the designs are not cached
+	 */
+	public int getDesignCacheSize( )
+	{
+		Object size = getProperty( DESIGN_CACHE_SIZE );
+		if ( size instanceof Integer )
+		{
+			return ( (Integer) size ).intValue( );
+		}
+		return 0;// the designs are not cached by default
+	}
+
 	/**
 	 * Sets default emitter for an output format.
 	 * 
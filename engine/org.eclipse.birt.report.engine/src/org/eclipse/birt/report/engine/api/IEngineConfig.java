@@ -64,4 +64,9 @@ public interface IEngineConfig extends IPlatformConfig
 	 * The max rows per query
 	 */
 	static final String MAX_ROWS_PER_QUERY = "maxRowsPerQuery";
+
+	/**
+	 * the maximum count of report designs the engine keeps parsed.
+	 */
+	static final String DESIGN_CACHE_SIZE = "designCacheSize"; //$NON-NLS-1$
 }
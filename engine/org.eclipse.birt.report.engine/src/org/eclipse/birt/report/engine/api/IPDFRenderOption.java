@@ -95,6 +95,14 @@ public interface IPDFRenderOption extends IRenderOption
 	 */
 	public static final String REPAGINATE_FOR_PDF = "pdfRenderOption.repaginateForPDF";
 
+	/**
+	 * The number of threads laying out the pages of a report document at the
+	 * same time, an Integer. The pages are laid out in parallel only if they
+	 * keep the page numbers of the document, see
+	 * RESERVE_DOCUMENT_PAGE_NUMBERS. It is 1 by default.
+	 */
+	public static final String PARALLEL_RENDER_THREADS = "pdfRenderOption.parallelRenderThreads";
+
 	/**
 	 * @deprecated
 	 * define the font directory used by PDF.
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.report.model.api.LibraryHandle;
+import org.eclipse.birt.report.model.api.util.URIUtil;
+
+/**
+ * Caches the report designs opened from files, so that a design opened again
+ * is not parsed again.
+ * <p>
+ * The cached runnables are never given to the tasks: each open returns a
+ * clone of the cached runnable, which the task may change as it likes. An
+ * entry is dropped once the design file, or the file of a library it uses, has
+ * been modified since the design was parsed. The least recently used design
+ * is dropped once more than the maximum count of designs are cached.
+ */
+class DesignCache
+{
+
+	/**
+	 * the cached designs, in the order they have been used.
+	 */
+	private LinkedHashMap<String, DesignEntry> designs;
+
+	private int hits;
+
+	private int misses;
+
+	/**
+	 * @param maxSize
+	 *            the maximum count of designs to cache
+	 */
+	DesignCache( final int maxSize )
+	{
+		designs = new LinkedHashMap<String, DesignEntry>( 16, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<String, DesignEntry> eldest )
+			{
+				return size( ) > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * returns a copy of the design parsed from a file.
+	 *
+	 * @param file
+	 *            the design file
+	 * @param locator
+	 *            the resource locator used to parse the design
+	 * @return a clone of the cached runnable, null if the design is not cached
+	 *         or the cached design is out of date.
+	 */
+	ReportRunnable get( File file, Object locator )
+	{
+		String key = getKey( file );
+		DesignEntry entry;
+		synchronized ( designs )
+		{
+			entry = designs.get( key );
+			if ( entry == null || entry.locator != locator
+					|| entry.isModified( ) )
+			{
+				if ( entry != null )
+				{
+					designs.remove( key );
+				}
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		// the model can't copy the same design on several threads
+		synchronized ( entry )
+		{
+			return entry.runnable.cloneRunnable( );
+		}
+	}
+
+	/**
+	 * caches a design parsed from a file. The runnable must not be used once it
+	 * is cached.
+	 *
+	 * @param file
+	 *            the design file
+	 * @param locator
+	 *            the resource locator used to parse the design
+	 * @param runnable
+	 *            the runnable created from the design
+	 * @param lastModified
+	 *            the modification time of the file when it was parsed
+	 */
+	void put( File file, Object locator, ReportRunnable runnable,
+			long lastModified )
+	{
+		DesignEntry entry = new DesignEntry( file, locator, runnable,
+				lastModified );
+		synchronized ( designs )
+		{
+			designs.put( getKey( file ), entry );
+		}
+	}
+
+	/**
+	 * drops the cached design of a file.
+	 *
+	 * @param file
+	 *            the design file
+	 */
+	void remove( File file )
+	{
+		synchronized ( designs )
+		{
+			designs.remove( getKey( file ) );
+		}
+	}
+
+	/**
+	 * drops all the cached designs.
+	 */
+	void clear( )
+	{
+		synchronized ( designs )
+		{
+			designs.clear( );
+		}
+	}
+
+	int size( )
+	{
+		synchronized ( designs )
+		{
+			return designs.size( );
+		}
+	}
+
+	int getHits( )
+	{
+		synchronized ( designs )
+		{
+			return hits;
+		}
+	}
+
+	int getMisses( )
+	{
+		synchronized ( designs )
+		{
+			return misses;
+		}
+	}
+
+	private static String getKey( File file )
+	{
+		return file.getAbsolutePath( );
+	}
+
+	private static class DesignEntry
+	{
+
+		Object locator;
+
+		ReportRunnable runnable;
+
+		/**
+		 * the files the design is read from: the design file then the files
+		 * of the libraries.
+		 */
+		List<File> files = new ArrayList<File>( );
+
+		/**
+		 * the modification time of each file when the design was parsed.
+		 */
+		List<Long> modifiedTimes = new ArrayList<Long>( );
+
+		DesignEntry( File file, Object locator, ReportRunnable runnable,
+				long lastModified )
+		{
+			this.locator = locator;
+			this.runnable = runnable;
+			files.add( file );
+			modifiedTimes.add( Long.valueOf( lastModified ) );
+			// only the libraries saved in local files are checked
+			Iterator iter = runnable.getReport( ).getAllLibraries( )
+					.iterator( );
+			while ( iter.hasNext( ) )
+			{
+				LibraryHandle library = (LibraryHandle) iter.next( );
+				String path = URIUtil.getLocalPath( library.getFileName( ) );
+				if ( path != null )
+				{
+					File libraryFile = new File( path );
+					files.add( libraryFile );
+					modifiedTimes.add( Long.valueOf( libraryFile
+							.lastModified( ) ) );
+				}
+			}
+		}
+
+		boolean isModified( )
+		{
+			for ( int i = 0; i < files.size( ); i++ )
+			{
+				if ( files.get( i ).lastModified( ) != modifiedTimes.get( i )
+						.longValue( ) )
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.IPDFRenderOption;
+import org.eclipse.birt.report.engine.api.IRenderOption;
+import org.eclipse.birt.report.engine.api.IReportDocument;
+import org.eclipse.birt.report.engine.api.RenderOption;
+import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.IPageContent;
+import org.eclipse.birt.report.engine.emitter.ContentEmitterAdapter;
+import org.eclipse.birt.report.engine.emitter.IContentEmitter;
+import org.eclipse.birt.report.engine.executor.ExecutionContext;
+import org.eclipse.birt.report.engine.i18n.MessageConstants;
+import org.eclipse.birt.report.engine.layout.ILayoutPageHandler;
+
+/**
+ * Renders the pages of a report document with several render tasks laying out
+ * chunks of the pages at the same time. Each task reads the pages of its chunks
+ * from the document with its own readers and page hints, and keeps the pages
+ * it lays out. The pages are then output in order to the emitter of the task
+ * rendering the document.
+ * <p>
+ * The pages must keep the page numbers of the document, so that the pages of a
+ * chunk can be laid out without the pages before them.
+ */
+class ParallelPageRender
+{
+
+	/**
+	 * the maximum number of pages laid out by a task at a time. The pages laid
+	 * out are kept until they are output, so the chunks are kept small.
+	 */
+	static final int MAX_CHUNK_PAGES = 20;
+
+	private RenderTask task;
+	private IContentEmitter emitter;
+	private ILayoutPageHandler pageHandler;
+	private int threadCount;
+
+	private ConcurrentLinkedQueue<PageChunkRenderTask> idleWorkers = new ConcurrentLinkedQueue<PageChunkRenderTask>( );
+	private List<PageChunkRenderTask> workers = new ArrayList<PageChunkRenderTask>( );
+
+	/**
+	 * @param task
+	 *            the task rendering the document
+	 * @param emitter
+	 *            the emitter the pages are output to
+	 * @param pageHandler
+	 *            the handler notified of the pages output
+	 * @param threadCount
+	 *            the number of tasks laying out the pages
+	 */
+	ParallelPageRender( RenderTask task, IContentEmitter emitter,
+			ILayoutPageHandler pageHandler, int threadCount )
+	{
+		this.task = task;
+		this.emitter = emitter;
+		this.pageHandler = pageHandler;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * @param pageCount
+	 *            the number of pages to render
+	 * @param maxThreadCount
+	 *            the number of threads asked for
+	 * @return the number of tasks the pages are laid out by, 1 if they are not
+	 *         laid out in parallel
+	 */
+	static int getThreadCount( long pageCount, int maxThreadCount )
+	{
+		long chunkCount = ( pageCount + MAX_CHUNK_PAGES - 1 ) / MAX_CHUNK_PAGES;
+		if ( maxThreadCount <= 1 || chunkCount <= 1 )
+		{
+			return 1;
+		}
+		return (int) Math.min( maxThreadCount, chunkCount );
+	}
+
+	/**
+	 * Splits the pages into the page ranges laid out by a task at a time.
+	 *
+	 * @param pageSequences
+	 *            the ranges of the pages to render
+	 * @param threadCount
+	 *            the number of tasks laying out the pages
+	 * @return the page ranges of the chunks
+	 */
+	static List<String> splitPages( List<long[]> pageSequences,
+			int threadCount )
+	{
+		long pageCount = 0;
+		for ( long[] pages : pageSequences )
+		{
+			pageCount += pages[1] - pages[0] + 1;
+		}
+		// each task lays out at least a chunk
+		long chunkSize = Math.min( MAX_CHUNK_PAGES, Math.max( 1,
+				( pageCount + threadCount - 1 ) / threadCount ) );
+
+		List<String> chunks = new ArrayList<String>( );
+		StringBuffer chunk = new StringBuffer( );
+		long chunkPages = 0;
+		for ( long[] pages : pageSequences )
+		{
+			long start = pages[0];
+			while ( start <= pages[1] )
+			{
+				long end = Math.min( pages[1], start + chunkSize - chunkPages
+						- 1 );
+				if ( chunk.length( ) > 0 )
+				{
+					chunk.append( ',' );
+				}
+				chunk.append( start ).append( '-' ).append( end );
+				chunkPages += end - start + 1;
+				if ( chunkPages == chunkSize )
+				{
+					chunks.add( chunk.toString( ) );
+					chunk.setLength( 0 );
+					chunkPages = 0;
+				}
+				start = end + 1;
+			}
+		}
+		if ( chunk.length( ) > 0 )
+		{
+			chunks.add( chunk.toString( ) );
+		}
+		return chunks;
+	}
+
+	/**
+	 * Lays out the pages and outputs them in order.
+	 *
+	 * @param pageSequences
+	 *            the ranges of the pages to render
+	 * @return the number of pages output
+	 * @throws BirtException
+	 */
+	long render( List<long[]> pageSequences ) throws BirtException
+	{
+		List<String> chunks = splitPages( pageSequences, threadCount );
+		ExecutorService executor = Executors.newFixedThreadPool( threadCount,
+				new ThreadFactory( ) {
+
+					private AtomicInteger count = new AtomicInteger( );
+
+					public Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT Render Worker-" //$NON-NLS-1$
+								+ count.incrementAndGet( ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+		ExecutionContext executionContext = task.executionContext;
+		LinkedList<Future<List<LaidOutPage>>> pending = new LinkedList<Future<List<LaidOutPage>>>( );
+		long pageCount = 0;
+		try
+		{
+			int next = 0;
+			while ( !executionContext.isCanceled( ) )
+			{
+				// keep a chunk ahead for each task, so that the tasks do not
+				// wait while the pages are output
+				while ( next < chunks.size( ) && pending.size( ) <= threadCount )
+				{
+					pending.add( executor.submit( new ChunkRender( chunks
+							.get( next ), next == 0 ) ) );
+					next++;
+				}
+				if ( pending.isEmpty( ) )
+				{
+					break;
+				}
+				List<LaidOutPage> pages = getPages( pending.removeFirst( ) );
+				for ( LaidOutPage page : pages )
+				{
+					page.output( );
+					pageCount++;
+				}
+			}
+		}
+		finally
+		{
+			if ( !pending.isEmpty( ) )
+			{
+				for ( Future<List<LaidOutPage>> future : pending )
+				{
+					future.cancel( false );
+				}
+				for ( PageChunkRenderTask worker : getWorkers( ) )
+				{
+					worker.cancel( );
+				}
+			}
+			executor.shutdown( );
+			waitForWorkers( executor );
+			for ( PageChunkRenderTask worker : getWorkers( ) )
+			{
+				// the fatal errors are thrown by the chunks
+				for ( Object error : worker.executionContext.getErrors( ) )
+				{
+					if ( error instanceof BirtException )
+					{
+						executionContext.addException( (BirtException) error );
+					}
+				}
+				worker.close( );
+			}
+		}
+		return pageCount;
+	}
+
+	private List<LaidOutPage> getPages( Future<List<LaidOutPage>> future )
+			throws BirtException
+	{
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new EngineException( MessageConstants.REPORT_RUN_ERROR, e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof BirtException )
+			{
+				throw (BirtException) cause;
+			}
+			throw new EngineException( MessageConstants.REPORT_RUN_ERROR,
+					cause );
+		}
+	}
+
+	private void waitForWorkers( ExecutorService executor )
+	{
+		// the workers are closed once they are done
+		boolean interrupted = false;
+		while ( !executor.isTerminated( ) )
+		{
+			try
+			{
+				executor.awaitTermination( 1, TimeUnit.SECONDS );
+			}
+			catch ( InterruptedException e )
+			{
+				interrupted = true;
+			}
+		}
+		if ( interrupted )
+		{
+			Thread.currentThread( ).interrupt( );
+		}
+	}
+
+	private synchronized List<PageChunkRenderTask> getWorkers( )
+	{
+		return new ArrayList<PageChunkRenderTask>( workers );
+	}
+
+	private PageChunkRenderTask getWorker( ) throws EngineException
+	{
+		PageChunkRenderTask worker = idleWorkers.poll( );
+		if ( worker != null )
+		{
+			return worker;
+		}
+		// the task is created by the thread it renders the pages on
+		worker = new PageChunkRenderTask( task.engine, task.reportDocument );
+		synchronized ( this )
+		{
+			workers.add( worker );
+		}
+		worker.setLocale( task.getULocale( ) );
+		worker.setTimeZone( task.getTimeZone( ) );
+		worker.setAppContext( task.executionContext.getAppContext( ) );
+
+		Map options = new HashMap( task.getRenderOption( ).getOptions( ) );
+		// the pages are output by the task rendering the document
+		options.remove( IPDFRenderOption.PARALLEL_RENDER_THREADS );
+		options.remove( IRenderOption.OUTPUT_STREAM );
+		options.remove( IRenderOption.OUTPUT_FILE_NAME );
+		worker.setRenderOption( new RenderOption( options ) );
+		return worker;
+	}
+
+	/**
+	 * Lays out the pages of a chunk with an idle task.
+	 */
+	private class ChunkRender implements Callable<List<LaidOutPage>>
+	{
+
+		private String pageRange;
+		private boolean startsOutput;
+
+		ChunkRender( String pageRange, boolean startsOutput )
+		{
+			this.pageRange = pageRange;
+			this.startsOutput = startsOutput;
+		}
+
+		public List<LaidOutPage> call( ) throws Exception
+		{
+			PageChunkRenderTask worker = getWorker( );
+			try
+			{
+				return worker.renderPages( pageRange, startsOutput );
+			}
+			finally
+			{
+				idleWorkers.add( worker );
+			}
+		}
+	}
+
+	/**
+	 * A page laid out by a task, with the area of the page. A page of the
+	 * document laid out into several pages keeps the area of the last one.
+	 */
+	private class LaidOutPage
+	{
+
+		private IPageContent page;
+		private Object area;
+
+		LaidOutPage( IPageContent page )
+		{
+			this.page = page;
+			this.area = page.getExtension( IContent.LAYOUT_EXTENSION );
+		}
+
+		void output( ) throws BirtException
+		{
+			page.setExtension( IContent.LAYOUT_EXTENSION, area );
+			emitter.startPage( page );
+			emitter.endPage( page );
+			if ( pageHandler != null )
+			{
+				pageHandler.onPage( page.getPageNumber( ), null );
+			}
+		}
+	}
+
+	/**
+	 * Keeps the pages laid out instead of outputting them.
+	 */
+	private class PageCollector extends ContentEmitterAdapter
+	{
+
+		private String format;
+		private List<LaidOutPage> pages = new ArrayList<LaidOutPage>( );
+
+		PageCollector( String format )
+		{
+			this.format = format;
+		}
+
+		public String getOutputFormat( )
+		{
+			return format;
+		}
+
+		public void endPage( IPageContent page ) throws BirtException
+		{
+			pages.add( new LaidOutPage( page ) );
+		}
+	}
+
+	/**
+	 * The task laying out the pages of the chunks. The scripts run before and
+	 * after the report is rendered are run by the task rendering the document
+	 * only.
+	 */
+	private class PageChunkRenderTask extends RenderTask
+	{
+
+		private PageCollector collector;
+
+		PageChunkRenderTask( ReportEngine engine, IReportDocument document )
+		{
+			super( engine, document );
+		}
+
+		List<LaidOutPage> renderPages( String pageRange, boolean startsOutput )
+				throws EngineException
+		{
+			this.startsOutput = startsOutput;
+			collector = new PageCollector( renderOptions.getOutputFormat( ) );
+			render( pageRange );
+			List<LaidOutPage> pages = collector.pages;
+			collector = null;
+			return pages;
+		}
+
+		protected IContentEmitter createContentEmitter( )
+				throws EngineException
+		{
+			// the emitter of the format sets up the options of the layout
+			super.createContentEmitter( );
+			return collector;
+		}
+
+		protected void startRender( )
+		{
+		}
+
+		protected void closeRender( )
+		{
+		}
+	}
+}
@@ -84,6 +84,9 @@ public class RenderTask extends EngineTask implements IRenderTask
 	//the flag of render page by page
 	protected boolean PDFRenderPageByPage = true;
 	
+	// the pages rendered start the output, see ParallelPageRender
+	protected boolean startsOutput = true;
+	
 	// the html layout engine
 	private IReportLayoutEngine layoutEngine = null;
 
@@ -526,6 +529,38 @@ public class RenderTask extends EngineTask implements IRenderTask
 			return pageCount;
 		}
 
+		/**
+		 * @return the number of threads laying out the pages, 1 if the pages
+		 *         are laid out by this task only.
+		 */
+		protected int getParallelRenderThreads( long filteredTotalPage,
+				long totalPage )
+		{
+			Object threads = renderOptions
+					.getOption( IPDFRenderOption.PARALLEL_RENDER_THREADS );
+			if ( !( threads instanceof Integer )
+					|| !ExtensionManager.PAPER_SIZE_PAGINATION
+							.equals( pagination ) )
+			{
+				return 1;
+			}
+			// the pages of a chunk are laid out without the pages before them,
+			// so the pages keep the page numbers of the document
+			Object reserveDocumentPageNumbers = renderOptions
+					.getOption( IPDFRenderOption.RESERVE_DOCUMENT_PAGE_NUMBERS );
+			boolean reservePageNumbers = reserveDocumentPageNumbers instanceof Boolean
+					? ( (Boolean) reserveDocumentPageNumbers ).booleanValue( )
+					: executionContext.isFixedLayout( );
+			if ( !reservePageNumbers
+					|| filteredTotalPage != totalPage
+					|| renderOptions.getOption( IPDFRenderOption.PDF_PAGE_LIMIT ) != null )
+			{
+				return 1;
+			}
+			return ParallelPageRender.getThreadCount( getPageCount( ),
+					( (Integer) threads ).intValue( ) );
+		}
+
 		protected IPageHint getPageHint( ReportPageExecutor executor,
 				long pageNumber )
 		{
@@ -574,6 +609,7 @@ public class RenderTask extends EngineTask implements IRenderTask
 			setupRenderOption( );
 			startRender( );
 			IContentEmitter emitter = createContentEmitter( );
+			IContentEmitter contentEmitter = emitter;
 			supportHtmlPagination( );
 
 			//prepare the layout engine
@@ -609,6 +645,7 @@ public class RenderTask extends EngineTask implements IRenderTask
 						renderOptions, executionContext,
 						getDocumentTotalPage( ) );
 				pdfEmitter.setPageHandler( layoutPageHandler );
+				pdfEmitter.setFirstPage( startsOutput );
 				
 				emitter = pdfEmitter;
 			}
@@ -632,6 +669,13 @@ public class RenderTask extends EngineTask implements IRenderTask
                     physicalPageSequences );
 
             boolean paged = needPagedExecutor( physicalPageSequences );
+            int renderThreads = getParallelRenderThreads( filteredTotalPage,
+                    totalPage );
+            if ( renderThreads > 1 )
+            {
+                // the pages are laid out one by one
+                paged = true;
+            }
 
             //prepare the executor
             ReportPageExecutor pagesExecutor = new ReportPageExecutor(
@@ -646,7 +690,15 @@ public class RenderTask extends EngineTask implements IRenderTask
 			emitter.start( report );
 			layoutEngine.setTotalPageCount( getTotalPage( ) );
 
-			if ( ExtensionManager.PAPER_SIZE_PAGINATION.equals( pagination ) )
+			if ( renderThreads > 1 )
+			{
+				// the pages are laid out by other tasks and output in order
+				ParallelPageRender parallelRender = new ParallelPageRender(
+						RenderTask.this, contentEmitter, layoutPageHandler,
+						renderThreads );
+				outputPageCount = parallelRender.render( physicalPageSequences );
+			}
+			else if ( ExtensionManager.PAPER_SIZE_PAGINATION.equals( pagination ) )
 			{
 				if ( !paged )
 				{
@@ -729,7 +781,10 @@ public class RenderTask extends EngineTask implements IRenderTask
 			{
 				layoutEngine.layout( executor, report, emitter, false );
 			}
-			outputPageCount = layoutEngine.getPageCount( );
+			if ( renderThreads <= 1 )
+			{
+				outputPageCount = layoutEngine.getPageCount( );
+			}
 
 			layoutEngine.close( );
 			layoutEngine = null;
@@ -108,6 +108,11 @@ public class ReportEngine implements IReportEngine
 	
 	private LinkedObjectManager<ReportDocumentReader> openedDocuments;
 
+	/**
+	 * the designs opened from files, null if they are not cached.
+	 */
+	private DesignCache designCache;
+
 	private EngineExtensionManager extensionManager = new EngineExtensionManager();
 	
 	private String version;
@@ -139,6 +144,11 @@ public class ReportEngine implements IReportEngine
 				config );
 		this.helper = new ReportEngineHelper( this );
 		openedDocuments = new LinkedObjectManager<ReportDocumentReader>( );
+		int designCacheSize = config.getDesignCacheSize( );
+		if ( designCacheSize > 0 )
+		{
+			designCache = new DesignCache( designCacheSize );
+		}
 		IStatusHandler handler = config.getStatusHandler( );
 		if ( handler != null )
 		{
@@ -472,6 +482,13 @@ public class ReportEngine implements IReportEngine
 			}
 			openedDocuments.clear( );
 		}
+		if ( designCache != null )
+		{
+			logger.log( Level.FINE,
+					"design cache hits: {0}, misses: {1}", new Object[]{ //$NON-NLS-1$
+							designCache.getHits( ), designCache.getMisses( )} );
+			designCache.clear( );
+		}
 		IStatusHandler handler = config.getStatusHandler( );
 		if ( handler != null )
 		{
@@ -804,6 +821,38 @@ public class ReportEngine implements IReportEngine
 		}
 	}
 
+	DesignCache getDesignCache( )
+	{
+		return designCache;
+	}
+
+	/**
+	 * drops the parsed design of a file, so that it is parsed again the next
+	 * time it is opened. A modified design is parsed again anyway, this is
+	 * needed only if a resource the design uses has been modified.
+	 * 
+	 * @param designName
+	 *            the path of the design file
+	 */
+	public void removeCachedDesign( String designName )
+	{
+		if ( designCache != null )
+		{
+			designCache.remove( new File( designName ) );
+		}
+	}
+
+	/**
+	 * drops all the parsed designs.
+	 */
+	public void clearDesignCache( )
+	{
+		if ( designCache != null )
+		{
+			designCache.clear( );
+		}
+	}
+
 	public String getVersion( )
 	{
 		return BundleVersionUtil
@@ -115,6 +115,18 @@ public class ReportEngineHelper
 					designName );
 		}
 
+		DesignCache designCache = engine.getDesignCache( );
+		if ( designCache != null )
+		{
+			ReportRunnable cachedRunnable = designCache.get( file, locator );
+			if ( cachedRunnable != null )
+			{
+				return cachedRunnable;
+			}
+		}
+		// a modification made while the design is parsed must be seen
+		long lastModified = file.lastModified( );
+		IReportRunnable runnable;
 		try
 		{
 			InputStream in = new FileInputStream( file );
@@ -127,7 +139,20 @@ public class ReportEngineHelper
 			{
 				systemId = designName;
 			}
-			return openReportDesign( systemId, in, locator);
+			try
+			{
+				runnable = openReportDesign( systemId, in, locator );
+			}
+			finally
+			{
+				try
+				{
+					in.close( );
+				}
+				catch ( IOException ignored )
+				{
+				}
+			}
 		}
 		catch ( FileNotFoundException ioe)
 		{
@@ -138,6 +163,16 @@ public class ReportEngineHelper
 					MessageConstants.DESIGN_FILE_NOT_FOUND_EXCEPTION,
 					designName );
 		}
+		if ( designCache == null )
+		{
+			return runnable;
+		}
+		// the parsed runnable is kept unchanged in the cache
+		ReportRunnable newRunnable = ( (ReportRunnable) runnable )
+				.cloneRunnable( );
+		designCache.put( file, locator, (ReportRunnable) runnable,
+				lastModified );
+		return newRunnable;
 	}
 
 	/**
@@ -21,6 +21,11 @@ public class FontInfo
 {
 	private BaseFont bf;
 
+	/**
+	 * the widths of the characters of the font.
+	 */
+	private GlyphWidthCache widths;
+
 	private float fontSize;
 
 	private int fontStyle;
@@ -40,6 +45,7 @@ public class FontInfo
 			boolean simulation )
 	{
 		this.bf = bf;
+		this.widths = GlyphWidthCache.getCache( bf );
 		this.fontStyle = fontStyle;
 		this.simulation = simulation;
 		this.fontSize = fontSize;
@@ -50,6 +56,7 @@ public class FontInfo
 	public FontInfo( FontInfo fontInfo )
 	{
 		this.bf = fontInfo.bf;
+		this.widths = fontInfo.widths;
 		this.fontStyle = fontInfo.fontStyle;
 		this.simulation = fontInfo.simulation;
 		this.fontSize = fontInfo.fontSize;
@@ -199,7 +206,8 @@ public class FontInfo
 			return word.length( ) * ( fontSize / 2 );
 		}
 
-		return bf.getWidthPoint( word, fontSize );
+		// the same as bf.getWidthPoint( word, fontSize )
+		return widths.getWidth( bf, word ) * 0.001f * fontSize;
 	}
 	
 	public int getItalicAdjust( )
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * Caches the widths of the characters of a font, so that the width of a word
+ * is the sum of the cached widths of its characters.
+ * <p>
+ * The widths are kept in font units, the width of a word in points is the
+ * width in font units * font size / 1000, as BaseFont.getWidthPoint( ) does.
+ * So the widths of a font are shared by all its sizes, and by all the tasks
+ * laying out reports with it.
+ * <p>
+ * The widths are saved in pages of 256 characters, each width is saved plus
+ * one so that 0 means the width of the character is not known yet. A width
+ * is then either unknown or right, even when it is read on a thread which did
+ * not save it.
+ */
+public class GlyphWidthCache
+{
+
+	private static final int PAGE_SIZE = 256;
+
+	private static final int PAGE_COUNT = 0x10000 / PAGE_SIZE;
+
+	/**
+	 * the caches of the fonts. The fonts are not kept by the caches.
+	 */
+	private static Map<BaseFont, GlyphWidthCache> caches = Collections
+			.synchronizedMap( new WeakHashMap<BaseFont, GlyphWidthCache>( ) );
+
+	/**
+	 * the widths + 1 of the characters, by page.
+	 */
+	private int[][] pages = new int[PAGE_COUNT][];
+
+	private AtomicLong hits = new AtomicLong( );
+
+	private AtomicLong misses = new AtomicLong( );
+
+	/**
+	 * returns the cache of the widths of a font.
+	 *
+	 * @param bf
+	 *            the font
+	 * @return the cache, null if the font is null
+	 */
+	public static GlyphWidthCache getCache( BaseFont bf )
+	{
+		if ( bf == null )
+		{
+			return null;
+		}
+		synchronized ( caches )
+		{
+			GlyphWidthCache cache = caches.get( bf );
+			if ( cache == null )
+			{
+				cache = new GlyphWidthCache( );
+				caches.put( bf, cache );
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Gets the width of a word, in font units.
+	 *
+	 * @param bf
+	 *            the font of the cache
+	 * @param word
+	 *            the word
+	 * @return the width, the same as BaseFont.getWidth( word )
+	 */
+	public int getWidth( BaseFont bf, String word )
+	{
+		int length = word.length( );
+		int width = 0;
+		int missCount = 0;
+		for ( int i = 0; i < length; i++ )
+		{
+			char c = word.charAt( i );
+			if ( Character.isHighSurrogate( c )
+					|| Character.isLowSurrogate( c ) )
+			{
+				// the font measures the surrogate pairs as a whole
+				misses.addAndGet( length );
+				return bf.getWidth( word );
+			}
+			int[] page = pages[c / PAGE_SIZE];
+			if ( page == null )
+			{
+				page = createPage( c / PAGE_SIZE );
+			}
+			int charWidth = page[c % PAGE_SIZE];
+			if ( charWidth == 0 )
+			{
+				charWidth = bf.getWidth( c ) + 1;
+				page[c % PAGE_SIZE] = charWidth;
+				missCount++;
+			}
+			width += charWidth - 1;
+		}
+		if ( missCount > 0 )
+		{
+			misses.addAndGet( missCount );
+		}
+		hits.addAndGet( length - missCount );
+		return width;
+	}
+
+	private synchronized int[] createPage( int index )
+	{
+		if ( pages[index] == null )
+		{
+			pages[index] = new int[PAGE_SIZE];
+		}
+		return pages[index];
+	}
+
+	/**
+	 * @return the count of the characters whose width was cached when they
+	 *         were measured
+	 */
+	public long getHitCount( )
+	{
+		return hits.get( );
+	}
+
+	/**
+	 * @return the count of the characters measured by the font
+	 */
+	public long getMissCount( )
+	{
+		return misses.get( );
+	}
+}
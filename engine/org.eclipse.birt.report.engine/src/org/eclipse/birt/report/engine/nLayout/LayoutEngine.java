@@ -970,6 +970,18 @@ public class LayoutEngine extends LayoutEmitterAdapter
 
 	}
 
+	/**
+	 * Sets whether the next page output is the first page of the report,
+	 * whose header is hidden if the master page does not show it on the first
+	 * page.
+	 * 
+	 * @param isFirst
+	 */
+	public void setFirstPage( boolean isFirst )
+	{
+		this.isFirst = isFirst;
+	}
+
 	public ILayoutPageHandler getPageHandler( )
 	{
 		return pageHandler;
@@ -0,0 +1,182 @@
+/*************************************************************************************
+ * Copyright (c) 2011, 2012, 2013 James Talbut.
+ *  jim-emitters@spudsoft.co.uk
+ *  
+ * All rights reserved. This program and the accompanying materials 
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     James Talbut - Initial implementation.
+ ************************************************************************************/
+
+package uk.co.spudsoft.birt.emitters.excel.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.report.engine.css.engine.BIRTCSSEngine;
+import org.eclipse.birt.report.engine.css.engine.CSSEngine;
+import org.eclipse.birt.report.engine.css.engine.StyleConstants;
+import org.eclipse.birt.report.engine.css.engine.value.DataFormatValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.css.CSSPrimitiveValue;
+
+import uk.co.spudsoft.birt.emitters.excel.BirtStyle;
+import uk.co.spudsoft.birt.emitters.excel.FontManager;
+import uk.co.spudsoft.birt.emitters.excel.StyleManager;
+import uk.co.spudsoft.birt.emitters.excel.StyleManagerUtils;
+import uk.co.spudsoft.birt.emitters.excel.StyleManagerXUtils;
+import uk.co.spudsoft.birt.emitters.excel.framework.Logger;
+
+/**
+ * Check that the cached CellStyles and Fonts are shared by equivalent BIRT styles
+ * whose values are distinct instances, and only by them.
+ */
+public class StyleCacheTest {
+
+	private static final int[] PROPERTIES = {
+		StyleConstants.STYLE_FONT_FAMILY,
+		StyleConstants.STYLE_FONT_SIZE,
+		StyleConstants.STYLE_FONT_WEIGHT,
+		StyleConstants.STYLE_FONT_STYLE,
+		StyleConstants.STYLE_TEXT_UNDERLINE,
+		StyleConstants.STYLE_COLOR,
+		StyleConstants.STYLE_TEXT_ALIGN,
+		StyleConstants.STYLE_BACKGROUND_COLOR,
+		StyleConstants.STYLE_BORDER_TOP_STYLE,
+		StyleConstants.STYLE_BORDER_TOP_WIDTH,
+		StyleConstants.STYLE_BORDER_TOP_COLOR,
+		StyleConstants.STYLE_WHITE_SPACE,
+		StyleConstants.STYLE_VERTICAL_ALIGN,
+		BirtStyle.TEXT_ROTATION,
+	};
+	
+	// The properties whose values are parsed into new instances, rather than shared identifiers
+	private static final int[] NUMBER_AND_COLOUR_PROPERTIES = {
+		StyleConstants.STYLE_FONT_SIZE,
+		StyleConstants.STYLE_COLOR,
+		StyleConstants.STYLE_BACKGROUND_COLOR,
+		StyleConstants.STYLE_BORDER_TOP_WIDTH,
+		StyleConstants.STYLE_BORDER_TOP_COLOR,
+		StyleConstants.STYLE_DATA_FORMAT,
+		BirtStyle.TEXT_ROTATION,
+	};
+	
+	private CSSEngine cssEngine;
+	private StyleManager sm;
+	
+	@Before
+	public void setUp() {
+		cssEngine = new BIRTCSSEngine();
+		Logger log = new Logger( "uk.co.spudsoft.birt.emitters.excel.tests" );
+		sm = new StyleManager( new XSSFWorkbook(), log, StyleManagerXUtils.getFactory().create(log), cssEngine, Locale.UK );
+	}
+	
+	/**
+	 * Create a BIRT style whose values are all new instances.
+	 */
+	private BirtStyle createStyle() {
+		BirtStyle style = new BirtStyle( cssEngine );
+		style.parseString( StyleConstants.STYLE_FONT_FAMILY, "Arial" );
+		style.parseString( StyleConstants.STYLE_FONT_SIZE, "12pt" );
+		style.parseString( StyleConstants.STYLE_FONT_WEIGHT, "bold" );
+		style.parseString( StyleConstants.STYLE_FONT_STYLE, "italic" );
+		style.parseString( StyleConstants.STYLE_TEXT_UNDERLINE, "underline" );
+		style.parseString( StyleConstants.STYLE_COLOR, "#336699" );
+		style.parseString( StyleConstants.STYLE_TEXT_ALIGN, "center" );
+		style.parseString( StyleConstants.STYLE_BACKGROUND_COLOR, "#FFFF00" );
+		style.parseString( StyleConstants.STYLE_BORDER_TOP_STYLE, "solid" );
+		style.parseString( StyleConstants.STYLE_BORDER_TOP_WIDTH, "1pt" );
+		style.parseString( StyleConstants.STYLE_BORDER_TOP_COLOR, "#CCCCCC" );
+		style.parseString( StyleConstants.STYLE_WHITE_SPACE, "nowrap" );
+		style.parseString( StyleConstants.STYLE_VERTICAL_ALIGN, "top" );
+		style.setFloat( BirtStyle.TEXT_ROTATION, CSSPrimitiveValue.CSS_DEG, 45.0f );
+		style.setProperty( StyleConstants.STYLE_DATA_FORMAT, createDataFormat( "#,##0.00" ) );
+		return style;
+	}
+	
+	private static DataFormatValue createDataFormat( String numberPattern ) {
+		DataFormatValue dataFormat = new DataFormatValue();
+		dataFormat.setNumberFormat( new String( numberPattern ), null );
+		return dataFormat;
+	}
+	
+	@Test
+	public void testEquivalentStyles() {
+		BirtStyle style1 = createStyle();
+		BirtStyle style2 = createStyle();
+		for( int prop : NUMBER_AND_COLOUR_PROPERTIES ) {
+			assertNotSame( "Property " + prop, style1.getProperty( prop ), style2.getProperty( prop ) );
+		}
+		for( int prop : PROPERTIES ) {
+			assertEquals( "Property " + prop, StyleManagerUtils.valueHashCode( style1.getProperty( prop ) ), StyleManagerUtils.valueHashCode( style2.getProperty( prop ) ) );
+		}
+		assertEquals( StyleManagerUtils.dataFormatHashCode( (DataFormatValue)style1.getProperty( StyleConstants.STYLE_DATA_FORMAT ) )
+				, StyleManagerUtils.dataFormatHashCode( (DataFormatValue)style2.getProperty( StyleConstants.STYLE_DATA_FORMAT ) ) );
+		assertEquals( FontManager.fontHashCode( style1 ), FontManager.fontHashCode( style2 ) );
+		
+		CellStyle cellStyle = sm.getStyle( style1 );
+		// Changing the style once cached must not change the cached copy
+		style1.parseString( StyleConstants.STYLE_BORDER_TOP_COLOR, "#000000" );
+		style1.parseString( StyleConstants.STYLE_FONT_SIZE, "8pt" );
+		
+		assertSame( cellStyle, sm.getStyle( style2 ) );
+		assertSame( cellStyle, sm.getStyle( createStyle() ) );
+		assertEquals( 1, sm.getStyleCacheMisses() );
+		assertEquals( 2, sm.getStyleCacheHits() );
+		
+		Font font = sm.getFontManager().getFont( style2 );
+		assertEquals( cellStyle.getFontIndex(), font.getIndex() );
+		assertSame( font, sm.getFontManager().getFont( createStyle() ) );
+		assertEquals( 1, sm.getFontManager().getFontCacheMisses() );
+		assertEquals( 2, sm.getFontManager().getFontCacheHits() );
+	}
+	
+	@Test
+	public void testDifferentStyles() {
+		CellStyle cellStyle = sm.getStyle( createStyle() );
+		
+		// A different border shares the font
+		BirtStyle border = createStyle();
+		border.parseString( StyleConstants.STYLE_BORDER_TOP_COLOR, "#000000" );
+		CellStyle borderStyle = sm.getStyle( border );
+		assertNotSame( cellStyle, borderStyle );
+		assertEquals( cellStyle.getFontIndex(), borderStyle.getFontIndex() );
+		
+		// A different font size needs a new font
+		BirtStyle fontSize = createStyle();
+		fontSize.parseString( StyleConstants.STYLE_FONT_SIZE, "8pt" );
+		CellStyle fontSizeStyle = sm.getStyle( fontSize );
+		assertNotSame( cellStyle, fontSizeStyle );
+		assertNotSame( borderStyle, fontSizeStyle );
+		assertTrue( cellStyle.getFontIndex() != fontSizeStyle.getFontIndex() );
+		
+		BirtStyle dataFormat = createStyle();
+		dataFormat.setProperty( StyleConstants.STYLE_DATA_FORMAT, createDataFormat( "0.0" ) );
+		assertNotSame( cellStyle, sm.getStyle( dataFormat ) );
+		
+		BirtStyle rotation = createStyle();
+		rotation.setFloat( BirtStyle.TEXT_ROTATION, CSSPrimitiveValue.CSS_DEG, 90.0f );
+		assertNotSame( cellStyle, sm.getStyle( rotation ) );
+		
+		assertEquals( 0, sm.getStyleCacheHits() );
+		assertEquals( 5, sm.getStyleCacheMisses() );
+		assertEquals( 2, sm.getFontManager().getFontCacheMisses() );
+		
+		// Each of them is still found
+		assertSame( borderStyle, sm.getStyle( border ) );
+		assertSame( fontSizeStyle, sm.getStyle( fontSize ) );
+		assertEquals( 2, sm.getStyleCacheHits() );
+	}
+
+}
@@ -84,6 +84,10 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	public static final String DISPLAYZEROS_PROP = "ExcelEmitter.DisplayZeros";
 
 	public static final String TEMPLATE_FILE = "ExcelEmitter.TemplateFile";
+
+	public static final String STREAMING_XLSX = "ExcelEmitter.StreamingXlsx";
+	public static final String STREAMING_WINDOW_SIZE = "ExcelEmitter.StreamingWindowSize";
+	public static final int DEFAULT_STREAMING_WINDOW_SIZE = 100;
 	
 	/**
 	 * Logger.
@@ -163,6 +167,27 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	 */
 	protected abstract Workbook openWorkbook( File templateFile ) throws IOException;
 	
+	/**
+	 * Constructs a new workbook whose finished rows can be written out to temporary files,
+	 * instead of being kept in memory until the report ends.
+	 * <p>
+	 * By default the workbook is constructed by createWorkbook().
+	 * </p>
+	 * @return
+	 * The new workbook.
+	 */
+	protected Workbook createStreamingWorkbook() {
+		return createWorkbook();
+	}
+	
+	/**
+	 * Releases the resources held by a workbook once it has been written.
+	 * @param wb
+	 * The workbook that has been written.
+	 */
+	protected void disposeWorkbook( Workbook wb ) {
+	}
+	
 	
 	public void initialize( IEmitterServices service ) throws BirtException {
 		renderOptions = service.getRenderOption();
@@ -206,6 +231,8 @@ public abstract class ExcelEmitter implements IContentEmitter {
 						, ex
 						);			
 			}
+		} else if( EmitterServices.booleanOption( renderOptions, report, STREAMING_XLSX, false ) ) {
+			wb = createStreamingWorkbook();
 		} else {
 		    wb = createWorkbook();
 		}
@@ -217,6 +244,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	    
 		handlerState = new HandlerState(this, log, smu, wb, sm, renderOptions);
 		handlerState.setHandler( new PageHandler(log, null) );
+		handlerState.setStreamingWindowSize( EmitterServices.integerOption( renderOptions, (IContent)null, STREAMING_WINDOW_SIZE, DEFAULT_STREAMING_WINDOW_SIZE ) );
 
 		if( EmitterServices.booleanOption( handlerState.getRenderOptions(), report, ExcelEmitter.SINGLE_SHEET_PAGE_BREAKS, false ) ) {
 			handlerState.getRenderOptions().setOption(ExcelEmitter.SINGLE_SHEET, Boolean.TRUE);
@@ -232,6 +260,8 @@ public abstract class ExcelEmitter implements IContentEmitter {
 		
 		log.removePrefix('>');
 		log.debug("end:", report);
+		log.debug("Style cache hits: ", handlerState.getSm().getStyleCacheHits(), ", misses: ", handlerState.getSm().getStyleCacheMisses()
+				, "; font cache hits: ", handlerState.getSm().getFontManager().getFontCacheHits(), ", misses: ", handlerState.getSm().getFontManager().getFontCacheMisses());
 		
 		String reportTitle = report.getTitle();
 		if( ( handlerState.getWb().getNumberOfSheets() == 1 ) 
@@ -275,6 +305,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 					log.debug("ex:", ex.toString());
 				}
 			}
+			disposeWorkbook( handlerState.getWb() );
 			handlerState = null;
 			reportOutputFilename = null;			
 			reportOutputStream = null;
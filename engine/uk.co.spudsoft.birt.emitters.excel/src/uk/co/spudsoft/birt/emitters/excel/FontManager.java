@@ -15,7 +15,9 @@
 package uk.co.spudsoft.birt.emitters.excel;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.FontUnderline;
@@ -52,7 +54,10 @@ public class FontManager {
 	
 	private Workbook workbook;
 	private StyleManagerUtils smu;
-	private List<FontPair> fonts = new ArrayList<FontPair>();
+	private Map<Integer, List<FontPair>> fontsByHash = new HashMap<Integer, List<FontPair>>();
+	private Map<Short, FontPair> fontsByIndex = new HashMap<Short, FontPair>();
+	private int fontCacheHits;
+	private int fontCacheMisses;
 	private Font defaultFont = null;
 	private CSSEngine cssEngine;
 
@@ -75,6 +80,20 @@ public class FontManager {
 		return cssEngine;
 	}
 	
+	/**
+	 * Obtain the number of font requests that were satisfied by an existing font.
+	 */
+	public int getFontCacheHits() {
+		return fontCacheHits;
+	}
+	
+	/**
+	 * Obtain the number of font requests that required a new font to be created.
+	 */
+	public int getFontCacheMisses() {
+		return fontCacheMisses;
+	}
+	
 	/**
 	 * Remove quotes surrounding a string.
 	 * @param family
@@ -138,14 +157,33 @@ public class FontManager {
 		return true;
 	}
 	
+	/**
+	 * Calculate a hash code for a BIRT style, as far as its font definition is concerned.
+	 * <br/>
+	 * Every attribute tested in fontsEquivalent must be used in this method.
+	 * @param style
+	 * The BIRT style to hash.
+	 * @return
+	 * A hash code that is the same for any two styles for which fontsEquivalent returns true.
+	 */
+	public static int fontHashCode(BirtStyle style) {
+		int hash = 0;
+		for( int i = 0; i < COMPARE_CSS_PROPERTIES.length; ++i ) {
+			hash = 31 * hash + StyleManagerUtils.valueHashCode( style.getProperty( COMPARE_CSS_PROPERTIES[ i ] ) );
+		}
+		return hash;
+	}
+	
 	/**
 	 * Create a new POI Font based upon a BIRT style.
 	 * @param birtStyle
 	 * The BIRT style to base the Font upon.
+	 * @param hash
+	 * The fontHashCode of birtStyle.
 	 * @return
 	 * The Font whose attributes are described by the BIRT style. 
 	 */
-	private Font createFont(BirtStyle birtStyle) {
+	private Font createFont(BirtStyle birtStyle, int hash) {
 		Font font = workbook.createFont();
 		
 		// Family
@@ -177,7 +215,14 @@ public class FontManager {
 		// Colour
 		smu.addColourToFont( workbook, font, cleanupQuotes( birtStyle.getProperty( StyleConstants.STYLE_COLOR ) ) );
 						
-		fonts.add(new FontPair(birtStyle, font));
+		FontPair fontPair = new FontPair(birtStyle.clone(), font);
+		List<FontPair> candidates = fontsByHash.get(hash);
+		if( candidates == null ) {
+			candidates = new ArrayList<FontPair>(1);
+			fontsByHash.put(hash, candidates);
+		}
+		candidates.add(fontPair);
+		fontsByIndex.put(font.getIndex(), fontPair);
 		return font;
 	}
 	
@@ -221,20 +266,25 @@ public class FontManager {
 			return getDefaultFont();
 		}
 		
-		for(FontPair fontPair : fonts) {
-			if(fontsEquivalent(birtStyle, fontPair.birtStyle)) {
-				return fontPair.poiFont;
+		int hash = fontHashCode(birtStyle);
+		List<FontPair> candidates = fontsByHash.get(hash);
+		if( candidates != null ) {
+			for(FontPair fontPair : candidates) {
+				if(fontsEquivalent(birtStyle, fontPair.birtStyle)) {
+					++fontCacheHits;
+					return fontPair.poiFont;
+				}
 			}
 		}
 		
-		return createFont(birtStyle);
+		++fontCacheMisses;
+		return createFont(birtStyle, hash);
 	}
 	
 	private BirtStyle birtStyleFromFont( Font source ) {
-		for(FontPair fontPair : fonts) {
-			if( source.equals(fontPair.poiFont) ) {
-				return fontPair.birtStyle.clone();
-			}
+		FontPair fontPair = fontsByIndex.get(source.getIndex());
+		if( fontPair != null ) {
+			return fontPair.birtStyle.clone();
 		}
 		
 		return new BirtStyle(cssEngine);
@@ -13,13 +13,18 @@
 
 package uk.co.spudsoft.birt.emitters.excel;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.engine.api.IRenderOption;
 import org.eclipse.birt.report.engine.api.ReportEngine;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
@@ -64,6 +69,15 @@ public class HandlerState {
 	 * Report engine
 	 */
 	private ReportEngine reportEngine;
+	/**
+	 * The number of finished rows of a streamed sheet kept in memory before the current row
+	 */
+	private int streamingWindowSize = ExcelEmitter.DEFAULT_STREAMING_WINDOW_SIZE;
+	/**
+	 * The last streamed sheet whose rows have been written out, and the first of its rows still in memory
+	 */
+	private Sheet flushedSheet;
+	private int firstRowInMemory;
 	
 	/**
 	 * The current POI sheet being processed.
@@ -166,6 +180,81 @@ public class HandlerState {
 		return reportEngine;
 	}
 
+	public int getStreamingWindowSize() {
+		return streamingWindowSize;
+	}
+
+	public void setStreamingWindowSize(int streamingWindowSize) {
+		this.streamingWindowSize = streamingWindowSize;
+	}
+
+	/**
+	 * @return
+	 * true if the finished rows of the current sheet are written out to a temporary file.
+	 */
+	public boolean isStreaming() {
+		return ( currentSheet instanceof SXSSFSheet ) && ( streamingWindowSize > 0 );
+	}
+
+	/**
+	 * @return
+	 * The index of the first row of the current sheet that has not been written out.
+	 */
+	public int getFirstRowInMemory() {
+		return ( currentSheet == flushedSheet ) ? firstRowInMemory : 0;
+	}
+
+	/**
+	 * Find the first row of the current sheet that must still be kept in memory,
+	 * either because it is in the streaming window or because it is part of a row span that has not ended.
+	 * @return
+	 * The index of the row, all the rows before it are finished.
+	 */
+	public int getFirstRowToKeep() {
+		int firstRowToKeep = rowNum - streamingWindowSize;
+		boolean changed = true;
+		while( changed ) {
+			changed = false;
+			for( Area a : rowSpans ) {
+				if( ( a.y.getRow() >= firstRowToKeep ) && ( a.x.getRow() < firstRowToKeep ) ) {
+					firstRowToKeep = a.x.getRow();
+					changed = true;
+				}
+			}
+		}
+		return firstRowToKeep;
+	}
+
+	/**
+	 * Write out the rows of the current sheet before a row, when the sheet is streamed.
+	 * Rows that have been written out can no longer be read or changed.
+	 * @param beforeRow
+	 * The index of the first row to keep in memory.
+	 * @throws BirtException
+	 */
+	public void flushRows( int beforeRow ) throws BirtException {
+		if( ! isStreaming() ) {
+			return;
+		}
+		int remaining = 0;
+		for( Iterator<Row> iter = currentSheet.rowIterator(); iter.hasNext(); ) {
+			if( iter.next().getRowNum() >= beforeRow ) {
+				++remaining;
+			}
+		}
+		log.debug( "Flushing rows before ", beforeRow, " keeping ", remaining );
+		try {
+			((SXSSFSheet)currentSheet).flushRows( remaining );
+		} catch( IOException ex ) {
+			throw new BirtException( EmitterServices.getPluginName()
+					, "Unable to write rows to temporary file"
+					, ex
+					);
+		}
+		flushedSheet = currentSheet;
+		firstRowInMemory = beforeRow;
+	}
+
 	public IHandler getHandler() {
 		return handler;
 	}
@@ -14,8 +14,10 @@
 package uk.co.spudsoft.birt.emitters.excel;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
@@ -33,6 +35,9 @@ import uk.co.spudsoft.birt.emitters.excel.framework.Logger;
 
 /**
  * StyleManager is a cache of POI CellStyles to enable POI CellStyles to be reused based upon their BIRT styles.
+ * <br/>
+ * The cached styles are indexed by a hash of the attributes compared by stylesEquivalent, so that only styles
+ * with the same hash need to be compared.
  * @author Jim Talbut
  *
  */
@@ -55,7 +60,10 @@ public class StyleManager {
 	
 	private Workbook workbook;
 	private FontManager fm;
-	private List<StylePair> styles = new ArrayList<StylePair>();
+	private Map<Integer, List<StylePair>> stylesByHash = new HashMap<Integer, List<StylePair>>();
+	private Map<Short, StylePair> stylesByIndex = new HashMap<Short, StylePair>();
+	private int styleCacheHits;
+	private int styleCacheMisses;
 	private StyleManagerUtils smu;
 	private CSSEngine cssEngine;
 	private Logger log;
@@ -90,6 +98,20 @@ public class StyleManager {
 		return cssEngine;
 	}
 	
+	/**
+	 * Obtain the number of style requests that were satisfied by an existing CellStyle.
+	 */
+	public int getStyleCacheHits() {
+		return styleCacheHits;
+	}
+	
+	/**
+	 * Obtain the number of style requests that required a new CellStyle to be created.
+	 */
+	public int getStyleCacheMisses() {
+		return styleCacheMisses;
+	}
+	
 	
 	static int COMPARE_CSS_PROPERTIES[] = {
 		StyleConstants.STYLE_TEXT_ALIGN,
@@ -156,14 +178,35 @@ public class StyleManager {
 		return true;
 	}
 	
+	/**
+	 * Calculate a hash code for a BIRT style, as far as the attributes understood by POI are concerned.
+	 * <br/>
+	 * Every attribute tested in stylesEquivalent must be used in this method.
+	 * @param style
+	 * The BIRT style to hash.
+	 * @return
+	 * A hash code that is the same for any two styles for which stylesEquivalent returns true.
+	 */
+	private static int styleHashCode( BirtStyle style ) {
+		int hash = FontManager.fontHashCode( style );
+		for( int i = 0; i < COMPARE_CSS_PROPERTIES.length; ++i ) {
+			hash = 31 * hash + StyleManagerUtils.valueHashCode( style.getProperty( COMPARE_CSS_PROPERTIES[ i ] ) );
+		}
+		hash = 31 * hash + StyleManagerUtils.valueHashCode( style.getProperty( BirtStyle.TEXT_ROTATION ) );
+		hash = 31 * hash + StyleManagerUtils.dataFormatHashCode( (DataFormatValue)style.getProperty( StyleConstants.STYLE_DATA_FORMAT ) );
+		return hash;
+	}
+	
 	/**
 	 * Create a new POI CellStyle based upon a BIRT style.
 	 * @param birtStyle
 	 * The BIRT style to base the CellStyle upon.
+	 * @param hash
+	 * The styleHashCode of birtStyle.
 	 * @return
 	 * The CellStyle whose attributes are described by the BIRT style. 
 	 */
-	private CellStyle createStyle( BirtStyle birtStyle ) {
+	private CellStyle createStyle( BirtStyle birtStyle, int hash ) {
 		CellStyle poiStyle = workbook.createCellStyle();
 		// Font
 		Font font = fm.getFont(birtStyle);
@@ -202,26 +245,38 @@ public class StyleManager {
 			poiStyle.setRotation( (short) ((FloatValue)rotation).getFloatValue() );
 		}
 
-		styles.add(new StylePair( birtStyle.clone(), poiStyle ) );
+		StylePair stylePair = new StylePair( birtStyle.clone(), poiStyle );
+		List<StylePair> candidates = stylesByHash.get( hash );
+		if( candidates == null ) {
+			candidates = new ArrayList<StylePair>( 1 );
+			stylesByHash.put( hash, candidates );
+		}
+		candidates.add( stylePair );
+		stylesByIndex.put( poiStyle.getIndex(), stylePair );
 		return poiStyle;
 	}
 
 	public CellStyle getStyle( BirtStyle birtStyle ) {
-		for(StylePair stylePair : styles) {
-			if(stylesEquivalent(birtStyle, stylePair.birtStyle)) {
-				// System.err.println( "Equivalent :\n\t" + birtStyle + "\n\t" + stylePair.birtStyle );
-				return stylePair.poiStyle;
+		int hash = styleHashCode( birtStyle );
+		List<StylePair> candidates = stylesByHash.get( hash );
+		if( candidates != null ) {
+			for(StylePair stylePair : candidates) {
+				if(stylesEquivalent(birtStyle, stylePair.birtStyle)) {
+					// System.err.println( "Equivalent :\n\t" + birtStyle + "\n\t" + stylePair.birtStyle );
+					++styleCacheHits;
+					return stylePair.poiStyle;
+				}
 			}
 		}
 		
-		return createStyle(birtStyle);		
+		++styleCacheMisses;
+		return createStyle(birtStyle, hash);		
 	}
 	
 	private BirtStyle birtStyleFromCellStyle( CellStyle source ) {
-		for(StylePair stylePair : styles) {
-			if( source.equals(stylePair.poiStyle) ) {
-				return stylePair.birtStyle.clone();
-			}
+		StylePair stylePair = stylesByIndex.get( source.getIndex() );
+		if( stylePair != null ) {
+			return stylePair.birtStyle.clone();
 		}
 		
 		return new BirtStyle(cssEngine);
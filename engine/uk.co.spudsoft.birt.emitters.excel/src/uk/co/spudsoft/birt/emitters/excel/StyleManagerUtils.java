@@ -42,6 +42,9 @@ import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder.BorderSide;
 import org.eclipse.birt.report.engine.content.IPageContent;
 import org.eclipse.birt.report.engine.css.engine.StyleConstants;
 import org.eclipse.birt.report.engine.css.engine.value.DataFormatValue;
+import org.eclipse.birt.report.engine.css.engine.value.FloatValue;
+import org.eclipse.birt.report.engine.css.engine.value.ListValue;
+import org.eclipse.birt.report.engine.css.engine.value.RGBColorValue;
 import org.eclipse.birt.report.engine.css.engine.value.StringValue;
 import org.eclipse.birt.report.engine.css.engine.value.css.CSSConstants;
 import org.eclipse.birt.report.engine.ir.DimensionType;
@@ -116,6 +119,73 @@ public abstract class StyleManagerUtils {
         return true;
 	}
 	
+	/**
+	 * Calculate the hash code of an object in a null-safe manner.
+	 * @param value
+	 * The object to hash.
+	 * @return
+	 * 0 if value is null, otherwise value.hashCode().
+	 */
+	public static int objectHashCode(Object value) {
+		return (value == null) ? 0 : value.hashCode();
+	}
+	
+	/**
+	 * Calculate a hash code for a CSS value.
+	 * <br/>
+	 * The BIRT CSS values override equals, but not hashCode, so this is needed to index BIRT styles by their values.
+	 * @param value
+	 * The CSS value to hash.
+	 * @return
+	 * A hash code that is the same for any two values for which objectsEqual returns true.
+	 */
+	public static int valueHashCode(CSSValue value) {
+		if( value == null ) {
+			return 0;
+		}
+		if( value instanceof FloatValue ) {
+			FloatValue floatValue = (FloatValue)value;
+			float f = floatValue.getFloatValue();
+			// 0.0 == -0.0, but their bits differ
+			return 31 * floatValue.getPrimitiveType() + ( f == 0.0f ? 0 : Float.floatToIntBits( f ) );
+		}
+		if( value instanceof StringValue ) {
+			return objectHashCode( value.getCssText() );
+		}
+		if( value instanceof RGBColorValue ) {
+			RGBColorValue colour = (RGBColorValue)value;
+			return 31 * ( 31 * valueHashCode( colour.getRed() ) + valueHashCode( colour.getGreen() ) ) + valueHashCode( colour.getBlue() );
+		}
+		if( value instanceof ListValue ) {
+			ListValue listValue = (ListValue)value;
+			int hash = listValue.getLength();
+			for( int i = 0; i < listValue.getLength(); ++i ) {
+				hash = 31 * hash + valueHashCode( listValue.item( i ) );
+			}
+			return hash;
+		}
+		// Any other value is only equal to itself
+		return System.identityHashCode( value );
+	}
+	
+	/**
+	 * Calculate a hash code for a data format.
+	 * @param dataFormat
+	 * The data format to hash.
+	 * @return
+	 * A hash code that is the same for any two data formats for which dataFormatsEquivalent returns true.
+	 */
+	public static int dataFormatHashCode( DataFormatValue dataFormat ) {
+		if( dataFormat == null ) {
+			return 0;
+		}
+		int hash = objectHashCode( dataFormat.getNumberPattern() );
+		hash = 31 * hash + objectHashCode( dataFormat.getDatePattern() );
+		hash = 31 * hash + objectHashCode( dataFormat.getDateTimePattern() );
+		hash = 31 * hash + objectHashCode( dataFormat.getTimePattern() );
+		return hash;
+	}
+	
 	
 	
 	/**
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
@@ -43,6 +44,20 @@ public class XlsxEmitter extends ExcelEmitter {
 		return new XSSFWorkbook();
 	}
 	
+	/**
+	 * The rows are not written out automatically, because the handlers may go back to them;
+	 * they are flushed by the handlers once they are finished, see HandlerState.flushRows().
+	 */
+	protected Workbook createStreamingWorkbook() {
+		return new SXSSFWorkbook( -1 );
+	}
+	
+	protected void disposeWorkbook( Workbook wb ) {
+		if( wb instanceof SXSSFWorkbook ) {
+			((SXSSFWorkbook)wb).dispose();
+		}
+	}
+	
 	protected Workbook openWorkbook( File templateFile ) throws IOException {
 		InputStream stream = new FileInputStream( templateFile );
 		try {
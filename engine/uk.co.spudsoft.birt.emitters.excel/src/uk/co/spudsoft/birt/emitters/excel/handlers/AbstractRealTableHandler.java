@@ -140,7 +140,9 @@ public class AbstractRealTableHandler extends AbstractHandler implements ITableH
 			for( int col = 0; col < table.getColumnCount(); ++col ) {
 				int oldWidth = state.currentSheet.getColumnWidth(col);
 				if( forceAutoColWidths || ( oldWidth == 256 * state.currentSheet.getDefaultColumnWidth() ) ) {
-					FilteredSheet filteredSheet = new FilteredSheet( state.currentSheet, startDetailsRow, Math.min(endDetailsRow, startDetailsRow + 12) );
+					// the rows of a streamed sheet may have been written out already
+					int firstDetailsRow = Math.max( startDetailsRow, state.getFirstRowInMemory() );
+					FilteredSheet filteredSheet = new FilteredSheet( state.currentSheet, firstDetailsRow, Math.min(endDetailsRow, firstDetailsRow + 12) );
 			        double calcWidth = SheetUtil.getColumnWidth( filteredSheet, col, false );
 
 			        if (calcWidth > 1.0) {
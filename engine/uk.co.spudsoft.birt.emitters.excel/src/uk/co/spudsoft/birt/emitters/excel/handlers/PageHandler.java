@@ -14,6 +14,7 @@
 package uk.co.spudsoft.birt.emitters.excel.handlers;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.ClientAnchor;
@@ -234,14 +235,7 @@ public class PageHandler extends AbstractHandler {
 			state.sheetPassword = null;
 		}
 
-		Drawing drawing = null;
-		if( ! state.images.isEmpty() ) {
-			drawing = state.currentSheet.createDrawingPatriarch();
-		}
-		for( CellImage cellImage : state.images ) {
-			processCellImage(state,drawing,cellImage);
-		}
-		state.images.clear();
+		processCellImages(state, Integer.MAX_VALUE);
 		state.rowNum = 0;
 		state.colNum = 0;
 		state.clearRowSpans();
@@ -250,6 +244,29 @@ public class PageHandler extends AbstractHandler {
 		state.currentSheet = null;
 	}
 	
+	/**
+	 * <p>
+	 * Process the CellImages from the images list that are placed in the rows before a row.
+	 * </p><p>
+	 * The processed images are removed from the list.
+	 * </p>
+	 * @param beforeRow
+	 * The index of the first row whose images are left in the list.
+	 */
+	void processCellImages( HandlerState state, int beforeRow ) {
+		Drawing drawing = null;
+		for( Iterator<CellImage> iter = state.images.iterator(); iter.hasNext(); ) {
+			CellImage cellImage = iter.next();
+			if( cellImage.location.getRow() < beforeRow ) {
+				if( drawing == null ) {
+					drawing = state.currentSheet.createDrawingPatriarch();
+				}
+				processCellImage(state,drawing,cellImage);
+				iter.remove();
+			}
+		}
+	}
+	
 	private CellRangeAddress getMergedRegionBegunBy( Sheet sheet, int row, int col ) {
 		for( int i = 0; i < sheet.getNumMergedRegions(); ++i ) {
 			CellRangeAddress range = sheet.getMergedRegion(i);
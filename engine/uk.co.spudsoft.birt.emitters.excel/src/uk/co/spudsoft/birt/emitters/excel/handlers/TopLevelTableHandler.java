@@ -31,6 +31,7 @@ import uk.co.spudsoft.birt.emitters.excel.framework.Logger;
 public class TopLevelTableHandler extends AbstractRealTableHandler {
 	
 	private Stack<Integer> groupStarts;
+	private Stack<ITableGroupContent> groupContents;
 	
 	public TopLevelTableHandler(Logger log,IHandler parent, ITableContent table) {
 		super(log, parent, table);
@@ -84,8 +85,10 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 		log.debug( "startTableGroup @" + state.rowNum + " called " + group.getBookmark() );
 		if( groupStarts == null ) {
 			groupStarts = new Stack<Integer>();
+			groupContents = new Stack<ITableGroupContent>();
 		}
 		groupStarts.push(state.rowNum);
+		groupContents.push(group);
 		
 		Object groupDesignObject = group.getGenerateBy();
 		if( groupDesignObject instanceof TableGroupDesign ) {
@@ -107,6 +110,7 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 	public void endTableGroup(HandlerState state, ITableGroupContent group) throws BirtException {
 		log.debug( "endTableGroup @" + state.rowNum + " called " + group.getBookmark() );
 		int start = groupStarts.pop();
+		groupContents.pop();
 		if( start < state.rowNum - 1 ) {
 			
 			boolean disableGrouping = false;
@@ -128,4 +132,42 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 		}
 	}
 	
+	/**
+	 * Write out the finished rows of a streamed sheet, see ExcelEmitter.STREAMING_XLSX.
+	 * <p>
+	 * The rows are written out once a whole streaming window of them is finished.
+	 * The groups that have not ended yet are applied to the rows first, as they will end after them,
+	 * and the images placed in the rows are added to the sheet.
+	 * </p>
+	 * @param state
+	 * @throws BirtException
+	 */
+	public void flushRows(HandlerState state) throws BirtException {
+		if( ! state.isStreaming() ) {
+			return;
+		}
+		int firstRowToKeep = state.getFirstRowToKeep();
+		if( firstRowToKeep - state.getFirstRowInMemory() < state.getStreamingWindowSize() ) {
+			return;
+		}
+		
+		if( groupStarts != null ) {
+			for( int i = 0; i < groupStarts.size(); ++i ) {
+				int firstRow = state.currentSheet.getRowSumsBelow() ? groupStarts.get(i) : groupStarts.get(i) + 1;
+				if( ( firstRow < firstRowToKeep ) 
+						&& ! EmitterServices.booleanOption( state.getRenderOptions(), groupContents.get(i), ExcelEmitter.DISABLE_GROUPING, false ) ) {
+					log.debug( "Open TableGroup of rows ", firstRow, " - ", firstRowToKeep - 1 );
+					state.currentSheet.groupRow(firstRow, firstRowToKeep - 1);
+				}
+			}
+		}
+		
+		PageHandler pageHandler = getAncestor(PageHandler.class);
+		if( pageHandler != null ) {
+			pageHandler.processCellImages(state, firstRowToKeep);
+		}
+		
+		state.flushRows(firstRowToKeep);
+	}
+	
 }